@@ -15,8 +15,6 @@ public class Config {
 
     public static String size = "0";
 
-    public static String boundary = "\n\t\n";
-
     public static String[] scope = new String[]{
             "any",
             "any header",
@@ -35,6 +33,24 @@ public class Config {
 
     public static String modeStatus = "true";
 
+    public static Integer RegexMinWorkers = 1;
+
+    public static Integer RegexMaxWorkers = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    public static Integer MatchingThreads = 0;
+
+    public static Integer RuleTimeoutMillis = 500;
+
+    public static Integer RuleQuarantineStrikes = 3;
+
+    public static Integer ScanWindowKB = 256;
+
+    public static Integer ScanHeaderLimitKB = 64;
+
+    public static Integer ScanBodyLimitKB = 2048;
+
+    public static Integer ScanMessageLimitKB = 2048;
+
     public static String[] ruleFields = {
             "Loaded", "Name", "F-Regex", "S-Regex", "Format", "Color", "Scope", "Engine", "Sensitive"
     };
@@ -7,18 +7,24 @@ import burp.api.montoya.core.BurpSuiteEdition;
 import burp.api.montoya.logging.Logging;
 import hae.ai.AiTriageLifecycle;
 import hae.component.board.DataboardAiSettingsController;
+import hae.cache.BodyMatchCache;
 import hae.cache.DataCache;
 import hae.component.Main;
 import hae.component.board.message.MessageTableModel;
 import hae.instances.editor.RequestEditor;
 import hae.instances.editor.ResponseEditor;
 import hae.instances.editor.WebSocketEditor;
+import hae.instances.http.utils.AutomatonStore;
+import hae.instances.http.utils.MatchingEngine;
+import hae.instances.http.utils.RuleGuard;
+import hae.instances.http.utils.ScanWindows;
 import hae.instances.menu.DataboardContextMenuProvider;
 import hae.instances.websocket.WebSocketMessageHandler;
 import hae.storage.SqliteMessageStore;
 import hae.utils.ConfigLoader;
 import hae.utils.DataManager;
 
+import java.nio.file.Paths;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class HaE implements BurpExtension {
@@ -45,6 +51,12 @@ public class HaE implements BurpExtension {
 
         // 配置文件加载
         ConfigLoader configLoader = new ConfigLoader(api);
+        RuleGuard.configure(configLoader.getRuleTimeoutMillis(), configLoader.getRuleQuarantineStrikes());
+        MatchingEngine.configure(configLoader.getMatchingThreads());
+        ScanWindows.configure(configLoader.getScanWindowKB(), configLoader.getScanHeaderLimitKB(),
+                configLoader.getScanBodyLimitKB(), configLoader.getScanMessageLimitKB());
+        // 后台读回已编译的自动机并预热规则集，首批消息无需等待编译
+        AutomatonStore.start(Paths.get(configLoader.getRulesFilePath()), logging::logToError);
 
         SqliteMessageStore messageStore = new SqliteMessageStore(api, configLoader);
         AiTriageLifecycle aiTriageLifecycle = AiTriageLifecycle.startIfEnabled(api, configLoader, messageStore);
@@ -101,9 +113,20 @@ public class HaE implements BurpExtension {
             } catch (Exception ignored) {
             }
 
+            try {
+                AutomatonStore.shutdown();
+            } catch (Exception ignored) {
+            }
+
+            try {
+                MatchingEngine.shutdown();
+            } catch (Exception ignored) {
+            }
+
             try {
                 Config.globalDataMap.clear();
                 DataCache.clear();
+                BodyMatchCache.clear();
             } catch (Exception ignored) {
             }
 
@@ -5,6 +5,7 @@ import burp.api.montoya.http.message.HttpRequestResponse;
 import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
 import hae.repository.AiTaskRepository;
+import hae.utils.string.HashCalculator;
 
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
@@ -343,11 +344,7 @@ public class AiTriageEnqueueService {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hashed = digest.digest(safeString(value).getBytes(StandardCharsets.UTF_8));
-            StringBuilder builder = new StringBuilder(hashed.length * 2);
-            for (byte current : hashed) {
-                builder.append(String.format("%02x", current));
-            }
-            return builder.toString();
+            return HashCalculator.toHex(hashed);
         } catch (Exception e) {
             return "";
         }
@@ -1,5 +1,7 @@
 package hae.ai;
 
+import hae.utils.string.HashCalculator;
+
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 
@@ -17,11 +19,7 @@ public final class AiTriageTargetSignature {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] bytes = digest.digest(safe(value).getBytes(StandardCharsets.UTF_8));
-            StringBuilder builder = new StringBuilder(bytes.length * 2);
-            for (byte b : bytes) {
-                builder.append(String.format("%02x", b));
-            }
-            return builder.toString();
+            return HashCalculator.toHex(bytes);
         } catch (Exception e) {
             return Integer.toHexString(safe(value).hashCode());
         }
@@ -11,6 +11,7 @@ import hae.ai.AiTriageSchema;
 import hae.ai.AiWhitelistRule;
 import hae.ai.parser.AiTextSanitizer;
 import hae.repository.MessageRepository;
+import hae.utils.string.HashCalculator;
 
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
@@ -511,11 +512,7 @@ public class AiPromptBuilder {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hashed = digest.digest(text(value).getBytes(StandardCharsets.UTF_8));
-            StringBuilder builder = new StringBuilder(hashed.length * 2);
-            for (byte current : hashed) {
-                builder.append(String.format("%02x", current));
-            }
-            return builder.toString();
+            return HashCalculator.toHex(hashed);
         } catch (Exception e) {
             return "";
         }
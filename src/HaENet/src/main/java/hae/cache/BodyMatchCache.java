@@ -0,0 +1,74 @@
+package hae.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hae.utils.string.MessageFingerprint;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** 按正文指纹与规则集版本缓存正文范围规则的结果，正文相同而 URL 或头部不同的消息不必重扫正文。 */
+public class BodyMatchCache {
+    private static final long MAX_MEMORY_BYTES = 32L * 1024 * 1024;
+    private static final int EXPIRE_DURATION = 4;
+    // 键、结果表与缓存节点的大致开销
+    private static final int ESTIMATED_ENTRY_BYTES = 160;
+    private static final int ESTIMATED_RULE_BYTES = 64;
+    private static final int ESTIMATED_VALUE_BYTES = 48;
+
+    /** type 区分请求与响应，两者作用的规则不同。 */
+    public record Key(MessageFingerprint body, long ruleSetVersion, String type) {
+    }
+
+    /**
+     * 一条规则在正文上的结果：values 为去重后的提取值，spans 按 [start, end, start, end, ...] 保存相对正文起点的偏移。
+     */
+    public record RuleResult(List<String> values, int[] spans) {
+        public static final RuleResult EMPTY = new RuleResult(List.of(), new int[0]);
+    }
+
+    private static final Cache<Key, Map<Integer, RuleResult>> cache =
+            Caffeine.newBuilder()
+                    .maximumWeight(MAX_MEMORY_BYTES)
+                    .weigher(BodyMatchCache::weigh)
+                    .expireAfterWrite(EXPIRE_DURATION, TimeUnit.HOURS)
+                    .recordStats()
+                    .build();
+
+    /** 按规则序号保存的结果，只包含上次完整执行过的规则。 */
+    public static Map<Integer, RuleResult> get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    public static void put(Key key, Map<Integer, RuleResult> results) {
+        cache.put(key, Map.copyOf(results));
+    }
+
+    public static void clear() {
+        cache.invalidateAll();
+    }
+
+    public static CacheStats stats() {
+        return cache.stats();
+    }
+
+    public static String summary() {
+        CacheStats stats = cache.stats();
+        return String.format(Locale.ROOT, "Body hits %d/%d (%.1f%%)",
+                stats.hitCount(), stats.requestCount(), stats.hitRate() * 100.0);
+    }
+
+    static int weigh(Key key, Map<Integer, RuleResult> results) {
+        long bytes = ESTIMATED_ENTRY_BYTES;
+        for (RuleResult result : results.values()) {
+            bytes += ESTIMATED_RULE_BYTES + 4L * result.spans().length;
+            for (String value : result.values()) {
+                bytes += ESTIMATED_VALUE_BYTES + 2L * value.length();
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+}
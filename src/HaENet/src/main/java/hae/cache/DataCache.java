@@ -2,29 +2,44 @@ package hae.cache;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hae.instances.http.utils.RuleMatches;
+import hae.utils.string.MessageFingerprint;
 
-import java.util.Map;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 public class DataCache {
     private static final int MAX_SIZE = 100000;
     private static final int EXPIRE_DURATION = 4;
 
-    private static final Cache<String, Map<String, Map<String, Object>>> cache =
+    private static final Cache<MessageFingerprint, List<RuleMatches>> cache =
             Caffeine.newBuilder()
                     .maximumSize(MAX_SIZE)
                     .expireAfterWrite(EXPIRE_DURATION, TimeUnit.HOURS)
+                    .recordStats()
                     .build();
 
-    public static void put(String key, Map<String, Map<String, Object>> value) {
+    public static void put(MessageFingerprint key, List<RuleMatches> value) {
         cache.put(key, value);
     }
 
-    public static Map<String, Map<String, Object>> get(String key) {
+    public static List<RuleMatches> get(MessageFingerprint key) {
         return cache.getIfPresent(key);
     }
 
     public static void clear() {
         cache.invalidateAll();
     }
+
+    public static CacheStats stats() {
+        return cache.stats();
+    }
+
+    public static String summary() {
+        CacheStats stats = cache.stats();
+        return String.format(Locale.ROOT, "Message hits %d/%d (%.1f%%)",
+                stats.hitCount(), stats.requestCount(), stats.hitRate() * 100.0);
+    }
 }
\ No newline at end of file
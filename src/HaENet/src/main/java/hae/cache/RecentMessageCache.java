@@ -0,0 +1,65 @@
+package hae.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hae.utils.string.MessageFingerprint;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/** 近期已入库消息的指纹，时间窗口内再次送来的同一份请求/响应在解析与数据库去重之前丢弃。 */
+public class RecentMessageCache {
+    private static final long MAX_MEMORY_BYTES = 8L * 1024 * 1024;
+    private static final int EXPIRE_DURATION = 10;
+    // 指纹对象 + 缓存节点的大致开销
+    private static final int ESTIMATED_ENTRY_BYTES = 112;
+
+    private final Cache<MessageFingerprint, Boolean> cache;
+
+    public RecentMessageCache() {
+        this(MAX_MEMORY_BYTES, EXPIRE_DURATION, TimeUnit.MINUTES, Ticker.systemTicker());
+    }
+
+    RecentMessageCache(long maxMemoryBytes, long window, TimeUnit unit, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(ESTIMATED_ENTRY_BYTES, maxMemoryBytes))
+                .weigher((MessageFingerprint key, Boolean value) -> ESTIMATED_ENTRY_BYTES)
+                .expireAfterWrite(window, unit)
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+    }
+
+    /** 指纹在时间窗口内已入库过时返回 true，并计入命中率。 */
+    public boolean seenRecently(MessageFingerprint fingerprint) {
+        return fingerprint != null && cache.getIfPresent(fingerprint) != null;
+    }
+
+    public void record(MessageFingerprint fingerprint) {
+        if (fingerprint != null) {
+            cache.put(fingerprint, Boolean.TRUE);
+        }
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public long estimatedSize() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public String summary() {
+        CacheStats stats = cache.stats();
+        return String.format(Locale.ROOT, "Recent duplicates dropped %d/%d (%.1f%%)",
+                stats.hitCount(), stats.requestCount(), stats.hitRate() * 100.0);
+    }
+}
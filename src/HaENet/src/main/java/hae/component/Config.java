@@ -8,6 +8,9 @@ import hae.component.board.message.MessageTableModel;
 import hae.component.rule.Rules;
 import hae.instances.http.HttpMessageActiveHandler;
 import hae.instances.http.HttpMessagePassiveHandler;
+import hae.instances.http.utils.MatchingEngine;
+import hae.instances.http.utils.RuleGuard;
+import hae.instances.http.utils.ScanWindows;
 import hae.utils.ConfigLoader;
 import hae.utils.UIEnhancer;
 
@@ -134,7 +137,19 @@ public class Config extends JPanel {
         JScrollPane scopeScrollPane = new JScrollPane(scopePanel);
         scopeScrollPane.setBorder(new TitledBorder("Scope"));
 
+        JPanel regexWorkerPanel = getRegexWorkerPanel();
+        regexWorkerPanel.setBorder(new TitledBorder("Regex Workers"));
+
+        JPanel scanLimitPanel = getScanLimitPanel();
+        scanLimitPanel.setBorder(new TitledBorder("Scan Limits (KB, 0 = unlimited)"));
+
+        JPanel regexPanel = new JPanel();
+        regexPanel.setLayout(new BoxLayout(regexPanel, BoxLayout.Y_AXIS));
+        regexPanel.add(regexWorkerPanel);
+        regexPanel.add(scanLimitPanel);
+
         northPanel.add(scopeScrollPane, BorderLayout.SOUTH);
+        northPanel.add(regexPanel, BorderLayout.CENTER);
         northPanel.add(northTopPanel, BorderLayout.NORTH);
         settingPanel.add(northPanel, BorderLayout.NORTH);
 
@@ -171,6 +186,141 @@ public class Config extends JPanel {
         return scopePanel;
     }
 
+    private JPanel getRegexWorkerPanel() {
+        JPanel regexWorkerPanel = new JPanel();
+        regexWorkerPanel.setLayout(new BoxLayout(regexWorkerPanel, BoxLayout.X_AXIS));
+
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        int maxLimit = Math.max(64, availableProcessors * 4);
+        int maxWorkers = Math.min(configLoader.getRegexMaxWorkers(), maxLimit);
+        int minWorkers = Math.min(configLoader.getRegexMinWorkers(), maxWorkers);
+        JSpinner minSpinner = new JSpinner(new SpinnerNumberModel(minWorkers, 1, maxLimit, 1));
+        JSpinner maxSpinner = new JSpinner(new SpinnerNumberModel(maxWorkers, 1, maxLimit, 1));
+        JSpinner budgetSpinner = new JSpinner(new SpinnerNumberModel(Math.max(10, Math.min(configLoader.getRuleTimeoutMillis(), 60000)), 10, 60000, 50));
+        JSpinner matchingSpinner = new JSpinner(new SpinnerNumberModel(Math.max(0, Math.min(configLoader.getMatchingThreads(), maxLimit)), 0, maxLimit, 1));
+        matchingSpinner.setToolTipText("Threads of the dedicated rule matching pool shared by all messages, 0 = one per core");
+        JLabel statusLabel = new JLabel(getRegexStatus());
+
+        regexWorkerPanel.add(new JLabel("Min:"));
+        regexWorkerPanel.add(Box.createHorizontalStrut(5));
+        regexWorkerPanel.add(minSpinner);
+        regexWorkerPanel.add(Box.createHorizontalStrut(10));
+        regexWorkerPanel.add(new JLabel(String.format("Max (%d cores):", availableProcessors)));
+        regexWorkerPanel.add(Box.createHorizontalStrut(5));
+        regexWorkerPanel.add(maxSpinner);
+        regexWorkerPanel.add(Box.createHorizontalStrut(10));
+        regexWorkerPanel.add(new JLabel("Rule budget (ms):"));
+        regexWorkerPanel.add(Box.createHorizontalStrut(5));
+        regexWorkerPanel.add(budgetSpinner);
+        regexWorkerPanel.add(Box.createHorizontalStrut(10));
+        regexWorkerPanel.add(new JLabel("Match threads:"));
+        regexWorkerPanel.add(Box.createHorizontalStrut(5));
+        regexWorkerPanel.add(matchingSpinner);
+        regexWorkerPanel.add(Box.createHorizontalStrut(15));
+        regexWorkerPanel.add(statusLabel);
+        regexWorkerPanel.add(Box.createHorizontalGlue());
+
+        minSpinner.addChangeListener(e -> {
+            int min = (Integer) minSpinner.getValue();
+            if (min > (Integer) maxSpinner.getValue()) {
+                maxSpinner.setValue(min);
+            }
+            updateRegexWorkerLimits(minSpinner, maxSpinner);
+        });
+        maxSpinner.addChangeListener(e -> {
+            int max = (Integer) maxSpinner.getValue();
+            if (max < (Integer) minSpinner.getValue()) {
+                minSpinner.setValue(max);
+            }
+            updateRegexWorkerLimits(minSpinner, maxSpinner);
+        });
+        budgetSpinner.addChangeListener(e -> {
+            // 单条规则在单条消息上的匹配时间预算，多次超时的规则会被隔离
+            int timeoutMillis = (Integer) budgetSpinner.getValue();
+            configLoader.setRuleTimeoutMillis(timeoutMillis);
+            RuleGuard.configure(timeoutMillis, configLoader.getRuleQuarantineStrikes());
+        });
+        matchingSpinner.addChangeListener(e -> {
+            int threads = (Integer) matchingSpinner.getValue();
+            configLoader.setMatchingThreads(threads);
+            MatchingEngine.configure(threads);
+        });
+
+        // 仅在面板可见时刷新线程池状态
+        javax.swing.Timer statusTimer = new javax.swing.Timer(1000, e -> {
+            if (regexWorkerPanel.isShowing()) {
+                statusLabel.setText(getRegexStatus());
+            }
+        });
+        statusTimer.start();
+
+        return regexWorkerPanel;
+    }
+
+    private String getRegexStatus() {
+        return messageTableModel.getRegexWorkerStatus() + " | " + MatchingEngine.status();
+    }
+
+    private JPanel getScanLimitPanel() {
+        JPanel scanLimitPanel = new JPanel();
+        scanLimitPanel.setLayout(new BoxLayout(scanLimitPanel, BoxLayout.X_AXIS));
+
+        int maxKB = 1024 * 1024;
+        JSpinner headerSpinner = new JSpinner(new SpinnerNumberModel(Math.max(0, Math.min(configLoader.getScanHeaderLimitKB(), maxKB)), 0, maxKB, 16));
+        JSpinner bodySpinner = new JSpinner(new SpinnerNumberModel(Math.max(0, Math.min(configLoader.getScanBodyLimitKB(), maxKB)), 0, maxKB, 256));
+        JSpinner messageSpinner = new JSpinner(new SpinnerNumberModel(Math.max(0, Math.min(configLoader.getScanMessageLimitKB(), maxKB)), 0, maxKB, 256));
+        JSpinner windowSpinner = new JSpinner(new SpinnerNumberModel(Math.max(4, Math.min(configLoader.getScanWindowKB(), 65536)), 4, 65536, 64));
+        windowSpinner.setToolTipText("Content within the limits is matched window by window; windows overlap by the longest possible match of each rule");
+
+        scanLimitPanel.add(new JLabel("Header:"));
+        scanLimitPanel.add(Box.createHorizontalStrut(5));
+        scanLimitPanel.add(headerSpinner);
+        scanLimitPanel.add(Box.createHorizontalStrut(10));
+        scanLimitPanel.add(new JLabel("Body:"));
+        scanLimitPanel.add(Box.createHorizontalStrut(5));
+        scanLimitPanel.add(bodySpinner);
+        scanLimitPanel.add(Box.createHorizontalStrut(10));
+        scanLimitPanel.add(new JLabel("Message:"));
+        scanLimitPanel.add(Box.createHorizontalStrut(5));
+        scanLimitPanel.add(messageSpinner);
+        scanLimitPanel.add(Box.createHorizontalStrut(10));
+        scanLimitPanel.add(new JLabel("Window:"));
+        scanLimitPanel.add(Box.createHorizontalStrut(5));
+        scanLimitPanel.add(windowSpinner);
+        scanLimitPanel.add(Box.createHorizontalGlue());
+
+        // 超出上限的内容不再匹配，截断情况记录在消息行上
+        javax.swing.event.ChangeListener listener = e -> {
+            configLoader.setScanHeaderLimitKB((Integer) headerSpinner.getValue());
+            configLoader.setScanBodyLimitKB((Integer) bodySpinner.getValue());
+            configLoader.setScanMessageLimitKB((Integer) messageSpinner.getValue());
+            configLoader.setScanWindowKB((Integer) windowSpinner.getValue());
+            ScanWindows.configure((Integer) windowSpinner.getValue(), (Integer) headerSpinner.getValue(),
+                    (Integer) bodySpinner.getValue(), (Integer) messageSpinner.getValue());
+        };
+        headerSpinner.addChangeListener(listener);
+        bodySpinner.addChangeListener(listener);
+        messageSpinner.addChangeListener(listener);
+        windowSpinner.addChangeListener(listener);
+
+        return scanLimitPanel;
+    }
+
+    private void updateRegexWorkerLimits(JSpinner minSpinner, JSpinner maxSpinner) {
+        int min = (Integer) minSpinner.getValue();
+        int max = (Integer) maxSpinner.getValue();
+        if (min > max) {
+            return;
+        }
+        if (min != configLoader.getRegexMinWorkers()) {
+            configLoader.setRegexMinWorkers(min);
+        }
+        if (max != configLoader.getRegexMaxWorkers()) {
+            configLoader.setRegexMaxWorkers(max);
+        }
+        messageTableModel.setRegexWorkerLimits(min, max);
+    }
+
     private JPanel getModePanel() {
         JPanel modePanel = new JPanel();
         modePanel.setLayout(new BoxLayout(modePanel, BoxLayout.X_AXIS));
@@ -65,7 +65,7 @@ public class Main extends JPanel {
                 new Insets(0, 0, 0, 0), 0, 0));
 
         // 依次添加Rules、Config、Databoard
-        Rules rules = new Rules(api, configLoader);
+        Rules rules = new Rules(api, configLoader, messageTableModel.getMessageRepositoryForRules());
         mainTabbedPane.addTab("Rules", rules);
         mainTabbedPane.addTab("Databoard", new Databoard(api, configLoader, messageTableModel, aiWorkerControls));
         mainTabbedPane.addTab("Config", new Config(api, configLoader, messageTableModel, rules, aiWorkerControls));
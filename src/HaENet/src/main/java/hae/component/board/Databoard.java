@@ -2,6 +2,7 @@ package hae.component.board;
 
 import burp.api.montoya.MontoyaApi;
 import hae.ai.AiConfig;
+import hae.cache.BodyMatchCache;
 import hae.cache.DataCache;
 import hae.component.board.message.AiSummaryDisplay;
 import hae.component.board.message.MessageTableModel;
@@ -460,6 +461,7 @@ public class Databoard extends JPanel {
                 JOptionPane.YES_NO_OPTION);
         if (retCode == JOptionPane.YES_OPTION) {
             DataCache.clear();
+            BodyMatchCache.clear();
         }
     }
 
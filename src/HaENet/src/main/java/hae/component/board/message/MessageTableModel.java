@@ -11,10 +11,12 @@ import burp.api.montoya.ui.UserInterface;
 import burp.api.montoya.ui.editor.HttpRequestEditor;
 import burp.api.montoya.ui.editor.HttpResponseEditor;
 import hae.Config;
+import hae.cache.RecentMessageCache;
 import hae.ai.AiTriageEnqueueService;
 import hae.ai.AiTriageTargetSignature;
 import hae.ai.AiWhitelistRules;
 import hae.repository.AiResultRepository;
+import hae.instances.http.utils.CompiledRuleSet;
 import hae.instances.http.utils.MessageProcessor;
 import hae.repository.AiTaskRepository;
 import hae.repository.ExtractedDataRepository;
@@ -24,6 +26,7 @@ import hae.repository.StorageMaintenanceRepository;
 import hae.storage.SqliteMessageStore;
 import hae.utils.ConfigLoader;
 import hae.utils.http.HttpUtils;
+import hae.utils.string.MessageFingerprint;
 import hae.utils.string.StringProcessor;
 
 import javax.swing.*;
@@ -38,18 +41,17 @@ import java.awt.event.ComponentEvent;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -60,11 +62,18 @@ import static burp.api.montoya.ui.editor.EditorOptions.READ_ONLY;
 
 public class MessageTableModel extends AbstractTableModel {
     private static final int DEFAULT_PAGE_SIZE = 100;
-    private static final int REGEX_WORKER_COUNT = 2;
     private static final int REGEX_QUEUE_CAPACITY = 10000;
+    private static final int REGEX_BATCH_SIZE = 64;
     private static final int PENDING_ANNOTATION_CAPACITY = 10000;
     private static final int PENDING_RECOVERY_BATCH_SIZE = 200;
     private static final long PENDING_RECOVERY_IDLE_MILLIS = 5000L;
+    private static final int RULE_REMATCH_BATCH_SIZE = 200;
+    private static final long RULE_REMATCH_DEBOUNCE_MILLIS = 1500L;
+    private static final int INGEST_BUFFER_CAPACITY = 10000;
+    private static final int INGEST_BATCH_SIZE = 200;
+    private static final long INGEST_FLUSH_INTERVAL_MILLIS = 50L;
+    private static final long INGEST_BLOCK_TIMEOUT_MILLIS = 200L;
+    private static final PendingMessageWriter.OverflowPolicy INGEST_OVERFLOW_POLICY = PendingMessageWriter.OverflowPolicy.CALLER_RUNS;
     private static final int BASE_COLUMN_COUNT = 6;
     private static final double TABLE_DETAIL_INITIAL_HEIGHT_RATIO = 0.50;
 
@@ -88,6 +97,9 @@ public class MessageTableModel extends AbstractTableModel {
     private final JButton previousPageButton = new JButton("<");
     private final JButton nextPageButton = new JButton(">");
     private final JLabel pageInfoLabel = new JLabel("Page 1/1 · Rows 0-0/0");
+    private final JLabel regexQueueLabel = new JLabel();
+    private final JLabel ruleRematchLabel = new JLabel();
+    private final JButton cancelRuleRematchButton = new JButton("Cancel re-match");
     private final JComboBox<Integer> pageSizeComboBox = new JComboBox<>(new Integer[]{50, 100, 200, 500, 1000});
 
     private int currentPage = 1;
@@ -103,13 +115,15 @@ public class MessageTableModel extends AbstractTableModel {
     private SwingWorker<PageQueryResult, Void> pageWorker;
     private final AtomicInteger queryVersion = new AtomicInteger(0);
     private final AtomicLong selectionGeneration = new AtomicLong(0L);
-    private final BlockingQueue<String> regexQueue = new LinkedBlockingQueue<>(REGEX_QUEUE_CAPACITY);
-    private final Set<String> queuedRegexMessageIds = ConcurrentHashMap.newKeySet();
-    private final ExecutorService regexExecutorService;
-    private final AtomicBoolean regexWorkerRunning = new AtomicBoolean(true);
+    private final RegexWorkScheduler regexScheduler = new RegexWorkScheduler(REGEX_QUEUE_CAPACITY);
+    private final AtomicBoolean regexWorkSpilled = new AtomicBoolean(false);
+    private final RegexWorkerPool regexWorkerPool;
+    private final RuleRematcher ruleRematcher;
     private final AtomicBoolean shutdownRequested = new AtomicBoolean(false);
     private final AtomicBoolean pageRefreshQueued = new AtomicBoolean(false);
     private final Map<String, Annotations> pendingAnnotations = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final PendingMessageWriter<PendingIngest> pendingMessageWriter;
+    private final RecentMessageCache recentMessageCache = new RecentMessageCache();
 
     private static class PageQueryResult {
         private final List<MessageEntry> entries;
@@ -123,6 +137,46 @@ public class MessageTableModel extends AbstractTableModel {
         }
     }
 
+    private static class PendingIngest {
+        private final SqliteMessageStore.PendingMessageWrite write;
+        private final Annotations annotations;
+        private final MessageProcessor.ProcessedMessage processedMessage;
+        private final String toolType;
+        private final MessageFingerprint fingerprint;
+
+        private PendingIngest(SqliteMessageStore.PendingMessageWrite write,
+                              Annotations annotations,
+                              MessageProcessor.ProcessedMessage processedMessage,
+                              String toolType,
+                              MessageFingerprint fingerprint) {
+            this.write = write;
+            this.annotations = annotations;
+            this.processedMessage = processedMessage;
+            this.toolType = toolType;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static class RegexWorkResult {
+        private final String messageId;
+        private final String contentHash;
+        private final String source;
+        private final HttpRequestResponse requestResponse;
+        private final MessageProcessor.ProcessedMessage processedMessage;
+
+        private RegexWorkResult(String messageId,
+                                String contentHash,
+                                String source,
+                                HttpRequestResponse requestResponse,
+                                MessageProcessor.ProcessedMessage processedMessage) {
+            this.messageId = messageId;
+            this.contentHash = contentHash;
+            this.source = source;
+            this.requestResponse = requestResponse;
+            this.processedMessage = processedMessage;
+        }
+    }
+
     private static class RequestMetadata {
         private final String url;
         private final String host;
@@ -200,7 +254,35 @@ public class MessageTableModel extends AbstractTableModel {
         this.aiTriageEnqueueService = aiTriageEnqueueService;
         this.httpUtils = new HttpUtils(api, configLoader);
         this.pageLog = new LinkedList<>();
-        this.regexExecutorService = Executors.newFixedThreadPool(REGEX_WORKER_COUNT);
+        this.regexWorkerPool = new RegexWorkerPool(
+                "HaE-Regex-Worker-",
+                configLoader.getRegexMinWorkers(),
+                configLoader.getRegexMaxWorkers(),
+                REGEX_BATCH_SIZE,
+                PENDING_RECOVERY_IDLE_MILLIS,
+                regexScheduler,
+                this::runRegexBatch,
+                this::recoverPendingRegexWork
+        );
+        this.ruleRematcher = new RuleRematcher(
+                regexWorkRepository,
+                this::rescanStoredMessage,
+                colors -> messageProcessor.retrieveFinalColor(messageProcessor.retrieveColorIndices(colors)),
+                progress -> SwingUtilities.invokeLater(() -> updateRuleRematchControls(progress)),
+                message -> api.logging().logToError(message),
+                this::refreshCurrentPageLater,
+                RULE_REMATCH_BATCH_SIZE,
+                RULE_REMATCH_DEBOUNCE_MILLIS
+        );
+        this.pendingMessageWriter = new PendingMessageWriter<>(
+                INGEST_BUFFER_CAPACITY,
+                INGEST_BATCH_SIZE,
+                INGEST_FLUSH_INTERVAL_MILLIS,
+                INGEST_BLOCK_TIMEOUT_MILLIS,
+                INGEST_OVERFLOW_POLICY,
+                this::writePendingBatch,
+                e -> api.logging().logToError("writePendingBatch: " + e.getMessage())
+        );
 
         UserInterface userInterface = api.userInterface();
         HttpRequestEditor requestViewer = userInterface.createHttpRequestEditor(READ_ONLY);
@@ -277,6 +359,11 @@ public class MessageTableModel extends AbstractTableModel {
         paginationPanel.add(previousPageButton);
         paginationPanel.add(nextPageButton);
         paginationPanel.add(pageInfoLabel);
+        paginationPanel.add(regexQueueLabel);
+        paginationPanel.add(ruleRematchLabel);
+        paginationPanel.add(cancelRuleRematchButton);
+        cancelRuleRematchButton.setVisible(false);
+        cancelRuleRematchButton.addActionListener(e -> ruleRematcher.cancel());
 
         previousPageButton.addActionListener(e -> {
             if (currentPage > 1) {
@@ -362,6 +449,7 @@ public class MessageTableModel extends AbstractTableModel {
             previousPageButton.setEnabled(currentPage > 1);
             nextPageButton.setEnabled(currentPage < totalPages);
             pageInfoLabel.setText(String.format("Page %d/%d · Rows %d-%d/%d", currentPage, totalPages, finalStartRow, finalEndRow, totalRows));
+            updateRegexQueueLabel();
         };
 
         if (SwingUtilities.isEventDispatchThread()) {
@@ -456,70 +544,118 @@ public class MessageTableModel extends AbstractTableModel {
     }
 
     private void startRegexWorkers() {
-        for (int i = 0; i < REGEX_WORKER_COUNT; i++) {
-            regexExecutorService.execute(this::runRegexWorker);
-        }
+        pendingMessageWriter.start("HaE-Ingest-Writer");
+        regexWorkerPool.start();
         recoverPendingRegexWork();
+        ruleRematcher.start(CompiledRuleSet.current());
     }
 
-    private void runRegexWorker() {
-        while (regexWorkerRunning.get() && !Thread.currentThread().isInterrupted()) {
-            String messageId = null;
-            try {
-                messageId = regexQueue.poll(PENDING_RECOVERY_IDLE_MILLIS, TimeUnit.MILLISECONDS);
-                if (messageId == null) {
-                    recoverPendingRegexWork();
-                    continue;
-                }
-
-                queuedRegexMessageIds.remove(messageId);
-                processRegexMessage(messageId);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            } catch (Exception e) {
-                api.logging().logToError("runRegexWorker: " + e.getMessage());
-                if (messageId != null) {
-                    regexWorkRepository.failRegexProcessing(messageId, e.getMessage());
-                }
+    private void runRegexBatch(List<String> messageIds) {
+        // 调度器按优先级取出的一批，认领与完成各走一个事务
+        try {
+            processRegexMessages(messageIds);
+            recoverSpilledRegexWork();
+        } catch (Exception e) {
+            api.logging().logToError("runRegexWorker: " + e.getMessage());
+            for (String messageId : messageIds) {
+                regexWorkRepository.failRegexProcessing(messageId, e.getMessage());
             }
         }
     }
 
-    private void recoverPendingRegexWork() {
-        List<String> pendingIds = regexWorkRepository.loadPendingRegexMessageIds(PENDING_RECOVERY_BATCH_SIZE);
-        for (String pendingId : pendingIds) {
-            enqueueRegexMessage(pendingId);
+    private List<RegexWorkRepository.PendingRegexWork> recoverPendingRegexWork() {
+        List<RegexWorkRepository.PendingRegexWork> pendingWork = regexWorkRepository.loadPendingRegexWork(PENDING_RECOVERY_BATCH_SIZE);
+        for (RegexWorkRepository.PendingRegexWork work : pendingWork) {
+            enqueueRegexMessage(work.messageId(), RegexWorkScheduler.retrySource(work.source()));
+        }
+        return pendingWork;
+    }
+
+    private void recoverSpilledRegexWork() {
+        // 有任务因准入被推迟时，不等空闲轮询，队列回落到低水位就立即从 SQLite 补回
+        if (!regexWorkSpilled.get() || regexScheduler.size() > regexScheduler.capacity() / 4) {
+            return;
+        }
+
+        regexWorkSpilled.set(false);
+        if (recoverPendingRegexWork().size() >= PENDING_RECOVERY_BATCH_SIZE) {
+            regexWorkSpilled.set(true);
         }
     }
 
-    private void enqueueRegexMessage(String messageId) {
+    private void enqueueRegexMessage(String messageId, String toolType) {
         if (messageId == null || messageId.isBlank()) {
             return;
         }
 
-        if (queuedRegexMessageIds.add(messageId) && !regexQueue.offer(messageId)) {
-            queuedRegexMessageIds.remove(messageId);
+        RegexWorkScheduler.OfferResult offerResult = regexScheduler.offer(messageId, toolType);
+        if (offerResult == RegexWorkScheduler.OfferResult.DROPPED) {
+            regexWorkSpilled.set(true);
+        } else if (offerResult == RegexWorkScheduler.OfferResult.QUEUED) {
+            regexWorkerPool.onBacklog();
         }
     }
 
+    RegexWorkScheduler.Stats regexQueueStats() {
+        return regexScheduler.stats();
+    }
+
+    public String getRegexWorkerStatus() {
+        return regexWorkerPool.stats().summary() + " · " + regexScheduler.stats().summary();
+    }
+
+    public void setRegexWorkerLimits(int minWorkers, int maxWorkers) {
+        regexWorkerPool.resize(minWorkers, maxWorkers);
+    }
+
+    private void updateRuleRematchControls(RuleRematcher.Progress progress) {
+        ruleRematchLabel.setText(progress.summary());
+        cancelRuleRematchButton.setVisible(progress.running());
+    }
+
+    private void updateRegexQueueLabel() {
+        RegexWorkScheduler.Stats stats = regexScheduler.stats();
+        regexQueueLabel.setText(stats.summary());
+        StringBuilder tooltip = new StringBuilder("<html>");
+        for (RegexWorkScheduler.SourceStats sourceStats : stats.sources()) {
+            tooltip.append(String.format("%s (%s): queued %d · accepted %d · dropped %d · shed %d<br>",
+                    sourceStats.source(), sourceStats.priority().name().toLowerCase(Locale.ROOT), sourceStats.depth(),
+                    sourceStats.accepted(), sourceStats.dropped(), sourceStats.shed()));
+        }
+        tooltip.append(recentMessageCache.summary()).append("</html>");
+        regexQueueLabel.setToolTipText(tooltip.toString());
+    }
+
+    void flushPendingWrites() {
+        pendingMessageWriter.flush();
+    }
+
     int queuedRegexMessageIdCount() {
-        return queuedRegexMessageIds.size();
+        return regexScheduler.size();
     }
 
     boolean hasQueuedRegexMessageId(String messageId) {
-        return queuedRegexMessageIds.contains(messageId);
+        return regexScheduler.contains(messageId);
     }
 
-    private void processRegexMessage(String messageId) {
-        if (!regexWorkRepository.markRegexProcessing(messageId)) {
-            return;
+    private void processRegexMessages(List<String> messageIds) {
+        List<String> claimedIds = regexWorkRepository.markRegexProcessingBatch(messageIds);
+        List<RegexWorkResult> results = new ArrayList<>(claimedIds.size());
+        for (String messageId : claimedIds) {
+            RegexWorkResult result = scanStoredMessage(messageId);
+            if (result != null) {
+                results.add(result);
+            }
         }
+        completeRegexWork(results);
+    }
 
+    private RegexWorkResult scanStoredMessage(String messageId) {
         try {
             SqliteMessageStore.StoredMessage storedMessage = messageRepository.loadStoredMessage(messageId);
             if (storedMessage == null || storedMessage.getRequestResponse() == null) {
                 regexWorkRepository.failRegexProcessing(messageId, "Stored message is unavailable");
-                return;
+                return null;
             }
 
             HttpRequestResponse requestResponse = storedMessage.getRequestResponse();
@@ -528,48 +664,92 @@ public class MessageTableModel extends AbstractTableModel {
                     requestResponse.request(),
                     requestResponse.response()
             );
+            return new RegexWorkResult(messageId, storedMessage.getContentHash(), storedMessage.getRegexSource(),
+                    requestResponse, processedMessage);
+        } catch (Exception e) {
+            regexWorkRepository.failRegexProcessing(messageId, e.getMessage());
+            removePendingAnnotation(messageId);
+            api.logging().logToError("processRegexMessage: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** 规则变化后只用改动的规则重新扫描一条已完成处理的消息。 */
+    private MessageProcessor.ProcessedMessage rescanStoredMessage(String messageId, CompiledRuleSet ruleSet) {
+        SqliteMessageStore.StoredMessage storedMessage = messageRepository.loadStoredMessage(messageId);
+        if (storedMessage == null || storedMessage.getRequestResponse() == null) {
+            return null;
+        }
+
+        HttpRequestResponse requestResponse = storedMessage.getRequestResponse();
+        return messageProcessor.processRequestResponse(storedMessage.getHost(), requestResponse.request(), requestResponse.response(), ruleSet);
+    }
 
-            if (!processedMessage.hasMatches()) {
-                if (!regexWorkRepository.completeRegexProcessing(messageId, "", "none", Collections.emptyMap())) {
-                    regexWorkRepository.resetRegexProcessing(messageId, "Unable to mark unmatched regex processing as complete");
-                    enqueueRegexMessage(messageId);
+    private void completeRegexWork(List<RegexWorkResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+
+        List<RegexWorkRepository.RegexCompletion> completions = new ArrayList<>(results.size());
+        for (RegexWorkResult result : results) {
+            MessageProcessor.ProcessedMessage processedMessage = result.processedMessage;
+            if (processedMessage.hasMatches()) {
+                completions.add(new RegexWorkRepository.RegexCompletion(
+                        result.messageId,
+                        processedMessage.getComment(),
+                        processedMessage.getColor(),
+                        processedMessage.getExtractedDataByRule(),
+                        processedMessage.getScanTruncation()
+                ));
+            } else {
+                completions.add(new RegexWorkRepository.RegexCompletion(result.messageId, "", "none", Collections.emptyMap(),
+                        processedMessage.getScanTruncation()));
+            }
+        }
+
+        Set<String> completedIds = new HashSet<>(regexWorkRepository.completeRegexProcessingBatch(completions));
+        boolean refreshPage = false;
+        for (RegexWorkResult result : results) {
+            String messageId = result.messageId;
+            boolean hasMatches = result.processedMessage.hasMatches();
+            if (!completedIds.contains(messageId)) {
+                regexWorkRepository.resetRegexProcessing(messageId, hasMatches
+                        ? "Unable to complete regex processing"
+                        : "Unable to mark unmatched regex processing as complete");
+                enqueueRegexMessage(messageId, RegexWorkScheduler.retrySource(result.source));
+                if (!hasMatches) {
+                    removePendingAnnotation(messageId);
                 }
-                removePendingAnnotation(messageId);
-                return;
+                continue;
             }
 
-            boolean completed = regexWorkRepository.completeRegexProcessing(
-                    messageId,
-                    processedMessage.getComment(),
-                    processedMessage.getColor(),
-                    processedMessage.getExtractedDataByRule()
-            );
-            if (completed) {
-                enqueueAiTriageAfterRegexCompletion(storedMessage, requestResponse, processedMessage);
-                applyPendingAnnotation(messageId, processedMessage);
-                refreshCurrentPageLater();
-            } else {
-                regexWorkRepository.resetRegexProcessing(messageId, "Unable to complete regex processing");
-                enqueueRegexMessage(messageId);
+            if (!hasMatches) {
+                removePendingAnnotation(messageId);
+                continue;
             }
-        } catch (Exception e) {
-            regexWorkRepository.failRegexProcessing(messageId, e.getMessage());
-            removePendingAnnotation(messageId);
-            api.logging().logToError("processRegexMessage: " + e.getMessage());
+
+            enqueueAiTriageAfterRegexCompletion(messageId, result.contentHash, result.requestResponse, result.processedMessage);
+            applyPendingAnnotation(messageId, result.processedMessage);
+            refreshPage = true;
+        }
+
+        if (refreshPage) {
+            refreshCurrentPageLater();
         }
     }
 
-    private void enqueueAiTriageAfterRegexCompletion(SqliteMessageStore.StoredMessage storedMessage,
+    private void enqueueAiTriageAfterRegexCompletion(String messageId,
+                                                     String contentHash,
                                                      HttpRequestResponse requestResponse,
                                                      MessageProcessor.ProcessedMessage processedMessage) {
-        if (aiTriageEnqueueService == null || storedMessage == null || processedMessage == null) {
+        if (aiTriageEnqueueService == null || messageId == null || processedMessage == null) {
             return;
         }
 
         try {
             AiTriageEnqueueService.EnqueueResult result = aiTriageEnqueueService.enqueueAfterRegexPersistence(
-                    storedMessage.getMessageId(),
-                    storedMessage.getContentHash(),
+                    messageId,
+                    contentHash,
                     requestResponse,
                     processedMessage.getExtractedDataByRule(),
                     configLoader.getAiConfig()
@@ -735,15 +915,27 @@ public class MessageTableModel extends AbstractTableModel {
         return sorter;
     }
 
-    public synchronized void add(HttpRequestResponse messageInfo, boolean flag) {
+    public void add(HttpRequestResponse messageInfo, boolean flag) {
         add(messageInfo, flag, null, "");
     }
 
-    public synchronized void add(HttpRequestResponse messageInfo, boolean flag, Annotations annotations) {
+    public void add(HttpRequestResponse messageInfo, boolean flag, Annotations annotations) {
         add(messageInfo, flag, annotations, "");
     }
 
-    public synchronized void add(HttpRequestResponse messageInfo, boolean flag, Annotations annotations, String toolType) {
+    public void add(HttpRequestResponse messageInfo, boolean flag, Annotations annotations, String toolType) {
+        add(messageInfo, flag, annotations, toolType, null);
+    }
+
+    /**
+     * 保存消息；若调用方已对同一份请求/响应完成匹配（processedMessage 非空），
+     * 则直接提交该结果，不再由 regex worker 回读并重复扫描。
+     */
+    public void add(HttpRequestResponse messageInfo,
+                                 boolean flag,
+                                 Annotations annotations,
+                                 String toolType,
+                                 MessageProcessor.ProcessedMessage processedMessage) {
         if (messageInfo == null) {
             return;
         }
@@ -754,6 +946,13 @@ public class MessageTableModel extends AbstractTableModel {
             return;
         }
 
+        // 内容指纹只算一次：既查近期消息缓存，也作为 content_hash 随写入带到存储层
+        // 时间窗口内已入库过的同一内容（如被动扫描重复送来的 Proxy 消息）直接丢弃
+        MessageFingerprint fingerprint = flag ? fingerprintOf(request, response) : null;
+        if (recentMessageCache.seenRecently(fingerprint)) {
+            return;
+        }
+
         RequestMetadata requestMetadata = buildRequestMetadata(request);
         String method = safeMethod(request);
         String status = safeStatus(response);
@@ -765,7 +964,7 @@ public class MessageTableModel extends AbstractTableModel {
         String messageId = StringProcessor.getRandomUUID();
 
         if (flag) {
-            SqliteMessageStore.PendingMessageSaveResult saveResult = messageRepository.savePendingMessage(
+            SqliteMessageStore.PendingMessageWrite write = new SqliteMessageStore.PendingMessageWrite(
                     messageId,
                     messageInfo,
                     requestMetadata.url,
@@ -773,17 +972,56 @@ public class MessageTableModel extends AbstractTableModel {
                     method,
                     status,
                     length,
-                    "",
+                    fingerprint == null ? "" : fingerprint.toHex(),
                     requestMetadata.urlParseError,
                     filterReason,
-                    true
+                    true,
+                    toolType
             );
+            pendingMessageWriter.offer(new PendingIngest(write, annotations, processedMessage, toolType, fingerprint));
+        }
+    }
+
+    private MessageFingerprint fingerprintOf(HttpRequest request, HttpResponse response) {
+        try {
+            return MessageFingerprint.contentOf(request.toByteArray().getBytes(), response.toByteArray().getBytes());
+        } catch (Exception e) {
+            api.logging().logToError("fingerprintOf: " + e.getMessage());
+            return null;
+        }
+    }
 
-            if (saveResult.isSaved()) {
-                rememberPendingAnnotation(saveResult.getMessageId(), annotations);
-                enqueueRegexMessage(saveResult.getMessageId());
+    private void writePendingBatch(List<PendingIngest> batch) {
+        List<SqliteMessageStore.PendingMessageWrite> writes = new ArrayList<>(batch.size());
+        for (PendingIngest ingest : batch) {
+            writes.add(ingest.write);
+        }
+
+        List<SqliteMessageStore.PendingMessageSaveResult> results = messageRepository.savePendingMessages(writes);
+        List<RegexWorkResult> handedOffResults = new ArrayList<>();
+        for (int i = 0; i < results.size() && i < batch.size(); i++) {
+            SqliteMessageStore.PendingMessageSaveResult saveResult = results.get(i);
+            PendingIngest ingest = batch.get(i);
+            if (saveResult != null && (saveResult.isSaved() || saveResult.isDuplicate())) {
+                // 事务提交后才记录指纹，被丢弃或写入失败的消息再次到达时仍会入库
+                recentMessageCache.record(ingest.fingerprint);
+            }
+            if (saveResult == null || !saveResult.isSaved()) {
+                continue;
+            }
+
+            if (ingest.processedMessage != null) {
+                // 调用方已在同一份请求/响应上完成匹配，直接落库，跳过 SQLite 回读与二次扫描
+                handedOffResults.add(new RegexWorkResult(saveResult.getMessageId(), saveResult.getContentHash(), ingest.toolType,
+                        ingest.write.getMessageInfo(), ingest.processedMessage));
+                continue;
             }
+
+            rememberPendingAnnotation(saveResult.getMessageId(), ingest.annotations);
+            enqueueRegexMessage(saveResult.getMessageId(), ingest.toolType);
         }
+
+        completeRegexWork(handedOffResults);
     }
 
     private void rememberPendingAnnotation(String messageId, Annotations annotations) {
@@ -813,6 +1051,7 @@ public class MessageTableModel extends AbstractTableModel {
             @Override
             protected Void doInBackground() {
                 storageMaintenanceRepository.deleteByHostPattern(filterText);
+                recentMessageCache.clear();
                 return null;
             }
 
@@ -827,12 +1066,13 @@ public class MessageTableModel extends AbstractTableModel {
     }
 
     public int clearStorageHistory() {
+        pendingMessageWriter.clear();
+        recentMessageCache.clear();
         int deletedCount = storageMaintenanceRepository.deleteAllMessages();
         storageMaintenanceRepository.deleteAllScopedDataboardScopes();
 
         resetMessageFilterState();
-        regexQueue.clear();
-        queuedRegexMessageIds.clear();
+        regexScheduler.clear();
         pendingAnnotations.clear();
         if (pageWorker != null && !pageWorker.isDone()) {
             pageWorker.cancel(true);
@@ -864,13 +1104,17 @@ public class MessageTableModel extends AbstractTableModel {
         }
 
         try {
-            regexWorkerRunning.set(false);
-            regexExecutorService.shutdownNow();
-            if (!regexExecutorService.awaitTermination(2, TimeUnit.SECONDS)) {
+            pendingMessageWriter.shutdown(false, 2000L);
+        } catch (Exception e) {
+            api.logging().logToError("clearAllDataOnShutdown(ingest): " + e.getMessage());
+        }
+
+        try {
+            regexWorkerPool.shutdown(2000L);
+            if (!regexWorkerPool.isTerminated()) {
                 api.logging().logToError("clearAllDataOnShutdown(regex): regex executor did not terminate promptly");
             }
-            regexQueue.clear();
-            queuedRegexMessageIds.clear();
+            regexScheduler.clear();
             pendingAnnotations.clear();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -879,6 +1123,15 @@ public class MessageTableModel extends AbstractTableModel {
             api.logging().logToError("clearAllDataOnShutdown(regex): " + e.getMessage());
         }
 
+        try {
+            ruleRematcher.shutdown(2000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            api.logging().logToError("clearAllDataOnShutdown(rematch): interrupted while waiting for shutdown");
+        } catch (Exception e) {
+            api.logging().logToError("clearAllDataOnShutdown(rematch): " + e.getMessage());
+        }
+
         try {
             messageTable.shutdown();
         } catch (Exception e) {
@@ -922,6 +1175,10 @@ public class MessageTableModel extends AbstractTableModel {
         return storageMaintenanceRepository.getDatabasePath();
     }
 
+    public MessageRepository getMessageRepositoryForRules() {
+        return messageRepository;
+    }
+
     public AiTaskRepository getAiTaskRepositoryForSettings() {
         return messageRepository instanceof AiTaskRepository aiTaskRepository ? aiTaskRepository : null;
     }
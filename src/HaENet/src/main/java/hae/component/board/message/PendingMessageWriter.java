@@ -0,0 +1,278 @@
+package hae.component.board.message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 入库写线程：Burp 回调线程只做无锁入队，由单独的写线程按批次（数量或时间窗口）
+ * 一次性提交，SQLite 看到的是少量大事务而不是大量单行事务。
+ */
+final class PendingMessageWriter<T> {
+    /** 缓冲区满时的处理策略。 */
+    enum OverflowPolicy {
+        /** 在调用线程上直接同步写入，作为背压。 */
+        CALLER_RUNS,
+        /** 丢弃新消息并计数。 */
+        DROP_NEWEST,
+        /** 等待缓冲区腾出空间，超时后丢弃。 */
+        BLOCK
+    }
+
+    enum OfferResult {
+        QUEUED,
+        CALLER_RAN,
+        DROPPED
+    }
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final Queue<T> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferedCount = new AtomicInteger(0);
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder callerRunCount = new LongAdder();
+    private final LongAdder committedBatchCount = new LongAdder();
+    private final LongAdder committedItemCount = new LongAdder();
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long blockTimeoutNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<List<T>> batchSink;
+    private final Consumer<Exception> errorHandler;
+    private volatile Thread writerThread;
+
+    PendingMessageWriter(int capacity,
+                         int batchSize,
+                         long flushIntervalMillis,
+                         long blockTimeoutMillis,
+                         OverflowPolicy overflowPolicy,
+                         Consumer<List<T>> batchSink,
+                         Consumer<Exception> errorHandler) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity and batchSize must be positive");
+        }
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, flushIntervalMillis));
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, blockTimeoutMillis));
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy");
+        this.batchSink = Objects.requireNonNull(batchSink, "batchSink");
+        this.errorHandler = Objects.requireNonNull(errorHandler, "errorHandler");
+    }
+
+    void start(String threadName) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread thread = new Thread(this::runWriter, threadName);
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+    }
+
+    boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 提交一条待写入数据。写线程未启动时直接在调用线程写入，保持同步语义。
+     */
+    OfferResult offer(T item) {
+        if (item == null) {
+            return OfferResult.DROPPED;
+        }
+
+        if (!running.get()) {
+            writeOnCaller(item);
+            return OfferResult.CALLER_RAN;
+        }
+
+        int reserved = tryReserve();
+        if (reserved < 0) {
+            switch (overflowPolicy) {
+                case CALLER_RUNS -> {
+                    writeOnCaller(item);
+                    return OfferResult.CALLER_RAN;
+                }
+                case BLOCK -> reserved = reserveBlocking();
+                default -> {
+                }
+            }
+        }
+
+        if (reserved < 0) {
+            droppedCount.increment();
+            return OfferResult.DROPPED;
+        }
+
+        buffer.offer(item);
+        queuedCount.increment();
+        // 第一条数据开启时间窗口，凑满一批时立即唤醒写线程
+        if (reserved == 1 || reserved >= batchSize) {
+            LockSupport.unpark(writerThread);
+        }
+        return OfferResult.QUEUED;
+    }
+
+    /**
+     * 在调用线程上把当前缓冲区全部写出。
+     */
+    void flush() {
+        drainAll();
+    }
+
+    /**
+     * 停止写线程；drain 为 true 时先写完缓冲区，否则直接丢弃。
+     */
+    void shutdown(boolean drain, long timeoutMillis) {
+        if (!drain) {
+            clear();
+        }
+
+        Thread thread = writerThread;
+        if (running.compareAndSet(true, false) && thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(Math.max(1L, timeoutMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (drain) {
+            drainAll();
+        } else {
+            clear();
+        }
+    }
+
+    /**
+     * 丢弃尚未写出的数据，返回丢弃条数。
+     */
+    int clear() {
+        int cleared = 0;
+        while (buffer.poll() != null) {
+            cleared++;
+        }
+        if (cleared > 0) {
+            bufferedCount.addAndGet(-cleared);
+        }
+        return cleared;
+    }
+
+    int bufferedCount() {
+        return Math.max(0, bufferedCount.get());
+    }
+
+    long queuedCount() {
+        return queuedCount.sum();
+    }
+
+    long droppedCount() {
+        return droppedCount.sum();
+    }
+
+    long callerRunCount() {
+        return callerRunCount.sum();
+    }
+
+    long committedBatchCount() {
+        return committedBatchCount.sum();
+    }
+
+    long committedItemCount() {
+        return committedItemCount.sum();
+    }
+
+    private int tryReserve() {
+        while (true) {
+            int current = bufferedCount.get();
+            if (current >= capacity) {
+                return -1;
+            }
+            if (bufferedCount.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    private int reserveBlocking() {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (running.get()) {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+            int reserved = tryReserve();
+            if (reserved >= 0) {
+                return reserved;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private void writeOnCaller(T item) {
+        callerRunCount.increment();
+        writeBatch(List.of(item));
+    }
+
+    private void runWriter() {
+        while (running.get()) {
+            if (bufferedCount.get() <= 0) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            while (running.get() && bufferedCount.get() < batchSize) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+
+            drainAll();
+        }
+    }
+
+    private void drainAll() {
+        while (true) {
+            List<T> batch = new ArrayList<>(Math.min(batchSize, Math.max(1, bufferedCount())));
+            T item;
+            while (batch.size() < batchSize && (item = buffer.poll()) != null) {
+                batch.add(item);
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            bufferedCount.addAndGet(-batch.size());
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<T> batch) {
+        try {
+            batchSink.accept(batch);
+            committedBatchCount.increment();
+            committedItemCount.add(batch.size());
+        } catch (Exception e) {
+            errorHandler.accept(e);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package hae.component.board.message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 正则任务调度器：按工具来源分队列，交互流量（Proxy/Repeater）优先于批量流量（Scanner/Intruder 等），
+ * 同一优先级内按来源轮转，保证每个来源公平出队。
+ *
+ * <p>准入随活跃来源数自适应：批量来源共享容量的一部分，每个来源最多占用其均分份额；
+ * 交互来源在队列满时会挤掉占用最多的批量来源的最新任务。被拒绝或挤掉的任务仍是 SQLite 中的
+ * PENDING 行，由调用方在队列回落后通过恢复流程重新入队，因此这里不会丢失工作，只是推迟。
+ * 行上记录了原来源，交互来源的行重新入队时仍走交互队列（见 {@link #retrySource}）。</p>
+ */
+final class RegexWorkScheduler implements RegexWorkerPool.BatchSource {
+    static final String RECOVERY_SOURCE = "Recovery";
+
+    /** 交互来源每连续出队这么多条，若有批量任务等待，就让出一条给批量来源。 */
+    private static final int INTERACTIVE_WEIGHT = 4;
+    /** 批量来源总共最多占用的容量比例，其余留给交互来源。 */
+    private static final double BULK_CAPACITY_RATIO = 0.75;
+
+    enum Priority {
+        INTERACTIVE,
+        BULK
+    }
+
+    enum OfferResult {
+        QUEUED,
+        ALREADY_QUEUED,
+        DROPPED
+    }
+
+    /** 单个来源的计数快照。 */
+    record SourceStats(String source, Priority priority, int depth, long accepted, long dropped, long shed) {
+    }
+
+    /** 调度器整体快照，用于界面展示与测试。 */
+    record Stats(int depth, int capacity, long accepted, long dropped, long shed, List<SourceStats> sources) {
+        String summary() {
+            return String.format(Locale.ROOT, "Regex queue %d/%d · dropped %d", depth, capacity, dropped + shed);
+        }
+    }
+
+    private static final class SourceQueue {
+        private final String source;
+        private final Priority priority;
+        private final ArrayDeque<String> ids = new ArrayDeque<>();
+        private boolean scheduled;
+        private long accepted;
+        private long dropped;
+        private long shed;
+
+        private SourceQueue(String source, Priority priority) {
+            this.source = source;
+            this.priority = priority;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<String, SourceQueue> sources = new LinkedHashMap<>();
+    private final ArrayDeque<SourceQueue> interactiveRotation = new ArrayDeque<>();
+    private final ArrayDeque<SourceQueue> bulkRotation = new ArrayDeque<>();
+    private final Set<String> queuedIds = new HashSet<>();
+    private final int capacity;
+    private final int bulkCapacity;
+    private int bulkDepth;
+    private int interactiveStreak;
+
+    RegexWorkScheduler(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.bulkCapacity = Math.max(1, (int) (capacity * BULK_CAPACITY_RATIO));
+    }
+
+    static Priority priorityOf(String source) {
+        if (source == null) {
+            return Priority.BULK;
+        }
+        return switch (source.trim().toLowerCase(Locale.ROOT)) {
+            case "proxy", "repeater" -> Priority.INTERACTIVE;
+            default -> Priority.BULK;
+        };
+    }
+
+    /** 重新入队用的来源：交互来源保持原来源与优先级，其余归入批量的恢复来源。 */
+    static String retrySource(String source) {
+        return priorityOf(source) == Priority.INTERACTIVE ? source.trim() : RECOVERY_SOURCE;
+    }
+
+    OfferResult offer(String messageId, String source) {
+        if (messageId == null || messageId.isBlank()) {
+            return OfferResult.DROPPED;
+        }
+
+        lock.lock();
+        try {
+            if (queuedIds.contains(messageId)) {
+                return OfferResult.ALREADY_QUEUED;
+            }
+
+            SourceQueue sourceQueue = sourceQueue(source);
+            if (!admit(sourceQueue)) {
+                sourceQueue.dropped++;
+                return OfferResult.DROPPED;
+            }
+
+            sourceQueue.ids.addLast(messageId);
+            sourceQueue.accepted++;
+            queuedIds.add(messageId);
+            if (sourceQueue.priority == Priority.BULK) {
+                bulkDepth++;
+            }
+            schedule(sourceQueue);
+            notEmpty.signal();
+            return OfferResult.QUEUED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待至多 timeout 后按优先级与公平份额取出一批任务；超时返回空列表。
+     */
+    @Override
+    public List<String> take(int maxCount, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queuedIds.isEmpty()) {
+                if (remaining <= 0L) {
+                    return Collections.emptyList();
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+
+            List<String> batch = new ArrayList<>(Math.min(maxCount, queuedIds.size()));
+            while (batch.size() < maxCount && !queuedIds.isEmpty()) {
+                batch.add(pollNext());
+            }
+            if (!queuedIds.isEmpty()) {
+                notEmpty.signal();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean contains(String messageId) {
+        lock.lock();
+        try {
+            return queuedIds.contains(messageId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return queuedIds.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            for (SourceQueue sourceQueue : sources.values()) {
+                sourceQueue.ids.clear();
+                sourceQueue.scheduled = false;
+            }
+            interactiveRotation.clear();
+            bulkRotation.clear();
+            queuedIds.clear();
+            bulkDepth = 0;
+            interactiveStreak = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Stats stats() {
+        lock.lock();
+        try {
+            List<SourceStats> sourceStats = new ArrayList<>(sources.size());
+            long accepted = 0L;
+            long dropped = 0L;
+            long shed = 0L;
+            for (SourceQueue sourceQueue : sources.values()) {
+                sourceStats.add(new SourceStats(sourceQueue.source, sourceQueue.priority, sourceQueue.ids.size(),
+                        sourceQueue.accepted, sourceQueue.dropped, sourceQueue.shed));
+                accepted += sourceQueue.accepted;
+                dropped += sourceQueue.dropped;
+                shed += sourceQueue.shed;
+            }
+            return new Stats(queuedIds.size(), capacity, accepted, dropped, shed, List.copyOf(sourceStats));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private SourceQueue sourceQueue(String source) {
+        String normalizedSource = source == null || source.isBlank() ? "Unknown" : source.trim();
+        return sources.computeIfAbsent(normalizedSource, key -> new SourceQueue(key, priorityOf(key)));
+    }
+
+    private boolean admit(SourceQueue sourceQueue) {
+        if (sourceQueue.priority == Priority.INTERACTIVE) {
+            return queuedIds.size() < capacity || shedBulk();
+        }
+
+        if (queuedIds.size() >= capacity || bulkDepth >= bulkCapacity) {
+            return false;
+        }
+
+        // 批量来源的份额随活跃来源数变化：单一来源可用满批量容量，多个来源时各占均分份额
+        int activeBulkSources = bulkRotation.size() + (sourceQueue.scheduled ? 0 : 1);
+        int fairShare = Math.max(1, bulkCapacity / activeBulkSources);
+        return sourceQueue.ids.size() < fairShare;
+    }
+
+    private boolean shedBulk() {
+        SourceQueue largest = null;
+        for (SourceQueue candidate : bulkRotation) {
+            if (largest == null || candidate.ids.size() > largest.ids.size()) {
+                largest = candidate;
+            }
+        }
+        if (largest == null || largest.ids.isEmpty()) {
+            return false;
+        }
+
+        // 挤掉最新入队的一条，SQLite 中该行仍为 PENDING，稍后由恢复流程补回
+        String shedId = largest.ids.pollLast();
+        queuedIds.remove(shedId);
+        largest.shed++;
+        bulkDepth--;
+        if (largest.ids.isEmpty()) {
+            bulkRotation.remove(largest);
+            largest.scheduled = false;
+        }
+        return true;
+    }
+
+    private void schedule(SourceQueue sourceQueue) {
+        if (sourceQueue.scheduled) {
+            return;
+        }
+        sourceQueue.scheduled = true;
+        rotationOf(sourceQueue.priority).addLast(sourceQueue);
+    }
+
+    private String pollNext() {
+        boolean preferInteractive = !interactiveRotation.isEmpty()
+                && (bulkRotation.isEmpty() || interactiveStreak < INTERACTIVE_WEIGHT);
+        ArrayDeque<SourceQueue> rotation = preferInteractive ? interactiveRotation : bulkRotation;
+        interactiveStreak = preferInteractive ? interactiveStreak + 1 : 0;
+
+        SourceQueue sourceQueue = rotation.pollFirst();
+        String messageId = sourceQueue.ids.pollFirst();
+        if (sourceQueue.ids.isEmpty()) {
+            sourceQueue.scheduled = false;
+        } else {
+            rotation.addLast(sourceQueue);
+        }
+        if (sourceQueue.priority == Priority.BULK) {
+            bulkDepth--;
+        }
+        queuedIds.remove(messageId);
+        return messageId;
+    }
+
+    private ArrayDeque<SourceQueue> rotationOf(Priority priority) {
+        return priority == Priority.INTERACTIVE ? interactiveRotation : bulkRotation;
+    }
+}
@@ -0,0 +1,218 @@
+package hae.component.board.message;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 弹性正则工作线程池：常驻 minWorkers 个线程，积压超过在岗线程的处理能力时逐个扩容到 maxWorkers，
+ * 空闲超时后多出的线程自行退出。线程全部为独立的守护线程，不占用公共 ForkJoinPool。
+ */
+final class RegexWorkerPool {
+    /** 工作线程一次取任务的接口，与 {@link RegexWorkScheduler#take} 对应。 */
+    interface BatchSource {
+        List<String> take(int maxCount, long timeout, TimeUnit unit) throws InterruptedException;
+
+        int size();
+    }
+
+    /** 线程池状态快照。utilization 为上次采样以来在岗线程处于忙碌状态的时间比例。 */
+    record Stats(int liveWorkers, int busyWorkers, int minWorkers, int maxWorkers, double utilization, long processedBatches) {
+        String summary() {
+            return String.format(Locale.ROOT, "Workers %d (min %d, max %d) · busy %d · utilization %.0f%% · batches %d",
+                    liveWorkers, minWorkers, maxWorkers, busyWorkers, utilization * 100.0, processedBatches);
+        }
+    }
+
+    private final String threadNamePrefix;
+    private final BatchSource batchSource;
+    private final Consumer<List<String>> batchProcessor;
+    private final Runnable idleAction;
+    private final int batchSize;
+    private final long idleTimeoutMillis;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger liveWorkers = new AtomicInteger(0);
+    private final AtomicInteger busyWorkers = new AtomicInteger(0);
+    private final AtomicInteger threadSequence = new AtomicInteger(0);
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder processedBatches = new LongAdder();
+    private final Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lastSampleNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastSampleBusyNanos = new AtomicLong(0L);
+    private volatile int minWorkers;
+    private volatile int maxWorkers;
+
+    RegexWorkerPool(String threadNamePrefix,
+                    int minWorkers,
+                    int maxWorkers,
+                    int batchSize,
+                    long idleTimeoutMillis,
+                    BatchSource batchSource,
+                    Consumer<List<String>> batchProcessor,
+                    Runnable idleAction) {
+        this.threadNamePrefix = Objects.requireNonNull(threadNamePrefix, "threadNamePrefix");
+        this.batchSource = Objects.requireNonNull(batchSource, "batchSource");
+        this.batchProcessor = Objects.requireNonNull(batchProcessor, "batchProcessor");
+        this.idleAction = Objects.requireNonNull(idleAction, "idleAction");
+        this.batchSize = Math.max(1, batchSize);
+        this.idleTimeoutMillis = Math.max(1L, idleTimeoutMillis);
+        applyLimits(minWorkers, maxWorkers);
+    }
+
+    void start() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        ensureMinimumWorkers();
+    }
+
+    boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 调整线程数上下限：扩容立即生效，缩容由多余线程在下一次空闲时自行退出。
+     */
+    void resize(int minWorkers, int maxWorkers) {
+        applyLimits(minWorkers, maxWorkers);
+        if (running.get()) {
+            ensureMinimumWorkers();
+            onBacklog();
+        }
+    }
+
+    /**
+     * 新任务入队后调用：积压超过在岗线程一轮能处理的量且所有线程都在忙时，追加一个线程。
+     */
+    void onBacklog() {
+        if (!running.get()) {
+            return;
+        }
+
+        if (liveWorkers.get() < minWorkers) {
+            ensureMinimumWorkers();
+        }
+
+        int live = liveWorkers.get();
+        if (live < maxWorkers
+                && busyWorkers.get() >= live
+                && batchSource.size() > live * batchSize / 2) {
+            tryStartWorker(maxWorkers);
+        }
+    }
+
+    void shutdown(long timeoutMillis) throws InterruptedException {
+        running.set(false);
+        for (Thread thread : workerThreads) {
+            thread.interrupt();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(1L, timeoutMillis));
+        for (Thread thread : workerThreads) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining > 0) {
+                thread.join(remaining);
+            }
+        }
+    }
+
+    boolean isTerminated() {
+        return workerThreads.isEmpty();
+    }
+
+    Stats stats() {
+        long now = System.nanoTime();
+        long totalBusy = busyNanos.sum();
+        long elapsed = now - lastSampleNanos.getAndSet(now);
+        long busy = totalBusy - lastSampleBusyNanos.getAndSet(totalBusy);
+        int live = liveWorkers.get();
+        double utilization = elapsed <= 0 || live == 0 ? 0.0 : Math.min(1.0, (double) busy / ((double) elapsed * live));
+        return new Stats(live, busyWorkers.get(), minWorkers, maxWorkers, utilization, processedBatches.sum());
+    }
+
+    private void applyLimits(int minWorkers, int maxWorkers) {
+        int normalizedMax = Math.max(1, maxWorkers);
+        this.maxWorkers = normalizedMax;
+        this.minWorkers = Math.max(1, Math.min(minWorkers, normalizedMax));
+    }
+
+    private void ensureMinimumWorkers() {
+        while (liveWorkers.get() < minWorkers && tryStartWorker(minWorkers)) {
+            // 补足常驻线程
+        }
+    }
+
+    private boolean tryStartWorker(int limit) {
+        while (true) {
+            int live = liveWorkers.get();
+            if (live >= limit) {
+                return false;
+            }
+            if (liveWorkers.compareAndSet(live, live + 1)) {
+                break;
+            }
+        }
+
+        Thread thread = new Thread(this::runWorker, threadNamePrefix + threadSequence.incrementAndGet());
+        thread.setDaemon(true);
+        workerThreads.add(thread);
+        thread.start();
+        return true;
+    }
+
+    private boolean tryRetireWorker() {
+        while (true) {
+            int live = liveWorkers.get();
+            if (live <= minWorkers) {
+                return false;
+            }
+            if (liveWorkers.compareAndSet(live, live - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void runWorker() {
+        boolean retired = false;
+        try {
+            while (running.get() && !Thread.currentThread().isInterrupted()) {
+                List<String> batch = batchSource.take(batchSize, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (batch.isEmpty()) {
+                    // 空闲超时：多余线程退出，常驻线程执行空闲任务（如恢复 PENDING 行）
+                    if (tryRetireWorker()) {
+                        retired = true;
+                        return;
+                    }
+                    idleAction.run();
+                    continue;
+                }
+
+                long startedAt = System.nanoTime();
+                busyWorkers.incrementAndGet();
+                try {
+                    batchProcessor.accept(batch);
+                } finally {
+                    busyWorkers.decrementAndGet();
+                    busyNanos.add(System.nanoTime() - startedAt);
+                    processedBatches.increment();
+                }
+                onBacklog();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!retired) {
+                liveWorkers.decrementAndGet();
+            }
+            workerThreads.remove(Thread.currentThread());
+        }
+    }
+}
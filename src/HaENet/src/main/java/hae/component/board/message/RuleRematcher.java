@@ -0,0 +1,307 @@
+package hae.component.board.message;
+
+import hae.instances.http.utils.CompiledRuleSet;
+import hae.instances.http.utils.MessageProcessor;
+import hae.repository.RegexWorkRepository;
+import hae.utils.string.StringProcessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 规则变化后的历史消息增量重匹配：只用新增或改动过的规则重新扫描已完成正则处理的消息，
+ * 按批替换这些规则在 message_match 中的数据并重算消息的注释与颜色，其余规则的结果保持不变。
+ * 只删除或关闭了规则时不读取消息内容，只处理注释中含有这些规则的行。
+ *
+ * <p>连续修改规则时变化先合并，延迟片刻后再启动；新的规则发布会取消正在执行的任务，
+ * 连同尚未完成的规则一起重新开始。被手动取消的规则保留在待处理集合中，下次规则变化时一并处理。</p>
+ */
+final class RuleRematcher {
+    /** 用给定的规则子集扫描一条已保存的消息，消息不可用时返回 null。 */
+    interface MessageScanner {
+        MessageProcessor.ProcessedMessage scan(String messageId, CompiledRuleSet ruleSet);
+    }
+
+    /** 重匹配进度快照。pendingRules 为已取消、等待下次处理的规则数。 */
+    record Progress(boolean running, int ruleCount, int processed, int total, int updated, int pendingRules) {
+        static final Progress IDLE = new Progress(false, 0, 0, 0, 0, 0);
+
+        String summary() {
+            if (running) {
+                return String.format(Locale.ROOT, "Re-matching %d rule(s) · %d/%d · updated %d", ruleCount, processed, total, updated);
+            }
+            if (pendingRules > 0) {
+                return String.format(Locale.ROOT, "Re-match cancelled · %d rule(s) pending", pendingRules);
+            }
+            return "";
+        }
+    }
+
+    private final RegexWorkRepository repository;
+    private final MessageScanner scanner;
+    private final Function<List<String>, String> colorResolver;
+    private final Consumer<Progress> progressListener;
+    private final Consumer<String> errorLogger;
+    private final Runnable updatedAction;
+    private final int batchSize;
+    private final long debounceMillis;
+    private final Consumer<CompiledRuleSet> publishListener = this::onRulesPublished;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HaE-Rule-Rematch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<String> pendingRules = new LinkedHashSet<>();
+    private CompiledRuleSet lastSeen;
+    private AtomicBoolean currentCancellation = new AtomicBoolean(false);
+    private volatile Progress progress = Progress.IDLE;
+
+    RuleRematcher(RegexWorkRepository repository,
+                  MessageScanner scanner,
+                  Function<List<String>, String> colorResolver,
+                  Consumer<Progress> progressListener,
+                  Consumer<String> errorLogger,
+                  Runnable updatedAction,
+                  int batchSize,
+                  long debounceMillis) {
+        this.repository = Objects.requireNonNull(repository, "repository");
+        this.scanner = Objects.requireNonNull(scanner, "scanner");
+        this.colorResolver = Objects.requireNonNull(colorResolver, "colorResolver");
+        this.progressListener = Objects.requireNonNull(progressListener, "progressListener");
+        this.errorLogger = Objects.requireNonNull(errorLogger, "errorLogger");
+        this.updatedAction = Objects.requireNonNull(updatedAction, "updatedAction");
+        this.batchSize = Math.max(1, batchSize);
+        this.debounceMillis = Math.max(0L, debounceMillis);
+    }
+
+    /** 以当前规则集为基线开始监听规则发布，此前保存的结果视为与基线一致。 */
+    synchronized void start(CompiledRuleSet baseline) {
+        lastSeen = baseline;
+        CompiledRuleSet.addPublishListener(publishListener);
+    }
+
+    void shutdown(long timeoutMillis) throws InterruptedException {
+        CompiledRuleSet.removePublishListener(publishListener);
+        cancel();
+        executor.shutdownNow();
+        executor.awaitTermination(Math.max(1L, timeoutMillis), TimeUnit.MILLISECONDS);
+    }
+
+    Progress progress() {
+        return progress;
+    }
+
+    /** 取消正在执行或等待启动的任务，未完成的规则保留到下次规则变化。 */
+    synchronized void cancel() {
+        currentCancellation.set(true);
+        if (!progress.running() && pendingRules.isEmpty()) {
+            return;
+        }
+        updateProgress(new Progress(false, 0, 0, 0, 0, pendingRules.size()));
+    }
+
+    synchronized void onRulesPublished(CompiledRuleSet ruleSet) {
+        if (ruleSet == null || lastSeen == null) {
+            return;
+        }
+
+        pendingRules.addAll(ruleSet.changesSince(lastSeen).names());
+        lastSeen = ruleSet;
+        if (pendingRules.isEmpty()) {
+            return;
+        }
+
+        currentCancellation.set(true);
+        AtomicBoolean cancellation = new AtomicBoolean(false);
+        currentCancellation = cancellation;
+        Set<String> names = Set.copyOf(pendingRules);
+        try {
+            executor.schedule(() -> run(ruleSet, names, cancellation), debounceMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // 已关闭
+        }
+    }
+
+    private void run(CompiledRuleSet target, Set<String> names, AtomicBoolean cancellation) {
+        if (cancellation.get()) {
+            return;
+        }
+
+        Set<String> changed = new LinkedHashSet<>(names);
+        changed.retainAll(target.ruleNames());
+        CompiledRuleSet subset = changed.isEmpty() ? null : target.restrictTo(changed);
+        List<String> ruleNames = List.copyOf(names);
+        // 没有需要重新扫描的规则时，只有注释里出现过这些规则的消息会变化
+        List<String> commentKeywords = subset == null ? ruleNames : Collections.emptyList();
+        Map<String, String> colorsByRule = colorsByRule(target);
+
+        int total = repository.countRuleRematchCandidates(commentKeywords);
+        int processed = 0;
+        int updated = 0;
+        long afterRowId = 0L;
+        updateProgress(new Progress(true, names.size(), 0, total, 0, 0));
+        try {
+            while (!cancellation.get()) {
+                List<RegexWorkRepository.RuleRematchCandidate> batch = repository.loadRuleRematchCandidates(commentKeywords, afterRowId, batchSize);
+                if (batch.isEmpty()) {
+                    complete(target, names);
+                    return;
+                }
+
+                List<RegexWorkRepository.RuleRematchUpdate> updates = new ArrayList<>(batch.size());
+                for (RegexWorkRepository.RuleRematchCandidate candidate : batch) {
+                    if (cancellation.get()) {
+                        break;
+                    }
+                    RegexWorkRepository.RuleRematchUpdate update = rematch(candidate, names, subset, colorsByRule);
+                    if (update != null) {
+                        updates.add(update);
+                    }
+                }
+
+                updated += repository.applyRuleRematch(ruleNames, updates).size();
+                processed += batch.size();
+                afterRowId = batch.get(batch.size() - 1).rowId();
+                if (!cancellation.get()) {
+                    updateProgress(new Progress(true, names.size(), processed, Math.max(total, processed), updated, 0));
+                }
+            }
+        } catch (Exception e) {
+            errorLogger.accept("ruleRematch: " + e.getMessage());
+            synchronized (this) {
+                updateProgress(new Progress(false, 0, 0, 0, 0, pendingRules.size()));
+            }
+        } finally {
+            if (updated > 0) {
+                updatedAction.run();
+            }
+        }
+    }
+
+    private RegexWorkRepository.RuleRematchUpdate rematch(RegexWorkRepository.RuleRematchCandidate candidate,
+                                                          Set<String> names,
+                                                          CompiledRuleSet subset,
+                                                          Map<String, String> colorsByRule) {
+        MessageProcessor.ProcessedMessage processedMessage = null;
+        if (subset != null) {
+            try {
+                processedMessage = scanner.scan(candidate.messageId(), subset);
+            } catch (Exception e) {
+                errorLogger.accept("ruleRematch(" + candidate.messageId() + "): " + e.getMessage());
+            }
+            if (processedMessage == null) {
+                return null;
+            }
+        }
+        return merge(candidate, names, processedMessage, colorsByRule, colorResolver);
+    }
+
+    private synchronized void complete(CompiledRuleSet target, Set<String> names) {
+        // 期间又有规则发布时，这些规则已被新的任务接手
+        if (lastSeen == target) {
+            pendingRules.removeAll(names);
+        }
+        updateProgress(new Progress(false, 0, 0, 0, 0, lastSeen == target ? pendingRules.size() : 0));
+    }
+
+    private void updateProgress(Progress progress) {
+        this.progress = progress;
+        progressListener.accept(progress);
+    }
+
+    /**
+     * 用重匹配规则的新结果替换旧注释中这些规则的条目，返回需要写回的更新；消息与这些规则无关时返回 null。
+     * 颜色按最终注释中每条规则的颜色各计一次重新计算。
+     */
+    static RegexWorkRepository.RuleRematchUpdate merge(RegexWorkRepository.RuleRematchCandidate candidate,
+                                                       Set<String> names,
+                                                       MessageProcessor.ProcessedMessage processedMessage,
+                                                       Map<String, String> colorsByRule,
+                                                       Function<List<String>, String> colorResolver) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        boolean touched = false;
+        for (Map.Entry<String, Integer> entry : commentCounts(candidate.comment()).entrySet()) {
+            if (names.contains(entry.getKey())) {
+                touched = true;
+            } else {
+                counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+        }
+
+        Map<String, List<String>> extractedDataByRule = Collections.emptyMap();
+        if (processedMessage != null && processedMessage.hasMatches()) {
+            for (Map.Entry<String, Integer> entry : commentCounts(processedMessage.getComment()).entrySet()) {
+                counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                touched = true;
+            }
+            extractedDataByRule = processedMessage.getExtractedDataByRule();
+        }
+
+        if (!touched) {
+            return null;
+        }
+
+        List<String> items = new ArrayList<>(counts.size());
+        List<String> colors = new ArrayList<>(counts.size());
+        counts.forEach((name, count) -> {
+            if (count != 0) {
+                items.add(name + " (" + count + ")");
+                String color = colorsByRule.get(name);
+                if (color != null) {
+                    colors.add(color);
+                }
+            }
+        });
+        String color = colors.isEmpty() ? "none" : colorResolver.apply(colors);
+        return new RegexWorkRepository.RuleRematchUpdate(candidate.messageId(), String.join(", ", items), color, extractedDataByRule);
+    }
+
+    private static Map<String, Integer> commentCounts(String comment) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        if (comment == null || comment.isBlank()) {
+            return counts;
+        }
+
+        for (String item : comment.split(", ")) {
+            String name = StringProcessor.extractItemName(item);
+            if (name.isEmpty()) {
+                continue;
+            }
+            int openParenIndex = item.lastIndexOf('(');
+            int closeParenIndex = item.lastIndexOf(')');
+            int count = 0;
+            if (openParenIndex != -1 && openParenIndex < closeParenIndex) {
+                try {
+                    count = Integer.parseInt(item.substring(openParenIndex + 1, closeParenIndex).trim());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            counts.merge(name, count, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static Map<String, String> colorsByRule(CompiledRuleSet ruleSet) {
+        Map<String, String> colors = new LinkedHashMap<>();
+        for (CompiledRuleSet.CompiledRule rule : ruleSet.rules()) {
+            if (rule.loaded()) {
+                colors.putIfAbsent(rule.name(), rule.color());
+            }
+        }
+        return colors;
+    }
+}
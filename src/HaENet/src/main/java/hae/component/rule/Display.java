@@ -4,6 +4,9 @@ import hae.Config;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
 
 public class Display extends JPanel {
     public JTextField firstRegexTextField;
@@ -14,6 +17,7 @@ public class Display extends JPanel {
     public JComboBox<String> engineComboBox;
     public JComboBox<String> colorComboBox;
     public JComboBox<Boolean> sensitiveComboBox;
+    private SwingWorker<HistoryDryRun.Report, HistoryDryRun.Report> historyWorker;
 
     public Display() {
         initComponents();
@@ -54,6 +58,91 @@ public class Display extends JPanel {
         sensitiveComboBox = addComboBox(new Boolean[]{true, false}, 7, c);
     }
 
+    /**
+     * 在编辑框下方加入历史消息试运行，draftRule 按规则表格式返回当前编辑中的规则。
+     * 试运行在后台执行，对话框关闭时自动取消。
+     */
+    void enableHistoryTest(HistoryDryRun historyDryRun, Supplier<Object[]> draftRule) {
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.BOTH;
+
+        JSpinner sampleSizeSpinner = new JSpinner(new SpinnerNumberModel(HistoryDryRun.DEFAULT_SAMPLE_SIZE, 1, HistoryDryRun.MAX_SAMPLE_SIZE, 100));
+        sampleSizeSpinner.setToolTipText("Number of most recently stored messages to scan");
+        JButton testButton = new JButton("Test on history");
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        JPanel historyPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        historyPanel.add(sampleSizeSpinner);
+        historyPanel.add(new JLabel("messages"));
+        historyPanel.add(testButton);
+        historyPanel.add(cancelButton);
+
+        JTextArea resultArea = new JTextArea(4, 35);
+        resultArea.setEditable(false);
+        resultArea.setLineWrap(true);
+        resultArea.setWrapStyleWord(true);
+
+        addLabel("History:", 8, c);
+        c.gridx = 1;
+        add(historyPanel, c);
+        c.gridx = 0;
+        c.gridy = 9;
+        c.gridwidth = 2;
+        add(new JScrollPane(resultArea), c);
+
+        testButton.addActionListener(e -> {
+            Object[] row = draftRule.get();
+            int sampleSize = (Integer) sampleSizeSpinner.getValue();
+            testButton.setEnabled(false);
+            cancelButton.setEnabled(true);
+            resultArea.setText("Loading stored messages...");
+
+            historyWorker = new SwingWorker<>() {
+                @Override
+                protected HistoryDryRun.Report doInBackground() throws Exception {
+                    return historyDryRun.run(row, sampleSize, this::isCancelled, this::publish);
+                }
+
+                @Override
+                protected void process(List<HistoryDryRun.Report> chunks) {
+                    if (!isCancelled()) {
+                        resultArea.setText(chunks.get(chunks.size() - 1).summary());
+                    }
+                }
+
+                @Override
+                protected void done() {
+                    testButton.setEnabled(true);
+                    cancelButton.setEnabled(false);
+                    try {
+                        HistoryDryRun.Report report = get();
+                        resultArea.setText(report.total() == 0 ? "No stored messages." : report.summary());
+                    } catch (CancellationException ex) {
+                        resultArea.setText("Cancelled.");
+                    } catch (Exception ex) {
+                        Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                        resultArea.setText("Test failed: " + cause.getMessage());
+                    }
+                    resultArea.setCaretPosition(0);
+                }
+            };
+            historyWorker.execute();
+        });
+        cancelButton.addActionListener(e -> cancelHistoryTest());
+    }
+
+    @Override
+    public void removeNotify() {
+        cancelHistoryTest();
+        super.removeNotify();
+    }
+
+    private void cancelHistoryTest() {
+        if (historyWorker != null && !historyWorker.isDone()) {
+            historyWorker.cancel(true);
+        }
+    }
+
     private void addLabel(String text, int y, GridBagConstraints c) {
         JLabel label = new JLabel(text);
         c.gridx = 0;
@@ -0,0 +1,282 @@
+package hae.component.rule;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import hae.instances.http.utils.CompiledRuleSet;
+import hae.instances.http.utils.RegularMatcher;
+import hae.instances.http.utils.RuleGuard;
+import hae.instances.http.utils.RuleMatches;
+import hae.repository.MessageRepository;
+import hae.storage.SqliteMessageStore;
+import hae.utils.ConfigLoader;
+import hae.utils.string.Latin1Text;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 规则保存前的历史消息试运行：用编辑中的规则并行扫描最近保存的 N 条消息，
+ * 统计命中的消息与提取值、每 MB 耗时以及单条消息的最大耗时，慢规则或噪声规则在进入正式捕获前即可发现。
+ *
+ * <p>试运行不读写数据缓存，不写入匹配结果，也不计入规则运行统计与隔离。</p>
+ */
+final class HistoryDryRun {
+    static final int DEFAULT_SAMPLE_SIZE = 500;
+    static final int MAX_SAMPLE_SIZE = 20000;
+    private static final int MAX_EXAMPLES = 5;
+    private static final int MAX_EXAMPLE_LENGTH = 80;
+    private static final int PROGRESS_INTERVAL = 50;
+    // 留出一半处理器给正在进行的捕获
+    private static final int DEFAULT_PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+    /** 试运行的消息来源。load 在消息不可用时返回 null。 */
+    interface SampleSource {
+        List<String> messageIds(int limit);
+
+        Sample load(String messageId);
+    }
+
+    record Sample(String host, byte[] request, int requestBodyOffset, byte[] response, int responseBodyOffset) {
+        Sample {
+            request = request == null ? new byte[0] : request;
+            response = response == null ? new byte[0] : response;
+        }
+
+        long size() {
+            return (long) request.length + response.length;
+        }
+    }
+
+    /** 试运行结果快照。unavailable 为已删除或读取失败的消息数，overBudget 为耗时达到规则超时预算的消息数。 */
+    record Report(boolean running,
+                  int total,
+                  int scanned,
+                  int unavailable,
+                  int matchedMessages,
+                  long matches,
+                  long bytes,
+                  long totalNanos,
+                  long worstNanos,
+                  String worstMessageId,
+                  int overBudget,
+                  List<String> examples) {
+        double millisPerMegabyte() {
+            return bytes == 0 ? 0.0 : totalNanos / 1_000_000.0 / (bytes / (1024.0 * 1024.0));
+        }
+
+        String summary() {
+            StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                    "%s %d/%d messages (%.2f MB) · matched %d · values %d",
+                    running ? "Scanning" : "Scanned", scanned, total, bytes / (1024.0 * 1024.0), matchedMessages, matches));
+            if (unavailable > 0) {
+                summary.append(String.format(Locale.ROOT, " · unavailable %d", unavailable));
+            }
+            summary.append(String.format(Locale.ROOT, "%nTime: %.2f ms/MB · total %.1f ms · worst %.2f ms",
+                    millisPerMegabyte(), totalNanos / 1_000_000.0, worstNanos / 1_000_000.0));
+            if (worstMessageId != null) {
+                summary.append(" (").append(worstMessageId).append(')');
+            }
+            if (overBudget > 0) {
+                summary.append(String.format(Locale.ROOT, "%nReached the %d ms rule budget on %d message(s)",
+                        RuleGuard.budgetMillis(), overBudget));
+            }
+            if (!examples.isEmpty()) {
+                summary.append(String.format("%nExamples: %s", String.join(", ", examples)));
+            }
+            return summary.toString();
+        }
+    }
+
+    private final RegularMatcher regularMatcher;
+    private final SampleSource source;
+    private final int parallelism;
+    private final Consumer<String> errorLogger;
+
+    HistoryDryRun(RegularMatcher regularMatcher, SampleSource source, int parallelism, Consumer<String> errorLogger) {
+        this.regularMatcher = Objects.requireNonNull(regularMatcher, "regularMatcher");
+        this.source = Objects.requireNonNull(source, "source");
+        this.parallelism = Math.max(1, parallelism);
+        this.errorLogger = Objects.requireNonNull(errorLogger, "errorLogger");
+    }
+
+    static HistoryDryRun forRepository(MontoyaApi api, ConfigLoader configLoader, MessageRepository repository) {
+        return new HistoryDryRun(new RegularMatcher(api, configLoader), new RepositorySampleSource(repository),
+                DEFAULT_PARALLELISM, message -> api.logging().logToError(message));
+    }
+
+    /**
+     * 用规则表格式的单条规则扫描最近的 limit 条消息，阻塞到完成或取消为止，不应在 EDT 中调用。
+     * 规则无法编译时抛出 IllegalArgumentException。
+     */
+    Report run(Object[] row, int limit, BooleanSupplier cancelled, Consumer<Report> progressListener) throws InterruptedException {
+        CompiledRuleSet ruleSet = CompiledRuleSet.dryRun(row);
+        RuntimeException compileError = ruleSet.rules().get(0).compileError();
+        if (compileError != null) {
+            throw new IllegalArgumentException(compileError.getMessage(), compileError);
+        }
+
+        List<String> messageIds = source.messageIds(Math.max(1, Math.min(limit, MAX_SAMPLE_SIZE)));
+        Accumulator accumulator = new Accumulator(messageIds.size(), TimeUnit.MILLISECONDS.toNanos(RuleGuard.budgetMillis()));
+        AtomicInteger visited = new AtomicInteger();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "HaE-Rule-DryRun-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(messageIds.size());
+            for (String messageId : messageIds) {
+                futures.add(executor.submit(() -> {
+                    if (cancelled.getAsBoolean()) {
+                        return;
+                    }
+                    scan(ruleSet, messageId, accumulator);
+                    if (visited.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+                        progressListener.accept(accumulator.report(true));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            errorLogger.accept("historyDryRun: " + e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        return accumulator.report(false);
+    }
+
+    private void scan(CompiledRuleSet ruleSet, String messageId, Accumulator accumulator) {
+        Sample sample;
+        try {
+            sample = source.load(messageId);
+        } catch (Exception e) {
+            errorLogger.accept("historyDryRun(" + messageId + "): " + e.getMessage());
+            sample = null;
+        }
+        if (sample == null) {
+            accumulator.unavailable();
+            return;
+        }
+
+        Latin1Text request = Latin1Text.of(sample.request());
+        Latin1Text response = Latin1Text.of(sample.response());
+        long startNanos = System.nanoTime();
+        List<RuleMatches> requestMatches = regularMatcher.performRegexMatching(ruleSet, sample.host(), "request",
+                request, request.headerSection(sample.requestBodyOffset()), request.slice(sample.requestBodyOffset()));
+        List<RuleMatches> responseMatches = regularMatcher.performRegexMatching(ruleSet, sample.host(), "response",
+                response, response.headerSection(sample.responseBodyOffset()), response.slice(sample.responseBodyOffset()));
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        Set<String> values = new LinkedHashSet<>();
+        collectValues(requestMatches, values);
+        collectValues(responseMatches, values);
+        accumulator.add(messageId, sample.size(), elapsedNanos, values);
+    }
+
+    private static void collectValues(List<RuleMatches> matches, Set<String> values) {
+        for (RuleMatches ruleMatches : matches) {
+            values.addAll(ruleMatches.values());
+        }
+    }
+
+    private static final class Accumulator {
+        private final int total;
+        private final long budgetNanos;
+        private final Set<String> examples = new LinkedHashSet<>();
+        private int scanned;
+        private int unavailable;
+        private int matchedMessages;
+        private long matches;
+        private long bytes;
+        private long totalNanos;
+        private long worstNanos;
+        private String worstMessageId;
+        private int overBudget;
+
+        private Accumulator(int total, long budgetNanos) {
+            this.total = total;
+            this.budgetNanos = budgetNanos;
+        }
+
+        private synchronized void add(String messageId, long size, long elapsedNanos, Set<String> values) {
+            scanned++;
+            bytes += size;
+            totalNanos += elapsedNanos;
+            if (elapsedNanos > worstNanos) {
+                worstNanos = elapsedNanos;
+                worstMessageId = messageId;
+            }
+            if (budgetNanos > 0 && elapsedNanos >= budgetNanos) {
+                overBudget++;
+            }
+            if (!values.isEmpty()) {
+                matchedMessages++;
+                matches += values.size();
+                for (String value : values) {
+                    if (examples.size() >= MAX_EXAMPLES) {
+                        break;
+                    }
+                    examples.add(value.length() > MAX_EXAMPLE_LENGTH ? value.substring(0, MAX_EXAMPLE_LENGTH) + "…" : value);
+                }
+            }
+        }
+
+        private synchronized void unavailable() {
+            unavailable++;
+        }
+
+        private synchronized Report report(boolean running) {
+            return new Report(running, total, scanned, unavailable, matchedMessages, matches, bytes, totalNanos,
+                    worstNanos, worstMessageId, overBudget, List.copyOf(examples));
+        }
+    }
+
+    private static final class RepositorySampleSource implements SampleSource {
+        private final MessageRepository repository;
+
+        private RepositorySampleSource(MessageRepository repository) {
+            this.repository = Objects.requireNonNull(repository, "repository");
+        }
+
+        @Override
+        public List<String> messageIds(int limit) {
+            return repository.loadRecentMessageIds(limit);
+        }
+
+        @Override
+        public Sample load(String messageId) {
+            SqliteMessageStore.StoredMessage storedMessage = repository.loadStoredMessage(messageId);
+            if (storedMessage == null || storedMessage.getRequestResponse() == null) {
+                return null;
+            }
+
+            HttpRequestResponse requestResponse = storedMessage.getRequestResponse();
+            if (requestResponse.request() == null) {
+                return null;
+            }
+            byte[] response = null;
+            int responseBodyOffset = 0;
+            if (requestResponse.response() != null) {
+                response = requestResponse.response().toByteArray().getBytes();
+                responseBodyOffset = requestResponse.response().bodyOffset();
+            }
+            return new Sample(storedMessage.getHost(), requestResponse.request().toByteArray().getBytes(),
+                    requestResponse.request().bodyOffset(), response, responseBodyOffset);
+        }
+    }
+}
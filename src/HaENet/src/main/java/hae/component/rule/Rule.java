@@ -2,6 +2,11 @@ package hae.component.rule;
 
 import burp.api.montoya.MontoyaApi;
 import hae.Config;
+import hae.cache.BodyMatchCache;
+import hae.cache.DataCache;
+import hae.instances.http.utils.CompiledRuleSet;
+import hae.instances.http.utils.RuleGuard;
+import hae.instances.http.utils.RuleProfiler;
 import hae.utils.ConfigLoader;
 import hae.utils.rule.RuleProcessor;
 
@@ -11,25 +16,41 @@ import javax.swing.table.JTableHeader;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
+import java.awt.datatransfer.StringSelection;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Vector;
 
 import static javax.swing.JOptionPane.YES_OPTION;
 
 public class Rule extends JPanel {
+    // 规则字段之后追加的只读运行状态列
+    private static final String[] runtimeFields = {
+            "Status", "Calls", "Scanned (KB)", "Total (ms)", "p99 (ms)", "Matches", "Hit %", "Skip %", "Runs on"
+    };
     private final MontoyaApi api;
     private final ConfigLoader configLoader;
     private final RuleProcessor ruleProcessor;
     private final JTabbedPane tabbedPane;
+    private final HistoryDryRun historyDryRun;
+    // 同一次刷新内每条规则只取一次统计快照，供该行的各运行状态列共用
+    private final Map<String, RuleProfiler.RuleProfile> profileSnapshots = new HashMap<>();
     private JCheckBox headerCheckBox;
+    private Timer statusTimer;
 
     public Rule(MontoyaApi api, ConfigLoader configLoader, Object[][] data, JTabbedPane tabbedPane) {
+        this(api, configLoader, data, tabbedPane, null);
+    }
+
+    Rule(MontoyaApi api, ConfigLoader configLoader, Object[][] data, JTabbedPane tabbedPane, HistoryDryRun historyDryRun) {
         this.api = api;
         this.configLoader = configLoader;
         this.ruleProcessor = new RuleProcessor(api, configLoader);
         this.tabbedPane = tabbedPane;
+        this.historyDryRun = historyDryRun;
 
         initComponents(data);
     }
@@ -45,6 +66,12 @@ public class Rule extends JPanel {
         JButton addButton = new JButton("Add");
         JButton editButton = new JButton("Edit");
         JButton removeButton = new JButton("Remove");
+        JButton resetStatsButton = new JButton("Reset stats");
+        JButton exportStatsButton = new JButton("Export stats");
+        resetStatsButton.setToolTipText("Reset per-rule execution statistics");
+        exportStatsButton.setToolTipText("Copy per-rule execution statistics of all groups to clipboard");
+        JLabel cacheLabel = new JLabel();
+        cacheLabel.setToolTipText("Hit ratios of the whole-message cache and of the body-scope cache shared by identical bodies");
 
         JTable ruleTable = new JTable();
         JScrollPane scrollPane = new JScrollPane();
@@ -59,18 +86,49 @@ public class Rule extends JPanel {
         addButton.addActionListener(e -> ruleAddActionPerformed(e, ruleTable, tabbedPane));
         editButton.addActionListener(e -> ruleEditActionPerformed(e, ruleTable, tabbedPane));
         removeButton.addActionListener(e -> ruleRemoveActionPerformed(e, ruleTable, tabbedPane));
+        resetStatsButton.addActionListener(e -> {
+            RuleProfiler.reset();
+            profileSnapshots.clear();
+            ruleTable.repaint();
+        });
+        exportStatsButton.addActionListener(e -> exportRuleStats());
 
-        // 表格
+        // 表格，规则字段之后追加只读的运行状态列，不写回规则数据
         DefaultTableModel model = new DefaultTableModel() {
             @Override
             public Class<?> getColumnClass(int column) {
-                return (column == 0) ? Boolean.class : String.class;
+                if (column == 0) {
+                    return Boolean.class;
+                }
+                return switch (column - Config.ruleFields.length) {
+                    case 1, 2, 3, 5 -> Long.class;
+                    case 4, 6, 7 -> Double.class;
+                    default -> String.class;
+                };
             }
 
             @Override
             public boolean isCellEditable(int row, int column) {
                 return column == 0;
             }
+
+            @Override
+            public int getColumnCount() {
+                return super.getColumnCount() == 0 ? 0 : Config.ruleFields.length + runtimeFields.length;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return column >= Config.ruleFields.length ? runtimeFields[column - Config.ruleFields.length] : super.getColumnName(column);
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                if (column >= Config.ruleFields.length) {
+                    return runtimeValue(ruleKey(getDataVector().get(row)), column - Config.ruleFields.length);
+                }
+                return super.getValueAt(row, column);
+            }
         };
 
         ruleTable.setModel(model);
@@ -80,6 +138,10 @@ public class Rule extends JPanel {
         model.addTableModelListener(e -> {
             if (e.getColumn() == 0 && ruleTable.getSelectedRow() != -1) {
                 int select = ruleTable.convertRowIndexToModel(ruleTable.getSelectedRow());
+                // 重新开启规则时解除超时隔离
+                if ((Boolean) model.getValueAt(select, 0)) {
+                    RuleGuard.release(ruleKey(model.getDataVector().get(select)));
+                }
                 ruleProcessor.changeRule(model.getDataVector().get(select), select, tabbedPane.getTitleAt(tabbedPane.getSelectedIndex()));
 
                 // 更新表头复选框状态并强制重新渲染
@@ -94,14 +156,23 @@ public class Rule extends JPanel {
         // 设置Loaded列的宽度（第一列）
         setupColumnWidths(ruleTable);
 
+        // 仅在表格可见时刷新运行状态列与缓存命中率；面板加入界面时启动，移出时停止
+        statusTimer = new Timer(1000, e -> {
+            if (ruleTable.isShowing()) {
+                profileSnapshots.clear();
+                ruleTable.repaint();
+                cacheLabel.setText(String.format("<html>%s<br>%s</html>", DataCache.summary(), BodyMatchCache.summary()));
+            }
+        });
+
         GridBagConstraints constraints = new GridBagConstraints();
         constraints.weightx = 1.0;
         constraints.fill = GridBagConstraints.HORIZONTAL;
 
         JPanel buttonPanel = new JPanel();
         GridBagLayout layout = new GridBagLayout();
-        layout.rowHeights = new int[]{0, 0, 0, 0, 0, 0, 0};
-        layout.rowWeights = new double[]{0.0, 0.0, 0.0, 0.0, 0.0, 0.0, Double.MIN_VALUE};
+        layout.rowHeights = new int[]{0, 0, 0, 0, 0, 0, 0, 0};
+        layout.rowWeights = new double[]{0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, Double.MIN_VALUE};
         buttonPanel.setLayout(layout);
 
         constraints.insets = new Insets(0, 0, 3, 0);
@@ -113,6 +184,12 @@ public class Rule extends JPanel {
         buttonPanel.add(editButton, constraints);
         constraints.gridy = 3;
         buttonPanel.add(removeButton, constraints);
+        constraints.gridy = 4;
+        buttonPanel.add(resetStatsButton, constraints);
+        constraints.gridy = 5;
+        buttonPanel.add(exportStatsButton, constraints);
+        constraints.gridy = 6;
+        buttonPanel.add(cacheLabel, constraints);
 
         add(buttonPanel, new GridBagConstraints(0, 0, 1, 1, 0.0, 0.0,
                 GridBagConstraints.CENTER, GridBagConstraints.BOTH,
@@ -122,6 +199,19 @@ public class Rule extends JPanel {
                 new Insets(15, 5, 5, 5), 0, 0));
     }
 
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        statusTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        // 重新加载规则组时旧面板被移除，停掉定时器，否则它会一直持有旧的表格与模型
+        statusTimer.stop();
+        super.removeNotify();
+    }
+
     /**
      * 设置列宽度
      */
@@ -132,6 +222,57 @@ public class Rule extends JPanel {
         ruleTable.getColumnModel().getColumn(0).setMinWidth(50);
     }
 
+    private static String ruleKey(Vector<?> row) {
+        return RuleGuard.ruleKey(row.get(1), row.get(2), row.get(3), row.get(7), row.get(8));
+    }
+
+    private Object runtimeValue(String ruleKey, int field) {
+        if (field == 0) {
+            return RuleGuard.status(ruleKey);
+        }
+        if (field == 8) {
+            return CompiledRuleSet.current().effectiveEngine(ruleKey);
+        }
+
+        RuleProfiler.RuleProfile profile = profileSnapshots.computeIfAbsent(ruleKey, RuleProfiler::snapshot);
+        return switch (field) {
+            case 1 -> profile.invocations();
+            case 2 -> profile.bytes() / 1024;
+            case 3 -> profile.totalNanos() / 1_000_000;
+            case 4 -> Math.round(profile.p99Nanos() / 10_000.0) / 100.0;
+            case 5 -> profile.matches();
+            case 6 -> Math.round(profile.hitRatio() * 10_000) / 100.0;
+            // 没有必需字面量、从不经过预过滤的规则留空
+            default -> profile.prefilterChecks() == 0 ? null : Math.round(profile.prefilterSkipRatio() * 10_000) / 100.0;
+        };
+    }
+
+    /**
+     * 以制表符分隔导出所有分组的规则统计到剪贴板，便于粘贴到表格中排序分析
+     */
+    private void exportRuleStats() {
+        StringBuilder builder = new StringBuilder("Group\tName\tEngine\tRuns on\tStatus\tCalls\tBytes\tTotal (ns)\tp99 (ns)\tMatches\tHit %\tPrefilter checks\tSkip %\n");
+        for (CompiledRuleSet.CompiledRule rule : CompiledRuleSet.current().rules()) {
+            RuleProfiler.RuleProfile profile = RuleProfiler.snapshot(rule.key());
+            builder.append(String.join("\t",
+                    rule.group(),
+                    rule.name(),
+                    rule.engine(),
+                    rule.effectiveEngine(),
+                    RuleGuard.status(rule.key()),
+                    String.valueOf(profile.invocations()),
+                    String.valueOf(profile.bytes()),
+                    String.valueOf(profile.totalNanos()),
+                    String.valueOf(profile.p99Nanos()),
+                    String.valueOf(profile.matches()),
+                    String.format("%.2f", profile.hitRatio() * 100),
+                    String.valueOf(profile.prefilterChecks()),
+                    String.format("%.2f", profile.prefilterSkipRatio() * 100))).append('\n');
+        }
+
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(builder.toString()), null);
+    }
+
     /**
      * 设置表头复选框
      */
@@ -221,6 +362,9 @@ public class Rule extends JPanel {
         Vector<Vector> dataVector = model.getDataVector();
         for (int i = 0; i < rowCount; i++) {
             dataVector.get(i).set(0, newState);
+            if (newState) {
+                RuleGuard.release(ruleKey(dataVector.get(i)));
+            }
             // 通知规则处理器更新规则状态
             ruleProcessor.changeRule(dataVector.get(i), i, getCurrentTabTitle());
         }
@@ -306,6 +450,9 @@ public class Rule extends JPanel {
      */
     private boolean showRuleDialog(Display ruleDisplay, String title) {
         ruleDisplay.formatTextField.setEnabled(ruleDisplay.engineComboBox.getSelectedItem().toString().equals("nfa"));
+        if (historyDryRun != null) {
+            ruleDisplay.enableHistoryTest(historyDryRun, () -> createRuleDataFromDisplay(ruleDisplay).toArray());
+        }
         int showState = JOptionPane.showConfirmDialog(this, ruleDisplay, title, JOptionPane.YES_NO_OPTION);
         return showState == YES_OPTION;
     }
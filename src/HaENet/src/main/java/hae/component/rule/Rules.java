@@ -2,6 +2,7 @@ package hae.component.rule;
 
 import burp.api.montoya.MontoyaApi;
 import hae.Config;
+import hae.repository.MessageRepository;
 import hae.utils.ConfigLoader;
 import hae.utils.rule.RuleProcessor;
 
@@ -13,6 +14,7 @@ public class Rules extends JTabbedPane {
     private final MontoyaApi api;
     private final RuleProcessor ruleProcessor;
     private final JTextField ruleGroupNameTextField;
+    private final HistoryDryRun historyDryRun;
     private ConfigLoader configLoader;
     private Component tabComponent;
     private int selectedIndex;
@@ -48,10 +50,18 @@ public class Rules extends JTabbedPane {
     };
 
     public Rules(MontoyaApi api, ConfigLoader configLoader) {
+        this(api, configLoader, null);
+    }
+
+    /**
+     * historyRepository 为已保存消息的来源，用于规则编辑框中的历史消息试运行；为空时不提供试运行。
+     */
+    public Rules(MontoyaApi api, ConfigLoader configLoader, MessageRepository historyRepository) {
         this.api = api;
         this.configLoader = configLoader;
         this.ruleProcessor = new RuleProcessor(api, configLoader);
         this.ruleGroupNameTextField = new JTextField();
+        this.historyDryRun = historyRepository == null ? null : HistoryDryRun.forRepository(api, configLoader, historyRepository);
 
         initComponents();
     }
@@ -103,7 +113,7 @@ public class Rules extends JTabbedPane {
                                 e.consume();
                                 // 直接创建新标签
                                 String newTitle = ruleProcessor.newRule();
-                                Rule newRule = new Rule(api, configLoader, Config.ruleTemplate, Rules.this);
+                                Rule newRule = new Rule(api, configLoader, Config.ruleTemplate, Rules.this, historyDryRun);
                                 insertTab(newTitle, null, newRule, null, getTabCount() - 1);
                                 setSelectedIndex(getTabCount() - 2);
                             } else {
@@ -135,7 +145,7 @@ public class Rules extends JTabbedPane {
         removeAll();
 
         this.configLoader = new ConfigLoader(api);
-        Config.globalRules.keySet().forEach(i -> addTab(i, new Rule(api, configLoader, hae.Config.globalRules.get(i), this)));
+        Config.globalRules.keySet().forEach(i -> addTab(i, new Rule(api, configLoader, hae.Config.globalRules.get(i), this, historyDryRun)));
         addTab("...", null);
     }
 
@@ -8,6 +8,7 @@ import burp.api.montoya.ui.editor.extension.EditorCreationContext;
 import burp.api.montoya.ui.editor.extension.ExtensionProvidedHttpRequestEditor;
 import burp.api.montoya.ui.editor.extension.HttpRequestEditorProvider;
 import hae.instances.http.utils.MessageProcessor;
+import hae.instances.http.utils.RuleMatches;
 import hae.utils.ConfigLoader;
 import hae.utils.http.HttpUtils;
 import hae.utils.string.StringProcessor;
@@ -15,7 +16,6 @@ import hae.utils.string.StringProcessor;
 import javax.swing.*;
 import java.awt.*;
 import java.util.List;
-import java.util.Map;
 
 public class RequestEditor implements HttpRequestEditorProvider {
     private final MontoyaApi api;
@@ -26,11 +26,11 @@ public class RequestEditor implements HttpRequestEditorProvider {
         this.configLoader = configLoader;
     }
 
-    public static boolean isListHasData(List<Map<String, String>> dataList) {
+    public static boolean isListHasData(List<RuleMatches> dataList) {
         return EditorUtils.isListHasData(dataList);
     }
 
-    public static void generateTabbedPaneFromResultMap(MontoyaApi api, ConfigLoader configLoader, JTabbedPane tabbedPane, List<Map<String, String>> result) {
+    public static void generateTabbedPaneFromResultMap(MontoyaApi api, ConfigLoader configLoader, JTabbedPane tabbedPane, List<RuleMatches> result) {
         EditorUtils.generateTabbedPaneFromResultMap(api, configLoader, tabbedPane, result);
     }
 
@@ -47,7 +47,7 @@ public class RequestEditor implements HttpRequestEditorProvider {
         private final MessageProcessor messageProcessor;
         private final JTabbedPane jTabbedPane = new JTabbedPane();
         private HttpRequestResponse requestResponse;
-        private List<Map<String, String>> dataList;
+        private List<RuleMatches> dataList;
 
         public Editor(MontoyaApi api, ConfigLoader configLoader, EditorCreationContext creationContext) {
             this.api = api;
@@ -79,7 +79,7 @@ public class RequestEditor implements HttpRequestEditorProvider {
                         boolean matches = httpUtils.verifyHttpRequestResponse(requestResponse, toolType);
 
                         if (!matches) {
-                            this.dataList = messageProcessor.processRequest("", request, false);
+                            this.dataList = messageProcessor.processRequest("", request);
                             return EditorUtils.isListHasData(this.dataList);
                         }
                     }
@@ -9,6 +9,7 @@ import burp.api.montoya.ui.editor.extension.EditorCreationContext;
 import burp.api.montoya.ui.editor.extension.ExtensionProvidedHttpResponseEditor;
 import burp.api.montoya.ui.editor.extension.HttpResponseEditorProvider;
 import hae.instances.http.utils.MessageProcessor;
+import hae.instances.http.utils.RuleMatches;
 import hae.utils.ConfigLoader;
 import hae.utils.http.HttpUtils;
 import hae.utils.string.StringProcessor;
@@ -16,7 +17,6 @@ import hae.utils.string.StringProcessor;
 import javax.swing.*;
 import java.awt.*;
 import java.util.List;
-import java.util.Map;
 
 public class ResponseEditor implements HttpResponseEditorProvider {
     private final MontoyaApi api;
@@ -40,7 +40,7 @@ public class ResponseEditor implements HttpResponseEditorProvider {
         private final MessageProcessor messageProcessor;
         private final JTabbedPane jTabbedPane = new JTabbedPane();
         private HttpRequestResponse requestResponse;
-        private List<Map<String, String>> dataList;
+        private List<RuleMatches> dataList;
 
         public Editor(MontoyaApi api, ConfigLoader configLoader, EditorCreationContext creationContext) {
             this.api = api;
@@ -81,7 +81,7 @@ public class ResponseEditor implements HttpResponseEditorProvider {
                 }
 
                 if (!matches) {
-                    this.dataList = messageProcessor.processResponse("", response, false);
+                    this.dataList = messageProcessor.processResponse("", response);
                     return EditorUtils.isListHasData(this.dataList);
                 }
             }
@@ -8,12 +8,12 @@ import burp.api.montoya.ui.editor.extension.EditorCreationContext;
 import burp.api.montoya.ui.editor.extension.ExtensionProvidedWebSocketMessageEditor;
 import burp.api.montoya.ui.editor.extension.WebSocketMessageEditorProvider;
 import hae.instances.http.utils.MessageProcessor;
+import hae.instances.http.utils.RuleMatches;
 import hae.utils.ConfigLoader;
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.List;
-import java.util.Map;
 
 public class WebSocketEditor implements WebSocketMessageEditorProvider {
     private final MontoyaApi api;
@@ -36,7 +36,7 @@ public class WebSocketEditor implements WebSocketMessageEditorProvider {
         private final MessageProcessor messageProcessor;
         private final JTabbedPane jTabbedPane = new JTabbedPane();
         private ByteArray message;
-        private List<Map<String, String>> dataList;
+        private List<RuleMatches> dataList;
 
         public Editor(MontoyaApi api, ConfigLoader configLoader, EditorCreationContext creationContext) {
             this.api = api;
@@ -60,7 +60,7 @@ public class WebSocketEditor implements WebSocketMessageEditorProvider {
         public boolean isEnabledFor(WebSocketMessage webSocketMessage) {
             String websocketMessage = webSocketMessage.payload().toString();
             if (!websocketMessage.isEmpty()) {
-                this.dataList = messageProcessor.processMessage("", websocketMessage, false);
+                this.dataList = messageProcessor.processMessage("", websocketMessage);
                 return EditorUtils.isListHasData(this.dataList);
             }
             return false;
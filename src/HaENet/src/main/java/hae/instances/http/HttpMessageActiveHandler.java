@@ -41,8 +41,14 @@ public class HttpMessageActiveHandler implements HttpHandler {
 
         try {
             if (!httpUtils.verifyHttpRequestResponse(requestResponse, toolType)) {
-                messageTableModel.add(requestResponse, true, annotations, toolType);
-                applyImmediateAnnotations(requestResponse, annotations);
+                MessageProcessor.ProcessedMessage processedMessage = messageProcessor.processRequestResponse(
+                        resolveHost(requestResponse.request()),
+                        requestResponse.request(),
+                        requestResponse.response()
+                );
+                // 同步匹配结果直接交给存储层，worker 无需回读再扫描一次
+                messageTableModel.add(requestResponse, true, annotations, toolType, processedMessage);
+                applyImmediateAnnotations(processedMessage, annotations);
             }
         } catch (Exception e) {
             api.logging().logToError("handleHttpResponseReceived: " + e.getMessage());
@@ -51,12 +57,7 @@ public class HttpMessageActiveHandler implements HttpHandler {
         return ResponseReceivedAction.continueWith(httpResponseReceived, annotations);
     }
 
-    private void applyImmediateAnnotations(HttpRequestResponse requestResponse, Annotations annotations) {
-        MessageProcessor.ProcessedMessage processedMessage = messageProcessor.processRequestResponse(
-                resolveHost(requestResponse.request()),
-                requestResponse.request(),
-                requestResponse.response()
-        );
+    private void applyImmediateAnnotations(MessageProcessor.ProcessedMessage processedMessage, Annotations annotations) {
         if (!processedMessage.hasMatches()) {
             return;
         }
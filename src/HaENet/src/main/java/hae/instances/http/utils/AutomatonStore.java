@@ -0,0 +1,310 @@
+package hae.instances.http.utils;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.RunAutomaton;
+import dk.brics.automaton.State;
+import dk.brics.automaton.Transition;
+import hae.utils.string.MessageFingerprint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 已编译自动机的磁盘缓存：DFA 规则的自动机与合并预过滤自动机写入 Rules.yml 同目录下的 Rules.automata，
+ * 以表达式的指纹为键。扩展加载时在后台并行读回并预热当前规则集，重启后的首批消息不再等待确定化与乘积构造。
+ *
+ * <p>只写出转移表，不使用 Java 序列化：单条规则的自动机按 [状态数, 初始状态, 接受状态, 区间起点, 转移表] 保存，
+ * 读回时重建为已确定的 {@link Automaton} 再生成 {@link RunAutomaton}，跳过耗时的确定化与最小化。
+ * 文件头带格式版本，版本不符或内容损坏时整体忽略，之后按当前规则集重新写出。</p>
+ */
+public final class AutomatonStore {
+    static final String FILE_NAME = "Rules.automata";
+    private static final int MAGIC = 0x48614541;
+    private static final int FORMAT_VERSION = 1;
+    private static final byte KIND_AUTOMATON = 1;
+    private static final byte KIND_COMBINED = 2;
+
+    private static final Map<String, RunAutomaton> loadedAutomata = new ConcurrentHashMap<>();
+    private static final Map<String, MultiRuleAutomaton> loadedCombined = new ConcurrentHashMap<>();
+    private static final AtomicBoolean dirty = new AtomicBoolean();
+    private static final Object lifecycleLock = new Object();
+    private static volatile CompletableFuture<Void> loading = CompletableFuture.completedFuture(null);
+    private static ExecutorService executor;
+    private static Consumer<CompiledRuleSet> publishListener;
+
+    private AutomatonStore() {
+    }
+
+    /**
+     * 在后台线程读回缓存文件并预热当前规则集，之后每次发布新规则集都重新预热并写出。
+     * 读回完成前开始的编译会在取用自动机时等待读回结束。
+     */
+    public static void start(Path rulesFile, Consumer<String> errorLogger) {
+        Path cacheFile = rulesFile.resolveSibling(FILE_NAME);
+        synchronized (lifecycleLock) {
+            if (executor != null) {
+                return;
+            }
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "HaE-Automaton-Cache");
+                thread.setDaemon(true);
+                return thread;
+            });
+            loading = CompletableFuture.runAsync(() -> {
+                try {
+                    load(cacheFile);
+                } catch (IOException | RuntimeException e) {
+                    errorLogger.accept("automatonCache(load): " + e.getMessage());
+                }
+            }, executor);
+            executor.execute(() -> {
+                warmUpAndSave(CompiledRuleSet.current(), cacheFile, errorLogger);
+                // 当前规则集已不再使用的条目不必常驻内存
+                loadedAutomata.clear();
+                loadedCombined.clear();
+            });
+
+            ExecutorService current = executor;
+            publishListener = ruleSet -> current.execute(() -> warmUpAndSave(ruleSet, cacheFile, errorLogger));
+            CompiledRuleSet.addPublishListener(publishListener);
+        }
+    }
+
+    public static void shutdown() {
+        synchronized (lifecycleLock) {
+            if (publishListener != null) {
+                CompiledRuleSet.removePublishListener(publishListener);
+                publishListener = null;
+            }
+            // 尚未执行的读回随线程池一起取消，不能让等待它的编译线程一直阻塞
+            loading.cancel(false);
+            loading = CompletableFuture.completedFuture(null);
+            if (executor != null) {
+                executor.shutdownNow();
+                try {
+                    executor.awaitTermination(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                executor = null;
+            }
+            loadedAutomata.clear();
+            loadedCombined.clear();
+        }
+    }
+
+    /** 编译规则时优先取用读回的自动机，取用后即从缓存中移除。 */
+    static RunAutomaton takeAutomaton(String regex) {
+        awaitLoad();
+        RunAutomaton automaton = loadedAutomata.isEmpty() ? null : loadedAutomata.remove(automatonKey(regex));
+        if (automaton == null) {
+            dirty.set(true);
+        }
+        return automaton;
+    }
+
+    static MultiRuleAutomaton takeCombined(List<String> regexes) {
+        awaitLoad();
+        MultiRuleAutomaton automaton = loadedCombined.isEmpty() ? null : loadedCombined.remove(combinedKey(regexes));
+        if (automaton == null) {
+            dirty.set(true);
+        }
+        return automaton;
+    }
+
+    private static void awaitLoad() {
+        CompletableFuture<Void> pending = loading;
+        if (pending.isDone()) {
+            return;
+        }
+        try {
+            pending.join();
+        } catch (CancellationException | CompletionException ignored) {
+            // 读回被取消或失败时按未命中处理，重新编译
+        }
+    }
+
+    /** 读回缓存文件，条目并行解码；返回读回的条目数，文件不存在时为 0。 */
+    static int load(Path cacheFile) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(cacheFile))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return 0;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte kind = in.readByte();
+                String key = in.readUTF();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                entries.add(new Entry(kind, key, payload));
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+
+        // 在匹配线程池中并行解码，不占用公共 ForkJoinPool
+        MatchingEngine.invoke(() -> entries.parallelStream().forEach(entry -> {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.payload()))) {
+                if (entry.kind() == KIND_AUTOMATON) {
+                    loadedAutomata.put(entry.key(), readAutomaton(in));
+                } else if (entry.kind() == KIND_COMBINED) {
+                    loadedCombined.put(entry.key(), MultiRuleAutomaton.read(in));
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // 损坏的条目丢弃，用到时重新编译
+            }
+        }));
+        return entries.size();
+    }
+
+    /** 写出规则集当前用到的全部自动机，先写临时文件再替换，不保留已不再使用的条目。 */
+    static void save(CompiledRuleSet ruleSet, Path cacheFile) throws IOException {
+        Map<String, RunAutomaton> automata = new LinkedHashMap<>();
+        Map<String, MultiRuleAutomaton> combined = new LinkedHashMap<>();
+        ruleSet.forEachAutomaton((regex, automaton) -> automata.put(automatonKey(regex), automaton),
+                (regexes, automaton) -> combined.put(combinedKey(regexes), automaton));
+        write(automata, combined, cacheFile);
+    }
+
+    static void write(Map<String, RunAutomaton> automata, Map<String, MultiRuleAutomaton> combined, Path cacheFile) throws IOException {
+        Path tempFile = cacheFile.resolveSibling(FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(automata.size() + combined.size());
+            for (Map.Entry<String, RunAutomaton> entry : automata.entrySet()) {
+                writeEntry(out, KIND_AUTOMATON, entry.getKey(), payload -> writeAutomaton(payload, entry.getValue()));
+            }
+            for (Map.Entry<String, MultiRuleAutomaton> entry : combined.entrySet()) {
+                writeEntry(out, KIND_COMBINED, entry.getKey(), entry.getValue()::write);
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void warmUpAndSave(CompiledRuleSet ruleSet, Path cacheFile, Consumer<String> errorLogger) {
+        try {
+            ruleSet.warmUp();
+            // 有新编译的自动机或文件尚不存在时才写出
+            if (dirty.getAndSet(false) || !Files.exists(cacheFile)) {
+                save(ruleSet, cacheFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            errorLogger.accept("automatonCache(save): " + e.getMessage());
+        }
+    }
+
+    static String automatonKey(String regex) {
+        return MessageFingerprint.ofChars("automaton\u0000", regex).toHex();
+    }
+
+    static String combinedKey(List<String> regexes) {
+        return MessageFingerprint.ofChars("combined\u0000", String.join("\u0000", regexes)).toHex();
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    private record Entry(byte kind, String key, byte[] payload) {
+    }
+
+    private static void writeEntry(DataOutputStream out, byte kind, String key, PayloadWriter writer) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream payload = new DataOutputStream(buffer)) {
+            writer.write(payload);
+        }
+        out.writeByte(kind);
+        out.writeUTF(key);
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+    }
+
+    static void writeAutomaton(DataOutput out, RunAutomaton automaton) throws IOException {
+        char[] points = automaton.getCharIntervals();
+        int size = automaton.getSize();
+        out.writeInt(size);
+        out.writeInt(automaton.getInitialState());
+        out.writeInt(points.length);
+        for (char point : points) {
+            out.writeChar(point);
+        }
+        for (int state = 0; state < size; state++) {
+            out.writeBoolean(automaton.isAccept(state));
+            for (char point : points) {
+                out.writeInt(automaton.step(state, point));
+            }
+        }
+    }
+
+    /** 按转移表重建已确定的自动机，相邻且目标相同的区间合并为一条转移。 */
+    static RunAutomaton readAutomaton(DataInput in) throws IOException {
+        int size = in.readInt();
+        int initial = in.readInt();
+        char[] points = new char[in.readInt()];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = in.readChar();
+        }
+        if (size <= 0 || initial < 0 || initial >= size) {
+            throw new IOException("corrupt automaton");
+        }
+
+        State[] states = new State[size];
+        for (int state = 0; state < size; state++) {
+            states[state] = new State();
+        }
+        for (int state = 0; state < size; state++) {
+            states[state].setAccept(in.readBoolean());
+            int rangeStart = -1;
+            int rangeTarget = -1;
+            for (int i = 0; i < points.length; i++) {
+                int target = in.readInt();
+                if (target >= size) {
+                    throw new IOException("corrupt automaton");
+                }
+                if (target != rangeTarget) {
+                    if (rangeTarget >= 0) {
+                        states[state].addTransition(new Transition((char) rangeStart, (char) (points[i] - 1), states[rangeTarget]));
+                    }
+                    rangeStart = points[i];
+                    rangeTarget = target;
+                }
+            }
+            if (rangeTarget >= 0) {
+                states[state].addTransition(new Transition((char) rangeStart, Character.MAX_VALUE, states[rangeTarget]));
+            }
+        }
+
+        Automaton automaton = new Automaton();
+        automaton.setInitialState(states[initial]);
+        automaton.setDeterministic(true);
+        return new RunAutomaton(automaton, true);
+    }
+}
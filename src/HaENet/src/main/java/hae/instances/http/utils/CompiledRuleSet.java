@@ -0,0 +1,602 @@
+package hae.instances.http.utils;
+
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+import hae.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 不可变的已编译规则集：由 Config.globalRules 一次性构建，正则、自动机与格式化模板都已预编译，
+ * 规则按消息类型与匹配内容预先分桶。规则变化时由 {@link hae.utils.rule.RuleProcessor} 发布新实例整体替换，
+ * 匹配热路径只读取一次 volatile 引用，不再逐条复制与解析 Object[] 规则行。
+ *
+ * <p>合并自动机与字面量预过滤的构建较慢，按桶在第一次匹配时于匹配线程中惰性构建，避免阻塞界面线程；
+ * 发布后 {@link AutomatonStore} 会在后台预热，DFA 自动机与合并自动机优先从其磁盘缓存读回。</p>
+ *
+ * <p>每个规则名记录自己的版本：只有该名称下已开启规则的定义发生变化时才取新版本号，
+ * 历史消息的增量重匹配据此只处理改动过的规则。</p>
+ */
+public final class CompiledRuleSet {
+    private static final Pattern FORMAT_INDEX_PATTERN = Pattern.compile("\\{(\\d+)}");
+    private static final int MAX_CACHED_COMBINED = 64;
+    private static final int MAX_SPAN_STATES = 20000;
+    private static final int MAX_SPAN_START_STATES = 4096;
+    private static final String SPAN_START_KEY = "\u0000start\u0000";
+    // 跨版本复用的编译缓存，未改动的规则与分桶在规则更新后无需重新编译
+    private static final Map<String, Pattern> patternCache = new ConcurrentHashMap<>();
+    private static final Map<String, RunAutomaton> automatonCache = new ConcurrentHashMap<>();
+    private static final Set<String> oversizedSpanStarts = ConcurrentHashMap.newKeySet();
+    private static final Map<List<String>, MultiRuleAutomaton> combinedAutomatonCache = new ConcurrentHashMap<>();
+    private static final Map<List<String>, LiteralPrefilter> literalPrefilterCache = new ConcurrentHashMap<>();
+    private static final AtomicLong versions = new AtomicLong();
+    private static final List<Consumer<CompiledRuleSet>> publishListeners = new CopyOnWriteArrayList<>();
+    private static volatile CompiledRuleSet current;
+
+    private final Map<String, Object[][]> source;
+    private final long version;
+    private final List<CompiledRule> rules;
+    private final Map<String, String> definitions;
+    private final Map<String, Long> ruleVersions;
+    private final Map<String, String> effectiveEngines;
+    private final View requestView;
+    private final View responseView;
+    private final View anyView;
+    private final boolean dryRun;
+
+    /** 规则匹配的内容范围。 */
+    public enum Target {
+        MESSAGE, HEADER, BODY, LINE;
+
+        static Target of(String scope) {
+            return switch (scope) {
+                case "any", "request", "response" -> MESSAGE;
+                case "any header", "request header", "response header" -> HEADER;
+                case "any body", "request body", "response body" -> BODY;
+                case "request line", "response line" -> LINE;
+                default -> null;
+            };
+        }
+
+        public CharSequence select(CharSequence message, CharSequence firstLine, CharSequence header, CharSequence body) {
+            return switch (this) {
+                case MESSAGE -> message;
+                case HEADER -> header;
+                case BODY -> body;
+                case LINE -> firstLine;
+            };
+        }
+    }
+
+    /**
+     * 一条已编译规则。index 为规则在所属规则集中的序号，key 为跨版本稳定的规则标识（见 {@link RuleGuard#ruleKey}）；
+     * colorIndex 为颜色在 Config.color 中的下标，未知颜色为 -1；target 为空表示作用域无法识别；NFA 规则的一级表达式能翻译成 dk.brics 语法时，spanAutomaton 为翻译结果（spanRegex）
+     * 的自动机，spanStartAutomaton 为由它构造的起点自动机（见 {@link MatchStartAutomaton}），匹配时先用后者一次找出窗口内的全部匹配起点，
+     * 再在起点处执行 NFA（见 {@link DfaTranslation}）；
+     * maxMatchLength 为一级表达式单次匹配的最大长度，决定分窗扫描的重叠；
+     * compileError 非空时规则无法执行，匹配时记录错误后跳过。
+     */
+    public record CompiledRule(int index,
+                               String key,
+                               String group,
+                               boolean loaded,
+                               String name,
+                               String firstRegex,
+                               String secondRegex,
+                               String format,
+                               String color,
+                               int colorIndex,
+                               String scope,
+                               String engine,
+                               boolean sensitive,
+                               Target target,
+                               Pattern firstPattern,
+                               Pattern secondPattern,
+                               RunAutomaton firstAutomaton,
+                               RunAutomaton secondAutomaton,
+                               String spanRegex,
+                               RunAutomaton spanAutomaton,
+                               RunAutomaton spanStartAutomaton,
+                               int[] formatIndexes,
+                               String normalizedFormat,
+                               int maxMatchLength,
+                               RuntimeException compileError) {
+        public boolean isNfa() {
+            return "nfa".equals(engine);
+        }
+
+        /** 实际执行的引擎：nfa、dfa，或先由自动机定位起点再执行 NFA 的 dfa+nfa。 */
+        public String effectiveEngine() {
+            if (!isNfa()) {
+                return "dfa";
+            }
+            return spanAutomaton != null ? "dfa+nfa" : "nfa";
+        }
+
+        public boolean appliesTo(String type) {
+            return loaded && (scope.contains(type) || scope.contains("any") || type.equals("any"));
+        }
+    }
+
+    /** 同一匹配内容下一起预过滤的一组规则，合并自动机或字面量过滤器在首次使用时构建。 */
+    public static final class Bucket {
+        private final Target target;
+        private final boolean sensitive;
+        private final List<CompiledRule> rules;
+        private final List<String> regexes;
+        private volatile MultiRuleAutomaton combinedAutomaton;
+        private volatile LiteralPrefilter literalPrefilter;
+
+        private Bucket(Target target, boolean sensitive, List<CompiledRule> rules, List<String> regexes) {
+            this.target = target;
+            this.sensitive = sensitive;
+            this.rules = rules;
+            this.regexes = regexes;
+        }
+
+        public Target target() {
+            return target;
+        }
+
+        public boolean sensitive() {
+            return sensitive;
+        }
+
+        public List<CompiledRule> rules() {
+            return rules;
+        }
+
+        MultiRuleAutomaton combinedAutomaton() {
+            MultiRuleAutomaton automaton = combinedAutomaton;
+            if (automaton == null) {
+                automaton = cached(combinedAutomatonCache, regexes, CompiledRuleSet::combinedAutomaton);
+                combinedAutomaton = automaton;
+            }
+            return automaton;
+        }
+
+        LiteralPrefilter literalPrefilter() {
+            LiteralPrefilter prefilter = literalPrefilter;
+            if (prefilter == null) {
+                prefilter = cached(literalPrefilterCache, regexes, LiteralPrefilter::compile);
+                literalPrefilter = prefilter;
+            }
+            return prefilter;
+        }
+    }
+
+    /**
+     * 某一消息类型下需要执行的规则：groups 保持分组与组内顺序，dfaBuckets/nfaBuckets 为预过滤分桶。
+     */
+    public record View(List<List<CompiledRule>> groups, List<Bucket> dfaBuckets, List<Bucket> nfaBuckets) {
+        public boolean hasTarget(Target target) {
+            for (List<CompiledRule> group : groups) {
+                for (CompiledRule rule : group) {
+                    if (rule.target() == target) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /** 两个规则集之间按规则名比较的差异：changed 为新增或定义有变化且仍开启的规则，removed 为已删除或已关闭的规则。 */
+    public record RuleChanges(Set<String> changed, Set<String> removed) {
+        public boolean isEmpty() {
+            return changed.isEmpty() && removed.isEmpty();
+        }
+
+        public Set<String> names() {
+            Set<String> names = new LinkedHashSet<>(changed);
+            names.addAll(removed);
+            return names;
+        }
+    }
+
+    private CompiledRuleSet(Map<String, Object[][]> source, long version, List<CompiledRule> rules, CompiledRuleSet previous, boolean dryRun) {
+        this.source = source;
+        this.dryRun = dryRun;
+        this.version = version;
+        this.rules = rules;
+        this.definitions = definitionsByName(rules);
+        this.ruleVersions = versionsByName(definitions, version, previous);
+        this.effectiveEngines = new HashMap<>();
+        for (CompiledRule rule : rules) {
+            effectiveEngines.putIfAbsent(rule.key(), rule.effectiveEngine());
+        }
+        this.requestView = buildView(rules, "request");
+        this.responseView = buildView(rules, "response");
+        this.anyView = buildView(rules, "any");
+    }
+
+    /** 当前规则集；Config.globalRules 被整体替换（如重新加载配置）后自动重建。 */
+    public static CompiledRuleSet current() {
+        CompiledRuleSet ruleSet = current;
+        if (ruleSet == null || ruleSet.source != Config.globalRules) {
+            ruleSet = publish(Config.globalRules);
+        }
+        return ruleSet;
+    }
+
+    /** 由规则表编译新的规则集并替换当前实例，随后通知已注册的监听器。 */
+    public static synchronized CompiledRuleSet publish(Map<String, Object[][]> source) {
+        CompiledRuleSet ruleSet = compile(source);
+        current = ruleSet;
+        for (Consumer<CompiledRuleSet> listener : publishListeners) {
+            listener.accept(ruleSet);
+        }
+        return ruleSet;
+    }
+
+    /** 监听器在发布线程中同步调用，只应做登记或调度等轻量操作。 */
+    public static void addPublishListener(Consumer<CompiledRuleSet> listener) {
+        publishListeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    public static void removePublishListener(Consumer<CompiledRuleSet> listener) {
+        publishListeners.remove(listener);
+    }
+
+    static CompiledRuleSet compile(Map<String, Object[][]> source) {
+        return compile(source, current);
+    }
+
+    static CompiledRuleSet compile(Map<String, Object[][]> source, CompiledRuleSet previous) {
+        return compile(source, previous, false);
+    }
+
+    /**
+     * 规则编辑器试运行用的单条规则集：规则按已开启处理，不发布为当前规则集；
+     * 匹配时不计入规则运行统计，超时也不会隔离正式规则。
+     */
+    public static CompiledRuleSet dryRun(Object[] row) {
+        Object[] draft = Arrays.copyOf(row, row.length);
+        draft[0] = true;
+        Map<String, Object[][]> source = new LinkedHashMap<>();
+        source.put("", new Object[][]{draft});
+        return compile(source, null, true);
+    }
+
+    private static CompiledRuleSet compile(Map<String, Object[][]> source, CompiledRuleSet previous, boolean dryRun) {
+        List<CompiledRule> rules = new ArrayList<>();
+        synchronized (source) {
+            source.forEach((group, ruleRows) -> {
+                if (ruleRows == null) {
+                    return;
+                }
+                for (Object[] row : ruleRows) {
+                    if (row != null) {
+                        rules.add(compileRule(rules.size(), group, row));
+                    }
+                }
+            });
+        }
+        return new CompiledRuleSet(source, versions.incrementAndGet(), Collections.unmodifiableList(rules), previous, dryRun);
+    }
+
+    /**
+     * 只包含指定名称且已开启规则的子集，分组与组内顺序不变，用于只重跑部分规则。
+     * 子集不会发布为当前规则集，规则版本沿用本规则集。
+     */
+    public CompiledRuleSet restrictTo(Collection<String> names) {
+        Map<String, Object[][]> subset = new LinkedHashMap<>();
+        for (CompiledRule rule : rules) {
+            if (rule.loaded() && names.contains(rule.name())) {
+                subset.merge(rule.group(), new Object[][]{row(rule)}, CompiledRuleSet::concat);
+            }
+        }
+        return compile(subset, this);
+    }
+
+    /** 相对 baseline 的规则变化；baseline 为空时当前所有已开启的规则都视为新增。 */
+    public RuleChanges changesSince(CompiledRuleSet baseline) {
+        Map<String, String> before = baseline == null ? Collections.emptyMap() : baseline.definitions;
+        Set<String> changed = new LinkedHashSet<>();
+        definitions.forEach((name, definition) -> {
+            if (!definition.equals(before.get(name))) {
+                changed.add(name);
+            }
+        });
+        Set<String> removed = new LinkedHashSet<>(before.keySet());
+        removed.removeAll(definitions.keySet());
+        return new RuleChanges(Collections.unmodifiableSet(changed), Collections.unmodifiableSet(removed));
+    }
+
+    /** 规则名当前定义首次出现时的规则集版本，不存在或未开启时返回 0。 */
+    public long ruleVersion(String name) {
+        return ruleVersions.getOrDefault(name, 0L);
+    }
+
+    /** 规则实际执行的引擎（见 {@link CompiledRule#effectiveEngine()}），规则不在本规则集中时返回空字符串。 */
+    public String effectiveEngine(String ruleKey) {
+        return effectiveEngines.getOrDefault(ruleKey, "");
+    }
+
+    /** 已开启规则的名称。 */
+    public Set<String> ruleNames() {
+        return definitions.keySet();
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public List<CompiledRule> rules() {
+        return rules;
+    }
+
+    /** 构建各消息类型下全部分桶的合并自动机与字面量预过滤。 */
+    void warmUp() {
+        for (View view : List.of(requestView, responseView, anyView)) {
+            view.dfaBuckets().forEach(Bucket::combinedAutomaton);
+            view.nfaBuckets().forEach(Bucket::literalPrefilter);
+        }
+    }
+
+    /** 依次给出规则集用到的 DFA 自动机（以编译时的表达式为键）与已构建的合并自动机。 */
+    void forEachAutomaton(BiConsumer<String, RunAutomaton> automata, BiConsumer<List<String>, MultiRuleAutomaton> combined) {
+        for (CompiledRule rule : rules) {
+            if (rule.firstAutomaton() != null) {
+                automata.accept(rule.sensitive() ? rule.firstRegex() : rule.firstRegex().toLowerCase(), rule.firstAutomaton());
+            }
+            if (rule.secondAutomaton() != null) {
+                automata.accept(rule.secondRegex(), rule.secondAutomaton());
+            }
+            if (rule.spanAutomaton() != null) {
+                automata.accept(rule.spanRegex(), rule.spanAutomaton());
+                automata.accept(SPAN_START_KEY + rule.spanRegex(), rule.spanStartAutomaton());
+            }
+        }
+        for (View view : List.of(requestView, responseView, anyView)) {
+            for (Bucket bucket : view.dfaBuckets()) {
+                MultiRuleAutomaton automaton = bucket.combinedAutomaton;
+                if (automaton != null) {
+                    combined.accept(bucket.regexes, automaton);
+                }
+            }
+        }
+    }
+
+    public View view(String type) {
+        return switch (type) {
+            case "request" -> requestView;
+            case "response" -> responseView;
+            case "any" -> anyView;
+            default -> buildView(rules, type);
+        };
+    }
+
+    private static Map<String, String> definitionsByName(List<CompiledRule> rules) {
+        Map<String, StringBuilder> builders = new LinkedHashMap<>();
+        for (CompiledRule rule : rules) {
+            if (!rule.loaded()) {
+                continue;
+            }
+            builders.computeIfAbsent(rule.name(), k -> new StringBuilder())
+                    .append(String.join("\u0000", rule.firstRegex(), rule.secondRegex(), rule.format(), rule.color(),
+                            rule.scope(), rule.engine(), String.valueOf(rule.sensitive())))
+                    .append('\n');
+        }
+        Map<String, String> definitions = new LinkedHashMap<>();
+        builders.forEach((name, builder) -> definitions.put(name, builder.toString()));
+        return Collections.unmodifiableMap(definitions);
+    }
+
+    private static Map<String, Long> versionsByName(Map<String, String> definitions, long version, CompiledRuleSet previous) {
+        Map<String, Long> ruleVersions = new LinkedHashMap<>();
+        definitions.forEach((name, definition) -> {
+            boolean unchanged = previous != null && definition.equals(previous.definitions.get(name));
+            ruleVersions.put(name, unchanged ? previous.ruleVersion(name) : version);
+        });
+        return Collections.unmodifiableMap(ruleVersions);
+    }
+
+    private static Object[] row(CompiledRule rule) {
+        return new Object[]{rule.loaded(), rule.name(), rule.firstRegex(), rule.secondRegex(), rule.format(), rule.color(),
+                rule.scope(), rule.engine(), rule.sensitive()};
+    }
+
+    private static Object[][] concat(Object[][] first, Object[][] second) {
+        Object[][] merged = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, merged, first.length, second.length);
+        return merged;
+    }
+
+    private static CompiledRule compileRule(int index, String group, Object[] row) {
+        boolean loaded = (Boolean) row[0];
+        String name = row[1].toString();
+        String firstRegex = row[2].toString();
+        String secondRegex = row[3].toString();
+        String format = row[4].toString();
+        String color = row[5].toString();
+        String scope = row[6].toString();
+        String engine = row[7].toString();
+        boolean sensitive = (Boolean) row[8];
+
+        Pattern firstPattern = null;
+        Pattern secondPattern = null;
+        RunAutomaton firstAutomaton = null;
+        RunAutomaton secondAutomaton = null;
+        String spanRegex = null;
+        RunAutomaton spanAutomaton = null;
+        RunAutomaton spanStartAutomaton = null;
+        RuntimeException compileError = null;
+        try {
+            if ("nfa".equals(engine)) {
+                firstPattern = pattern(firstRegex, sensitive);
+                secondPattern = secondRegex.isEmpty() ? null : pattern(secondRegex, sensitive);
+                spanRegex = DfaTranslation.of(firstRegex, sensitive);
+                spanAutomaton = spanRegex == null ? null : spanAutomaton(spanRegex);
+                spanStartAutomaton = spanAutomaton == null ? null : spanStartAutomaton(spanRegex, spanAutomaton);
+                spanAutomaton = spanStartAutomaton == null ? null : spanAutomaton;
+                spanRegex = spanAutomaton == null ? null : spanRegex;
+            } else {
+                // DFA 不区分大小写时规则与内容都转为小写后匹配，二次匹配保持原样
+                firstAutomaton = automaton(sensitive ? firstRegex : firstRegex.toLowerCase());
+                secondAutomaton = secondRegex.isEmpty() ? null : automaton(secondRegex);
+            }
+        } catch (RuntimeException e) {
+            compileError = e;
+        }
+        int maxMatchLength = compileError != null ? MaxMatchLength.UNBOUNDED
+                : firstPattern != null ? MaxMatchLength.of(firstRegex) : MaxMatchLength.of(firstAutomaton);
+        // 翻译后的语言包含原表达式的全部匹配，两者的上界取较小者
+        if (spanAutomaton != null) {
+            maxMatchLength = Math.min(maxMatchLength, MaxMatchLength.of(spanAutomaton));
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        Matcher matcher = FORMAT_INDEX_PATTERN.matcher(format);
+        while (matcher.find()) {
+            indexes.add(Integer.valueOf(matcher.group(1)));
+        }
+
+        return new CompiledRule(index, RuleGuard.ruleKey(name, firstRegex, secondRegex, engine, sensitive), group, loaded, name, firstRegex, secondRegex, format, color,
+                Arrays.asList(Config.color).indexOf(color), scope, engine, sensitive, Target.of(scope), firstPattern, secondPattern, firstAutomaton, secondAutomaton, spanRegex, spanAutomaton, spanStartAutomaton,
+                indexes.stream().mapToInt(Integer::intValue).toArray(), normalizeFormatIndexes(format), maxMatchLength, compileError);
+    }
+
+    private static View buildView(List<CompiledRule> rules, String type) {
+        Map<String, List<CompiledRule>> groups = new LinkedHashMap<>();
+        Map<String, List<CompiledRule>> dfaBuckets = new LinkedHashMap<>();
+        Map<Target, List<CompiledRule>> nfaBuckets = new LinkedHashMap<>();
+        for (CompiledRule rule : rules) {
+            List<CompiledRule> groupRules = groups.computeIfAbsent(rule.group(), k -> new ArrayList<>());
+            if (!rule.appliesTo(type)) {
+                continue;
+            }
+            groupRules.add(rule);
+            if (rule.target() == null) {
+                continue;
+            }
+            if (rule.isNfa()) {
+                nfaBuckets.computeIfAbsent(rule.target(), k -> new ArrayList<>()).add(rule);
+            } else {
+                dfaBuckets.computeIfAbsent(rule.target() + "|" + rule.sensitive(), k -> new ArrayList<>()).add(rule);
+            }
+        }
+
+        List<List<CompiledRule>> groupViews = new ArrayList<>(groups.size());
+        groups.values().forEach(groupRules -> groupViews.add(List.copyOf(groupRules)));
+
+        List<Bucket> dfaBucketViews = new ArrayList<>();
+        for (List<CompiledRule> bucketRules : dfaBuckets.values()) {
+            // 只有一条 DFA 规则时合并扫描没有收益，直接逐条匹配
+            if (bucketRules.size() < 2) {
+                continue;
+            }
+            List<String> regexes = new ArrayList<>(bucketRules.size());
+            boolean sensitive = bucketRules.get(0).sensitive();
+            for (CompiledRule rule : bucketRules) {
+                regexes.add(sensitive ? rule.firstRegex() : rule.firstRegex().toLowerCase());
+            }
+            dfaBucketViews.add(new Bucket(bucketRules.get(0).target(), sensitive, List.copyOf(bucketRules), List.copyOf(regexes)));
+        }
+
+        List<Bucket> nfaBucketViews = new ArrayList<>();
+        nfaBuckets.forEach((target, bucketRules) -> {
+            List<String> regexes = new ArrayList<>(bucketRules.size());
+            for (CompiledRule rule : bucketRules) {
+                regexes.add(rule.firstRegex());
+            }
+            nfaBucketViews.add(new Bucket(target, true, List.copyOf(bucketRules), List.copyOf(regexes)));
+        });
+
+        return new View(List.copyOf(groupViews), List.copyOf(dfaBucketViews), List.copyOf(nfaBucketViews));
+    }
+
+    private static Pattern pattern(String regex, boolean sensitive) {
+        return patternCache.computeIfAbsent(regex + "\u0000" + sensitive,
+                k -> Pattern.compile(regex, sensitive ? 0 : Pattern.CASE_INSENSITIVE));
+    }
+
+    private static RunAutomaton automaton(String regex) {
+        return automatonCache.computeIfAbsent(regex, k -> {
+            RunAutomaton stored = AutomatonStore.takeAutomaton(regex);
+            return stored != null ? stored : new RunAutomaton(new RegExp(regex).toAutomaton(), true);
+        });
+    }
+
+    /** 状态过多或接受空串（每个位置都是起点）的自动机不值得用来定位，返回 null。 */
+    private static RunAutomaton spanAutomaton(String regex) {
+        try {
+            RunAutomaton automaton = automaton(regex);
+            if (automaton.getSize() > MAX_SPAN_STATES || automaton.isAccept(automaton.getInitialState())) {
+                return null;
+            }
+            return automaton;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** 起点自动机与正向自动机一样按表达式缓存，键加前缀以免与同名表达式冲突；超过状态上限时返回 null，并记住不再重试。 */
+    private static RunAutomaton spanStartAutomaton(String regex, RunAutomaton spanAutomaton) {
+        String key = SPAN_START_KEY + regex;
+        RunAutomaton cached = automatonCache.get(key);
+        if (cached != null || oversizedSpanStarts.contains(key)) {
+            return cached;
+        }
+        RunAutomaton automaton = AutomatonStore.takeAutomaton(key);
+        if (automaton == null) {
+            automaton = MatchStartAutomaton.build(spanAutomaton, MAX_SPAN_START_STATES);
+        }
+        if (automaton == null) {
+            oversizedSpanStarts.add(key);
+            return null;
+        }
+        automatonCache.putIfAbsent(key, automaton);
+        return automaton;
+    }
+
+    private static MultiRuleAutomaton combinedAutomaton(List<String> regexes) {
+        MultiRuleAutomaton stored = AutomatonStore.takeCombined(regexes);
+        return stored != null ? stored : MultiRuleAutomaton.compile(regexes);
+    }
+
+    private static <T> T cached(Map<List<String>, T> cache, List<String> regexes, java.util.function.Function<List<String>, T> compiler) {
+        T value = cache.get(regexes);
+        if (value != null) {
+            return value;
+        }
+        if (cache.size() >= MAX_CACHED_COMBINED) {
+            cache.clear();
+        }
+        return cache.computeIfAbsent(regexes, compiler);
+    }
+
+    /** 按出现顺序把 {n} 重写为 {0}、{1}…，与 formatIndexes 的参数顺序对应。 */
+    private static String normalizeFormatIndexes(String format) {
+        Matcher matcher = FORMAT_INDEX_PATTERN.matcher(format);
+        StringBuilder builder = new StringBuilder(format.length());
+        int count = 0;
+        while (matcher.find()) {
+            matcher.appendReplacement(builder, Matcher.quoteReplacement("{" + count++ + "}"));
+        }
+        matcher.appendTail(builder);
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package hae.instances.http.utils;
+
+/**
+ * 带截止时间的 CharSequence：java.util.regex 回溯时会反复调用 charAt，
+ * 每读取一定次数检查一次截止时间与线程中断状态，超时即抛出 {@link RuleTimeoutException} 中止本次匹配。
+ */
+final class DeadlineCharSequence implements CharSequence {
+    // 每 4096 次读取检查一次时间，System.nanoTime 的开销可忽略
+    private static final int CHECK_INTERVAL_MASK = 0xFFF;
+    private final CharSequence content;
+    private final long deadlineNanos;
+    private int reads;
+
+    DeadlineCharSequence(CharSequence content, long deadlineNanos) {
+        this.content = content;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /** 同一截止时间下包装另一段内容，用于二次匹配。 */
+    DeadlineCharSequence wrap(CharSequence other) {
+        return new DeadlineCharSequence(other, deadlineNanos);
+    }
+
+    @Override
+    public int length() {
+        return content.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if ((++reads & CHECK_INTERVAL_MASK) == 0) {
+            checkDeadline();
+        }
+        return content.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new DeadlineCharSequence(content.subSequence(start, end), deadlineNanos);
+    }
+
+    @Override
+    public String toString() {
+        return content.toString();
+    }
+
+    private void checkDeadline() {
+        if (System.nanoTime() - deadlineNanos > 0 || Thread.currentThread().isInterrupted()) {
+            throw new RuleTimeoutException();
+        }
+    }
+}
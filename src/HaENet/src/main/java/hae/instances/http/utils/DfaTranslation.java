@@ -0,0 +1,484 @@
+package hae.instances.http.utils;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+
+/**
+ * 把 java.util.regex 表达式翻译成 dk.brics 语法，供 NFA 规则在确定自动机上定位匹配起点。
+ *
+ * <p>翻译结果接受的语言包含原表达式的全部匹配：^、$、\b 等零宽断言直接去掉，其余写法逐一对应。
+ * 自动机只负责找出可能的匹配起点，实际的匹配、捕获组与惰性量词仍由原表达式在该起点处执行，
+ * 因此多放行的起点只多一次确认，不会改变结果。</p>
+ *
+ * <p>反向引用、环视、固化分组与占有量词改变了匹配语义，\p、\X 等 Unicode 写法与 x、u 等内联标志不做处理，
+ * 大小写不敏感的否定字符类含有字母时无法确定折叠方式，这些情况都返回 null，规则继续只用 NFA。
+ * 无上界量词之后的大计数量词会让确定化的状态数指数增长，同样放弃。</p>
+ */
+final class DfaTranslation {
+    private static final int MAX_COUNTED_AFTER_UNBOUNDED = 16;
+    private static final int MAX_COUNTED_TOTAL = 256;
+    private static final String SURROGATE_PAIR = "[\\\uD800-\\\uDBFF][\\\uDC00-\\\uDFFF]";
+    private static final String LINE_BREAK = "(\\\r\\\n|[\\\n\\\u000B\\\u000C\\\r\\\u0085\\\u2028\\\u2029])";
+
+    private DfaTranslation() {
+    }
+
+    /** 无法等价翻译时返回 null。 */
+    static String of(String regex, boolean sensitive) {
+        if (regex == null || regex.isEmpty()) {
+            return null;
+        }
+
+        try {
+            Parser parser = new Parser(regex, !sensitive);
+            String translated = parser.parseAlternation();
+            return parser.position == regex.length() ? translated : null;
+        } catch (UnsupportedSyntax e) {
+            return null;
+        }
+    }
+
+    private static final class UnsupportedSyntax extends Exception {
+        private UnsupportedSyntax() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** 当前作用域的内联标志，s 与 i 之外的标志不影响翻译结果（m 只作用于已去掉的 ^ 与 $）。 */
+    private record Flags(boolean insensitive, boolean dotAll) {
+    }
+
+    private static final class Parser {
+        private final String regex;
+        private final Deque<Flags> scopes = new ArrayDeque<>();
+        private int position;
+        private boolean sawUnbounded;
+        private long countedTotal;
+
+        private Parser(String regex, boolean insensitive) {
+            this.regex = regex;
+            scopes.push(new Flags(insensitive, false));
+        }
+
+        private Flags flags() {
+            return scopes.peek();
+        }
+
+        private String parseAlternation() throws UnsupportedSyntax {
+            StringBuilder result = new StringBuilder(parseConcat());
+            while (position < regex.length() && regex.charAt(position) == '|') {
+                position++;
+                result.append('|').append(parseConcat());
+            }
+            return result.toString();
+        }
+
+        private String parseConcat() throws UnsupportedSyntax {
+            StringBuilder result = new StringBuilder();
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+                String atom = parseAtom();
+                result.append(parseQuantifier(atom));
+            }
+            return result.isEmpty() ? "()" : result.toString();
+        }
+
+        /** 返回翻译后的原子，零宽断言返回 null。 */
+        private String parseAtom() throws UnsupportedSyntax {
+            char c = regex.charAt(position++);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    return charClass(parseCharClass());
+                case '.':
+                    return dot();
+                case '^':
+                case '$':
+                    return null;
+                case '\\':
+                    return parseEscape();
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw new UnsupportedSyntax();
+                default:
+                    return literal(c);
+            }
+        }
+
+        private String parseGroup() throws UnsupportedSyntax {
+            Flags outer = flags();
+            if (regex.startsWith("?", position)) {
+                position++;
+                if (regex.startsWith(":", position)) {
+                    position++;
+                } else if (regex.startsWith("<", position) && !regex.startsWith("<=", position) && !regex.startsWith("<!", position)) {
+                    int end = regex.indexOf('>', position);
+                    if (end < 0) {
+                        throw new UnsupportedSyntax();
+                    }
+                    position = end + 1;
+                } else {
+                    // 环视与固化分组都不翻译，只接受 i、s、m 内联标志
+                    Flags flags = parseFlags(outer);
+                    if (regex.startsWith(")", position)) {
+                        position++;
+                        scopes.pop();
+                        scopes.push(flags);
+                        return null;
+                    }
+                    if (!regex.startsWith(":", position)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    position++;
+                    outer = flags;
+                }
+            }
+
+            scopes.push(outer);
+            String inner = parseAlternation();
+            scopes.pop();
+            if (!regex.startsWith(")", position)) {
+                throw new UnsupportedSyntax();
+            }
+            position++;
+            return "(" + inner + ")";
+        }
+
+        private Flags parseFlags(Flags current) throws UnsupportedSyntax {
+            boolean insensitive = current.insensitive();
+            boolean dotAll = current.dotAll();
+            boolean enable = true;
+            int start = position;
+            while (position < regex.length() && "ism-".indexOf(regex.charAt(position)) >= 0) {
+                char flag = regex.charAt(position++);
+                if (flag == '-') {
+                    enable = false;
+                } else if (flag == 'i') {
+                    insensitive = enable;
+                } else if (flag == 's') {
+                    dotAll = enable;
+                }
+            }
+            if (position == start) {
+                throw new UnsupportedSyntax();
+            }
+            return new Flags(insensitive, dotAll);
+        }
+
+        private String parseQuantifier(String atom) throws UnsupportedSyntax {
+            if (position >= regex.length()) {
+                return atom == null ? "" : atom;
+            }
+
+            char c = regex.charAt(position);
+            String quantifier;
+            if (c == '*' || c == '+' || c == '?') {
+                position++;
+                sawUnbounded |= c != '?';
+                quantifier = String.valueOf(c);
+            } else if (c == '{') {
+                int end = regex.indexOf('}', position);
+                if (end < 0 || !regex.substring(position + 1, end).matches("\\d{1,4}(,\\d{0,4})?")) {
+                    throw new UnsupportedSyntax();
+                }
+                String[] bounds = regex.substring(position + 1, end).split(",", -1);
+                int bound = Integer.parseInt(bounds.length > 1 && !bounds[1].isEmpty() ? bounds[1] : bounds[0]);
+                if (sawUnbounded && bound > MAX_COUNTED_AFTER_UNBOUNDED) {
+                    throw new UnsupportedSyntax();
+                }
+                countedTotal += bound;
+                if (countedTotal > MAX_COUNTED_TOTAL) {
+                    throw new UnsupportedSyntax();
+                }
+                sawUnbounded |= bounds.length > 1 && bounds[1].isEmpty();
+                quantifier = regex.substring(position, end + 1);
+                position = end + 1;
+            } else {
+                return atom == null ? "" : atom;
+            }
+
+            // 惰性量词只影响匹配的选择，由 NFA 确认时处理；占有量词改变语言
+            if (position < regex.length() && regex.charAt(position) == '+') {
+                throw new UnsupportedSyntax();
+            }
+            if (position < regex.length() && regex.charAt(position) == '?') {
+                position++;
+            }
+            return atom == null ? "" : "(" + atom + ")" + quantifier;
+        }
+
+        private String parseEscape() throws UnsupportedSyntax {
+            if (position >= regex.length()) {
+                throw new UnsupportedSyntax();
+            }
+
+            char c = regex.charAt(position++);
+            switch (c) {
+                case 'b':
+                case 'B':
+                    if (regex.startsWith("{", position)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    return null;
+                case 'A':
+                case 'z':
+                case 'Z':
+                    return null;
+                case 'G':
+                    // 确认时匹配从候选起点开始，\G 的位置与逐段 find 不同
+                    throw new UnsupportedSyntax();
+                case 'R':
+                    return LINE_BREAK;
+                case 'Q': {
+                    int end = regex.indexOf("\\E", position);
+                    String quoted = regex.substring(position, end < 0 ? regex.length() : end);
+                    position = end < 0 ? regex.length() : end + 2;
+                    StringBuilder result = new StringBuilder();
+                    for (int i = 0; i < quoted.length(); i++) {
+                        result.append(literal(quoted.charAt(i)));
+                    }
+                    return "(" + (result.isEmpty() ? "()" : result) + ")";
+                }
+                default:
+                    BitSet predefined = predefinedClass(c);
+                    if (predefined != null) {
+                        return charClass(predefined, Character.isUpperCase(c));
+                    }
+                    return literal(escapedChar(c));
+            }
+        }
+
+        /** [ 之后的字符类，返回字符集合；是否取反由集合内容体现，交集与嵌套字符类不翻译。 */
+        private ClassSet parseCharClass() throws UnsupportedSyntax {
+            boolean negated = regex.startsWith("^", position);
+            if (negated) {
+                position++;
+            }
+
+            BitSet set = new BitSet(Character.MAX_VALUE + 1);
+            boolean first = true;
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                if (c == ']' && !first) {
+                    position++;
+                    return new ClassSet(set, negated);
+                }
+                if (c == '[' || regex.startsWith("&&", position)) {
+                    throw new UnsupportedSyntax();
+                }
+                first = false;
+
+                int low;
+                position++;
+                if (c == '\\') {
+                    if (position >= regex.length()) {
+                        throw new UnsupportedSyntax();
+                    }
+                    char escape = regex.charAt(position++);
+                    BitSet predefined = predefinedClass(escape);
+                    if (predefined != null) {
+                        if (Character.isUpperCase(escape)) {
+                            // 字符类内的取反预定义类会带入代理对，不翻译
+                            throw new UnsupportedSyntax();
+                        }
+                        set.or(predefined);
+                        continue;
+                    }
+                    low = escapedChar(escape);
+                } else {
+                    low = c;
+                }
+
+                int high = low;
+                if (regex.startsWith("-", position) && position + 1 < regex.length() && regex.charAt(position + 1) != ']') {
+                    position++;
+                    char next = regex.charAt(position++);
+                    if (next == '\\') {
+                        if (position >= regex.length()) {
+                            throw new UnsupportedSyntax();
+                        }
+                        high = escapedChar(regex.charAt(position++));
+                    } else if (next == '[') {
+                        throw new UnsupportedSyntax();
+                    } else {
+                        high = next;
+                    }
+                    if (high < low) {
+                        throw new UnsupportedSyntax();
+                    }
+                }
+                set.set(low, high + 1);
+            }
+            throw new UnsupportedSyntax();
+        }
+
+        private String charClass(ClassSet classSet) throws UnsupportedSyntax {
+            BitSet set = (BitSet) classSet.chars().clone();
+            if (set.get(Character.MIN_SURROGATE, Character.MAX_SURROGATE + 1).cardinality() > 0) {
+                throw new UnsupportedSyntax();
+            }
+            if (flags().insensitive()) {
+                if (classSet.negated() && hasAsciiLetter(set)) {
+                    throw new UnsupportedSyntax();
+                }
+                foldAsciiCase(set);
+            }
+            return charClass(set, classSet.negated());
+        }
+
+        /** 取反的集合还要接受代理对，与 java.util.regex 按码点匹配一致。 */
+        private String charClass(BitSet set, boolean negated) throws UnsupportedSyntax {
+            BitSet chars = set;
+            if (negated) {
+                chars = (BitSet) set.clone();
+                chars.flip(0, Character.MAX_VALUE + 1);
+            }
+            if (chars.isEmpty()) {
+                throw new UnsupportedSyntax();
+            }
+
+            StringBuilder result = new StringBuilder("[");
+            for (int low = chars.nextSetBit(0); low >= 0; ) {
+                int high = chars.nextClearBit(low) - 1;
+                result.append('\\').append((char) low);
+                if (high > low) {
+                    result.append("-\\").append((char) high);
+                }
+                low = high >= Character.MAX_VALUE ? -1 : chars.nextSetBit(high + 1);
+            }
+            result.append(']');
+            return negated ? "(" + result + "|" + SURROGATE_PAIR + ")" : result.toString();
+        }
+
+        private String dot() throws UnsupportedSyntax {
+            BitSet lineTerminators = new BitSet(Character.MAX_VALUE + 1);
+            if (!flags().dotAll()) {
+                for (char c : new char[]{'\n', '\r', '\u0085', '\u2028', '\u2029'}) {
+                    lineTerminators.set(c);
+                }
+            }
+            return charClass(lineTerminators, true);
+        }
+
+        private String literal(int c) throws UnsupportedSyntax {
+            if (Character.isSurrogate((char) c)) {
+                throw new UnsupportedSyntax();
+            }
+            if (flags().insensitive() && isAsciiLetter(c)) {
+                return "[\\" + (char) Character.toLowerCase(c) + "\\" + (char) Character.toUpperCase(c) + "]";
+            }
+            return "\\" + (char) c;
+        }
+
+        /** 转义后表示单个字符的写法；反向引用、\p、\x{...} 等返回前已抛出。 */
+        private int escapedChar(char c) throws UnsupportedSyntax {
+            switch (c) {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 'f':
+                    return '\f';
+                case 'a':
+                    return '\u0007';
+                case 'e':
+                    return '\u001B';
+                case '0':
+                    return digits(8, 3, 1);
+                case 'x':
+                    if (regex.startsWith("{", position)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    return digits(16, 2, 2);
+                case 'u':
+                    return digits(16, 4, 4);
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    return c;
+            }
+        }
+
+        private int digits(int radix, int max, int min) throws UnsupportedSyntax {
+            int value = 0;
+            int count = 0;
+            while (count < max && position < regex.length() && Character.digit(regex.charAt(position), radix) >= 0) {
+                int next = value * radix + Character.digit(regex.charAt(position), radix);
+                if (radix == 8 && next > 0377) {
+                    break;
+                }
+                value = next;
+                position++;
+                count++;
+            }
+            if (count < min) {
+                throw new UnsupportedSyntax();
+            }
+            return value;
+        }
+    }
+
+    private record ClassSet(BitSet chars, boolean negated) {
+    }
+
+    /** \d、\w、\s、\h、\v 及其大写取反形式对应的字符集合（取反前），其他字符返回 null。 */
+    private static BitSet predefinedClass(char c) {
+        BitSet set = new BitSet(Character.MAX_VALUE + 1);
+        switch (Character.toLowerCase(c)) {
+            case 'd' -> set.set('0', '9' + 1);
+            case 'w' -> {
+                set.set('a', 'z' + 1);
+                set.set('A', 'Z' + 1);
+                set.set('0', '9' + 1);
+                set.set('_');
+            }
+            case 's' -> {
+                set.set('\t', '\r' + 1);
+                set.set(' ');
+            }
+            case 'h' -> {
+                for (char space : new char[]{' ', '\t', '\u00A0', '\u1680', '\u180E', '\u202F', '\u205F', '\u3000'}) {
+                    set.set(space);
+                }
+                set.set('\u2000', '\u200A' + 1);
+            }
+            case 'v' -> {
+                set.set('\n', '\r' + 1);
+                set.set('\u0085');
+                set.set('\u2028', '\u2029' + 1);
+            }
+            default -> {
+                return null;
+            }
+        }
+        return set;
+    }
+
+    private static boolean isAsciiLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean hasAsciiLetter(BitSet set) {
+        return set.get('a', 'z' + 1).cardinality() > 0 || set.get('A', 'Z' + 1).cardinality() > 0;
+    }
+
+    private static void foldAsciiCase(BitSet set) {
+        for (char c = 'a'; c <= 'z'; c++) {
+            char upper = Character.toUpperCase(c);
+            if (set.get(c) || set.get(upper)) {
+                set.set(c);
+                set.set(upper);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package hae.instances.http.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 同一作用域下 NFA 规则的必需字面量预过滤：所有规则的字面量构建成一个 Aho-Corasick 自动机，
+ * 扫描内容一次即可知道哪些规则的字面量出现过。字面量缺失的规则不可能匹配，正则无需执行。
+ *
+ * <p>扫描时按 ASCII 折叠大小写，对大小写敏感的规则只会多放行，不会漏掉匹配；
+ * 提取不到字面量的规则不参与过滤，始终视为可能命中。</p>
+ */
+final class LiteralPrefilter {
+    private final boolean[] filtered;
+    private final char[] charClasses;
+    private final int classCount;
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int filteredCount;
+
+    private LiteralPrefilter(boolean[] filtered, char[] charClasses, int classCount, int[] transitions, int[][] outputs) {
+        this.filtered = filtered;
+        this.charClasses = charClasses;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.outputs = outputs;
+        int count = 0;
+        for (boolean ruleFiltered : filtered) {
+            if (ruleFiltered) {
+                count++;
+            }
+        }
+        this.filteredCount = count;
+    }
+
+    static LiteralPrefilter compile(List<String> regexes) {
+        boolean[] filtered = new boolean[regexes.size()];
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        children.add(new HashMap<>());
+        nodeOutputs.add(new ArrayList<>());
+
+        // 字面量中出现的字符各占一个字符类，其余字符统一归入 0 号类
+        char[] charClasses = new char[Character.MAX_VALUE + 1];
+        int classCount = 1;
+        for (int rule = 0; rule < regexes.size(); rule++) {
+            Set<String> literals = RequiredLiterals.of(regexes.get(rule));
+            if (literals.isEmpty()) {
+                continue;
+            }
+
+            filtered[rule] = true;
+            for (String literal : literals) {
+                int node = 0;
+                for (int i = 0; i < literal.length(); i++) {
+                    char c = literal.charAt(i);
+                    if (charClasses[c] == 0) {
+                        charClasses[c] = (char) classCount++;
+                    }
+                    Integer next = children.get(node).get(c);
+                    if (next == null) {
+                        next = children.size();
+                        children.add(new HashMap<>());
+                        nodeOutputs.add(new ArrayList<>());
+                        children.get(node).put(c, next);
+                    }
+                    node = next;
+                }
+                if (!nodeOutputs.get(node).contains(rule)) {
+                    nodeOutputs.get(node).add(rule);
+                }
+            }
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            charClasses[c] = charClasses[RequiredLiterals.foldCase(c)];
+        }
+
+        int nodeCount = children.size();
+        int[] transitions = new int[nodeCount * classCount];
+        int[] failures = new int[nodeCount];
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        for (Map.Entry<Character, Integer> entry : children.get(0).entrySet()) {
+            transitions[charClasses[entry.getKey()]] = entry.getValue();
+            pending.add(entry.getValue());
+        }
+
+        // 按广度优先补全失败转移，得到可直接查表的确定自动机
+        while (!pending.isEmpty()) {
+            int node = pending.poll();
+            List<Integer> inherited = nodeOutputs.get(failures[node]);
+            for (Integer rule : inherited) {
+                if (!nodeOutputs.get(node).contains(rule)) {
+                    nodeOutputs.get(node).add(rule);
+                }
+            }
+
+            System.arraycopy(transitions, failures[node] * classCount, transitions, node * classCount, classCount);
+            for (Map.Entry<Character, Integer> entry : children.get(node).entrySet()) {
+                int child = entry.getValue();
+                int classIndex = charClasses[entry.getKey()];
+                failures[child] = transitions[failures[node] * classCount + classIndex];
+                transitions[node * classCount + classIndex] = child;
+                pending.add(child);
+            }
+        }
+
+        int[][] outputs = new int[nodeCount][];
+        for (int node = 0; node < nodeCount; node++) {
+            List<Integer> rules = nodeOutputs.get(node);
+            outputs[node] = rules.isEmpty() ? null : rules.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        return new LiteralPrefilter(filtered, charClasses, classCount, transitions, outputs);
+    }
+
+    int ruleCount() {
+        return filtered.length;
+    }
+
+    /** 规则是否有可用的必需字面量。 */
+    boolean isFiltered(int rule) {
+        return filtered[rule];
+    }
+
+    /** 返回每条规则是否可能命中：字面量出现过或不参与过滤时为 true。 */
+    boolean[] scan(CharSequence content) {
+        boolean[] candidates = new boolean[filtered.length];
+        for (int rule = 0; rule < filtered.length; rule++) {
+            candidates[rule] = !filtered[rule];
+        }
+        if (filteredCount == 0) {
+            return candidates;
+        }
+
+        int remaining = filteredCount;
+        int state = 0;
+        int length = content.length();
+        for (int i = 0; i < length && remaining > 0; i++) {
+            state = transitions[state * classCount + charClasses[content.charAt(i)]];
+            int[] rules = outputs[state];
+            if (rules != null) {
+                for (int rule : rules) {
+                    if (!candidates[rule]) {
+                        candidates[rule] = true;
+                        remaining--;
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+}
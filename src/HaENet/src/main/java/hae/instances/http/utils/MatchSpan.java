@@ -0,0 +1,7 @@
+package hae.instances.http.utils;
+
+/**
+ * 一处匹配在原始消息中的位置：type 为 request/response/any，start、end 为完整消息内的字符偏移（Latin-1 下即字节偏移）。
+ */
+public record MatchSpan(String type, int start, int end) {
+}
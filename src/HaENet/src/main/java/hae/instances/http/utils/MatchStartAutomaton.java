@@ -0,0 +1,113 @@
+package hae.instances.http.utils;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.RunAutomaton;
+import dk.brics.automaton.State;
+import dk.brics.automaton.Transition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由一级表达式的自动机构造的“匹配起点”自动机，供 NFA 规则在一个窗口内一次找出全部可能的匹配起点。
+ *
+ * <p>自窗口末尾向前逐字符扫描：读到位置 s 时所处的状态记录正向自动机中哪些状态能在窗口内走到接受状态，
+ * 包含初始状态即说明 s 处存在以 s 开头、在窗口内结束的匹配。这等价于“任意前缀 + 反转表达式”的确定自动机，
+ * 但直接在正向自动机的前驱表上做子集构造，状态数超过上限时放弃，不依赖 dk.brics 的确定化。</p>
+ *
+ * <p>结果仍是 {@link RunAutomaton}，可随其他自动机一起写入 {@link AutomatonStore}。</p>
+ */
+final class MatchStartAutomaton {
+    private MatchStartAutomaton() {
+    }
+
+    /** 构造 forward 的起点自动机，状态数超过 stateLimit 时返回 null。 */
+    static RunAutomaton build(RunAutomaton forward, int stateLimit) {
+        char[] points = forward.getCharIntervals();
+        int size = forward.getSize();
+
+        BitSet accepting = new BitSet(size);
+        for (int state = 0; state < size; state++) {
+            if (forward.isAccept(state)) {
+                accepting.set(state);
+            }
+        }
+
+        // 每个字符分类下各状态的前驱，反向扫描一个字符即把当前集合映射为其前驱集合
+        int[][][] predecessors = new int[points.length][][];
+        for (int classIndex = 0; classIndex < points.length; classIndex++) {
+            int[] counts = new int[size];
+            int[] targets = new int[size];
+            for (int state = 0; state < size; state++) {
+                targets[state] = forward.step(state, points[classIndex]);
+                if (targets[state] >= 0) {
+                    counts[targets[state]]++;
+                }
+            }
+            int[][] classPredecessors = new int[size][];
+            for (int state = 0; state < size; state++) {
+                classPredecessors[state] = new int[counts[state]];
+                counts[state] = 0;
+            }
+            for (int state = 0; state < size; state++) {
+                int target = targets[state];
+                if (target >= 0) {
+                    classPredecessors[target][counts[target]++] = state;
+                }
+            }
+            predecessors[classIndex] = classPredecessors;
+        }
+
+        // 尚未读入字符时只有接受状态本身满足条件；表达式不接受空串，因此初始状态不在其中
+        List<BitSet> sets = new ArrayList<>();
+        List<State> states = new ArrayList<>();
+        Map<BitSet, Integer> setIds = new HashMap<>();
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        sets.add(accepting);
+        states.add(new State());
+        setIds.put(accepting, 0);
+        pending.add(0);
+
+        int initial = forward.getInitialState();
+        while (!pending.isEmpty()) {
+            int setId = pending.poll();
+            BitSet set = sets.get(setId);
+            State state = states.get(setId);
+            state.setAccept(set.get(initial));
+            for (int classIndex = 0; classIndex < points.length; classIndex++) {
+                BitSet next = (BitSet) accepting.clone();
+                int[][] classPredecessors = predecessors[classIndex];
+                for (int target = set.nextSetBit(0); target >= 0; target = set.nextSetBit(target + 1)) {
+                    for (int predecessor : classPredecessors[target]) {
+                        next.set(predecessor);
+                    }
+                }
+
+                Integer nextId = setIds.get(next);
+                if (nextId == null) {
+                    if (sets.size() >= stateLimit) {
+                        return null;
+                    }
+                    nextId = sets.size();
+                    sets.add(next);
+                    states.add(new State());
+                    setIds.put(next, nextId);
+                    pending.add(nextId);
+                }
+
+                char max = classIndex + 1 < points.length ? (char) (points[classIndex + 1] - 1) : Character.MAX_VALUE;
+                state.addTransition(new Transition(points[classIndex], max, states.get(nextId)));
+            }
+        }
+
+        Automaton automaton = new Automaton();
+        automaton.setInitialState(states.get(0));
+        automaton.setDeterministic(true);
+        automaton.minimize();
+        return new RunAutomaton(automaton, true);
+    }
+}
@@ -0,0 +1,111 @@
+package hae.instances.http.utils;
+
+import hae.Config;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 规则匹配专用的 ForkJoin 线程池。正则工作线程、Burp 的 HTTP 线程与编辑器线程提交的消息都在这里执行，
+ * 一条消息按 (匹配范围, 规则分桶) 拆成子任务，分桶内规则较多且内容较大时继续对半拆分，空闲线程窃取其他消息的子任务。
+ * 线程池与 JVM 公共 ForkJoinPool 隔离，Burp 自身与其他扩展的并行流不会与匹配争抢线程。
+ *
+ * <p>并行度为 0 时取 CPU 核数。调整并行度时换用新线程池，旧线程池执行完已提交的任务后退出。</p>
+ */
+public final class MatchingEngine {
+    private static final Object lock = new Object();
+    private static volatile ForkJoinPool pool;
+    private static volatile int parallelism = resolve(Config.MatchingThreads);
+
+    private MatchingEngine() {
+    }
+
+    public static void configure(int threads) {
+        int resolved = resolve(threads);
+        synchronized (lock) {
+            if (resolved == parallelism && pool != null) {
+                return;
+            }
+            parallelism = resolved;
+            ForkJoinPool previous = pool;
+            pool = null;
+            if (previous != null) {
+                previous.shutdown();
+            }
+        }
+    }
+
+    /** 卸载扩展时调用，之后再有匹配请求会按当前并行度重新创建线程池。 */
+    public static void shutdown() {
+        synchronized (lock) {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
+    }
+
+    public static int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 在匹配线程池中执行 work 并等待完成，work 内可以用 {@link ForkJoinTask#invokeAll} 拆分子任务。
+     * 调用方已是匹配线程时直接在当前线程执行，子任务照常可被其他线程窃取。
+     */
+    static void invoke(Runnable work) {
+        while (true) {
+            ForkJoinPool current = pool();
+            if (ForkJoinTask.getPool() == current) {
+                work.run();
+                return;
+            }
+            try {
+                current.invoke(ForkJoinTask.adapt(work));
+                return;
+            } catch (RejectedExecutionException e) {
+                // 提交时线程池恰好被替换，换用新线程池重试
+                if (!current.isShutdown()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public static String status() {
+        ForkJoinPool current = pool;
+        if (current == null) {
+            return String.format(Locale.ROOT, "Matching: %d threads (idle)", parallelism);
+        }
+        return String.format(Locale.ROOT, "Matching: %d/%d active, %d queued, %d steals",
+                current.getActiveThreadCount(), current.getParallelism(),
+                current.getQueuedTaskCount() + current.getQueuedSubmissionCount(), current.getStealCount());
+    }
+
+    private static ForkJoinPool pool() {
+        ForkJoinPool current = pool;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (pool == null) {
+                pool = new ForkJoinPool(parallelism, MatchingEngine::newThread, null, false);
+            }
+            return pool;
+        }
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool owner) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(owner);
+        thread.setName("HaE-Rule-Matcher-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static int resolve(int threads) {
+        return threads > 0 ? Math.min(threads, 256) : Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+}
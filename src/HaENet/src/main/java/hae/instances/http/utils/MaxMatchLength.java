@@ -0,0 +1,363 @@
+package hae.instances.http.utils;
+
+import dk.brics.automaton.RunAutomaton;
+
+import java.util.Arrays;
+
+/**
+ * 规则单次匹配可能达到的最大长度（按字符计），分窗扫描时作为相邻窗口的重叠长度。
+ *
+ * <p>java.util.regex 表达式只做保守分析：* 与 + 量词、反向引用、\X 等没有上界的写法，
+ * 以及无法确定语义的写法（如 x 内联标志）都返回 {@link #UNBOUNDED}。
+ * DFA 直接在自动机上计算最长的可接受路径，存在环即没有上界。</p>
+ */
+final class MaxMatchLength {
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private MaxMatchLength() {
+    }
+
+    static int of(String regex) {
+        if (regex == null || regex.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            Parser parser = new Parser(regex);
+            int length = parser.parseAlternation();
+            return parser.position == regex.length() ? length : UNBOUNDED;
+        } catch (UnsupportedSyntax e) {
+            return UNBOUNDED;
+        }
+    }
+
+    static int of(RunAutomaton automaton) {
+        int size = automaton.getSize();
+        char[] points = automaton.getCharIntervals();
+        int[][] successors = new int[size][];
+        for (int state = 0; state < size; state++) {
+            int[] next = new int[points.length];
+            int count = 0;
+            for (char point : points) {
+                int target = automaton.step(state, point);
+                if (target >= 0) {
+                    next[count++] = target;
+                }
+            }
+            successors[state] = Arrays.stream(next, 0, count).distinct().toArray();
+        }
+
+        // 只有能到达接受状态的状态参与计算，死循环不影响上界
+        boolean[] live = new boolean[size];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int state = 0; state < size; state++) {
+                if (live[state]) {
+                    continue;
+                }
+                boolean reachesAccept = automaton.isAccept(state);
+                for (int target : successors[state]) {
+                    reachesAccept |= live[target];
+                }
+                if (reachesAccept) {
+                    live[state] = true;
+                    changed = true;
+                }
+            }
+        }
+
+        int initial = automaton.getInitialState();
+        if (!live[initial]) {
+            return 0;
+        }
+
+        // 迭代深度优先求最长路径，回到仍在栈上的状态说明有环
+        int[] longest = new int[size];
+        byte[] marks = new byte[size];
+        int[] stack = new int[size];
+        int[] edges = new int[size];
+        int depth = 0;
+        stack[depth++] = initial;
+        marks[initial] = 1;
+        while (depth > 0) {
+            int state = stack[depth - 1];
+            if (edges[depth - 1] < successors[state].length) {
+                int target = successors[state][edges[depth - 1]++];
+                if (!live[target]) {
+                    continue;
+                }
+                if (marks[target] == 1) {
+                    return UNBOUNDED;
+                }
+                if (marks[target] == 0) {
+                    marks[target] = 1;
+                    edges[depth] = 0;
+                    stack[depth++] = target;
+                }
+                continue;
+            }
+
+            int best = 0;
+            for (int target : successors[state]) {
+                if (live[target]) {
+                    best = Math.max(best, longest[target] + 1);
+                }
+            }
+            longest[state] = best;
+            marks[state] = 2;
+            depth--;
+        }
+        return longest[initial];
+    }
+
+    private static int add(int left, int right) {
+        return (long) left + right >= UNBOUNDED ? UNBOUNDED : left + right;
+    }
+
+    private static int multiply(int length, int times) {
+        if (length == 0 || times == 0) {
+            return 0;
+        }
+        return (long) length * times >= UNBOUNDED ? UNBOUNDED : length * times;
+    }
+
+    private static final class UnsupportedSyntax extends Exception {
+        private UnsupportedSyntax() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Parser {
+        private final String regex;
+        private int position;
+
+        private Parser(String regex) {
+            this.regex = regex;
+        }
+
+        private int parseAlternation() throws UnsupportedSyntax {
+            int result = parseConcat();
+            while (position < regex.length() && regex.charAt(position) == '|') {
+                position++;
+                result = Math.max(result, parseConcat());
+            }
+            return result;
+        }
+
+        private int parseConcat() throws UnsupportedSyntax {
+            int result = 0;
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+                result = add(result, parseQuantifier(parseAtom()));
+            }
+            return result;
+        }
+
+        private int parseAtom() throws UnsupportedSyntax {
+            char c = regex.charAt(position++);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    parseCharClass();
+                    return 1;
+                case '^':
+                case '$':
+                    return 0;
+                case '\\':
+                    return parseEscape();
+                case '*':
+                case '+':
+                case '?':
+                    throw new UnsupportedSyntax();
+                default:
+                    return 1;
+            }
+        }
+
+        private int parseGroup() throws UnsupportedSyntax {
+            boolean lookaround = false;
+            if (regex.startsWith("?", position)) {
+                position++;
+                if (regex.startsWith(":", position) || regex.startsWith(">", position)) {
+                    position++;
+                } else if (regex.startsWith("=", position) || regex.startsWith("!", position)) {
+                    position++;
+                    lookaround = true;
+                } else if (regex.startsWith("<=", position) || regex.startsWith("<!", position)) {
+                    position += 2;
+                    lookaround = true;
+                } else if (regex.startsWith("<", position)) {
+                    int end = regex.indexOf('>', position);
+                    if (end < 0) {
+                        throw new UnsupportedSyntax();
+                    }
+                    position = end + 1;
+                } else {
+                    // 内联标志只改变字符的比较方式；x 标志改变语法，直接放弃
+                    while (position < regex.length() && "idmsuU-".indexOf(regex.charAt(position)) >= 0) {
+                        position++;
+                    }
+                    if (regex.startsWith(")", position)) {
+                        position++;
+                        return 0;
+                    }
+                    if (!regex.startsWith(":", position)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    position++;
+                }
+            }
+
+            int inner = parseAlternation();
+            if (!regex.startsWith(")", position)) {
+                throw new UnsupportedSyntax();
+            }
+            position++;
+            return lookaround ? 0 : inner;
+        }
+
+        private void parseCharClass() throws UnsupportedSyntax {
+            int depth = 1;
+            boolean first = true;
+            if (regex.startsWith("^", position)) {
+                position++;
+            }
+            while (position < regex.length()) {
+                char c = regex.charAt(position++);
+                if (c == '\\') {
+                    if (regex.startsWith("Q", position)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    position++;
+                } else if (c == '[') {
+                    depth++;
+                } else if (c == ']' && !first) {
+                    depth--;
+                    if (depth == 0) {
+                        return;
+                    }
+                }
+                first = false;
+            }
+            throw new UnsupportedSyntax();
+        }
+
+        private int parseEscape() throws UnsupportedSyntax {
+            if (position >= regex.length()) {
+                throw new UnsupportedSyntax();
+            }
+
+            char c = regex.charAt(position++);
+            switch (c) {
+                case 'd', 'D', 'w', 'W', 's', 'S', 'h', 'H', 'v', 'V', 't', 'n', 'r', 'f', 'a', 'e':
+                    return 1;
+                case 'R':
+                    return 2;
+                case 'b', 'B':
+                    if (regex.startsWith("{", position)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    return 0;
+                case 'A', 'G', 'z', 'Z':
+                    return 0;
+                case '0':
+                    skip("01234567", 3);
+                    return 1;
+                case 'x':
+                    if (regex.startsWith("{", position)) {
+                        skipBraces();
+                    } else {
+                        skip("0123456789abcdefABCDEF", 2);
+                    }
+                    return 1;
+                case 'u':
+                    skip("0123456789abcdefABCDEF", 4);
+                    return 1;
+                case 'c':
+                    position++;
+                    return 1;
+                case 'p', 'P', 'N':
+                    if (regex.startsWith("{", position)) {
+                        skipBraces();
+                    } else {
+                        position++;
+                    }
+                    return 1;
+                case 'Q': {
+                    int end = regex.indexOf("\\E", position);
+                    int length = (end < 0 ? regex.length() : end) - position;
+                    position = end < 0 ? regex.length() : end + 2;
+                    return length;
+                }
+                default:
+                    // 反向引用与字素簇没有上界
+                    if ((c >= '1' && c <= '9') || c == 'k' || c == 'X') {
+                        throw new UnsupportedSyntax();
+                    }
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    return 1;
+            }
+        }
+
+        private void skip(String allowed, int max) {
+            for (int i = 0; i < max && position < regex.length() && allowed.indexOf(regex.charAt(position)) >= 0; i++) {
+                position++;
+            }
+        }
+
+        private void skipBraces() throws UnsupportedSyntax {
+            int end = regex.indexOf('}', position);
+            if (end < 0) {
+                throw new UnsupportedSyntax();
+            }
+            position = end + 1;
+        }
+
+        private int parseQuantifier(int atom) throws UnsupportedSyntax {
+            if (position >= regex.length()) {
+                return atom;
+            }
+
+            char c = regex.charAt(position);
+            int result;
+            if (c == '*' || c == '+') {
+                position++;
+                result = atom == 0 ? 0 : UNBOUNDED;
+            } else if (c == '?') {
+                position++;
+                result = atom;
+            } else if (c == '{' && isCountedQuantifier()) {
+                int end = regex.indexOf('}', position);
+                String[] bounds = regex.substring(position + 1, end).split(",", -1);
+                position = end + 1;
+                if (bounds.length == 1) {
+                    result = multiply(atom, Integer.parseInt(bounds[0].trim()));
+                } else if (bounds[1].isBlank()) {
+                    result = atom == 0 ? 0 : UNBOUNDED;
+                } else {
+                    result = multiply(atom, Integer.parseInt(bounds[1].trim()));
+                }
+            } else {
+                return atom;
+            }
+
+            // 惰性与占有量词不改变最大长度
+            if (position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {
+                position++;
+            }
+            return result;
+        }
+
+        private boolean isCountedQuantifier() {
+            int end = regex.indexOf('}', position);
+            return end > position + 1 && regex.substring(position + 1, end).matches("\\s*\\d{1,9}\\s*(,\\s*\\d{0,9}\\s*)?");
+        }
+    }
+}
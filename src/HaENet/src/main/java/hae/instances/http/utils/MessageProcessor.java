@@ -1,17 +1,13 @@
 package hae.instances.http.utils;
 
 import burp.api.montoya.MontoyaApi;
-import burp.api.montoya.http.message.HttpHeader;
 import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
 import hae.Config;
 import hae.utils.ConfigLoader;
-import hae.utils.string.StringProcessor;
+import hae.utils.string.Latin1Text;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class MessageProcessor {
     private final MontoyaApi api;
@@ -21,11 +17,23 @@ public class MessageProcessor {
         private final String comment;
         private final String color;
         private final Map<String, List<String>> extractedDataByRule;
+        private final Map<String, List<MatchSpan>> matchSpansByRule;
+        private final String scanTruncation;
 
         private ProcessedMessage(String comment, String color, Map<String, List<String>> extractedDataByRule) {
+            this(comment, color, extractedDataByRule, Collections.emptyMap(), "");
+        }
+
+        private ProcessedMessage(String comment,
+                                 String color,
+                                 Map<String, List<String>> extractedDataByRule,
+                                 Map<String, List<MatchSpan>> matchSpansByRule,
+                                 String scanTruncation) {
             this.comment = comment;
             this.color = color;
             this.extractedDataByRule = extractedDataByRule;
+            this.matchSpansByRule = matchSpansByRule;
+            this.scanTruncation = scanTruncation;
         }
 
         public String getComment() {
@@ -40,6 +48,16 @@ public class MessageProcessor {
             return extractedDataByRule;
         }
 
+        /** 各规则命中位置，可直接用于编辑器高亮而无需重新扫描消息。 */
+        public Map<String, List<MatchSpan>> getMatchSpansByRule() {
+            return matchSpansByRule;
+        }
+
+        /** 超出扫描上限而未匹配的范围说明，见 {@link ScanWindows#describeTruncation}；没有截断时为空字符串。 */
+        public String getScanTruncation() {
+            return scanTruncation;
+        }
+
         public boolean hasMatches() {
             return comment != null && !comment.isBlank() && color != null && !color.isBlank();
         }
@@ -50,140 +68,140 @@ public class MessageProcessor {
         this.regularMatcher = new RegularMatcher(api, configLoader);
     }
 
-    public List<Map<String, String>> processMessage(String host, String message, boolean flag) {
-        Map<String, Map<String, Object>> obj = null;
-
+    /** 编辑器与 WebSocket 标注使用的匹配结果，出错时返回空列表。 */
+    public List<RuleMatches> processMessage(String host, String message) {
         try {
-            obj = regularMatcher.performRegexMatching(host, "any", message, message, message);
+            return regularMatcher.performRegexMatching(host, "any", message, message, message);
         } catch (Exception e) {
             logProcessingError("processMessage", e);
+            return List.of();
         }
-
-        return getDataList(obj, flag);
     }
 
-    public List<Map<String, String>> processResponse(String host, HttpResponse httpResponse, boolean flag) {
-        Map<String, Map<String, Object>> obj = null;
-
+    public List<RuleMatches> processResponse(String host, HttpResponse httpResponse) {
         try {
-            obj = matchResponse(host, httpResponse);
+            return matchResponse(host, httpResponse);
         } catch (Exception e) {
             logProcessingError("processResponse", e);
+            return List.of();
         }
-
-        return getDataList(obj, flag);
     }
 
-    public List<Map<String, String>> processRequest(String host, HttpRequest httpRequest, boolean flag) {
-        Map<String, Map<String, Object>> obj = null;
-
+    public List<RuleMatches> processRequest(String host, HttpRequest httpRequest) {
         try {
-            obj = matchRequest(host, httpRequest);
+            return matchRequest(host, httpRequest);
         } catch (Exception e) {
             logProcessingError("processRequest", e);
+            return List.of();
         }
-
-        return getDataList(obj, flag);
     }
 
     public ProcessedMessage processRequestResponse(String host, HttpRequest httpRequest, HttpResponse httpResponse) {
-        List<Map<String, Map<String, Object>>> matchResults = new ArrayList<>(2);
-        matchResults.add(matchRequest(host, httpRequest, false));
-        matchResults.add(matchResponse(host, httpResponse, false));
-        return buildProcessedMessage(matchResults);
+        return processRequestResponse(host, httpRequest, httpResponse, CompiledRuleSet.current());
     }
 
-    private Map<String, Map<String, Object>> matchRequest(String host, HttpRequest httpRequest) {
-        return matchRequest(host, httpRequest, true);
+    /** 只用给定规则集处理一条消息，不经过数据缓存，供规则变化后的历史消息重匹配使用。 */
+    public ProcessedMessage processRequestResponse(String host, HttpRequest httpRequest, HttpResponse httpResponse, CompiledRuleSet ruleSet) {
+        Latin1Text request = Latin1Text.of(httpRequest.toByteArray().getBytes());
+        int requestBodyOffset = httpRequest.bodyOffset();
+        Latin1Text requestHeader = request.headerSection(requestBodyOffset);
+        Latin1Text requestBody = request.slice(requestBodyOffset);
+        Latin1Text response = Latin1Text.of(httpResponse.toByteArray().getBytes());
+        int responseBodyOffset = httpResponse.bodyOffset();
+        Latin1Text responseHeader = response.headerSection(responseBodyOffset);
+        Latin1Text responseBody = response.slice(responseBodyOffset);
+
+        List<RuleMatches> requestMatches = regularMatcher.performRegexMatching(ruleSet, host, "request", request, requestHeader, requestBody);
+        List<RuleMatches> responseMatches = regularMatcher.performRegexMatching(ruleSet, host, "response", response, responseHeader, responseBody);
+
+        List<String> truncations = new ArrayList<>(2);
+        for (String truncation : List.of(
+                ScanWindows.describeTruncation(ruleSet, "request", request, requestHeader, requestBody),
+                ScanWindows.describeTruncation(ruleSet, "response", response, responseHeader, responseBody))) {
+            if (!truncation.isEmpty()) {
+                truncations.add(truncation);
+            }
+        }
+        return buildProcessedMessage(List.of(requestMatches, responseMatches), String.join("; ", truncations));
     }
 
-    private Map<String, Map<String, Object>> matchRequest(String host, HttpRequest httpRequest, boolean cacheAndPersistMatches) {
-        String request = decodeBytePreserving(httpRequest.toByteArray().getBytes());
-        String body = decodeBytePreserving(httpRequest.body().getBytes());
-        String header = httpRequest.headers().stream()
-                .map(HttpHeader::toString)
-                .collect(Collectors.joining("\r\n"));
-
-        return regularMatcher.performRegexMatching(host, "request", request, header, body, cacheAndPersistMatches);
-    }
+    private List<RuleMatches> matchRequest(String host, HttpRequest httpRequest) {
+        // 请求头与请求体都是完整请求字节上的切片，只复制一次原始字节
+        Latin1Text request = Latin1Text.of(httpRequest.toByteArray().getBytes());
+        int bodyOffset = httpRequest.bodyOffset();
+        Latin1Text body = request.slice(bodyOffset);
+        Latin1Text header = request.headerSection(bodyOffset);
 
-    private Map<String, Map<String, Object>> matchResponse(String host, HttpResponse httpResponse) {
-        return matchResponse(host, httpResponse, true);
+        return regularMatcher.performRegexMatching(host, "request", request, header, body);
     }
 
-    private Map<String, Map<String, Object>> matchResponse(String host, HttpResponse httpResponse, boolean cacheAndPersistMatches) {
-        String response = decodeBytePreserving(httpResponse.toByteArray().getBytes());
-        String body = decodeBytePreserving(httpResponse.body().getBytes());
-        String header = httpResponse.headers().stream()
-                .map(HttpHeader::toString)
-                .collect(Collectors.joining("\r\n"));
-
-        return regularMatcher.performRegexMatching(host, "response", response, header, body, cacheAndPersistMatches);
-    }
+    private List<RuleMatches> matchResponse(String host, HttpResponse httpResponse) {
+        Latin1Text response = Latin1Text.of(httpResponse.toByteArray().getBytes());
+        int bodyOffset = httpResponse.bodyOffset();
+        Latin1Text body = response.slice(bodyOffset);
+        Latin1Text header = response.headerSection(bodyOffset);
 
-    private String decodeBytePreserving(byte[] bytes) {
-        return new String(bytes, StandardCharsets.ISO_8859_1);
+        return regularMatcher.performRegexMatching(host, "response", response, header, body);
     }
 
-    private ProcessedMessage buildProcessedMessage(List<Map<String, Map<String, Object>>> matchResults) {
-        List<String> colorList = new ArrayList<>();
-        List<String> commentList = new ArrayList<>();
+    private ProcessedMessage buildProcessedMessage(List<List<RuleMatches>> matchResults, String scanTruncation) {
+        List<RuleMatches> allMatches = new ArrayList<>();
         Map<String, Set<String>> mergedExtractedData = new LinkedHashMap<>();
-
-        for (Map<String, Map<String, Object>> matchResult : matchResults) {
-            if (matchResult == null || matchResult.isEmpty()) {
-                continue;
+        Map<String, List<MatchSpan>> mergedMatchSpans = new LinkedHashMap<>();
+
+        for (List<RuleMatches> matchResult : matchResults) {
+            for (RuleMatches ruleMatches : matchResult) {
+                allMatches.add(ruleMatches);
+                appendExtractedData(mergedExtractedData, ruleMatches);
+                if (!ruleMatches.offsets().isEmpty()) {
+                    mergedMatchSpans.computeIfAbsent(ruleMatches.name(), ignored -> new ArrayList<>()).addAll(ruleMatches.offsets());
+                }
             }
-
-            extractColorsAndComments(matchResult, colorList, commentList);
-            appendExtractedData(mergedExtractedData, matchResult);
         }
 
-        String color = colorList.isEmpty() ? "none" : retrieveFinalColor(retrieveColorIndices(colorList));
-        String comment = commentList.isEmpty() ? "" : StringProcessor.mergeComment(String.join(", ", commentList));
+        String color = allMatches.isEmpty() ? "none" : finalColor(allMatches);
         Map<String, List<String>> normalizedExtractedData = new LinkedHashMap<>();
         for (Map.Entry<String, Set<String>> entry : mergedExtractedData.entrySet()) {
             normalizedExtractedData.put(entry.getKey(), new ArrayList<>(entry.getValue()));
         }
 
-        return new ProcessedMessage(comment, color, normalizedExtractedData);
+        return new ProcessedMessage(mergeComment(allMatches), color, normalizedExtractedData, mergedMatchSpans, scanTruncation);
     }
 
-    private void extractColorsAndComments(Map<String, Map<String, Object>> inputData, List<String> colorList, List<String> commentList) {
-        inputData.keySet().forEach(key -> {
-            Map<String, Object> tempMap = inputData.get(key);
-            Object color = tempMap.get("color");
-            if (color != null) {
-                colorList.add(color.toString());
+    private void appendExtractedData(Map<String, Set<String>> mergedMap, RuleMatches ruleMatches) {
+        Set<String> valueSet = null;
+        for (String value : ruleMatches.values()) {
+            String normalizedValue = value.trim();
+            if (!normalizedValue.isEmpty()) {
+                if (valueSet == null) {
+                    valueSet = mergedMap.computeIfAbsent(ruleMatches.name(), ignored -> new LinkedHashSet<>());
+                }
+                valueSet.add(normalizedValue);
             }
-            commentList.add(key);
-        });
+        }
     }
 
-    private void appendExtractedData(Map<String, Set<String>> mergedMap, Map<String, Map<String, Object>> inputData) {
-        for (Map.Entry<String, Map<String, Object>> entry : inputData.entrySet()) {
-            String ruleName = StringProcessor.extractItemName(entry.getKey());
-            if (ruleName == null || ruleName.isBlank()) {
-                continue;
-            }
+    /** 同名规则（如请求与响应各自命中）的数量相加，按首次出现的顺序输出 "名称 (数量)"。 */
+    public static String mergeComment(List<RuleMatches> matches) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (RuleMatches ruleMatches : matches) {
+            counts.merge(ruleMatches.name(), ruleMatches.values().size(), Integer::sum);
+        }
 
-            Map<String, Object> dataMap = entry.getValue();
-            Object data = dataMap.get("data");
-            if (data == null || data.toString().isBlank()) {
-                continue;
-            }
+        StringJoiner comment = new StringJoiner(", ");
+        counts.forEach((name, count) -> comment.add(name + " (" + count + ")"));
+        return comment.toString();
+    }
 
-            Set<String> valueSet = mergedMap.computeIfAbsent(ruleName, ignored -> new LinkedHashSet<>());
-            String[] values = data.toString().split(Pattern.quote(Config.boundary));
-            for (String value : values) {
-                if (value != null) {
-                    String normalizedValue = value.trim();
-                    if (!normalizedValue.isEmpty()) {
-                        valueSet.add(normalizedValue);
-                    }
-                }
+    /** 各规则的颜色按 {@link #retrieveFinalColor(List)} 的升级规则合并。 */
+    public String finalColor(Collection<RuleMatches> matches) {
+        List<Integer> indices = new ArrayList<>(matches.size());
+        for (RuleMatches ruleMatches : matches) {
+            if (ruleMatches.colorIndex() >= 0) {
+                indices.add(ruleMatches.colorIndex());
             }
         }
+        return upgradeColors(indices);
     }
 
     private void logProcessingError(String methodName, Exception exception) {
@@ -191,61 +209,6 @@ public class MessageProcessor {
         api.logging().logToError(methodName + ": " + message);
     }
 
-    private List<Map<String, String>> getDataList(Map<String, Map<String, Object>> obj, boolean actionFlag) {
-        List<Map<String, String>> highlightList = new ArrayList<>();
-        List<Map<String, String>> extractList = new ArrayList<>();
-
-        if (obj != null && !obj.isEmpty()) {
-            if (actionFlag) {
-                List<List<String>> resultList = extractColorsAndComments(obj);
-                List<String> colorList = resultList.get(0);
-                List<String> commentList = resultList.get(1);
-                if (!colorList.isEmpty() && !commentList.isEmpty()) {
-                    String color = retrieveFinalColor(retrieveColorIndices(colorList));
-                    Map<String, String> colorMap = new HashMap<>() {{
-                        put("color", color);
-                    }};
-                    Map<String, String> commentMap = new HashMap<>() {{
-                        put("comment", String.join(", ", commentList));
-                    }};
-                    highlightList.add(colorMap);
-                    highlightList.add(commentMap);
-                }
-            } else {
-                extractList.add(extractDataFromMap(obj));
-            }
-        }
-
-        return actionFlag ? highlightList : extractList;
-    }
-
-    private Map<String, String> extractDataFromMap(Map<String, Map<String, Object>> inputData) {
-        Map<String, String> extractedData = new HashMap<>();
-        inputData.keySet().forEach(key -> {
-            Map<String, Object> tempMap = inputData.get(key);
-            String data = tempMap.get("data").toString();
-            extractedData.put(key, data);
-        });
-
-        return extractedData;
-    }
-
-    private List<List<String>> extractColorsAndComments(Map<String, Map<String, Object>> inputData) {
-        List<String> colorList = new ArrayList<>();
-        List<String> commentList = new ArrayList<>();
-        inputData.keySet().forEach(key -> {
-            Map<String, Object> tempMap = inputData.get(key);
-            String color = tempMap.get("color").toString();
-            colorList.add(color);
-            commentList.add(key);
-        });
-        List<List<String>> result = new ArrayList<>();
-        result.add(colorList);
-        result.add(commentList);
-
-        return result;
-    }
-
     public List<Integer> retrieveColorIndices(List<String> colors) {
         List<Integer> indices = new ArrayList<>();
         String[] colorArray = Config.color;
@@ -0,0 +1,347 @@
+package hae.instances.http.utils;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 同一作用域下多条 DFA 规则合并成的单遍扫描自动机。
+ *
+ * <p>每条规则先编译为“任意前缀 + 规则”的 dk.brics 确定自动机，再对所有规则做乘积构造：
+ * 合并后的每个状态记录各规则子自动机所处的状态，接受态标注对应的规则下标。
+ * 扫描内容一次即可得到每条规则首个匹配的结束位置，未命中的规则无需再逐条匹配。
+ * 乘积状态数超过上限时把规则对半拆分成多段分别构造，编译失败的规则视为始终可能命中。</p>
+ *
+ * <p>转移表可以写出并原样读回（见 {@link AutomatonStore}），重启后无需再做乘积构造。</p>
+ */
+final class MultiRuleAutomaton {
+    static final int NO_MATCH = -1;
+    private static final int MAX_PRODUCT_STATES = 4096;
+
+    private final int ruleCount;
+    private final int[] alwaysCandidates;
+    private final List<Segment> segments;
+
+    private MultiRuleAutomaton(int ruleCount, int[] alwaysCandidates, List<Segment> segments) {
+        this.ruleCount = ruleCount;
+        this.alwaysCandidates = alwaysCandidates;
+        this.segments = segments;
+    }
+
+    static MultiRuleAutomaton compile(List<String> regexes) {
+        return compile(regexes, MAX_PRODUCT_STATES);
+    }
+
+    static MultiRuleAutomaton compile(List<String> regexes, int maxProductStates) {
+        List<Integer> compiledRules = new ArrayList<>(regexes.size());
+        List<RunAutomaton> automata = new ArrayList<>(regexes.size());
+        List<Integer> failedRules = new ArrayList<>();
+        for (int i = 0; i < regexes.size(); i++) {
+            try {
+                Automaton automaton = Automaton.makeAnyString().concatenate(new RegExp(regexes.get(i)).toAutomaton());
+                automaton.minimize();
+                automata.add(new RunAutomaton(automaton, true));
+                compiledRules.add(i);
+            } catch (RuntimeException e) {
+                // 交给逐条匹配阶段报告错误
+                failedRules.add(i);
+            }
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        buildSegments(automata, compiledRules, 0, automata.size(), maxProductStates, segments);
+        return new MultiRuleAutomaton(regexes.size(), failedRules.stream().mapToInt(Integer::intValue).toArray(), segments);
+    }
+
+    int ruleCount() {
+        return ruleCount;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(ruleCount);
+        writeInts(out, alwaysCandidates);
+        out.writeInt(segments.size());
+        for (Segment segment : segments) {
+            segment.write(out);
+        }
+    }
+
+    static MultiRuleAutomaton read(DataInput in) throws IOException {
+        int ruleCount = in.readInt();
+        int[] alwaysCandidates = readInts(in);
+        int segmentCount = in.readInt();
+        List<Segment> segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(Segment.read(in));
+        }
+        return new MultiRuleAutomaton(ruleCount, alwaysCandidates, segments);
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 扫描内容，返回每条规则首个匹配的结束位置（不含），未命中为 {@link #NO_MATCH}。
+     * 编译失败的规则固定报告位置 0，交由调用方逐条处理。
+     */
+    int[] scan(CharSequence content) {
+        int[] matchEnds = new int[ruleCount];
+        Arrays.fill(matchEnds, NO_MATCH);
+        for (int rule : alwaysCandidates) {
+            matchEnds[rule] = 0;
+        }
+        for (Segment segment : segments) {
+            segment.scan(content, matchEnds);
+        }
+        return matchEnds;
+    }
+
+    private static void buildSegments(List<RunAutomaton> automata,
+                                      List<Integer> ruleIndexes,
+                                      int from,
+                                      int to,
+                                      int maxProductStates,
+                                      List<Segment> segments) {
+        if (from >= to) {
+            return;
+        }
+
+        // 单条规则的自动机不受上限约束
+        int stateLimit = to - from == 1 ? Integer.MAX_VALUE : maxProductStates;
+        Segment segment = Segment.build(automata.subList(from, to), ruleIndexes.subList(from, to), stateLimit);
+        if (segment != null) {
+            segments.add(segment);
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        buildSegments(automata, ruleIndexes, from, middle, maxProductStates, segments);
+        buildSegments(automata, ruleIndexes, middle, to, maxProductStates, segments);
+    }
+
+    /** 一组规则的乘积确定自动机，转移表不可变，可被多个线程同时扫描。 */
+    private static final class Segment {
+        private final char[] charClasses;
+        private final int classCount;
+        private final int[] transitions;
+        private final int[][] acceptedRules;
+        private final int[] ruleIndexes;
+
+        private Segment(char[] charClasses, int classCount, int[] transitions, int[][] acceptedRules, int[] ruleIndexes) {
+            this.charClasses = charClasses;
+            this.classCount = classCount;
+            this.transitions = transitions;
+            this.acceptedRules = acceptedRules;
+            this.ruleIndexes = ruleIndexes;
+        }
+
+        static Segment build(List<RunAutomaton> automata, List<Integer> ruleIndexes, int stateLimit) {
+            char[] points = mergeCharPoints(automata);
+            char[] charClasses = charClasses(points);
+
+            int ruleCount = automata.size();
+            int[] initial = new int[ruleCount];
+            for (int i = 0; i < ruleCount; i++) {
+                initial[i] = automata.get(i).getInitialState();
+            }
+
+            List<int[]> states = new ArrayList<>();
+            Map<StateKey, Integer> stateIds = new HashMap<>();
+            ArrayDeque<Integer> pending = new ArrayDeque<>();
+            states.add(initial);
+            stateIds.put(new StateKey(initial), 0);
+            pending.add(0);
+
+            int[] transitions = new int[points.length * 16];
+            while (!pending.isEmpty()) {
+                int stateId = pending.poll();
+                int[] tuple = states.get(stateId);
+                for (int classIndex = 0; classIndex < points.length; classIndex++) {
+                    int[] next = new int[ruleCount];
+                    for (int i = 0; i < ruleCount; i++) {
+                        next[i] = tuple[i] < 0 ? -1 : automata.get(i).step(tuple[i], points[classIndex]);
+                    }
+
+                    StateKey key = new StateKey(next);
+                    Integer nextId = stateIds.get(key);
+                    if (nextId == null) {
+                        if (states.size() >= stateLimit) {
+                            return null;
+                        }
+                        nextId = states.size();
+                        states.add(next);
+                        stateIds.put(key, nextId);
+                        pending.add(nextId);
+                    }
+
+                    int slot = stateId * points.length + classIndex;
+                    if (slot >= transitions.length) {
+                        transitions = Arrays.copyOf(transitions, Math.max(slot + 1, transitions.length * 2));
+                    }
+                    transitions[slot] = nextId;
+                }
+            }
+
+            int[][] acceptedRules = new int[states.size()][];
+            for (int stateId = 0; stateId < states.size(); stateId++) {
+                int[] tuple = states.get(stateId);
+                int[] accepted = new int[ruleCount];
+                int acceptedCount = 0;
+                for (int i = 0; i < ruleCount; i++) {
+                    if (tuple[i] >= 0 && automata.get(i).isAccept(tuple[i])) {
+                        accepted[acceptedCount++] = ruleIndexes.get(i);
+                    }
+                }
+                acceptedRules[stateId] = acceptedCount == 0 ? null : Arrays.copyOf(accepted, acceptedCount);
+            }
+
+            return new Segment(charClasses, points.length, Arrays.copyOf(transitions, states.size() * points.length),
+                    acceptedRules, ruleIndexes.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        void scan(CharSequence content, int[] matchEnds) {
+            // 该段内的规则全部命中后提前结束扫描
+            int remaining = 0;
+            for (int rule : ruleIndexes) {
+                if (matchEnds[rule] == NO_MATCH) {
+                    remaining++;
+                }
+            }
+            int state = 0;
+            if (acceptedRules[state] != null) {
+                remaining -= record(acceptedRules[state], 0, matchEnds);
+            }
+
+            int length = content.length();
+            for (int i = 0; i < length && remaining > 0; i++) {
+                state = transitions[state * classCount + charClasses[content.charAt(i)]];
+                int[] accepted = acceptedRules[state];
+                if (accepted != null) {
+                    remaining -= record(accepted, i + 1, matchEnds);
+                }
+            }
+        }
+
+        /** 字符分类表由各分类的起点还原，只写出起点。 */
+        void write(DataOutput out) throws IOException {
+            char[] points = new char[classCount];
+            for (int point = Character.MAX_VALUE; point >= 0; point--) {
+                points[charClasses[point]] = (char) point;
+            }
+            out.writeInt(points.length);
+            for (char point : points) {
+                out.writeChar(point);
+            }
+            writeInts(out, transitions);
+            out.writeInt(acceptedRules.length);
+            for (int[] accepted : acceptedRules) {
+                if (accepted == null) {
+                    out.writeInt(-1);
+                } else {
+                    writeInts(out, accepted);
+                }
+            }
+            writeInts(out, ruleIndexes);
+        }
+
+        static Segment read(DataInput in) throws IOException {
+            char[] points = new char[in.readInt()];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = in.readChar();
+            }
+            int[] transitions = readInts(in);
+            int[][] acceptedRules = new int[in.readInt()][];
+            for (int i = 0; i < acceptedRules.length; i++) {
+                acceptedRules[i] = readInts(in);
+            }
+            int[] ruleIndexes = readInts(in);
+            if (points.length == 0 || points[0] != 0 || transitions.length != acceptedRules.length * points.length) {
+                throw new IOException("corrupt combined automaton");
+            }
+            return new Segment(charClasses(points), points.length, transitions, acceptedRules, ruleIndexes);
+        }
+
+        private static char[] charClasses(char[] points) {
+            char[] charClasses = new char[Character.MAX_VALUE + 1];
+            for (int point = 0, classIndex = 0; point <= Character.MAX_VALUE; point++) {
+                if (classIndex + 1 < points.length && points[classIndex + 1] == point) {
+                    classIndex++;
+                }
+                charClasses[point] = (char) classIndex;
+            }
+            return charClasses;
+        }
+
+        private static int record(int[] accepted, int end, int[] matchEnds) {
+            int recorded = 0;
+            for (int rule : accepted) {
+                if (matchEnds[rule] == NO_MATCH) {
+                    matchEnds[rule] = end;
+                    recorded++;
+                }
+            }
+            return recorded;
+        }
+
+        private static char[] mergeCharPoints(List<RunAutomaton> automata) {
+            TreeSet<Character> points = new TreeSet<>();
+            points.add((char) 0);
+            for (RunAutomaton automaton : automata) {
+                for (char point : automaton.getCharIntervals()) {
+                    points.add(point);
+                }
+            }
+
+            char[] merged = new char[points.size()];
+            int index = 0;
+            for (char point : points) {
+                merged[index++] = point;
+            }
+            return merged;
+        }
+    }
+
+    private static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /** 长度为 -1 时返回 null。 */
+    private static int[] readInts(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private record StateKey(int[] tuple) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateKey key && Arrays.equals(tuple, key.tuple);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(tuple);
+        }
+    }
+}
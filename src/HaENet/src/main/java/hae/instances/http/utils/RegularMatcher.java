@@ -3,27 +3,28 @@ package hae.instances.http.utils;
 import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.persistence.PersistedList;
 import burp.api.montoya.persistence.PersistedObject;
-import dk.brics.automaton.Automaton;
 import dk.brics.automaton.AutomatonMatcher;
-import dk.brics.automaton.RegExp;
 import dk.brics.automaton.RunAutomaton;
 import hae.Config;
+import hae.cache.BodyMatchCache;
 import hae.cache.DataCache;
 import hae.utils.ConfigLoader;
 import hae.utils.DataManager;
-import hae.utils.string.HashCalculator;
+import hae.utils.string.Latin1Text;
+import hae.utils.string.MessageFingerprint;
 import hae.utils.string.StringProcessor;
 
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class RegularMatcher {
-    private static final Map<String, Pattern> nfaPatternCache = new ConcurrentHashMap<>();
-    private static final Map<String, RunAutomaton> dfaAutomatonCache = new ConcurrentHashMap<>();
-    private static final Pattern formatIndexPattern = Pattern.compile("\\{(\\d+)}");
+    // 单条规则在一条消息上保留的匹配偏移上限，提取值不受限制
+    private static final int MAX_SPANS_PER_RULE = 1024;
     private final MontoyaApi api;
     private final ConfigLoader configLoader;
 
@@ -79,295 +80,684 @@ public class RegularMatcher {
         }
     }
 
-    public Map<String, Map<String, Object>> performRegexMatching(String host, String type, String message, String header, String body) {
+    public List<RuleMatches> performRegexMatching(String host, String type, CharSequence message, CharSequence header, CharSequence body) {
         return performRegexMatching(host, type, message, header, body, true);
     }
 
-    public Map<String, Map<String, Object>> performRegexMatching(String host, String type, String message, String header, String body, boolean cacheAndPersistMatches) {
-        // 删除动态响应头再进行存储
-        String originalMessage = message;
+    /**
+     * message、header、body 可以是同一份 {@link Latin1Text} 上的切片，匹配过程不会复制完整消息。
+     * 结果按规则在规则集中的顺序排列，每条命中的规则一项，列表不可变。
+     */
+    public List<RuleMatches> performRegexMatching(String host, String type, CharSequence message, CharSequence header, CharSequence body, boolean cacheAndPersistMatches) {
+        // 删除动态响应头再计算缓存索引
         String dynamicHeader = configLoader.getDynamicHeader();
-
+        MessageFingerprint messageIndex;
         if (!dynamicHeader.isBlank()) {
-            String modifiedHeader = header.replaceAll(String.format("(%s):.*?\r\n", configLoader.getDynamicHeader()), "");
-            message = message.replace(header, modifiedHeader);
+            messageIndex = MessageFingerprint.ofChars(withoutDynamicHeaders(host, message, header, dynamicHeader));
+        } else {
+            messageIndex = MessageFingerprint.ofChars(host, "|", message);
         }
 
-        String messageIndex = HashCalculator.calculateHash((host + "|" + message).getBytes());
-
         // 从数据缓存中读取
-        Map<String, Map<String, Object>> dataCacheMap = cacheAndPersistMatches ? DataCache.get(messageIndex) : null;
+        List<RuleMatches> cachedMatches = cacheAndPersistMatches ? DataCache.get(messageIndex) : null;
 
         // 存在则返回
-        if (dataCacheMap != null) {
-            return dataCacheMap;
+        if (cachedMatches != null) {
+            return cachedMatches;
         }
 
         // 最终返回的结果
-        String firstLine = originalMessage.split("\\r?\\n", 2)[0];
-        Map<String, Map<String, Object>> finalMap = applyMatchingRules(host, type, originalMessage, firstLine, header, body, cacheAndPersistMatches);
+        CharSequence firstLine = message instanceof Latin1Text text ? text.firstLine() : message.toString().split("\\r?\\n", 2)[0];
+        List<RuleMatches> matches = applyMatchingRules(CompiledRuleSet.current(), host, type, message, firstLine, header, body, cacheAndPersistMatches);
 
         // 数据缓存写入，有可能是空值，当作匹配过的索引不再匹配
         if (cacheAndPersistMatches) {
-            DataCache.put(messageIndex, finalMap);
+            DataCache.put(messageIndex, matches);
         }
 
-        return finalMap;
+        return matches;
     }
 
-    private Map<String, Map<String, Object>> applyMatchingRules(String host, String type, String message, String firstLine, String header, String body, boolean persistMatches) {
-        Map<String, Map<String, Object>> finalMap = new ConcurrentHashMap<>();
-        Map<String, List<Object[]>> rulesSnapshot = snapshotRules();
-
-        rulesSnapshot.keySet().parallelStream().forEach(i -> {
-            for (Object[] objects : rulesSnapshot.get(i)) {
-                String matchContent = "";
-                // 遍历获取规则
-                List<String> result;
-                Map<String, Object> tmpMap = new HashMap<>();
-
-                boolean loaded = (Boolean) objects[0];
-                String name = objects[1].toString();
-                String f_regex = objects[2].toString();
-                String s_regex = objects[3].toString();
-                String format = objects[4].toString();
-                String color = objects[5].toString();
-                String scope = objects[6].toString();
-                String engine = objects[7].toString();
-                boolean sensitive = (Boolean) objects[8];
-
-                // 判断规则是否开启与作用域
-                if (loaded && (scope.contains(type) || scope.contains("any") || type.equals("any"))) {
-                    // 在此处检查内容是否缓存，缓存则返回为空
-                    switch (scope) {
-                        case "any":
-                        case "request":
-                        case "response":
-                            matchContent = message;
-                            break;
-                        case "any header":
-                        case "request header":
-                        case "response header":
-                            matchContent = header;
-                            break;
-                        case "any body":
-                        case "request body":
-                        case "response body":
-                            matchContent = body;
-                            break;
-                        case "request line":
-                        case "response line":
-                            matchContent = firstLine;
-                            break;
-                        default:
-                            break;
-                    }
+    /**
+     * 只用给定规则集匹配，如历史消息重匹配时的改动规则子集；结果不读写数据缓存，也不写入全局匹配数据。
+     */
+    public List<RuleMatches> performRegexMatching(CompiledRuleSet ruleSet, String host, String type, CharSequence message, CharSequence header, CharSequence body) {
+        CharSequence firstLine = message instanceof Latin1Text text ? text.firstLine() : message.toString().split("\\r?\\n", 2)[0];
+        return applyMatchingRules(ruleSet, host, type, message, firstLine, header, body, false);
+    }
+
+    /**
+     * 缓存索引的组成部分：请求头中的动态字段被去掉，其余内容按原样参与计算。
+     * 请求头是消息上的切片时只替换这一段，不复制整条消息。
+     */
+    private static CharSequence[] withoutDynamicHeaders(String host, CharSequence message, CharSequence header, String dynamicHeader) {
+        String headerText = header.toString();
+        String modifiedHeader = headerText.replaceAll(String.format("(%s):.*?\r\n", dynamicHeader), "");
+        if (modifiedHeader.equals(headerText)) {
+            return new CharSequence[]{host, "|", message};
+        }
+
+        if (message instanceof Latin1Text messageText && header instanceof Latin1Text headerSlice) {
+            int start = headerSlice.offsetIn(messageText);
+            if (start >= 0) {
+                return new CharSequence[]{host, "|", messageText.slice(0, start), modifiedHeader, messageText.slice(start + headerSlice.length())};
+            }
+        }
+        return new CharSequence[]{host, "|", message.toString().replace(headerText, modifiedHeader)};
+    }
+
+    private List<RuleMatches> applyMatchingRules(CompiledRuleSet ruleSet, String host, String type, CharSequence message, CharSequence firstLine, CharSequence header, CharSequence body, boolean persistMatches) {
+        MessageMatch match = new MessageMatch(ruleSet, host, type, message, firstLine, header, body, persistMatches);
+        MatchingEngine.invoke(match::run);
+        return match.results();
+    }
+
+    /**
+     * 执行单条规则并记录运行统计，超时或出错时返回 null，该规则本次不产生结果。
+     */
+    private MatchCollector executeRule(CompiledRuleSet.CompiledRule rule, CharSequence matchContent, String type, int baseOffset, boolean recordStats) {
+        long startNanos = System.nanoTime();
+        try {
+            MatchCollector collector = new MatchCollector(type, baseOffset);
+            executeRegexEngine(rule, matchContent, collector);
+            if (recordStats) {
+                RuleProfiler.record(rule.key(), matchContent.length(), System.nanoTime() - startNanos, collector.values.size());
+            }
+            return collector;
+        } catch (RuleTimeoutException e) {
+            if (!recordStats) {
+                return null;
+            }
+            RuleProfiler.record(rule.key(), matchContent.length(), System.nanoTime() - startNanos, 0);
+            // 超时只放弃这条规则，其余规则照常匹配
+            if (RuleGuard.recordTimeout(rule.key(), matchContent.length())) {
+                api.logging().logToError(String.format("[x] Rule quarantined:\nName: %s\nRegex: %s\n%s",
+                        rule.name(), rule.firstRegex(), RuleGuard.status(rule.key())));
+            }
+            return null;
+        } catch (Exception e) {
+            api.logging().logToError(String.format("[x] Error Info:\nName: %s\nRegex: %s", rule.name(), rule.firstRegex()));
+            api.logging().logToError(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 一条消息的一次匹配，在 {@link MatchingEngine} 中执行：先按分桶并行预过滤，再按 (匹配范围, 引擎与大小写) 分桶并行执行规则，
+     * 内容较大时分桶内的规则继续对半拆分，由空闲线程窃取。每条规则只写自己序号对应的结果位置，无需同步，
+     * 结果天然按规则顺序排列。
+     */
+    private final class MessageMatch {
+        // 分桶内规则数与内容长度的乘积超过该值时继续拆分
+        private static final long SPLIT_CHARS = 256 * 1024;
+
+        private final CompiledRuleSet.View view;
+        private final String host;
+        private final String type;
+        private final CharSequence message;
+        private final CharSequence firstLine;
+        private final CharSequence header;
+        private final CharSequence body;
+        private final boolean persistMatches;
+        private final boolean recordStats;
+        private final BodyMatches bodyMatches;
+        private final boolean[] skippedRules;
+        private final RuleMatches[] matchesByRule;
+
+        private MessageMatch(CompiledRuleSet ruleSet, String host, String type, CharSequence message, CharSequence firstLine, CharSequence header, CharSequence body, boolean persistMatches) {
+            this.view = ruleSet.view(type);
+            this.host = host;
+            this.type = type;
+            this.message = message;
+            this.firstLine = firstLine;
+            this.header = header;
+            this.body = body;
+            this.persistMatches = persistMatches;
+            // 试运行的规则不计入预过滤与规则运行统计，也不参与隔离
+            this.recordStats = !ruleSet.isDryRun();
+            this.bodyMatches = recordStats ? BodyMatches.open(ruleSet, view, type, body) : null;
+            this.skippedRules = new boolean[ruleSet.rules().size()];
+            this.matchesByRule = new RuleMatches[ruleSet.rules().size()];
+        }
+
+        private void run() {
+            prefilterRules();
+
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (RuleBatch batch : planBatches()) {
+                tasks.add(new RuleRange(batch.rules(), batch.content(), 0, batch.rules().size()));
+            }
+            ForkJoinTask.invokeAll(tasks);
+
+            if (bodyMatches != null) {
+                bodyMatches.publish();
+            }
+        }
+
+        private List<RuleMatches> results() {
+            List<RuleMatches> matches = new ArrayList<>();
+            for (RuleMatches ruleMatches : matchesByRule) {
+                if (ruleMatches != null) {
+                    matches.add(ruleMatches);
+                }
+            }
+            return Collections.unmodifiableList(matches);
+        }
+
+        private CharSequence content(CompiledRuleSet.Target target) {
+            return ScanWindows.bounded(target, target.select(message, firstLine, header, body));
+        }
+
+        /**
+         * 按分组顺序收集需要执行的规则并分桶。分组只包含已开启且作用于当前消息类型的规则；
+         * 分组内遇到匹配内容为空的规则时，其后的规则不再执行。
+         */
+        private Collection<RuleBatch> planBatches() {
+            Map<CompiledRuleSet.Target, CharSequence> contents = new EnumMap<>(CompiledRuleSet.Target.class);
+            Map<String, RuleBatch> batches = new LinkedHashMap<>();
+            for (List<CompiledRuleSet.CompiledRule> ruleGroup : view.groups()) {
+                for (CompiledRuleSet.CompiledRule rule : ruleGroup) {
+                    CharSequence matchContent = rule.target() == null ? "" : contents.computeIfAbsent(rule.target(), this::content);
 
                     // 匹配内容为空则跳出
-                    if (matchContent.isBlank()) {
+                    if (StringProcessor.isBlank(matchContent)) {
                         break;
                     }
 
-                    try {
-                        result = new ArrayList<>(executeRegexEngine(f_regex, s_regex, matchContent, format, engine, sensitive));
-                    } catch (Exception e) {
-                        api.logging().logToError(String.format("[x] Error Info:\nName: %s\nRegex: %s", name, f_regex));
-                        api.logging().logToError(e.getMessage());
+                    // 预过滤确定不会命中的规则不再逐条匹配
+                    if (skippedRules[rule.index()]) {
+                        if (isBodyScoped(rule)) {
+                            bodyMatches.record(rule.index(), BodyMatchCache.RuleResult.EMPTY);
+                        }
                         continue;
                     }
+                    batches.computeIfAbsent(rule.target() + "|" + rule.isNfa() + "|" + rule.sensitive(),
+                            k -> new RuleBatch(matchContent, new ArrayList<>())).rules().add(rule);
+                }
+            }
+            return batches.values();
+        }
 
-                    // 去除重复内容
-                    HashSet<String> tmpList = new HashSet<>(result);
-                    result.clear();
-                    result.addAll(tmpList);
+        /** 正文范围的规则结果按正文缓存，偏移相对正文起点保存，使用时再换算到当前消息。 */
+        private boolean isBodyScoped(CompiledRuleSet.CompiledRule rule) {
+            return bodyMatches != null && rule.target() == CompiledRuleSet.Target.BODY;
+        }
 
-                    if (!result.isEmpty()) {
-                        tmpMap.put("color", color);
-                        String dataStr = String.join(Config.boundary, result);
-                        tmpMap.put("data", dataStr);
+        private void matchRule(CompiledRuleSet.CompiledRule rule, CharSequence matchContent) {
+            // 已隔离的规则不再匹配
+            if (recordStats && RuleGuard.isQuarantined(rule.key())) {
+                return;
+            }
 
-                        String nameAndSize = String.format("%s (%s)", name, result.size());
-                        finalMap.put(nameAndSize, tmpMap);
+            List<String> result;
+            List<MatchSpan> spans;
+            boolean bodyScoped = isBodyScoped(rule);
+            int baseOffset = rule.target() == CompiledRuleSet.Target.LINE ? 0 : offsetInMessage(matchContent, message);
+            BodyMatchCache.RuleResult cachedResult = bodyScoped ? bodyMatches.lookup(rule.index()) : null;
+            if (cachedResult != null) {
+                result = cachedResult.values();
+                spans = BodyMatches.spans(cachedResult, type, baseOffset);
+            } else {
+                MatchCollector collector = executeRule(rule, matchContent, type, bodyScoped ? 0 : baseOffset, recordStats);
+                if (collector == null) {
+                    return;
+                }
 
-                        if (persistMatches) {
-                            updateGlobalMatchCache(api, host, name, result, true);
-                        }
-                    }
+                // 去除重复内容，保留首次出现的顺序
+                result = List.copyOf(new LinkedHashSet<>(collector.values));
+                spans = Collections.unmodifiableList(collector.spans);
+                if (bodyScoped) {
+                    BodyMatchCache.RuleResult bodyResult = BodyMatches.result(result, spans);
+                    bodyMatches.record(rule.index(), bodyResult);
+                    spans = BodyMatches.spans(bodyResult, type, baseOffset);
                 }
             }
-        });
 
-        return finalMap;
-    }
+            if (!result.isEmpty()) {
+                matchesByRule[rule.index()] = new RuleMatches(rule.key(), rule.name(), result, spans, rule.colorIndex());
 
-    private Map<String, List<Object[]>> snapshotRules() {
-        Map<String, List<Object[]>> snapshot = new LinkedHashMap<>();
-        synchronized (Config.globalRules) {
-            Config.globalRules.forEach((key, rules) -> {
-                if (rules == null) {
-                    snapshot.put(key, Collections.emptyList());
+                if (persistMatches) {
+                    updateGlobalMatchCache(api, host, rule.name(), result, true);
+                }
+            }
+        }
+
+        /**
+         * 同一分桶内 [from, to) 的规则，规则数与内容长度的乘积较大时对半拆分。
+         */
+        private final class RuleRange extends RecursiveAction {
+            private final List<CompiledRuleSet.CompiledRule> rules;
+            private final CharSequence content;
+            private final int from;
+            private final int to;
+
+            private RuleRange(List<CompiledRuleSet.CompiledRule> rules, CharSequence content, int from, int to) {
+                this.rules = rules;
+                this.content = content;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                int count = to - from;
+                if (count > 1 && (long) count * content.length() > SPLIT_CHARS) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new RuleRange(rules, content, from, middle), new RuleRange(rules, content, middle, to));
                     return;
                 }
-                List<Object[]> ruleRows = new ArrayList<>(rules.length);
-                for (Object[] rule : rules) {
-                    if (rule != null) {
-                        ruleRows.add(rule.clone());
-                    }
+                for (int i = from; i < to; i++) {
+                    matchRule(rules.get(i), content);
                 }
-                snapshot.put(key, ruleRows);
-            });
+            }
+        }
+
+        /**
+         * 规则逐条匹配前的预过滤，标记确定不会命中的规则，各分桶并行扫描：
+         * 同一匹配内容、同一大小写设置的 DFA 规则合并成一个自动机扫描一次（只有一条规则的分组直接走逐条匹配）；
+         * NFA 规则按匹配内容分组，用必需字面量的 Aho-Corasick 自动机扫描一次，字面量未出现的规则跳过。
+         * 正文结果来自缓存时，正文范围的分桶不再扫描。
+         */
+        private void prefilterRules() {
+            boolean bodyCached = bodyMatches != null && bodyMatches.isHit();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (CompiledRuleSet.Bucket bucket : view.nfaBuckets()) {
+                if (!(bodyCached && bucket.target() == CompiledRuleSet.Target.BODY)) {
+                    tasks.add(ForkJoinTask.adapt(() -> prefilterNfaBucket(bucket)));
+                }
+            }
+            for (CompiledRuleSet.Bucket bucket : view.dfaBuckets()) {
+                if (!(bodyCached && bucket.target() == CompiledRuleSet.Target.BODY)) {
+                    tasks.add(ForkJoinTask.adapt(() -> prefilterDfaBucket(bucket)));
+                }
+            }
+            ForkJoinTask.invokeAll(tasks);
+        }
+
+        private void prefilterNfaBucket(CompiledRuleSet.Bucket bucket) {
+            CharSequence content = content(bucket.target());
+            if (StringProcessor.isBlank(content)) {
+                return;
+            }
+
+            List<CompiledRuleSet.CompiledRule> rules = bucket.rules();
+            LiteralPrefilter prefilter = bucket.literalPrefilter();
+            boolean[] candidates = prefilter.scan(content);
+            for (int i = 0; i < candidates.length; i++) {
+                if (!prefilter.isFiltered(i)) {
+                    continue;
+                }
+                if (recordStats) {
+                    RuleProfiler.recordPrefilter(rules.get(i).key(), !candidates[i]);
+                }
+                if (!candidates[i]) {
+                    skippedRules[rules.get(i).index()] = true;
+                }
+            }
+        }
+
+        private void prefilterDfaBucket(CompiledRuleSet.Bucket bucket) {
+            CharSequence content = content(bucket.target());
+            if (StringProcessor.isBlank(content)) {
+                return;
+            }
+
+            List<CompiledRuleSet.CompiledRule> rules = bucket.rules();
+            int[] matchEnds = bucket.combinedAutomaton().scan(bucket.sensitive() ? content : new LowerCaseView(content));
+            for (int i = 0; i < matchEnds.length; i++) {
+                if (matchEnds[i] == MultiRuleAutomaton.NO_MATCH) {
+                    skippedRules[rules.get(i).index()] = true;
+                }
+            }
         }
-        return snapshot;
     }
 
-    private List<String> executeRegexEngine(String f_regex, String s_regex, String content, String format, String engine, boolean sensitive) {
-        List<String> retList = new ArrayList<>();
-        if ("nfa".equals(engine)) {
-            Matcher matcher = createPatternMatcher(f_regex, content, sensitive);
-            retList.addAll(extractRegexMatchResults(s_regex, format, sensitive, matcher));
-        } else {
-            // DFA不支持格式化输出，因此不关注format
-            String newContent = content;
-            String newFirstRegex = f_regex;
-            if (!sensitive) {
-                newContent = content.toLowerCase();
-                newFirstRegex = f_regex.toLowerCase();
+    private record RuleBatch(CharSequence content, List<CompiledRuleSet.CompiledRule> rules) {
+    }
+
+
+    /**
+     * 按窗口逐段执行规则，内容不超过一个窗口时只有一段。每段只接受起点在重叠区之前的匹配，
+     * 重叠区内的匹配留给下一段完整找到；下一段从上一个匹配的末尾之后开始，不会重复计数。
+     */
+    private void executeRegexEngine(CompiledRuleSet.CompiledRule rule, CharSequence content, MatchCollector collector) {
+        if (rule.compileError() != null) {
+            throw rule.compileError();
+        }
+
+        int length = content.length();
+        int windowChars = ScanWindows.windowChars();
+        int overlap = ScanWindows.overlap(rule.maxMatchLength());
+        if (rule.isNfa()) {
+            // 整段内容共用一个截止时间；窗口边界对环视与单词边界透明，^ 与 $ 只匹配内容本身的首尾
+            DeadlineCharSequence guardedContent = RuleGuard.guard(content);
+            Matcher matcher = rule.firstPattern().matcher(guardedContent);
+            matcher.useTransparentBounds(true).useAnchoringBounds(false);
+            for (int start = 0; ; ) {
+                int end = (int) Math.min(length, (long) start + windowChars);
+                collector.window(end == length ? end : end - overlap);
+                matcher.region(start, end);
+                BooleanSupplier finder = rule.spanAutomaton() == null ? matcher::find
+                        : new ConfirmedSpans(rule.spanStartAutomaton(), matcher, guardedContent, start, end);
+                extractRegexMatchResults(rule, matcher, finder, guardedContent, collector);
+                if (end == length) {
+                    return;
+                }
+                start = collector.nextWindowStart(end - overlap);
             }
-            AutomatonMatcher autoMatcher = createAutomatonMatcher(newFirstRegex, newContent);
-            retList.addAll(extractRegexMatchResults(s_regex, autoMatcher, content));
         }
-        return retList;
+
+        // DFA不支持格式化输出，因此不关注format；小写视图与原内容位置一一对应，匹配结果按偏移从原内容截取
+        CharSequence newContent = rule.sensitive() ? content : new LowerCaseView(content);
+        for (int start = 0; ; ) {
+            int end = (int) Math.min(length, (long) start + windowChars);
+            collector.window(end == length ? end : end - overlap);
+            AutomatonMatcher autoMatcher = rule.firstAutomaton().newMatcher(newContent, start, end);
+            extractRegexMatchResults(rule, autoMatcher, content, start, collector);
+            if (end == length) {
+                return;
+            }
+            start = collector.nextWindowStart(end - overlap);
+        }
     }
 
-    private List<String> extractRegexMatchResults(String s_regex, String format, boolean sensitive, Matcher matcher) {
-        List<String> matches = new ArrayList<>();
-        if (s_regex.isEmpty()) {
-            matches.addAll(formatMatchResults(matcher, format));
+    /** finder 推进一级匹配，成功后 matcher 持有本次匹配的位置与捕获组。 */
+    private void extractRegexMatchResults(CompiledRuleSet.CompiledRule rule, Matcher matcher, BooleanSupplier finder, DeadlineCharSequence guardedContent, MatchCollector collector) {
+        if (rule.secondPattern() == null) {
+            formatMatchResults(matcher, finder, rule, 0, true, collector);
         } else {
-            while (matcher.find()) {
+            while (finder.getAsBoolean()) {
+                if (!collector.claim(matcher.start(), matcher.end())) {
+                    continue;
+                }
                 String matchContent = matcher.group(1);
                 if (!matchContent.isEmpty()) {
-                    Matcher secondMatcher = createPatternMatcher(s_regex, matchContent, sensitive);
-                    matches.addAll(formatMatchResults(secondMatcher, format));
+                    Matcher secondMatcher = rule.secondPattern().matcher(guardedContent.wrap(matchContent));
+                    formatMatchResults(secondMatcher, secondMatcher::find, rule, matcher.start(1), false, collector);
                 }
             }
         }
-        return matches;
     }
 
-    private List<String> extractRegexMatchResults(String s_regex, AutomatonMatcher autoMatcher, String content) {
-        List<String> matches = new ArrayList<>();
-        if (s_regex.isEmpty()) {
-            matches.addAll(formatMatchResults(autoMatcher, content));
+    /** autoMatcher 的位置相对于窗口起点 windowStart。 */
+    private void extractRegexMatchResults(CompiledRuleSet.CompiledRule rule, AutomatonMatcher autoMatcher, CharSequence content, int windowStart, MatchCollector collector) {
+        if (rule.secondAutomaton() == null) {
+            formatMatchResults(autoMatcher, content, windowStart, true, collector);
         } else {
+            // 二次匹配直接在原内容的命中区间上运行，偏移加上区间起点即为原内容中的位置
             while (autoMatcher.find()) {
-                String s = autoMatcher.group();
-                if (!s.isEmpty()) {
-                    autoMatcher = createAutomatonMatcher(s_regex, extractMatchedContent(content, s));
-                    matches.addAll(formatMatchResults(autoMatcher, content));
+                int start = windowStart + autoMatcher.start();
+                int end = windowStart + autoMatcher.end();
+                if (end > start && collector.claim(start, end)) {
+                    formatMatchResults(rule.secondAutomaton().newMatcher(content, start, end), content, start, false, collector);
                 }
             }
         }
-        return matches;
     }
 
-    private List<String> formatMatchResults(Matcher matcher, String format) {
-        List<String> stringList = new ArrayList<>();
-
+    /** claim 为 true 表示 matcher 是一级匹配，需要按窗口归属过滤。 */
+    private void formatMatchResults(Matcher matcher, BooleanSupplier finder, CompiledRuleSet.CompiledRule rule, int shift, boolean claim, MatchCollector collector) {
         // 当format为{0}时，直接返回第一个捕获组，避免格式化开销
-        if ("{0}".equals(format)) {
-            while (matcher.find()) {
+        if ("{0}".equals(rule.format())) {
+            while (finder.getAsBoolean()) {
+                if (claim && !collector.claim(matcher.start(), matcher.end())) {
+                    continue;
+                }
                 if (matcher.groupCount() > 0 && !matcher.group(1).isEmpty()) {
-                    stringList.add(matcher.group(1));
+                    collector.add(matcher.group(1), shift + matcher.start(1), shift + matcher.end(1));
                 }
             }
-            return stringList;
+            return;
         }
 
-        // 需要复杂格式化的情况
-        List<Integer> indexList = parseIndexesFromString(format);
-        while (matcher.find()) {
+        // 需要复杂格式化的情况，下标与模板在规则编译时已解析
+        int[] indexes = rule.formatIndexes();
+        while (finder.getAsBoolean()) {
+            if (claim && !collector.claim(matcher.start(), matcher.end())) {
+                continue;
+            }
             if (!matcher.group(1).isEmpty()) {
-                Object[] params = indexList.stream().map(i -> {
-                    if (!matcher.group(i + 1).isEmpty()) {
-                        return matcher.group(i + 1);
-                    }
-                    return "";
-                }).toArray();
+                Object[] params = new Object[indexes.length];
+                for (int i = 0; i < indexes.length; i++) {
+                    String group = matcher.group(indexes[i] + 1);
+                    params[i] = group.isEmpty() ? "" : group;
+                }
 
-                stringList.add(MessageFormat.format(normalizeFormatIndexes(format), params));
+                collector.add(MessageFormat.format(rule.normalizedFormat(), params), shift + matcher.start(), shift + matcher.end());
             }
         }
+    }
 
-        return stringList;
+    private void formatMatchResults(AutomatonMatcher matcher, CharSequence content, int shift, boolean claim, MatchCollector collector) {
+        while (matcher.find()) {
+            int start = shift + matcher.start();
+            int end = shift + matcher.end();
+            if (claim && !collector.claim(start, end)) {
+                continue;
+            }
+            if (end > start) {
+                collector.add(content.subSequence(start, end).toString(), start, end);
+            }
+        }
     }
 
-    private List<String> formatMatchResults(AutomatonMatcher matcher, String content) {
-        List<String> stringList = new ArrayList<>();
+    /**
+     * 与 {@link Matcher#find()} 结果相同的一级匹配序列：自动机找出下一个可能的匹配起点，
+     * 原表达式只在该起点处用 lookingAt 确认，失败则从下一个字符重新定位。
+     * 自动机接受的语言包含原表达式的全部匹配，不会漏掉真实的起点；正文中的大段无关内容只经过自动机。
+     * 自动机直接在内容上逐字符转移，不经 newMatcher（它对剩余内容取 subSequence，String 内容每个候选都会复制一次）。
+     */
+    private static final class ConfirmedSpans implements BooleanSupplier {
+        private final RunAutomaton startAutomaton;
+        private final Matcher matcher;
+        private final CharSequence content;
+        private final int start;
+        private final int end;
+        private int position;
+        private BitSet candidates;
+
+        private ConfirmedSpans(RunAutomaton startAutomaton, Matcher matcher, CharSequence content, int start, int end) {
+            this.startAutomaton = startAutomaton;
+            this.matcher = matcher;
+            this.content = content;
+            this.start = start;
+            this.position = start;
+            this.end = end;
+        }
 
-        while (matcher.find()) {
-            String s = matcher.group(0);
-            if (!s.isEmpty()) {
-                stringList.add(extractMatchedContent(content, s));
+        @Override
+        public boolean getAsBoolean() {
+            while (position < end) {
+                int start = nextCandidate(position);
+                if (start < 0) {
+                    position = end;
+                    return false;
+                }
+
+                matcher.region(start, end);
+                if (matcher.lookingAt()) {
+                    // 与 find 一致：空匹配之后前进一个字符
+                    position = matcher.end() > start ? matcher.end() : start + 1;
+                    return true;
+                }
+                position = start + 1;
             }
+            return false;
         }
 
-        return stringList;
+        /** 自 from 起第一个在窗口内存在匹配的起点；首次调用时自窗口末尾反向扫描一遍，记下全部起点。 */
+        private int nextCandidate(int from) {
+            if (candidates == null) {
+                candidates = new BitSet(end - start);
+                int state = startAutomaton.getInitialState();
+                for (int i = end - 1; i >= start; i--) {
+                    state = startAutomaton.step(state, content.charAt(i));
+                    if (startAutomaton.isAccept(state)) {
+                        candidates.set(i - start);
+                    }
+                }
+            }
+            int candidate = candidates.nextSetBit(from - start);
+            return candidate < 0 ? -1 : start + candidate;
+        }
     }
 
-    private Matcher createPatternMatcher(String regex, String content, boolean sensitive) {
-        String cacheKey = regex + "\u0000" + sensitive;
-        Pattern pattern = nfaPatternCache.computeIfAbsent(cacheKey, k -> {
-            int flags = sensitive ? 0 : Pattern.CASE_INSENSITIVE;
-            return Pattern.compile(regex, flags);
-        });
-
-        return pattern.matcher(content);
+    /** 匹配内容在完整消息中的起始位置，无法确定时返回 -1，此时不记录偏移。 */
+    private static int offsetInMessage(CharSequence content, CharSequence message) {
+        if (content == message) {
+            return 0;
+        }
+        if (content instanceof Latin1Text slice && message instanceof Latin1Text text) {
+            return slice.offsetIn(text);
+        }
+        return -1;
     }
 
-    private AutomatonMatcher createAutomatonMatcher(String regex, String content) {
-        RunAutomaton runAuto = dfaAutomatonCache.computeIfAbsent(regex, k -> {
-            RegExp regexp = new RegExp(regex);
-            Automaton auto = regexp.toAutomaton();
-            return new RunAutomaton(auto, true);
-        });
+    /**
+     * 单条规则在一条消息上的匹配结果：提取值按出现顺序保存，偏移换算到完整消息并限制数量。
+     * 分窗扫描时记录当前窗口负责的匹配起点范围与已接受匹配的末尾，窗口重叠区内的匹配只接受一次。
+     */
+    private static final class MatchCollector {
+        private final String type;
+        private final int baseOffset;
+        private final List<String> values = new ArrayList<>();
+        private final List<MatchSpan> spans = new ArrayList<>();
+        private int acceptBefore = Integer.MAX_VALUE;
+        private int consumedUntil;
+
+        private MatchCollector(String type, int baseOffset) {
+            this.type = type;
+            this.baseOffset = baseOffset;
+        }
 
-        return runAuto.newMatcher(content);
+        private void window(int acceptBefore) {
+            this.acceptBefore = acceptBefore;
+        }
+
+        /** 一级匹配 [start, end) 是否由当前窗口接受，接受后其后的窗口从 end 之后开始。 */
+        private boolean claim(int start, int end) {
+            if (start < consumedUntil || start >= acceptBefore) {
+                return false;
+            }
+            consumedUntil = end;
+            return true;
+        }
+
+        private int nextWindowStart(int overlapStart) {
+            return Math.max(overlapStart, consumedUntil);
+        }
+
+        private void add(String value, int start, int end) {
+            values.add(value);
+            if (baseOffset >= 0 && spans.size() < MAX_SPANS_PER_RULE) {
+                spans.add(new MatchSpan(type, baseOffset + start, baseOffset + end));
+            }
+        }
     }
 
-    private LinkedList<Integer> parseIndexesFromString(String input) {
-        LinkedList<Integer> indexes = new LinkedList<>();
-        Matcher matcher = formatIndexPattern.matcher(input);
+    /**
+     * 一次匹配中正文范围规则的缓存读写：命中时按规则序号取出上次的结果，未命中时收集本次完整执行的规则结果，
+     * 匹配结束后一起写入 {@link BodyMatchCache}。超时、出错或已隔离的规则不写入，下次仍会重新匹配。
+     */
+    private static final class BodyMatches {
+        private final BodyMatchCache.Key key;
+        private final Map<Integer, BodyMatchCache.RuleResult> cached;
+        private final Map<Integer, BodyMatchCache.RuleResult> fresh = new ConcurrentHashMap<>();
+
+        private BodyMatches(BodyMatchCache.Key key, Map<Integer, BodyMatchCache.RuleResult> cached) {
+            this.key = key;
+            this.cached = cached;
+        }
 
-        while (matcher.find()) {
-            String index = matcher.group(1);
-            if (!index.isEmpty()) {
-                indexes.add(Integer.valueOf(index));
+        /** 规则集中没有作用于正文的规则或正文为空时返回 null。 */
+        private static BodyMatches open(CompiledRuleSet ruleSet, CompiledRuleSet.View view, String type, CharSequence body) {
+            if (!view.hasTarget(CompiledRuleSet.Target.BODY)) {
+                return null;
+            }
+            CharSequence content = ScanWindows.bounded(CompiledRuleSet.Target.BODY, body);
+            if (StringProcessor.isBlank(content)) {
+                return null;
             }
+            BodyMatchCache.Key key = new BodyMatchCache.Key(MessageFingerprint.ofChars(content), ruleSet.version(), type);
+            return new BodyMatches(key, BodyMatchCache.get(key));
         }
 
-        return indexes;
-    }
+        private boolean isHit() {
+            return cached != null;
+        }
 
-    private String extractMatchedContent(String content, String s) {
-        byte[] contentByte = api.utilities().byteUtils().convertFromString(content);
-        byte[] sByte = api.utilities().byteUtils().convertFromString(s);
-        int startIndex = api.utilities().byteUtils().indexOf(contentByte, sByte, false, 1, contentByte.length);
-        int endIndex = startIndex + s.length();
+        private BodyMatchCache.RuleResult lookup(int ruleIndex) {
+            return cached == null ? null : cached.get(ruleIndex);
+        }
 
-        return content.substring(startIndex, endIndex);
+        private void record(int ruleIndex, BodyMatchCache.RuleResult result) {
+            if (cached == null) {
+                fresh.put(ruleIndex, result);
+            }
+        }
+
+        private void publish() {
+            if (cached == null) {
+                BodyMatchCache.put(key, fresh);
+            }
+        }
+
+        /** values 不可变；spans 的偏移相对正文起点。 */
+        private static BodyMatchCache.RuleResult result(List<String> values, List<MatchSpan> spans) {
+            int[] offsets = new int[spans.size() * 2];
+            for (int i = 0; i < spans.size(); i++) {
+                offsets[2 * i] = spans.get(i).start();
+                offsets[2 * i + 1] = spans.get(i).end();
+            }
+            return new BodyMatchCache.RuleResult(values, offsets);
+        }
+
+        /** 换算到当前消息中的位置；正文不在消息上（baseOffset 为负）时没有偏移。 */
+        private static List<MatchSpan> spans(BodyMatchCache.RuleResult result, String type, int baseOffset) {
+            if (baseOffset < 0) {
+                return List.of();
+            }
+            int[] offsets = result.spans();
+            MatchSpan[] spans = new MatchSpan[offsets.length / 2];
+            for (int i = 0; i < spans.length; i++) {
+                spans[i] = new MatchSpan(type, baseOffset + offsets[2 * i], baseOffset + offsets[2 * i + 1]);
+            }
+            return List.of(spans);
+        }
     }
 
-    private String normalizeFormatIndexes(String format) {
-        Matcher matcher = formatIndexPattern.matcher(format);
-        int count = 0;
-        while (matcher.find()) {
-            String newStr = String.format("{%s}", count);
-            String matchStr = matcher.group(0);
-            format = format.replace(matchStr, newStr);
-            count++;
+    /**
+     * 不区分大小写的 DFA 匹配使用的小写视图，逐字符转换，不复制内容；长度与原内容一致，位置可直接对应。
+     */
+    private static final class LowerCaseView implements CharSequence {
+        private final CharSequence content;
+
+        private LowerCaseView(CharSequence content) {
+            this.content = content;
+        }
+
+        @Override
+        public int length() {
+            return content.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return Character.toLowerCase(content.charAt(index));
         }
 
-        return format;
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new LowerCaseView(content.subSequence(start, end));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(content.length());
+            for (int i = 0; i < content.length(); i++) {
+                builder.append(Character.toLowerCase(content.charAt(i)));
+            }
+            return builder.toString();
+        }
     }
 }
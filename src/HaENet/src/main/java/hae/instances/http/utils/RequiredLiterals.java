@@ -0,0 +1,386 @@
+package hae.instances.http.utils;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 从 java.util.regex 表达式中提取必需字面量：任何匹配都至少包含返回集合中的一个字符串。
+ *
+ * <p>只做保守分析：拼接取选择性最好的一侧，分支取并集，可为零次的量词不贡献要求，
+ * 字符类、反向引用等视为任意内容。遇到无法确定语义的写法（如 \x、\p、除 i 以外的内联标志）直接放弃，
+ * 返回空集合表示该规则必须始终执行。字面量按 ASCII 转为小写，与大小写不敏感匹配的折叠方式一致。</p>
+ */
+final class RequiredLiterals {
+    static final int MIN_LITERAL_LENGTH = 3;
+    private static final int MAX_EXACT_SET_SIZE = 16;
+    private static final int MAX_CLASS_LITERALS = 4;
+
+    private RequiredLiterals() {
+    }
+
+    static Set<String> of(String regex) {
+        if (regex == null || regex.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        try {
+            Parser parser = new Parser(regex);
+            Info info = parser.parseAlternation();
+            if (parser.position != regex.length()) {
+                return Collections.emptySet();
+            }
+
+            Set<String> required = info.requirement();
+            if (required == null || required.isEmpty()) {
+                return Collections.emptySet();
+            }
+
+            Set<String> literals = new LinkedHashSet<>();
+            for (String literal : required) {
+                if (literal.length() < MIN_LITERAL_LENGTH) {
+                    return Collections.emptySet();
+                }
+                literals.add(foldCase(literal));
+            }
+            return Collections.unmodifiableSet(literals);
+        } catch (UnsupportedSyntax e) {
+            return Collections.emptySet();
+        }
+    }
+
+    static String foldCase(CharSequence value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            builder.append(foldCase(value.charAt(i)));
+        }
+        return builder.toString();
+    }
+
+    static char foldCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * exact 非空时表示该片段只能匹配其中之一；anyOf 为任何匹配必然包含的字面量之一，null 表示没有要求。
+     */
+    private record Info(Set<String> exact, Set<String> anyOf) {
+        private static final Info ANY = new Info(null, null);
+        private static final Info EMPTY = new Info(Set.of(""), null);
+
+        static Info literal(String value) {
+            return new Info(Set.of(value), null);
+        }
+
+        Set<String> requirement() {
+            return exact != null ? exact : anyOf;
+        }
+
+        Info concat(Info next) {
+            Set<String> product = new LinkedHashSet<>();
+            for (String left : exact) {
+                for (String right : next.exact) {
+                    product.add(left + right);
+                }
+            }
+            return new Info(product, null);
+        }
+
+        Info repeat(int min, int max) {
+            // 可为零次时既不确定也没有要求
+            if (min == 0) {
+                return ANY;
+            }
+            if (min == 1 && max == 1) {
+                return this;
+            }
+            return new Info(null, requirement());
+        }
+
+        static Info alternate(Info left, Info right) {
+            if (left.exact != null && right.exact != null && left.exact.size() + right.exact.size() <= MAX_EXACT_SET_SIZE) {
+                Set<String> union = new LinkedHashSet<>(left.exact);
+                union.addAll(right.exact);
+                return new Info(union, null);
+            }
+
+            Set<String> leftRequired = left.requirement();
+            Set<String> rightRequired = right.requirement();
+            if (leftRequired == null || rightRequired == null) {
+                return ANY;
+            }
+            Set<String> union = new LinkedHashSet<>(leftRequired);
+            union.addAll(rightRequired);
+            return new Info(null, union);
+        }
+
+        private static Set<String> better(Set<String> left, Set<String> right) {
+            return score(right) > score(left) ? right : left;
+        }
+
+        private static int score(Set<String> literals) {
+            if (literals == null) {
+                return -1;
+            }
+            int shortest = Integer.MAX_VALUE;
+            for (String literal : literals) {
+                shortest = Math.min(shortest, literal.length());
+            }
+            return shortest;
+        }
+    }
+
+    private static final class UnsupportedSyntax extends Exception {
+        private UnsupportedSyntax() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Parser {
+        private final String regex;
+        private int position;
+
+        private Parser(String regex) {
+            this.regex = regex;
+        }
+
+        private Info parseAlternation() throws UnsupportedSyntax {
+            Info result = parseConcat();
+            while (position < regex.length() && regex.charAt(position) == '|') {
+                position++;
+                result = Info.alternate(result, parseConcat());
+            }
+            return result;
+        }
+
+        private Info parseConcat() throws UnsupportedSyntax {
+            // run 为当前连续的确定片段，被非确定片段打断时并入 best，避免“[a-z]+password”丢掉后面的整段字面量
+            Info run = Info.EMPTY;
+            Set<String> best = null;
+            boolean exact = true;
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+
+                Info atom = parseQuantifier(parseAtom());
+                if (atom.exact() != null && run.exact().size() * atom.exact().size() <= MAX_EXACT_SET_SIZE) {
+                    run = run.concat(atom);
+                    continue;
+                }
+
+                exact = false;
+                best = Info.better(best, run.exact());
+                if (atom.exact() != null) {
+                    run = atom;
+                } else {
+                    best = Info.better(best, atom.anyOf());
+                    run = Info.EMPTY;
+                }
+            }
+
+            if (exact) {
+                return run;
+            }
+            return new Info(null, Info.better(best, run.exact()));
+        }
+
+        private Info parseAtom() throws UnsupportedSyntax {
+            char c = regex.charAt(position++);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    return parseCharClass();
+                case '.':
+                    return Info.ANY;
+                case '^':
+                case '$':
+                    return Info.EMPTY;
+                case '\\':
+                    return parseEscape();
+                case '*':
+                case '+':
+                case '?':
+                    throw new UnsupportedSyntax();
+                default:
+                    return Info.literal(String.valueOf(c));
+            }
+        }
+
+        private Info parseGroup() throws UnsupportedSyntax {
+            boolean lookaround = false;
+            if (regex.startsWith("?", position)) {
+                position++;
+                if (regex.startsWith(":", position) || regex.startsWith(">", position)) {
+                    position++;
+                } else if (regex.startsWith("=", position) || regex.startsWith("!", position)) {
+                    position++;
+                    lookaround = true;
+                } else if (regex.startsWith("<=", position) || regex.startsWith("<!", position)) {
+                    position += 2;
+                    lookaround = true;
+                } else if (regex.startsWith("<", position)) {
+                    int end = regex.indexOf('>', position);
+                    if (end < 0) {
+                        throw new UnsupportedSyntax();
+                    }
+                    position = end + 1;
+                } else {
+                    // 只接受 i 标志：字面量本身按 ASCII 折叠大小写
+                    while (position < regex.length() && (regex.charAt(position) == 'i' || regex.charAt(position) == '-')) {
+                        position++;
+                    }
+                    if (regex.startsWith(")", position)) {
+                        position++;
+                        return Info.EMPTY;
+                    }
+                    if (!regex.startsWith(":", position)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    position++;
+                }
+            }
+
+            Info inner = parseAlternation();
+            if (!regex.startsWith(")", position)) {
+                throw new UnsupportedSyntax();
+            }
+            position++;
+            return lookaround ? Info.EMPTY : inner;
+        }
+
+        private Info parseCharClass() throws UnsupportedSyntax {
+            boolean negated = regex.startsWith("^", position);
+            if (negated) {
+                position++;
+            }
+
+            Set<String> members = new LinkedHashSet<>();
+            boolean simple = !negated;
+            int depth = 1;
+            boolean first = true;
+            while (position < regex.length()) {
+                char c = regex.charAt(position++);
+                if (c == '\\') {
+                    if (position >= regex.length()) {
+                        throw new UnsupportedSyntax();
+                    }
+                    char escaped = regex.charAt(position++);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        simple = false;
+                    } else {
+                        members.add(String.valueOf(escaped));
+                    }
+                } else if (c == '[') {
+                    depth++;
+                    simple = false;
+                } else if (c == ']' && !first) {
+                    depth--;
+                    if (depth == 0) {
+                        break;
+                    }
+                } else if (c == '-' && !first && position < regex.length() && regex.charAt(position) != ']') {
+                    simple = false;
+                } else if (c == '&' && regex.startsWith("&", position)) {
+                    simple = false;
+                } else {
+                    members.add(String.valueOf(c));
+                }
+                first = false;
+            }
+            if (depth != 0) {
+                throw new UnsupportedSyntax();
+            }
+
+            if (!simple || members.isEmpty() || members.size() > MAX_CLASS_LITERALS) {
+                return Info.ANY;
+            }
+            return new Info(members, null);
+        }
+
+        private Info parseEscape() throws UnsupportedSyntax {
+            if (position >= regex.length()) {
+                throw new UnsupportedSyntax();
+            }
+
+            char c = regex.charAt(position++);
+            switch (c) {
+                case 'd', 'D', 'w', 'W', 's', 'S', 'h', 'H', 'v', 'V', 'R', 'X':
+                    return Info.ANY;
+                case 'b', 'B', 'A', 'G', 'z', 'Z':
+                    return Info.EMPTY;
+                case 't':
+                    return Info.literal("\t");
+                case 'n':
+                    return Info.literal("\n");
+                case 'r':
+                    return Info.literal("\r");
+                case 'f':
+                    return Info.literal("\f");
+                case 'a':
+                    return Info.literal("\u0007");
+                case 'e':
+                    return Info.literal("\u001B");
+                case 'Q': {
+                    int end = regex.indexOf("\\E", position);
+                    String quoted = end < 0 ? regex.substring(position) : regex.substring(position, end);
+                    position = end < 0 ? regex.length() : end + 2;
+                    return Info.literal(quoted);
+                }
+                default:
+                    if (c >= '1' && c <= '9') {
+                        // 反向引用可能匹配空串
+                        while (position < regex.length() && Character.isDigit(regex.charAt(position))) {
+                            position++;
+                        }
+                        return Info.ANY;
+                    }
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new UnsupportedSyntax();
+                    }
+                    return Info.literal(String.valueOf(c));
+            }
+        }
+
+        private Info parseQuantifier(Info atom) throws UnsupportedSyntax {
+            if (position >= regex.length()) {
+                return atom;
+            }
+
+            char c = regex.charAt(position);
+            Info result;
+            if (c == '*') {
+                position++;
+                result = atom.repeat(0, Integer.MAX_VALUE);
+            } else if (c == '+') {
+                position++;
+                result = atom.repeat(1, Integer.MAX_VALUE);
+            } else if (c == '?') {
+                position++;
+                result = atom.repeat(0, 1);
+            } else if (c == '{' && isCountedQuantifier()) {
+                int end = regex.indexOf('}', position);
+                String[] bounds = regex.substring(position + 1, end).split(",", -1);
+                position = end + 1;
+                int min = Integer.parseInt(bounds[0].trim());
+                int max = bounds.length == 1 ? min : (bounds[1].isBlank() ? Integer.MAX_VALUE : Integer.parseInt(bounds[1].trim()));
+                result = atom.repeat(min, max);
+            } else {
+                return atom;
+            }
+
+            // 惰性与占有量词不改变可匹配的内容
+            if (position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {
+                position++;
+            }
+            return result;
+        }
+
+        private boolean isCountedQuantifier() {
+            int end = regex.indexOf('}', position);
+            return end > position + 1 && regex.substring(position + 1, end).matches("\\s*\\d+\\s*(,\\s*\\d*\\s*)?");
+        }
+    }
+}
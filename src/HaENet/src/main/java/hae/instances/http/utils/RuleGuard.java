@@ -0,0 +1,92 @@
+package hae.instances.http.utils;
+
+import hae.Config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规则匹配的时间预算与自动隔离：NFA 规则在单条消息上的匹配超过预算即中止，
+ * 累计超时达到阈值的规则被隔离，不再参与匹配，原因显示在规则界面上。
+ *
+ * <p>规则以名称、表达式、引擎与大小写设置标识，修改规则后自然解除隔离；重新开启规则也会解除隔离。
+ * DFA 规则按内容线性扫描，不存在回溯，不受预算限制。</p>
+ */
+public final class RuleGuard {
+    private static final Map<String, Health> healthByRule = new ConcurrentHashMap<>();
+    private static volatile long budgetNanos = TimeUnit.MILLISECONDS.toNanos(Config.RuleTimeoutMillis);
+    private static volatile int quarantineStrikes = Config.RuleQuarantineStrikes;
+
+    private RuleGuard() {
+    }
+
+    public static void configure(int timeoutMillis, int strikes) {
+        budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeoutMillis));
+        quarantineStrikes = Math.max(1, strikes);
+    }
+
+    public static long budgetMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(budgetNanos);
+    }
+
+    public static String ruleKey(Object name, Object firstRegex, Object secondRegex, Object engine, Object sensitive) {
+        return name + "\u0000" + firstRegex + "\u0000" + secondRegex + "\u0000" + engine + "\u0000" + sensitive;
+    }
+
+    /** 从当前时刻开始计算预算，返回带截止时间的匹配内容。 */
+    static DeadlineCharSequence guard(CharSequence content) {
+        return new DeadlineCharSequence(content, System.nanoTime() + budgetNanos);
+    }
+
+    static boolean isQuarantined(String ruleKey) {
+        if (healthByRule.isEmpty()) {
+            return false;
+        }
+        Health health = healthByRule.get(ruleKey);
+        return health != null && health.reason != null;
+    }
+
+    /**
+     * 记录一次超时，返回是否因此进入隔离。
+     */
+    static boolean recordTimeout(String ruleKey, int contentLength) {
+        Health health = healthByRule.computeIfAbsent(ruleKey, k -> new Health());
+        synchronized (health) {
+            health.timeouts++;
+            if (health.reason == null && health.timeouts >= quarantineStrikes) {
+                health.reason = String.format("Quarantined: exceeded %d ms budget %d times (last on %d KiB)",
+                        budgetMillis(), health.timeouts, Math.max(1, contentLength / 1024));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /** 规则界面显示的状态：隔离原因、超时次数，正常时为空字符串。 */
+    public static String status(String ruleKey) {
+        Health health = healthByRule.get(ruleKey);
+        if (health == null) {
+            return "";
+        }
+        synchronized (health) {
+            if (health.reason != null) {
+                return health.reason;
+            }
+            return String.format("Timed out %d/%d", health.timeouts, quarantineStrikes);
+        }
+    }
+
+    public static void release(String ruleKey) {
+        healthByRule.remove(ruleKey);
+    }
+
+    public static void releaseAll() {
+        healthByRule.clear();
+    }
+
+    private static final class Health {
+        private int timeouts;
+        private volatile String reason;
+    }
+}
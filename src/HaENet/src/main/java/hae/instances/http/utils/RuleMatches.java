@@ -0,0 +1,21 @@
+package hae.instances.http.utils;
+
+import hae.Config;
+
+import java.util.List;
+
+/**
+ * 一条规则在一次匹配中的结果：ruleKey 为跨版本稳定的规则标识（见 {@link RuleGuard#ruleKey}），
+ * values 为去重后的匹配值，offsets 为命中在完整消息中的位置，colorIndex 为规则颜色在 {@link Config#color} 中的下标，
+ * 未知颜色为 -1。列表均不可变，结果可以直接放入缓存共享。
+ */
+public record RuleMatches(String ruleKey, String name, List<String> values, List<MatchSpan> offsets, int colorIndex) {
+    public String color() {
+        return colorIndex >= 0 && colorIndex < Config.color.length ? Config.color[colorIndex] : "";
+    }
+
+    /** 注释与编辑器标签页使用的 "名称 (数量)"。 */
+    public String label() {
+        return name + " (" + values.size() + ")";
+    }
+}
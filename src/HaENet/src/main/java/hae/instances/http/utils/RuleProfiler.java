@@ -0,0 +1,140 @@
+package hae.instances.http.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按规则统计匹配开销：调用次数、扫描字节数、累计耗时、p99 耗时、匹配数与命中率，
+ * 以及带必需字面量的 NFA 规则被预过滤判定与跳过的次数。
+ * 计数器使用 LongAdder，多个匹配线程并发记录时不争用同一缓存行。
+ *
+ * <p>耗时分布按对数分桶记录（每个 2 的幂区间再分 4 个子桶），p99 取所在子桶的上界，误差在 25% 以内。
+ * 规则以 {@link RuleGuard#ruleKey} 标识，与规则界面的行对应。</p>
+ */
+public final class RuleProfiler {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final Map<String, Counters> countersByRule = new ConcurrentHashMap<>();
+
+    private RuleProfiler() {
+    }
+
+    static void record(String ruleKey, int bytes, long nanos, int matches) {
+        Counters counters = countersByRule.computeIfAbsent(ruleKey, k -> new Counters());
+        counters.invocations.increment();
+        counters.bytes.add(bytes);
+        counters.nanos.add(nanos);
+        counters.histogram[bucketOf(nanos)].increment();
+        if (matches > 0) {
+            counters.matches.add(matches);
+            counters.hits.increment();
+        }
+    }
+
+    /** 字面量预过滤对规则的一次判定，skipped 为 true 表示正文缺少必需字面量，规则未执行。 */
+    static void recordPrefilter(String ruleKey, boolean skipped) {
+        Counters counters = countersByRule.computeIfAbsent(ruleKey, k -> new Counters());
+        counters.prefilterChecks.increment();
+        if (skipped) {
+            counters.prefilterSkips.increment();
+        }
+    }
+
+    /** 规则的统计快照，尚未执行过的规则返回全零。 */
+    public static RuleProfile snapshot(String ruleKey) {
+        Counters counters = countersByRule.get(ruleKey);
+        if (counters == null) {
+            return RuleProfile.EMPTY;
+        }
+
+        long[] histogram = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            histogram[i] = counters.histogram[i].sum();
+            total += histogram[i];
+        }
+
+        return new RuleProfile(
+                counters.invocations.sum(),
+                counters.bytes.sum(),
+                counters.nanos.sum(),
+                percentile(histogram, total, 0.99),
+                counters.matches.sum(),
+                counters.hits.sum(),
+                counters.prefilterChecks.sum(),
+                counters.prefilterSkips.sum()
+        );
+    }
+
+    public static void reset() {
+        countersByRule.clear();
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+
+    private static long percentile(long[] histogram, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(histogram.length - 1);
+    }
+
+    public record RuleProfile(long invocations, long bytes, long totalNanos, long p99Nanos, long matches, long hits,
+                              long prefilterChecks, long prefilterSkips) {
+        private static final RuleProfile EMPTY = new RuleProfile(0, 0, 0, 0, 0, 0, 0, 0);
+
+        /** 有匹配结果的调用占比。 */
+        public double hitRatio() {
+            return invocations == 0 ? 0.0 : (double) hits / invocations;
+        }
+
+        /** 预过滤判定中被跳过的占比。 */
+        public double prefilterSkipRatio() {
+            return prefilterChecks == 0 ? 0.0 : (double) prefilterSkips / prefilterChecks;
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder matches = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder prefilterChecks = new LongAdder();
+        private final LongAdder prefilterSkips = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[BUCKET_COUNT];
+
+        private Counters() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package hae.instances.http.utils;
+
+/**
+ * 单条规则在一条消息上的匹配超出时间预算。只用于控制流程，不记录调用栈。
+ */
+final class RuleTimeoutException extends RuntimeException {
+    RuleTimeoutException() {
+        super("rule matching exceeded its time budget", null, false, false);
+    }
+}
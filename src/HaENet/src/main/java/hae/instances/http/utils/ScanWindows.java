@@ -0,0 +1,99 @@
+package hae.instances.http.utils;
+
+import hae.Config;
+import hae.cache.BodyMatchCache;
+import hae.utils.string.Latin1Text;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 大内容的分窗扫描：每种匹配范围设有扫描上限（首行与头部共用头部上限），超出上限的部分不再匹配，
+ * 截断情况记录在消息行上；上限以内的内容按固定大小的窗口逐段匹配，单次匹配尝试只在一个窗口内回溯，
+ * 一个 20 MB 的压缩脚本不会再抵得上成千上万条普通响应。
+ *
+ * <p>相邻窗口按规则的最大匹配长度（见 {@link MaxMatchLength}）重叠，跨越窗口边界的匹配仍能完整找到；
+ * 没有长度上限的规则按固定长度重叠，更长的匹配会在窗口边界处截断。上限为 0 表示不限制。</p>
+ */
+public final class ScanWindows {
+    static final int MAX_UNBOUNDED_OVERLAP = 4096;
+    private static final int MIN_WINDOW_CHARS = 4096;
+    private static volatile int windowChars = Config.ScanWindowKB * 1024;
+    private static volatile int headerLimitChars = Config.ScanHeaderLimitKB * 1024;
+    private static volatile int bodyLimitChars = Config.ScanBodyLimitKB * 1024;
+    private static volatile int messageLimitChars = Config.ScanMessageLimitKB * 1024;
+
+    private ScanWindows() {
+    }
+
+    public static void configure(int windowKB, int headerLimitKB, int bodyLimitKB, int messageLimitKB) {
+        windowChars = Math.max(MIN_WINDOW_CHARS, toChars(windowKB));
+        headerLimitChars = Math.max(0, toChars(headerLimitKB));
+        bodyLimitChars = Math.max(0, toChars(bodyLimitKB));
+        messageLimitChars = Math.max(0, toChars(messageLimitKB));
+        // 缓存的正文结果按旧的上限与窗口匹配得出
+        BodyMatchCache.clear();
+    }
+
+    static int windowChars() {
+        return windowChars;
+    }
+
+    /** 相邻窗口的重叠长度，不超过窗口的一半，保证窗口总能向前推进。 */
+    static int overlap(int maxMatchLength) {
+        int overlap = maxMatchLength == MaxMatchLength.UNBOUNDED ? MAX_UNBOUNDED_OVERLAP : maxMatchLength;
+        return Math.min(overlap, windowChars / 2);
+    }
+
+    /** 按匹配范围的上限截取参与匹配的前缀，未超出上限时返回原内容。 */
+    static CharSequence bounded(CompiledRuleSet.Target target, CharSequence content) {
+        int limit = limit(target);
+        return limit > 0 && content.length() > limit ? content.subSequence(0, limit) : content;
+    }
+
+    /**
+     * 本条消息中因超出上限而未扫描的范围说明，只统计规则集中作用于该消息类型的规则用到的范围；
+     * 没有截断时返回空字符串。
+     */
+    public static String describeTruncation(CompiledRuleSet ruleSet, String type, CharSequence message, CharSequence header, CharSequence body) {
+        Set<CompiledRuleSet.Target> targets = EnumSet.noneOf(CompiledRuleSet.Target.class);
+        for (List<CompiledRuleSet.CompiledRule> group : ruleSet.view(type).groups()) {
+            for (CompiledRuleSet.CompiledRule rule : group) {
+                if (rule.target() != null) {
+                    targets.add(rule.target());
+                }
+            }
+        }
+
+        List<String> regions = new ArrayList<>();
+        for (CompiledRuleSet.Target target : targets) {
+            CharSequence content = switch (target) {
+                case MESSAGE -> message;
+                case HEADER -> header;
+                case BODY -> body;
+                case LINE -> message instanceof Latin1Text text ? text.firstLine() : message.toString().split("\\r?\\n", 2)[0];
+            };
+            int limit = limit(target);
+            if (limit > 0 && content.length() > limit) {
+                regions.add(String.format(Locale.ROOT, "%s %s: scanned %d of %d KB", type,
+                        target.name().toLowerCase(Locale.ROOT), limit / 1024, (content.length() + 1023) / 1024));
+            }
+        }
+        return String.join("; ", regions);
+    }
+
+    private static int limit(CompiledRuleSet.Target target) {
+        return switch (target) {
+            case LINE, HEADER -> headerLimitChars;
+            case BODY -> bodyLimitChars;
+            case MESSAGE -> messageLimitChars;
+        };
+    }
+
+    private static int toChars(int kilobytes) {
+        return (int) Math.min(Integer.MAX_VALUE, kilobytes * 1024L);
+    }
+}
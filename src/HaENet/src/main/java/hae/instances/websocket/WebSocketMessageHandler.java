@@ -4,10 +4,10 @@ import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.core.HighlightColor;
 import burp.api.montoya.proxy.websocket.*;
 import hae.instances.http.utils.MessageProcessor;
+import hae.instances.http.utils.RuleMatches;
 import hae.utils.ConfigLoader;
 
 import java.util.List;
-import java.util.Map;
 
 public class WebSocketMessageHandler implements ProxyMessageHandler {
     private final MontoyaApi api;
@@ -21,12 +21,12 @@ public class WebSocketMessageHandler implements ProxyMessageHandler {
     @Override
     public TextMessageReceivedAction handleTextMessageReceived(InterceptedTextMessage interceptedTextMessage) {
         String message = interceptedTextMessage.payload();
-        List<Map<String, String>> result = messageProcessor.processMessage("", message, true);
+        List<RuleMatches> result = messageProcessor.processMessage("", message);
 
-        if (result != null && !result.isEmpty()) {
+        if (!result.isEmpty()) {
             try {
-                interceptedTextMessage.annotations().setHighlightColor(HighlightColor.highlightColor(result.get(0).get("color")));
-                interceptedTextMessage.annotations().setNotes(result.get(1).get("comment"));
+                interceptedTextMessage.annotations().setHighlightColor(HighlightColor.highlightColor(messageProcessor.finalColor(result)));
+                interceptedTextMessage.annotations().setNotes(MessageProcessor.mergeComment(result));
             } catch (Exception e) {
                 api.logging().logToError("handleTextMessageReceived: " + e.getMessage());
             }
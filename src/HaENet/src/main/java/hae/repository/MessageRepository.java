@@ -30,6 +30,9 @@ public interface MessageRepository {
                                                                     String filterReason,
                                                                     boolean deduplicate);
 
+    /** Save many pending message rows in one SQLite transaction, returning one result per write in order. */
+    List<SqliteMessageStore.PendingMessageSaveResult> savePendingMessages(List<SqliteMessageStore.PendingMessageWrite> writes);
+
     /** Save an already-processed message row and extracted match data into SQLite. */
     void saveMessage(String messageId,
                      HttpRequestResponse messageInfo,
@@ -86,6 +89,9 @@ public interface MessageRepository {
     /** Load the stored request/response bytes with host metadata for regex workers. */
     SqliteMessageStore.StoredMessage loadStoredMessage(String messageId);
 
+    /** Load the ids of the most recently stored messages, newest first, as a sample of the stored corpus. */
+    List<String> loadRecentMessageIds(int limit);
+
     /** Load extracted regex match data for exactly one persisted message id. */
     Map<String, List<String>> loadMessageExtractedData(String messageId);
 }
@@ -12,15 +12,50 @@ import java.util.Map;
  * for pending, processing, completed, or failed work.</p>
  */
 public interface RegexWorkRepository {
+    /** scanTruncation describes content regions skipped by the per-scope scan limits, empty when none were skipped. */
+    record RegexCompletion(String messageId,
+                           String comment,
+                           String color,
+                           Map<String, List<String>> extractedDataByRule,
+                           String scanTruncation) {
+        public RegexCompletion(String messageId, String comment, String color, Map<String, List<String>> extractedDataByRule) {
+            this(messageId, comment, color, extractedDataByRule, "");
+        }
+    }
+
+    /** A pending or retryable row with the tool source it was captured from, so recovery can restore its priority. */
+    record PendingRegexWork(String messageId, String source) {
+    }
+
+    /** A processed row visited by a rule re-match, keyed by its SQLite rowid for keyset paging. */
+    record RuleRematchCandidate(long rowId, String messageId, String comment) {
+    }
+
+    /** New comment and color for a row plus the extracted data of the re-matched rules only. */
+    record RuleRematchUpdate(String messageId,
+                             String comment,
+                             String color,
+                             Map<String, List<String>> extractedDataByRule) {
+    }
+
     /** Atomically transition a pending or retryable failed row into processing state. */
     boolean markRegexProcessing(String messageId);
 
+    /** Claim many pending or retryable failed rows in one SQLite transaction and return the claimed ids. */
+    List<String> markRegexProcessingBatch(List<String> messageIds);
+
     /** Mark regex work complete and persist comment, color, and extracted data in SQLite. */
     boolean completeRegexProcessing(String messageId,
                                     String comment,
                                     String color,
                                     Map<String, List<String>> extractedDataByRule);
 
+    /**
+     * Claim and complete many pending, processing, or retryable rows in one SQLite transaction, recording each row's
+     * scan truncation, and return the completed ids.
+     */
+    List<String> completeRegexProcessingBatch(List<RegexCompletion> completions);
+
     /** Mark regex work failed and store the truncated error message in SQLite. */
     boolean failRegexProcessing(String messageId, String errorMessage);
 
@@ -29,4 +64,19 @@ public interface RegexWorkRepository {
 
     /** Load pending or retryable failed message ids in SQLite-created order. */
     List<String> loadPendingRegexMessageIds(int limit);
+
+    /** Load pending or retryable failed rows with their tool source, in the same order as the id-only load. */
+    List<PendingRegexWork> loadPendingRegexWork(int limit);
+
+    /** Count completed rows a rule re-match visits; non-empty comment keywords limit it to rows whose comment contains one of them. */
+    int countRuleRematchCandidates(List<String> commentKeywords);
+
+    /** Load the next page of completed rows after the given rowid, with the same comment keyword filter as the count. */
+    List<RuleRematchCandidate> loadRuleRematchCandidates(List<String> commentKeywords, long afterRowId, int limit);
+
+    /**
+     * Replace comment, color, and the match rows of the given rule names for completed rows in one SQLite transaction,
+     * leaving match rows of other rules untouched, and return the updated ids.
+     */
+    List<String> applyRuleRematch(List<String> ruleNames, List<RuleRematchUpdate> updates);
 }
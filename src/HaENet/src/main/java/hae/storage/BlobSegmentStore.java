@@ -0,0 +1,180 @@
+package hae.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 大报文体的追加式分段存储：正文按内容寻址写入 segment-N.dat，只追加不改写，
+ * 读取时对分段做只读内存映射。位置与引用计数由 {@link SqliteMessageStore} 的 message_blob 表维护，
+ * 这里只负责字节的写入、读取与回收整段不再被引用的文件。
+ */
+final class BlobSegmentStore {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    /** 一段正文在分段文件中的位置。 */
+    record Location(int segmentId, long offset, int length) {
+    }
+
+    private final Path directory;
+    private final long segmentSizeLimit;
+    private final Map<Integer, MappedByteBuffer> mappedSegments = new HashMap<>();
+    private FileChannel activeChannel;
+    private int activeSegmentId;
+    private long activeSize;
+    private boolean unsynced;
+
+    BlobSegmentStore(Path directory, long segmentSizeLimit) {
+        this.directory = directory;
+        this.segmentSizeLimit = Math.max(1L, segmentSizeLimit);
+    }
+
+    synchronized Location append(byte[] bytes, int offset, int length) throws IOException {
+        if (activeChannel == null || (activeSize > 0 && activeSize + length > segmentSizeLimit)) {
+            openNextSegment();
+        }
+
+        long position = activeSize;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        while (buffer.hasRemaining()) {
+            activeChannel.write(buffer, activeSize + (length - buffer.remaining()));
+        }
+        activeSize += length;
+        unsynced = true;
+        return new Location(activeSegmentId, position, length);
+    }
+
+    /**
+     * 把已追加的字节刷到磁盘。引用这些字节的事务提交前调用，崩溃后已提交的行不会指向分段末尾之外。
+     */
+    synchronized void sync() throws IOException {
+        if (activeChannel != null && unsynced) {
+            activeChannel.force(false);
+        }
+        unsynced = false;
+    }
+
+    synchronized byte[] read(Location location) throws IOException {
+        byte[] bytes = new byte[location.length()];
+        if (location.length() == 0) {
+            return bytes;
+        }
+
+        MappedByteBuffer mapped = mappedSegment(location.segmentId(), location.offset() + location.length());
+        mapped.get((int) location.offset(), bytes, 0, location.length());
+        return bytes;
+    }
+
+    /**
+     * 删除不在 liveSegmentIds 中的分段文件（当前写入段除外）。映射仍被占用而删除失败的文件留待下次回收。
+     */
+    synchronized void retainSegments(Set<Integer> liveSegmentIds) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                int segmentId = parseSegmentId(segment);
+                if (segmentId < 0 || liveSegmentIds.contains(segmentId)
+                        || (activeChannel != null && segmentId == activeSegmentId)) {
+                    continue;
+                }
+                mappedSegments.remove(segmentId);
+                try {
+                    Files.deleteIfExists(segment);
+                } catch (IOException ignored) {
+                    // 单个文件删除失败不影响其余分段的回收
+                }
+            }
+        } catch (IOException | DirectoryIteratorException ignored) {
+        }
+    }
+
+    /** 丢弃全部分段，之后的写入从新的分段开始。 */
+    synchronized void clear() {
+        closeActiveChannel();
+        mappedSegments.clear();
+        retainSegments(Set.of());
+    }
+
+    synchronized void close() {
+        closeActiveChannel();
+        mappedSegments.clear();
+    }
+
+    private void openNextSegment() throws IOException {
+        // 换段前先刷写旧段，之后的 sync 只覆盖新的写入段
+        sync();
+        closeActiveChannel();
+        Files.createDirectories(directory);
+        // 分段编号只增不减，旧文件即使因映射未释放而删除失败也不会被复用
+        activeSegmentId = Math.max(activeSegmentId, highestSegmentId()) + 1;
+        activeChannel = FileChannel.open(segmentPath(activeSegmentId),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        activeSize = activeChannel.size();
+    }
+
+    private MappedByteBuffer mappedSegment(int segmentId, long requiredSize) throws IOException {
+        MappedByteBuffer mapped = mappedSegments.get(segmentId);
+        if (mapped != null && mapped.capacity() >= requiredSize) {
+            return mapped;
+        }
+
+        // 当前写入段会继续增长，映射不够长时按文件现有大小重新映射
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < requiredSize || size > Integer.MAX_VALUE) {
+                throw new IOException("Blob segment " + segmentId + " is shorter than expected");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        mappedSegments.put(segmentId, mapped);
+        return mapped;
+    }
+
+    private int highestSegmentId() throws IOException {
+        int highest = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                highest = Math.max(highest, parseSegmentId(segment));
+            }
+        }
+        return highest;
+    }
+
+    private Path segmentPath(int segmentId) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+    }
+
+    private static int parseSegmentId(Path segment) {
+        String fileName = segment.getFileName().toString();
+        try {
+            return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private void closeActiveChannel() {
+        if (activeChannel == null) {
+            return;
+        }
+        try {
+            activeChannel.close();
+        } catch (IOException ignored) {
+        }
+        activeChannel = null;
+        activeSize = 0L;
+    }
+}
@@ -0,0 +1,139 @@
+package hae.storage;
+
+import hae.utils.string.MessageFingerprint;
+
+/**
+ * 内容哈希的内存成员过滤器：以 content_hash 的 64 位指纹为键的开放寻址计数表。
+ *
+ * <p>只用于在写入前快速排除“一定不重复”的消息；命中时仍由 SQLite 查询确认，
+ * 因此指纹冲突只会多一次查询，不会误判重复。计数保证删除一行后，
+ * 其他同内容的行仍然可见。非线程安全，由 {@link SqliteMessageStore} 的同步方法保护。</p>
+ */
+final class ContentHashIndex {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = 0L;
+
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int size;
+
+    void add(String contentHash) {
+        if (contentHash == null || contentHash.isBlank()) {
+            return;
+        }
+
+        if ((size + 1) * 2 > fingerprints.length) {
+            resize(fingerprints.length * 2);
+        }
+
+        long fingerprint = fingerprint(contentHash);
+        int slot = findSlot(fingerprints, fingerprint);
+        if (fingerprints[slot] == EMPTY) {
+            fingerprints[slot] = fingerprint;
+            size++;
+        }
+        counts[slot]++;
+    }
+
+    void remove(String contentHash) {
+        if (contentHash == null || contentHash.isBlank()) {
+            return;
+        }
+
+        int slot = findSlot(fingerprints, fingerprint(contentHash));
+        if (fingerprints[slot] == EMPTY) {
+            return;
+        }
+
+        if (--counts[slot] > 0) {
+            return;
+        }
+
+        deleteSlot(slot);
+    }
+
+    boolean mightContain(String contentHash) {
+        if (contentHash == null || contentHash.isBlank()) {
+            return false;
+        }
+        return fingerprints[findSlot(fingerprints, fingerprint(contentHash))] != EMPTY;
+    }
+
+    void clear() {
+        fingerprints = new long[INITIAL_CAPACITY];
+        counts = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    static long fingerprint(String contentHash) {
+        // content_hash 是 MessageFingerprint 的十六进制形式，直接取其高 64 位，其他文本退回 FNV-1a 64；0 保留为空槽标记
+        MessageFingerprint messageFingerprint = MessageFingerprint.fromHex(contentHash);
+        if (messageFingerprint != null) {
+            return messageFingerprint.high() == EMPTY ? 1L : messageFingerprint.high();
+        }
+
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < contentHash.length(); i++) {
+            hash ^= contentHash.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    private static int findSlot(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        int slot = mix(fingerprint) & mask;
+        while (table[slot] != EMPTY && table[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(long fingerprint) {
+        long mixed = fingerprint ^ (fingerprint >>> 33);
+        mixed *= 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 33;
+        return (int) mixed;
+    }
+
+    private void deleteSlot(int slot) {
+        // 线性探测的回移删除，保持后续键仍可被找到
+        int mask = fingerprints.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (fingerprints[next] != EMPTY) {
+            int home = mix(fingerprints[next]) & mask;
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                fingerprints[hole] = fingerprints[next];
+                counts[hole] = counts[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        fingerprints[hole] = EMPTY;
+        counts[hole] = 0;
+        size--;
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldFingerprints = fingerprints;
+        int[] oldCounts = counts;
+        long[] newFingerprints = new long[newCapacity];
+        int[] newCounts = new int[newCapacity];
+        for (int i = 0; i < oldFingerprints.length; i++) {
+            if (oldFingerprints[i] == EMPTY) {
+                continue;
+            }
+            int slot = findSlot(newFingerprints, oldFingerprints[i]);
+            newFingerprints[slot] = oldFingerprints[i];
+            newCounts[slot] = oldCounts[i];
+        }
+        fingerprints = newFingerprints;
+        counts = newCounts;
+    }
+}
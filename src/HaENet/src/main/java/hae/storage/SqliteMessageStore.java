@@ -16,9 +16,11 @@ import hae.repository.RegexWorkRepository;
 import hae.repository.ScopedDataboardRepository;
 import hae.repository.StorageMaintenanceRepository;
 import hae.utils.ConfigLoader;
+import hae.utils.string.MessageFingerprint;
 import hae.utils.string.StringProcessor;
 import org.sqlite.SQLiteDataSource;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -26,18 +28,20 @@ import java.nio.file.Paths;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -55,6 +59,7 @@ public class SqliteMessageStore implements MessageRepository,
     private static final String SCOPED_MATCH_TABLE_NAME = "scoped_databoard_match";
     private static final String AI_TRIAGE_TASK_TABLE_NAME = "ai_triage_task";
     private static final String AI_TRIAGE_RESULT_TABLE_NAME = "ai_triage_result";
+    private static final String BLOB_TABLE_NAME = "message_blob";
     private static final String REGEX_STATUS_PENDING = "PENDING";
     private static final String REGEX_STATUS_PROCESSING = "PROCESSING";
     private static final String REGEX_STATUS_DONE = "DONE";
@@ -68,22 +73,33 @@ public class SqliteMessageStore implements MessageRepository,
     private static final int MAX_REGEX_ATTEMPTS = 3;
     private static final int MAX_REGEX_ERROR_LENGTH = 1000;
     private static final int MAX_AI_ERROR_LENGTH = 1000;
+    // 正文达到该大小时移入分段存储，行内只保留报文头与正文哈希
+    private static final int BLOB_BODY_THRESHOLD = 64 * 1024;
+    private static final long BLOB_SEGMENT_SIZE = 64L * 1024 * 1024;
 
     private final MontoyaApi api;
     private final String jdbcUrl;
     private final String dbPath;
     private final AtomicBoolean connectionUnavailableLogged = new AtomicBoolean(false);
     private volatile boolean connectionUnavailable = false;
+    private final ContentHashIndex contentHashIndex = new ContentHashIndex();
+    private boolean contentHashIndexReady = false;
     private SQLiteDataSource sqliteDataSource;
+    private final BlobSegmentStore blobStore;
 
     public SqliteMessageStore(MontoyaApi api, ConfigLoader configLoader) {
         this.api = api;
         Path databasePath = resolveDatabasePath(configLoader);
         this.dbPath = databasePath.toAbsolutePath().toString();
         this.jdbcUrl = "jdbc:sqlite:" + this.dbPath;
+        this.blobStore = new BlobSegmentStore(Paths.get(this.dbPath + ".blobs"), BLOB_SEGMENT_SIZE);
         initializeDatabase();
     }
 
+    /** 写入行内的报文字节；正文移入分段存储时 blobHash 非空，inlineBytes 只含报文头。 */
+    private record StoredPayload(byte[] inlineBytes, String blobHash) {
+    }
+
     public static class MessageMetadata {
         private final String messageId;
         private final String method;
@@ -143,12 +159,15 @@ public class SqliteMessageStore implements MessageRepository,
         private final String messageId;
         private final String host;
         private final String contentHash;
+        private final String regexSource;
         private final HttpRequestResponse requestResponse;
 
-        private StoredMessage(String messageId, String host, String contentHash, HttpRequestResponse requestResponse) {
+        private StoredMessage(String messageId, String host, String contentHash, String regexSource,
+                              HttpRequestResponse requestResponse) {
             this.messageId = messageId;
             this.host = host;
             this.contentHash = contentHash;
+            this.regexSource = regexSource;
             this.requestResponse = requestResponse;
         }
 
@@ -164,6 +183,10 @@ public class SqliteMessageStore implements MessageRepository,
             return contentHash;
         }
 
+        public String getRegexSource() {
+            return regexSource;
+        }
+
         public HttpRequestResponse getRequestResponse() {
             return requestResponse;
         }
@@ -173,11 +196,17 @@ public class SqliteMessageStore implements MessageRepository,
         private final String messageId;
         private final boolean saved;
         private final boolean duplicate;
+        private final String contentHash;
 
         private PendingMessageSaveResult(String messageId, boolean saved, boolean duplicate) {
+            this(messageId, saved, duplicate, "");
+        }
+
+        private PendingMessageSaveResult(String messageId, boolean saved, boolean duplicate, String contentHash) {
             this.messageId = messageId;
             this.saved = saved;
             this.duplicate = duplicate;
+            this.contentHash = contentHash == null ? "" : contentHash;
         }
 
         public String getMessageId() {
@@ -191,6 +220,95 @@ public class SqliteMessageStore implements MessageRepository,
         public boolean isDuplicate() {
             return duplicate;
         }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+    }
+
+    public static class PendingMessageWrite {
+        private final String messageId;
+        private final HttpRequestResponse messageInfo;
+        private final String url;
+        private final String host;
+        private final String method;
+        private final String status;
+        private final String length;
+        private final String contentHash;
+        private final String urlParseError;
+        private final String filterReason;
+        private final boolean deduplicate;
+        private final String regexSource;
+
+        public PendingMessageWrite(String messageId,
+                                   HttpRequestResponse messageInfo,
+                                   String url,
+                                   String host,
+                                   String method,
+                                   String status,
+                                   String length,
+                                   String contentHash,
+                                   String urlParseError,
+                                   String filterReason,
+                                   boolean deduplicate) {
+            this(messageId, messageInfo, url, host, method, status, length, contentHash, urlParseError, filterReason,
+                    deduplicate, "");
+        }
+
+        /** regexSource 是送来消息的工具，行在重新入队时按它恢复调度优先级。 */
+        public PendingMessageWrite(String messageId,
+                                   HttpRequestResponse messageInfo,
+                                   String url,
+                                   String host,
+                                   String method,
+                                   String status,
+                                   String length,
+                                   String contentHash,
+                                   String urlParseError,
+                                   String filterReason,
+                                   boolean deduplicate,
+                                   String regexSource) {
+            this.messageId = messageId;
+            this.messageInfo = messageInfo;
+            this.url = url;
+            this.host = host;
+            this.method = method;
+            this.status = status;
+            this.length = length;
+            this.contentHash = contentHash;
+            this.urlParseError = urlParseError;
+            this.filterReason = filterReason;
+            this.deduplicate = deduplicate;
+            this.regexSource = regexSource;
+        }
+
+        public String getMessageId() {
+            return messageId;
+        }
+
+        public HttpRequestResponse getMessageInfo() {
+            return messageInfo;
+        }
+    }
+
+    private static class PreparedPendingRow {
+        private final PendingMessageWrite write;
+        private final HttpService service;
+        private final byte[] requestBytes;
+        private final byte[] responseBytes;
+        private final String contentHash;
+
+        private PreparedPendingRow(PendingMessageWrite write,
+                                   HttpService service,
+                                   byte[] requestBytes,
+                                   byte[] responseBytes,
+                                   String contentHash) {
+            this.write = write;
+            this.service = service;
+            this.requestBytes = requestBytes;
+            this.responseBytes = responseBytes;
+            this.contentHash = contentHash;
+        }
     }
 
     public static class AiTriageTask {
@@ -538,10 +656,24 @@ public class SqliteMessageStore implements MessageRepository,
                     request_length INTEGER NOT NULL DEFAULT 0,
                     response_length INTEGER NOT NULL DEFAULT 0,
                     url_parse_error TEXT NOT NULL DEFAULT '',
-                    filter_reason TEXT NOT NULL DEFAULT ''
+                    filter_reason TEXT NOT NULL DEFAULT '',
+                    request_blob TEXT NOT NULL DEFAULT '',
+                    response_blob TEXT NOT NULL DEFAULT '',
+                    scan_truncation TEXT NOT NULL DEFAULT '',
+                    regex_source TEXT NOT NULL DEFAULT ''
                 )
                 """, TABLE_NAME);
 
+        String createBlobTableSql = String.format("""
+                CREATE TABLE IF NOT EXISTS %s (
+                    blob_hash TEXT PRIMARY KEY,
+                    segment_id INTEGER NOT NULL,
+                    segment_offset INTEGER NOT NULL,
+                    length INTEGER NOT NULL,
+                    ref_count INTEGER NOT NULL DEFAULT 0
+                )
+                """, BLOB_TABLE_NAME);
+
         String createMatchTableSql = String.format("""
                 CREATE TABLE IF NOT EXISTS %s (
                     id INTEGER PRIMARY KEY AUTOINCREMENT,
@@ -663,6 +795,7 @@ public class SqliteMessageStore implements MessageRepository,
         String createAiResultMatchSignatureIndex = String.format("CREATE INDEX IF NOT EXISTS idx_%s_match_signature_hash ON %s(message_id, match_signature_hash)", AI_TRIAGE_RESULT_TABLE_NAME, AI_TRIAGE_RESULT_TABLE_NAME);
         String createAiResultStatusIndex = String.format("CREATE INDEX IF NOT EXISTS idx_%s_status ON %s(status)", AI_TRIAGE_RESULT_TABLE_NAME, AI_TRIAGE_RESULT_TABLE_NAME);
         String createAiResultContentHashIndex = String.format("CREATE INDEX IF NOT EXISTS idx_%s_content_hash ON %s(content_hash)", AI_TRIAGE_RESULT_TABLE_NAME, AI_TRIAGE_RESULT_TABLE_NAME);
+        String createBlobSegmentIndex = String.format("CREATE INDEX IF NOT EXISTS idx_%s_segment_id ON %s(segment_id)", BLOB_TABLE_NAME, BLOB_TABLE_NAME);
 
         try (Connection connection = getConnection(); Statement statement = connection.createStatement()) {
             statement.execute("PRAGMA journal_mode=WAL");
@@ -674,11 +807,13 @@ public class SqliteMessageStore implements MessageRepository,
             statement.execute(createScopedMatchTableSql);
             statement.execute(createAiTriageTaskTableSql);
             statement.execute(createAiTriageResultTableSql);
+            statement.execute(createBlobTableSql);
             migrateMessageHistorySchema(connection);
             migrateAiTriageTaskSchema(connection);
             migrateAiTriageResultSchema(connection);
             promoteMigratedMatchedRows(connection);
             resetInterruptedRegexWork(connection);
+            warmContentHashIndex(connection);
             statement.execute(createCreatedAtIndex);
             statement.execute(createHostIndex);
             statement.execute(createHashIndex);
@@ -699,6 +834,9 @@ public class SqliteMessageStore implements MessageRepository,
             statement.execute(createAiResultMatchSignatureIndex);
             statement.execute(createAiResultStatusIndex);
             statement.execute(createAiResultContentHashIndex);
+            statement.execute(createBlobSegmentIndex);
+            // 上次退出前未提交事务追加的正文不会被引用，整段无引用时在这里回收
+            reclaimBlobSegments(connection);
         } catch (Exception e) {
             logDatabaseError("initializeDatabase", e);
         }
@@ -719,6 +857,26 @@ public class SqliteMessageStore implements MessageRepository,
         }
     }
 
+    private void warmContentHashIndex(Connection connection) {
+        String querySql = String.format("SELECT content_hash FROM %s", TABLE_NAME);
+        try (PreparedStatement statement = connection.prepareStatement(querySql);
+             ResultSet resultSet = statement.executeQuery()) {
+            contentHashIndex.clear();
+            while (resultSet.next()) {
+                contentHashIndex.add(resultSet.getString(1));
+            }
+            contentHashIndexReady = true;
+        } catch (Exception e) {
+            // 预热失败时退回逐条查询 SQLite
+            contentHashIndexReady = false;
+            logDatabaseError("warmContentHashIndex", e);
+        }
+    }
+
+    private boolean isDefinitelyNewContent(String contentHash) {
+        return contentHashIndexReady && !contentHashIndex.mightContain(contentHash);
+    }
+
     private void resetInterruptedRegexWork(Connection connection) throws SQLException {
         String updateSql = String.format("UPDATE %s SET regex_status = ? WHERE regex_status = ?", TABLE_NAME);
         try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
@@ -736,6 +894,10 @@ public class SqliteMessageStore implements MessageRepository,
         addColumnIfMissing(connection, TABLE_NAME, "response_length", "INTEGER NOT NULL DEFAULT 0");
         addColumnIfMissing(connection, TABLE_NAME, "url_parse_error", "TEXT NOT NULL DEFAULT ''");
         addColumnIfMissing(connection, TABLE_NAME, "filter_reason", "TEXT NOT NULL DEFAULT ''");
+        addColumnIfMissing(connection, TABLE_NAME, "request_blob", "TEXT NOT NULL DEFAULT ''");
+        addColumnIfMissing(connection, TABLE_NAME, "response_blob", "TEXT NOT NULL DEFAULT ''");
+        addColumnIfMissing(connection, TABLE_NAME, "scan_truncation", "TEXT NOT NULL DEFAULT ''");
+        addColumnIfMissing(connection, TABLE_NAME, "regex_source", "TEXT NOT NULL DEFAULT ''");
     }
 
     private void migrateAiTriageTaskSchema(Connection connection) throws SQLException {
@@ -782,83 +944,180 @@ public class SqliteMessageStore implements MessageRepository,
                                                                     String urlParseError,
                                                                     String filterReason,
                                                                     boolean deduplicate) {
-        if (messageInfo == null) {
-            return new PendingMessageSaveResult(messageId, false, false);
+        PendingMessageWrite write = new PendingMessageWrite(messageId, messageInfo, url, host, method, status, length,
+                contentHash, urlParseError, filterReason, deduplicate);
+        return savePendingMessages(List.of(write)).get(0);
+    }
+
+    @Override
+    public synchronized List<PendingMessageSaveResult> savePendingMessages(List<PendingMessageWrite> writes) {
+        if (writes == null || writes.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<PendingMessageSaveResult> results = new ArrayList<>(writes.size());
+        List<PreparedPendingRow> rows = new ArrayList<>(writes.size());
+        for (PendingMessageWrite write : writes) {
+            PreparedPendingRow row = preparePendingRow(write);
+            rows.add(row);
+            results.add(row == null ? new PendingMessageSaveResult(write == null ? null : write.messageId, false, false) : null);
+        }
+
+        String duplicateSql = String.format("""
+                SELECT 1
+                FROM %s
+                WHERE content_hash = ?
+                LIMIT 1
+                """, TABLE_NAME);
+        String insertSql = String.format("""
+                INSERT INTO %s (
+                    message_id, created_at, host, url, method, status, length, comment, color, content_hash,
+                    service_host, service_port, service_secure, request_bytes, response_bytes,
+                    regex_status, regex_error, regex_attempts, request_length, response_length, url_parse_error, filter_reason,
+                    request_blob, response_blob, regex_source
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, TABLE_NAME);
+
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement duplicateStatement = connection.prepareStatement(duplicateSql);
+                 PreparedStatement insertStatement = connection.prepareStatement(insertSql)) {
+                // 同一批次内重复的内容也按已存在处理，与逐条写入的语义一致
+                Set<String> batchHashes = new HashSet<>();
+                List<Integer> insertedIndexes = new ArrayList<>();
+                long createdAt = System.currentTimeMillis();
+                for (int i = 0; i < rows.size(); i++) {
+                    PreparedPendingRow row = rows.get(i);
+                    if (row == null) {
+                        continue;
+                    }
+
+                    if (row.write.deduplicate
+                            && (batchHashes.contains(row.contentHash) || contentHashExists(duplicateStatement, row.contentHash))) {
+                        results.set(i, new PendingMessageSaveResult(row.write.messageId, false, true, row.contentHash));
+                        continue;
+                    }
+
+                    bindPendingInsert(insertStatement, row,
+                            storePayload(connection, row.requestBytes), storePayload(connection, row.responseBytes), createdAt);
+                    insertStatement.addBatch();
+                    batchHashes.add(row.contentHash);
+                    insertedIndexes.add(i);
+                }
+
+                if (!insertedIndexes.isEmpty()) {
+                    insertStatement.executeBatch();
+                }
+                blobStore.sync();
+                connection.commit();
+
+                for (Integer index : insertedIndexes) {
+                    PreparedPendingRow row = rows.get(index);
+                    contentHashIndex.add(row.contentHash);
+                    results.set(index, new PendingMessageSaveResult(row.write.messageId, true, false, row.contentHash));
+                }
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (Exception e) {
+            logDatabaseError("savePendingMessages", e);
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, new PendingMessageSaveResult(writes.get(i) == null ? null : writes.get(i).messageId, false, false));
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private PreparedPendingRow preparePendingRow(PendingMessageWrite write) {
+        if (write == null || write.messageInfo == null) {
+            return null;
         }
 
         try {
-            HttpRequest request = messageInfo.request();
-            HttpResponse response = messageInfo.response();
+            HttpRequest request = write.messageInfo.request();
+            HttpResponse response = write.messageInfo.response();
             if (request == null || response == null) {
-                return new PendingMessageSaveResult(messageId, false, false);
+                return null;
             }
 
             HttpService service = request.httpService();
             if (service == null) {
-                return new PendingMessageSaveResult(messageId, false, false);
+                return null;
             }
 
             byte[] requestBytes = request.toByteArray().getBytes();
             byte[] responseBytes = response.toByteArray().getBytes();
-            String safeContentHash = contentHash;
+            String safeContentHash = write.contentHash;
             if (safeContentHash == null || safeContentHash.isBlank()) {
                 safeContentHash = calculateContentHash(requestBytes, responseBytes);
             }
 
-            if (deduplicate && existsDuplicateContent(safeContentHash)) {
-                return new PendingMessageSaveResult(messageId, false, true);
-            }
-
-            String safeHost = host;
-            if (safeHost == null || safeHost.isBlank()) {
-                safeHost = service.host();
-            }
-
-            int requestLength = requestBytes.length;
-            int responseLength = responseBytes.length;
-            String safeLength = (length == null || length.isBlank()) ? String.valueOf(responseLength) : length;
-
-            String insertSql = String.format("""
-                    INSERT INTO %s (
-                        message_id, created_at, host, url, method, status, length, comment, color, content_hash,
-                        service_host, service_port, service_secure, request_bytes, response_bytes,
-                        regex_status, regex_error, regex_attempts, request_length, response_length, url_parse_error, filter_reason
-                    ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                    """, TABLE_NAME);
-
-            try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(insertSql)) {
-                statement.setString(1, messageId);
-                statement.setLong(2, System.currentTimeMillis());
-                statement.setString(3, safeHost == null ? "" : safeHost);
-                statement.setString(4, url == null ? "" : url);
-                statement.setString(5, method == null ? "" : method);
-                statement.setString(6, status == null ? "" : status);
-                statement.setString(7, safeLength);
-                statement.setString(8, "");
-                statement.setString(9, "none");
-                statement.setString(10, safeContentHash == null ? "" : safeContentHash);
-                statement.setString(11, service.host());
-                statement.setInt(12, service.port());
-                statement.setInt(13, service.secure() ? 1 : 0);
-                statement.setBytes(14, requestBytes);
-                statement.setBytes(15, responseBytes);
-                statement.setString(16, REGEX_STATUS_PENDING);
-                statement.setString(17, "");
-                statement.setInt(18, 0);
-                statement.setInt(19, requestLength);
-                statement.setInt(20, responseLength);
-                statement.setString(21, truncateError(urlParseError));
-                statement.setString(22, filterReason == null ? "" : filterReason);
-                statement.executeUpdate();
-                return new PendingMessageSaveResult(messageId, true, false);
-            }
+            return new PreparedPendingRow(write, service, requestBytes, responseBytes, safeContentHash == null ? "" : safeContentHash);
         } catch (Exception e) {
             logDatabaseError("savePendingMessage", e);
-            return new PendingMessageSaveResult(messageId, false, false);
+            return null;
         }
     }
 
+    private boolean contentHashExists(PreparedStatement statement, String contentHash) throws SQLException {
+        if (contentHash == null || contentHash.isBlank() || isDefinitelyNewContent(contentHash)) {
+            return false;
+        }
+
+        statement.setString(1, contentHash);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    private void bindPendingInsert(PreparedStatement statement,
+                                   PreparedPendingRow row,
+                                   StoredPayload requestPayload,
+                                   StoredPayload responsePayload,
+                                   long createdAt) throws SQLException {
+        PendingMessageWrite write = row.write;
+        String safeHost = write.host;
+        if (safeHost == null || safeHost.isBlank()) {
+            safeHost = row.service.host();
+        }
+
+        int requestLength = row.requestBytes.length;
+        int responseLength = row.responseBytes.length;
+        String safeLength = (write.length == null || write.length.isBlank()) ? String.valueOf(responseLength) : write.length;
+
+        statement.setString(1, write.messageId);
+        statement.setLong(2, createdAt);
+        statement.setString(3, safeHost == null ? "" : safeHost);
+        statement.setString(4, write.url == null ? "" : write.url);
+        statement.setString(5, write.method == null ? "" : write.method);
+        statement.setString(6, write.status == null ? "" : write.status);
+        statement.setString(7, safeLength);
+        statement.setString(8, "");
+        statement.setString(9, "none");
+        statement.setString(10, row.contentHash);
+        statement.setString(11, row.service.host());
+        statement.setInt(12, row.service.port());
+        statement.setInt(13, row.service.secure() ? 1 : 0);
+        statement.setBytes(14, requestPayload.inlineBytes());
+        statement.setBytes(15, responsePayload.inlineBytes());
+        statement.setString(16, REGEX_STATUS_PENDING);
+        statement.setString(17, "");
+        statement.setInt(18, 0);
+        statement.setInt(19, requestLength);
+        statement.setInt(20, responseLength);
+        statement.setString(21, truncateError(write.urlParseError));
+        statement.setString(22, write.filterReason == null ? "" : write.filterReason);
+        statement.setString(23, requestPayload.blobHash());
+        statement.setString(24, responsePayload.blobHash());
+        statement.setString(25, write.regexSource == null ? "" : write.regexSource);
+    }
+
     @Override
     public synchronized void saveMessage(String messageId,
                                          HttpRequestResponse messageInfo,
@@ -898,8 +1157,9 @@ public class SqliteMessageStore implements MessageRepository,
                     INSERT INTO %s (
                         message_id, created_at, host, url, method, status, length, comment, color, content_hash,
                         service_host, service_port, service_secure, request_bytes, response_bytes,
-                        regex_status, regex_error, regex_attempts, request_length, response_length, url_parse_error, filter_reason
-                    ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                        regex_status, regex_error, regex_attempts, request_length, response_length, url_parse_error, filter_reason,
+                        request_blob, response_blob
+                    ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
                     """, TABLE_NAME);
 
             try (Connection connection = getConnection();
@@ -908,6 +1168,8 @@ public class SqliteMessageStore implements MessageRepository,
                  PreparedStatement insertMatchStatement = connection.prepareStatement(String.format("INSERT INTO %s (message_id, rule_name, extracted_value) VALUES (?, ?, ?)", MATCH_TABLE_NAME))) {
 
                 connection.setAutoCommit(false);
+                StoredPayload requestPayload = storePayload(connection, requestBytes);
+                StoredPayload responsePayload = storePayload(connection, responseBytes);
 
                 statement.setString(1, messageId);
                 statement.setLong(2, System.currentTimeMillis());
@@ -922,8 +1184,8 @@ public class SqliteMessageStore implements MessageRepository,
                 statement.setString(11, service.host());
                 statement.setInt(12, service.port());
                 statement.setInt(13, service.secure() ? 1 : 0);
-                statement.setBytes(14, requestBytes);
-                statement.setBytes(15, responseBytes);
+                statement.setBytes(14, requestPayload.inlineBytes());
+                statement.setBytes(15, responsePayload.inlineBytes());
                 statement.setString(16, REGEX_STATUS_DONE);
                 statement.setString(17, "");
                 statement.setInt(18, 0);
@@ -931,11 +1193,15 @@ public class SqliteMessageStore implements MessageRepository,
                 statement.setInt(20, responseBytes.length);
                 statement.setString(21, "");
                 statement.setString(22, "");
+                statement.setString(23, requestPayload.blobHash());
+                statement.setString(24, responsePayload.blobHash());
                 statement.executeUpdate();
 
                 saveMatchData(messageId, extractedDataByRule, deleteMatchStatement, insertMatchStatement);
 
+                blobStore.sync();
                 connection.commit();
+                contentHashIndex.add(contentHash);
             } catch (Exception e) {
                 logDatabaseError("saveMessage", e);
             }
@@ -1002,6 +1268,97 @@ public class SqliteMessageStore implements MessageRepository,
         }
     }
 
+    @Override
+    public synchronized List<String> markRegexProcessingBatch(List<String> messageIds) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String updateSql = String.format("""
+                UPDATE %s
+                SET regex_status = ?, regex_attempts = regex_attempts + 1, regex_error = ''
+                WHERE message_id = ? AND (regex_status = ? OR (regex_status = ? AND regex_attempts < ?))
+                """, TABLE_NAME);
+
+        List<String> claimedIds = new ArrayList<>(messageIds.size());
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(updateSql)) {
+            connection.setAutoCommit(false);
+            for (String messageId : messageIds) {
+                if (messageId == null || messageId.isBlank()) {
+                    continue;
+                }
+
+                statement.setString(1, REGEX_STATUS_PROCESSING);
+                statement.setString(2, messageId);
+                statement.setString(3, REGEX_STATUS_PENDING);
+                statement.setString(4, REGEX_STATUS_FAILED);
+                statement.setInt(5, MAX_REGEX_ATTEMPTS);
+                if (statement.executeUpdate() > 0) {
+                    claimedIds.add(messageId);
+                }
+            }
+            connection.commit();
+            return claimedIds;
+        } catch (Exception e) {
+            logDatabaseError("markRegexProcessingBatch", e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public synchronized List<String> completeRegexProcessingBatch(List<RegexCompletion> completions) {
+        if (completions == null || completions.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 已被认领（PROCESSING）的行不再累加尝试次数；直接从 PENDING 完成的行视为一次认领
+        String updateSql = String.format("""
+                UPDATE %s
+                SET regex_status = ?, regex_error = '', comment = ?, color = ?, scan_truncation = ?,
+                    regex_attempts = CASE WHEN regex_status = ? THEN regex_attempts ELSE regex_attempts + 1 END
+                WHERE message_id = ? AND (regex_status IN (?, ?) OR (regex_status = ? AND regex_attempts < ?))
+                """, TABLE_NAME);
+
+        List<String> completedIds = new ArrayList<>(completions.size());
+        try (Connection connection = getConnection();
+             PreparedStatement updateStatement = connection.prepareStatement(updateSql);
+             PreparedStatement deleteMatchStatement = connection.prepareStatement(String.format("DELETE FROM %s WHERE message_id = ?", MATCH_TABLE_NAME));
+             PreparedStatement insertMatchStatement = connection.prepareStatement(String.format("INSERT INTO %s (message_id, rule_name, extracted_value) VALUES (?, ?, ?)", MATCH_TABLE_NAME))) {
+
+            connection.setAutoCommit(false);
+            for (RegexCompletion completion : completions) {
+                if (completion == null || completion.messageId() == null || completion.messageId().isBlank()) {
+                    continue;
+                }
+
+                String color = completion.color();
+                updateStatement.setString(1, REGEX_STATUS_DONE);
+                updateStatement.setString(2, completion.comment() == null ? "" : completion.comment());
+                updateStatement.setString(3, color == null || color.isBlank() ? "none" : color);
+                updateStatement.setString(4, completion.scanTruncation() == null ? "" : completion.scanTruncation());
+                updateStatement.setString(5, REGEX_STATUS_PROCESSING);
+                updateStatement.setString(6, completion.messageId());
+                updateStatement.setString(7, REGEX_STATUS_PENDING);
+                updateStatement.setString(8, REGEX_STATUS_PROCESSING);
+                updateStatement.setString(9, REGEX_STATUS_FAILED);
+                updateStatement.setInt(10, MAX_REGEX_ATTEMPTS);
+                if (updateStatement.executeUpdate() == 0) {
+                    continue;
+                }
+
+                saveMatchData(completion.messageId(), completion.extractedDataByRule(), deleteMatchStatement, insertMatchStatement);
+                completedIds.add(completion.messageId());
+            }
+
+            connection.commit();
+            return completedIds;
+        } catch (Exception e) {
+            logDatabaseError("completeRegexProcessingBatch", e);
+            return Collections.emptyList();
+        }
+    }
+
     @Override
     public synchronized boolean failRegexProcessing(String messageId, String errorMessage) {
         String updateSql = String.format("""
@@ -1044,10 +1401,19 @@ public class SqliteMessageStore implements MessageRepository,
 
     @Override
     public synchronized List<String> loadPendingRegexMessageIds(int limit) {
-        int safeLimit = Math.max(1, limit);
         List<String> result = new ArrayList<>();
+        for (PendingRegexWork work : loadPendingRegexWork(limit)) {
+            result.add(work.messageId());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<PendingRegexWork> loadPendingRegexWork(int limit) {
+        int safeLimit = Math.max(1, limit);
+        List<PendingRegexWork> result = new ArrayList<>();
         String querySql = String.format("""
-                SELECT message_id
+                SELECT message_id, regex_source
                 FROM %s
                 WHERE regex_status = ? OR (regex_status = ? AND regex_attempts < ?)
                 ORDER BY created_at ASC, message_id ASC
@@ -1063,16 +1429,143 @@ public class SqliteMessageStore implements MessageRepository,
 
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
-                    result.add(resultSet.getString("message_id"));
+                    result.add(new PendingRegexWork(resultSet.getString("message_id"), resultSet.getString("regex_source")));
+                }
+            }
+        } catch (Exception e) {
+            logDatabaseError("loadPendingRegexWork", e);
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized int countRuleRematchCandidates(List<String> commentKeywords) {
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder querySql = new StringBuilder(String.format("SELECT COUNT(*) FROM %s WHERE regex_status = ?", TABLE_NAME));
+        parameters.add(REGEX_STATUS_DONE);
+        appendCommentKeywordsClause(querySql, parameters, commentKeywords);
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(querySql.toString())) {
+            bindParameters(statement, parameters);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        } catch (Exception e) {
+            logDatabaseError("countRuleRematchCandidates", e);
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized List<RuleRematchCandidate> loadRuleRematchCandidates(List<String> commentKeywords, long afterRowId, int limit) {
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder querySql = new StringBuilder(String.format(
+                "SELECT rowid, message_id, comment FROM %s WHERE regex_status = ? AND rowid > ?", TABLE_NAME));
+        parameters.add(REGEX_STATUS_DONE);
+        parameters.add(afterRowId);
+        appendCommentKeywordsClause(querySql, parameters, commentKeywords);
+        querySql.append(" ORDER BY rowid ASC LIMIT ?");
+        parameters.add(Math.max(1, limit));
+
+        List<RuleRematchCandidate> result = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(querySql.toString())) {
+            bindParameters(statement, parameters);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.add(new RuleRematchCandidate(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)));
                 }
             }
         } catch (Exception e) {
-            logDatabaseError("loadPendingRegexMessageIds", e);
+            logDatabaseError("loadRuleRematchCandidates", e);
         }
 
         return result;
     }
 
+    @Override
+    public synchronized List<String> applyRuleRematch(List<String> ruleNames, List<RuleRematchUpdate> updates) {
+        if (ruleNames == null || ruleNames.isEmpty() || updates == null || updates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String updateSql = String.format("""
+                UPDATE %s
+                SET comment = ?, color = ?
+                WHERE message_id = ? AND regex_status = ?
+                """, TABLE_NAME);
+        String deleteSql = String.format("DELETE FROM %s WHERE message_id = ? AND rule_name = ?", MATCH_TABLE_NAME);
+        String insertSql = String.format("INSERT INTO %s (message_id, rule_name, extracted_value) VALUES (?, ?, ?)", MATCH_TABLE_NAME);
+
+        List<String> updatedIds = new ArrayList<>(updates.size());
+        try (Connection connection = getConnection();
+             PreparedStatement updateStatement = connection.prepareStatement(updateSql);
+             PreparedStatement deleteMatchStatement = connection.prepareStatement(deleteSql);
+             PreparedStatement insertMatchStatement = connection.prepareStatement(insertSql)) {
+
+            connection.setAutoCommit(false);
+            for (RuleRematchUpdate update : updates) {
+                if (update == null || update.messageId() == null || update.messageId().isBlank()) {
+                    continue;
+                }
+
+                String color = update.color();
+                updateStatement.setString(1, update.comment() == null ? "" : update.comment());
+                updateStatement.setString(2, color == null || color.isBlank() ? "none" : color);
+                updateStatement.setString(3, update.messageId());
+                updateStatement.setString(4, REGEX_STATUS_DONE);
+                if (updateStatement.executeUpdate() == 0) {
+                    continue;
+                }
+
+                // 只替换重匹配规则的提取数据，其余规则的行保持不变
+                for (String ruleName : ruleNames) {
+                    deleteMatchStatement.setString(1, update.messageId());
+                    deleteMatchStatement.setString(2, ruleName);
+                    deleteMatchStatement.addBatch();
+
+                    List<String> extractedValues = update.extractedDataByRule() == null ? null : update.extractedDataByRule().get(ruleName);
+                    if (extractedValues == null) {
+                        continue;
+                    }
+                    for (String extractedValue : extractedValues) {
+                        if (extractedValue == null || extractedValue.isBlank()) {
+                            continue;
+                        }
+                        insertMatchStatement.setString(1, update.messageId());
+                        insertMatchStatement.setString(2, ruleName);
+                        insertMatchStatement.setString(3, extractedValue);
+                        insertMatchStatement.addBatch();
+                    }
+                }
+                deleteMatchStatement.executeBatch();
+                insertMatchStatement.executeBatch();
+                updatedIds.add(update.messageId());
+            }
+
+            connection.commit();
+            return updatedIds;
+        } catch (Exception e) {
+            logDatabaseError("applyRuleRematch", e);
+            return Collections.emptyList();
+        }
+    }
+
+    private void appendCommentKeywordsClause(StringBuilder querySql, List<Object> parameters, List<String> commentKeywords) {
+        if (commentKeywords == null || commentKeywords.isEmpty()) {
+            return;
+        }
+
+        querySql.append(" AND (");
+        for (int i = 0; i < commentKeywords.size(); i++) {
+            querySql.append(i == 0 ? "" : " OR ").append("instr(comment, ?) > 0");
+            parameters.add(commentKeywords.get(i));
+        }
+        querySql.append(")");
+    }
+
     @Override
     public synchronized boolean enqueueAiTriageTask(String taskId,
                                                     String messageId,
@@ -2785,7 +3278,7 @@ public class SqliteMessageStore implements MessageRepository,
 
     @Override
     public synchronized boolean existsDuplicateContent(String contentHash) {
-        if (contentHash == null || contentHash.isBlank()) {
+        if (contentHash == null || contentHash.isBlank() || isDefinitelyNewContent(contentHash)) {
             return false;
         }
 
@@ -3101,6 +3594,8 @@ public class SqliteMessageStore implements MessageRepository,
 
             if (parameter instanceof Integer integerValue) {
                 statement.setInt(parameterIndex, integerValue);
+            } else if (parameter instanceof Long longValue) {
+                statement.setLong(parameterIndex, longValue);
             } else {
                 statement.setString(parameterIndex, parameter == null ? "" : parameter.toString());
             }
@@ -3110,10 +3605,16 @@ public class SqliteMessageStore implements MessageRepository,
     @Override
     public synchronized HttpRequestResponse loadMessage(String messageId) {
         String querySql = String.format("""
-                SELECT service_host, service_port, service_secure, request_bytes, response_bytes
-                FROM %s
-                WHERE message_id = ?
-                """, TABLE_NAME);
+                SELECT mh.service_host, mh.service_port, mh.service_secure, mh.request_bytes, mh.response_bytes,
+                       rb.segment_id AS request_segment_id, rb.segment_offset AS request_segment_offset,
+                       rb.length AS request_blob_length,
+                       sb.segment_id AS response_segment_id, sb.segment_offset AS response_segment_offset,
+                       sb.length AS response_blob_length
+                FROM %s mh
+                LEFT JOIN %s rb ON rb.blob_hash = mh.request_blob
+                LEFT JOIN %s sb ON sb.blob_hash = mh.response_blob
+                WHERE mh.message_id = ?
+                """, TABLE_NAME, BLOB_TABLE_NAME, BLOB_TABLE_NAME);
 
         try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(querySql)) {
@@ -3124,7 +3625,7 @@ public class SqliteMessageStore implements MessageRepository,
                     return null;
                 }
 
-                return toHttpRequestResponse(resultSet);
+                return toHttpRequestResponse(resultSet, readPayload(resultSet, "request"), readPayload(resultSet, "response"));
             }
         } catch (Exception e) {
             logDatabaseError("loadMessage", e);
@@ -3135,10 +3636,17 @@ public class SqliteMessageStore implements MessageRepository,
     @Override
     public synchronized StoredMessage loadStoredMessage(String messageId) {
         String querySql = String.format("""
-                SELECT host, content_hash, service_host, service_port, service_secure, request_bytes, response_bytes
-                FROM %s
-                WHERE message_id = ?
-                """, TABLE_NAME);
+                SELECT mh.host, mh.content_hash, mh.regex_source, mh.service_host, mh.service_port, mh.service_secure,
+                       mh.request_bytes, mh.response_bytes,
+                       rb.segment_id AS request_segment_id, rb.segment_offset AS request_segment_offset,
+                       rb.length AS request_blob_length,
+                       sb.segment_id AS response_segment_id, sb.segment_offset AS response_segment_offset,
+                       sb.length AS response_blob_length
+                FROM %s mh
+                LEFT JOIN %s rb ON rb.blob_hash = mh.request_blob
+                LEFT JOIN %s sb ON sb.blob_hash = mh.response_blob
+                WHERE mh.message_id = ?
+                """, TABLE_NAME, BLOB_TABLE_NAME, BLOB_TABLE_NAME);
 
         try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(querySql)) {
@@ -3151,12 +3659,13 @@ public class SqliteMessageStore implements MessageRepository,
 
                 String host = resultSet.getString("host");
                 String contentHash = resultSet.getString("content_hash");
-                HttpRequestResponse requestResponse = toHttpRequestResponse(resultSet);
+                HttpRequestResponse requestResponse = toHttpRequestResponse(resultSet,
+                        readPayload(resultSet, "request"), readPayload(resultSet, "response"));
                 if (requestResponse == null) {
                     return null;
                 }
 
-                return new StoredMessage(messageId, host, contentHash, requestResponse);
+                return new StoredMessage(messageId, host, contentHash, resultSet.getString("regex_source"), requestResponse);
             }
         } catch (Exception e) {
             logDatabaseError("loadStoredMessage", e);
@@ -3164,6 +3673,25 @@ public class SqliteMessageStore implements MessageRepository,
         }
     }
 
+    @Override
+    public synchronized List<String> loadRecentMessageIds(int limit) {
+        String querySql = String.format("SELECT message_id FROM %s ORDER BY rowid DESC LIMIT ?", TABLE_NAME);
+        List<String> result = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(querySql)) {
+            statement.setInt(1, Math.max(1, limit));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.add(resultSet.getString(1));
+                }
+            }
+        } catch (Exception e) {
+            logDatabaseError("loadRecentMessageIds", e);
+        }
+
+        return result;
+    }
+
     @Override
     public synchronized Map<String, List<String>> loadMessageExtractedData(String messageId) {
         Map<String, List<String>> result = new java.util.LinkedHashMap<>();
@@ -3202,11 +3730,13 @@ public class SqliteMessageStore implements MessageRepository,
     }
 
     private HttpRequestResponse toHttpRequestResponse(ResultSet resultSet) throws SQLException {
+        return toHttpRequestResponse(resultSet, resultSet.getBytes("request_bytes"), resultSet.getBytes("response_bytes"));
+    }
+
+    private HttpRequestResponse toHttpRequestResponse(ResultSet resultSet, byte[] requestBytes, byte[] responseBytes) throws SQLException {
         String serviceHost = resultSet.getString("service_host");
         int servicePort = resultSet.getInt("service_port");
         boolean serviceSecure = resultSet.getInt("service_secure") == 1;
-        byte[] requestBytes = resultSet.getBytes("request_bytes");
-        byte[] responseBytes = resultSet.getBytes("response_bytes");
         if (requestBytes == null) {
             requestBytes = new byte[0];
         }
@@ -3458,7 +3988,9 @@ public class SqliteMessageStore implements MessageRepository,
         }
 
         List<String> idsToDelete = new ArrayList<>();
-        String querySql = String.format("SELECT message_id, host FROM %s", TABLE_NAME);
+        List<String> hashesToDelete = new ArrayList<>();
+        List<String> blobsToRelease = new ArrayList<>();
+        String querySql = String.format("SELECT message_id, host, content_hash, request_blob, response_blob FROM %s", TABLE_NAME);
 
         try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(querySql);
@@ -3467,6 +3999,9 @@ public class SqliteMessageStore implements MessageRepository,
                 String host = resultSet.getString("host");
                 if (host != null && StringProcessor.matchesHostPattern(host, hostPattern)) {
                     idsToDelete.add(resultSet.getString("message_id"));
+                    hashesToDelete.add(resultSet.getString("content_hash"));
+                    blobsToRelease.add(resultSet.getString("request_blob"));
+                    blobsToRelease.add(resultSet.getString("response_blob"));
                 }
             }
         } catch (Exception e) {
@@ -3505,7 +4040,12 @@ public class SqliteMessageStore implements MessageRepository,
             deleteAiTaskStatement.executeBatch();
             deleteMatchStatement.executeBatch();
             statement.executeBatch();
+            releaseBlobs(connection, blobsToRelease);
             connection.commit();
+            for (String contentHash : hashesToDelete) {
+                contentHashIndex.remove(contentHash);
+            }
+            reclaimBlobSegments(connection);
             return idsToDelete.size();
         } catch (Exception e) {
             logDatabaseError("deleteByHostPattern(delete)", e);
@@ -3519,13 +4059,17 @@ public class SqliteMessageStore implements MessageRepository,
         String deleteMatchSql = String.format("DELETE FROM %s", MATCH_TABLE_NAME);
         String deleteAiTaskSql = String.format("DELETE FROM %s", AI_TRIAGE_TASK_TABLE_NAME);
         String deleteAiResultSql = String.format("DELETE FROM %s", AI_TRIAGE_RESULT_TABLE_NAME);
+        String deleteBlobSql = String.format("DELETE FROM %s", BLOB_TABLE_NAME);
         try (Connection connection = getConnection(); Statement statement = connection.createStatement()) {
             connection.setAutoCommit(false);
             statement.executeUpdate(deleteAiResultSql);
             statement.executeUpdate(deleteAiTaskSql);
             statement.executeUpdate(deleteMatchSql);
             int deletedRows = statement.executeUpdate(deleteSql);
+            statement.executeUpdate(deleteBlobSql);
             connection.commit();
+            contentHashIndex.clear();
+            blobStore.clear();
             return deletedRows;
         } catch (Exception e) {
             logDatabaseError("deleteAllMessages", e);
@@ -3533,32 +4077,135 @@ public class SqliteMessageStore implements MessageRepository,
         }
     }
 
-    private String calculateContentHash(byte[] requestBytes, byte[] responseBytes) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("MD5");
-            if (requestBytes != null) {
-                digest.update(requestBytes);
+    /**
+     * 正文达到阈值时按内容哈希写入分段存储：已存在的正文只增加引用计数，行内只保留报文头。
+     * 回滚的事务可能在分段中留下未被引用的字节，所在分段整体无引用后一并回收；
+     * 追加的字节由调用方在提交前用 {@link BlobSegmentStore#sync()} 刷盘。
+     */
+    private StoredPayload storePayload(Connection connection, byte[] bytes) throws SQLException, IOException {
+        int bodyOffset = bodyOffset(bytes);
+        if (bodyOffset < 0 || bytes.length - bodyOffset < BLOB_BODY_THRESHOLD) {
+            return new StoredPayload(bytes, "");
+        }
+
+        byte[] body = Arrays.copyOfRange(bytes, bodyOffset, bytes.length);
+        String blobHash = MessageFingerprint.of(body).toHex();
+        BlobSegmentStore.Location existing = findBlob(connection, blobHash);
+        if (existing != null) {
+            // 以 128 位哈希加长度认定同一正文，不在写入事务内回读整段比较；长度不符时退回行内存储
+            if (existing.length() != body.length) {
+                return new StoredPayload(bytes, "");
+            }
+            String retainSql = String.format("UPDATE %s SET ref_count = ref_count + 1 WHERE blob_hash = ?", BLOB_TABLE_NAME);
+            try (PreparedStatement statement = connection.prepareStatement(retainSql)) {
+                statement.setString(1, blobHash);
+                statement.executeUpdate();
             }
-            if (responseBytes != null) {
-                digest.update(responseBytes);
+        } else {
+            BlobSegmentStore.Location location = blobStore.append(body, 0, body.length);
+            String insertSql = String.format("""
+                    INSERT INTO %s (blob_hash, segment_id, segment_offset, length, ref_count)
+                    VALUES (?, ?, ?, ?, 1)
+                    """, BLOB_TABLE_NAME);
+            try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+                statement.setString(1, blobHash);
+                statement.setInt(2, location.segmentId());
+                statement.setLong(3, location.offset());
+                statement.setInt(4, location.length());
+                statement.executeUpdate();
+            }
+        }
+
+        return new StoredPayload(Arrays.copyOf(bytes, bodyOffset), blobHash);
+    }
+
+    private BlobSegmentStore.Location findBlob(Connection connection, String blobHash) throws SQLException {
+        String querySql = String.format("SELECT segment_id, segment_offset, length FROM %s WHERE blob_hash = ?", BLOB_TABLE_NAME);
+        try (PreparedStatement statement = connection.prepareStatement(querySql)) {
+            statement.setString(1, blobHash);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                return new BlobSegmentStore.Location(resultSet.getInt(1), resultSet.getLong(2), resultSet.getInt(3));
+            }
+        }
+    }
+
+    private byte[] readPayload(ResultSet resultSet, String prefix) throws SQLException, IOException {
+        byte[] inlineBytes = resultSet.getBytes(prefix + "_bytes");
+        if (inlineBytes == null) {
+            inlineBytes = new byte[0];
+        }
+
+        int segmentId = resultSet.getInt(prefix + "_segment_id");
+        if (resultSet.wasNull()) {
+            return inlineBytes;
+        }
+
+        byte[] body = blobStore.read(new BlobSegmentStore.Location(segmentId,
+                resultSet.getLong(prefix + "_segment_offset"), resultSet.getInt(prefix + "_blob_length")));
+        byte[] payload = Arrays.copyOf(inlineBytes, inlineBytes.length + body.length);
+        System.arraycopy(body, 0, payload, inlineBytes.length, body.length);
+        return payload;
+    }
+
+    private void releaseBlobs(Connection connection, List<String> blobHashes) throws SQLException {
+        String releaseSql = String.format("UPDATE %s SET ref_count = ref_count - 1 WHERE blob_hash = ?", BLOB_TABLE_NAME);
+        String deleteSql = String.format("DELETE FROM %s WHERE ref_count <= 0", BLOB_TABLE_NAME);
+        boolean released = false;
+        try (PreparedStatement statement = connection.prepareStatement(releaseSql)) {
+            for (String blobHash : blobHashes) {
+                if (blobHash == null || blobHash.isEmpty()) {
+                    continue;
+                }
+                statement.setString(1, blobHash);
+                statement.addBatch();
+                released = true;
+            }
+            if (released) {
+                statement.executeBatch();
+            }
+        }
+        if (released) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(deleteSql);
+            }
+        }
+    }
+
+    private void reclaimBlobSegments(Connection connection) {
+        String querySql = String.format("SELECT DISTINCT segment_id FROM %s", BLOB_TABLE_NAME);
+        Set<Integer> liveSegmentIds = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(querySql);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                liveSegmentIds.add(resultSet.getInt(1));
             }
-            return bytesToHex(digest.digest());
         } catch (Exception e) {
-            logDatabaseError("calculateContentHash", e);
-            return "";
+            logDatabaseError("reclaimBlobSegments", e);
+            return;
         }
+        blobStore.retainSegments(liveSegmentIds);
     }
 
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
+    private static int bodyOffset(byte[] bytes) {
+        for (int i = 0; i + 3 < bytes.length; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                return i + 4;
             }
-            hexString.append(hex);
         }
-        return hexString.toString();
+        return -1;
+    }
+
+    private String calculateContentHash(byte[] requestBytes, byte[] responseBytes) {
+        // 入库路径已带上 MessageTableModel 算好的 content_hash，这里只补算其他写入路径
+        try {
+            return MessageFingerprint.contentOf(requestBytes, responseBytes).toHex();
+        } catch (Exception e) {
+            logDatabaseError("calculateContentHash", e);
+            return "";
+        }
     }
 
     private String truncateError(String errorMessage) {
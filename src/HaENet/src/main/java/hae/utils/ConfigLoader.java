@@ -4,6 +4,7 @@ import burp.api.montoya.MontoyaApi;
 import hae.Config;
 import hae.ai.AiConfig;
 import hae.ai.AiWhitelistRule;
+import hae.utils.http.TrafficFilter;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.LoaderOptions;
 import org.yaml.snakeyaml.Yaml;
@@ -23,6 +24,10 @@ public class ConfigLoader {
     private final Yaml yaml;
     private final String configFilePath;
     private final String rulesFilePath;
+    private volatile CompiledTrafficFilter compiledTrafficFilter;
+
+    private record CompiledTrafficFilter(long configModifiedMillis, TrafficFilter filter) {
+    }
 
     public ConfigLoader(MontoyaApi api) {
         this.api = api;
@@ -101,6 +106,15 @@ public class ConfigLoader {
         r.put("LimitSize", getLimitSize());
         r.put("HaEScope", getScope());
         r.put("DynamicHeader", getDynamicHeader());
+        r.put("RegexMinWorkers", getRegexMinWorkers());
+        r.put("RegexMaxWorkers", getRegexMaxWorkers());
+        r.put("MatchingThreads", getMatchingThreads());
+        r.put("RuleTimeoutMillis", getRuleTimeoutMillis());
+        r.put("RuleQuarantineStrikes", getRuleQuarantineStrikes());
+        r.put("ScanWindowKB", getScanWindowKB());
+        r.put("ScanHeaderLimitKB", getScanHeaderLimitKB());
+        r.put("ScanBodyLimitKB", getScanBodyLimitKB());
+        r.put("ScanMessageLimitKB", getScanMessageLimitKB());
         r.put("AIEnabled", getAIEnabled());
         r.put("AIUseBurpProxy", getAIUseBurpProxy());
         r.put("AIProviderType", getAIProviderType());
@@ -180,6 +194,7 @@ public class ConfigLoader {
 
     public void setBlockHost(String blockHost) {
         setValueToConfig("BlockHost", blockHost);
+        compiledTrafficFilter = null;
     }
 
     public String getExcludeSuffix() {
@@ -188,6 +203,7 @@ public class ConfigLoader {
 
     public void setExcludeSuffix(String excludeSuffix) {
         setValueToConfig("ExcludeSuffix", excludeSuffix);
+        compiledTrafficFilter = null;
     }
 
     public String getExcludeStatus() {
@@ -196,6 +212,7 @@ public class ConfigLoader {
 
     public void setExcludeStatus(String status) {
         setValueToConfig("ExcludeStatus", status);
+        compiledTrafficFilter = null;
     }
 
     public String getDynamicHeader() {
@@ -220,6 +237,7 @@ public class ConfigLoader {
 
     public void setScope(String scope) {
         setValueToConfig("HaEScope", scope);
+        compiledTrafficFilter = null;
     }
 
     public boolean getMode() {
@@ -230,6 +248,94 @@ public class ConfigLoader {
         setValueToConfig("HaEModeStatus", mode);
     }
 
+    /**
+     * 返回按当前 BlockHost、ExcludeSuffix、ExcludeStatus 与 HaEScope 预编译的过滤器；
+     * 通过设置方法修改或配置文件被外部改写后才重新构建。
+     */
+    public TrafficFilter getTrafficFilter() {
+        long configModifiedMillis = configFileModifiedMillis();
+        CompiledTrafficFilter compiled = compiledTrafficFilter;
+        if (compiled != null && compiled.configModifiedMillis() == configModifiedMillis) {
+            return compiled.filter();
+        }
+
+        TrafficFilter filter = TrafficFilter.compile(getBlockHost(), getExcludeSuffix(), getExcludeStatus(), getScope());
+        compiledTrafficFilter = new CompiledTrafficFilter(configModifiedMillis, filter);
+        return filter;
+    }
+
+    private long configFileModifiedMillis() {
+        return new File(configFilePath).lastModified();
+    }
+
+    public int getRegexMinWorkers() {
+        return getIntFromConfig("RegexMinWorkers", Config.RegexMinWorkers);
+    }
+
+    public void setRegexMinWorkers(int minWorkers) {
+        setValueToConfig("RegexMinWorkers", minWorkers);
+    }
+
+    public int getRegexMaxWorkers() {
+        return getIntFromConfig("RegexMaxWorkers", Config.RegexMaxWorkers);
+    }
+
+    public void setRegexMaxWorkers(int maxWorkers) {
+        setValueToConfig("RegexMaxWorkers", maxWorkers);
+    }
+
+    public int getMatchingThreads() {
+        return getNonNegativeIntFromConfig("MatchingThreads", Config.MatchingThreads);
+    }
+
+    public void setMatchingThreads(int threads) {
+        setValueToConfig("MatchingThreads", threads);
+    }
+
+    public int getRuleTimeoutMillis() {
+        return getIntFromConfig("RuleTimeoutMillis", Config.RuleTimeoutMillis);
+    }
+
+    public void setRuleTimeoutMillis(int timeoutMillis) {
+        setValueToConfig("RuleTimeoutMillis", timeoutMillis);
+    }
+
+    public int getRuleQuarantineStrikes() {
+        return getIntFromConfig("RuleQuarantineStrikes", Config.RuleQuarantineStrikes);
+    }
+
+    public int getScanWindowKB() {
+        return getIntFromConfig("ScanWindowKB", Config.ScanWindowKB);
+    }
+
+    public void setScanWindowKB(int windowKB) {
+        setValueToConfig("ScanWindowKB", windowKB);
+    }
+
+    public int getScanHeaderLimitKB() {
+        return getNonNegativeIntFromConfig("ScanHeaderLimitKB", Config.ScanHeaderLimitKB);
+    }
+
+    public void setScanHeaderLimitKB(int limitKB) {
+        setValueToConfig("ScanHeaderLimitKB", limitKB);
+    }
+
+    public int getScanBodyLimitKB() {
+        return getNonNegativeIntFromConfig("ScanBodyLimitKB", Config.ScanBodyLimitKB);
+    }
+
+    public void setScanBodyLimitKB(int limitKB) {
+        setValueToConfig("ScanBodyLimitKB", limitKB);
+    }
+
+    public int getScanMessageLimitKB() {
+        return getNonNegativeIntFromConfig("ScanMessageLimitKB", Config.ScanMessageLimitKB);
+    }
+
+    public void setScanMessageLimitKB(int limitKB) {
+        setValueToConfig("ScanMessageLimitKB", limitKB);
+    }
+
     public AiConfig getAiConfig() {
         return new AiConfig(
                 getAIEnabled(),
@@ -481,6 +587,23 @@ public class ConfigLoader {
         return defaultValue;
     }
 
+    // 0 是合法取值（扫描上限表示不限制，匹配线程表示自动），只有负数或无法解析时才回退默认值
+    private int getNonNegativeIntFromConfig(String name, int defaultValue) {
+        Object value = getObjectFromConfig(name, defaultValue);
+        if (value instanceof Number numberValue) {
+            int parsedValue = numberValue.intValue();
+            return parsedValue >= 0 ? parsedValue : defaultValue;
+        }
+        if (value != null) {
+            try {
+                int parsedValue = Integer.parseInt(value.toString());
+                return parsedValue >= 0 ? parsedValue : defaultValue;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return defaultValue;
+    }
+
     private Object getObjectFromConfig(String name, Object defaultValue) {
         File yamlSetting = new File(configFilePath);
         if (!yamlSetting.exists() || !yamlSetting.isFile()) {
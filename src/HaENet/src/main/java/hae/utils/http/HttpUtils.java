@@ -8,9 +8,6 @@ import burp.api.montoya.http.message.responses.HttpResponse;
 import hae.utils.ConfigLoader;
 import hae.utils.string.StringProcessor;
 
-import java.util.Arrays;
-import java.util.List;
-
 public class HttpUtils {
     private final MontoyaApi api;
     private final ConfigLoader configLoader;
@@ -29,34 +26,11 @@ public class HttpUtils {
         HttpResponse response = requestResponse.response();
         StringBuilder reason = new StringBuilder();
         try {
-            String host = getSafeHost(request);
-
-            boolean isBlockHost = false;
-            String blockHost = configLoader.getBlockHost();
-            if (!blockHost.isBlank()) {
-                String[] hostList = configLoader.getBlockHost().split("\\|");
-                isBlockHost = isBlockHost(hostList, host);
-                appendReason(reason, isBlockHost, "BlockHost");
-            }
-
-            boolean isExcludeSuffix = false;
-            String suffix = configLoader.getExcludeSuffix();
-            if (!suffix.isBlank()) {
-                List<String> suffixList = Arrays.asList(configLoader.getExcludeSuffix().split("\\|"));
-                isExcludeSuffix = suffixList.contains(getSafeFileExtension(request));
-                appendReason(reason, isExcludeSuffix, "ExcludeSuffix");
-            }
-
-            boolean isToolScope = !configLoader.getScope().contains(toolType);
-            appendReason(reason, isToolScope, "HaEScope");
-
-            boolean isExcludeStatus = false;
-            String status = configLoader.getExcludeStatus();
-            if (!status.isBlank()) {
-                List<String> statusList = Arrays.asList(configLoader.getExcludeStatus().split("\\|"));
-                isExcludeStatus = statusList.contains(getSafeStatus(response));
-                appendReason(reason, isExcludeStatus, "ExcludeStatus");
-            }
+            TrafficFilter trafficFilter = configLoader.getTrafficFilter();
+            appendReason(reason, trafficFilter.isBlockedHost(getSafeHost(request)), "BlockHost");
+            appendReason(reason, trafficFilter.isExcludedSuffix(getSafeFileExtension(request)), "ExcludeSuffix");
+            appendReason(reason, trafficFilter.isOutOfScope(toolType), "HaEScope");
+            appendReason(reason, trafficFilter.isExcludedStatus(getSafeStatus(response)), "ExcludeStatus");
         } catch (Exception e) {
             api.logging().logToError("getFilterReason: " + e.getMessage());
         }
@@ -101,24 +75,11 @@ public class HttpUtils {
         }
     }
 
-    private String getSafeStatus(HttpResponse response) {
+    private int getSafeStatus(HttpResponse response) {
         try {
-            return String.valueOf(response.statusCode());
+            return response.statusCode();
         } catch (Exception e) {
-            return "";
-        }
-    }
-
-    private boolean isBlockHost(String[] hostList, String host) {
-        boolean isBlockHost = false;
-        for (String hostName : hostList) {
-            String cleanedHost = StringProcessor.replaceFirstOccurrence(hostName, "*.", "");
-            if (hostName.contains("*.") && StringProcessor.matchFromEnd(host, cleanedHost)) {
-                isBlockHost = true;
-            } else if (host.equals(hostName) || hostName.equals("*")) {
-                isBlockHost = true;
-            }
+            return -1;
         }
-        return isBlockHost;
     }
 }
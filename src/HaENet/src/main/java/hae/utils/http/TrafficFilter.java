@@ -0,0 +1,147 @@
+package hae.utils.http;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 预编译的流量过滤器：由 BlockHost、ExcludeSuffix、ExcludeStatus 与 HaEScope 配置一次性构建，构建后不可变。
+ *
+ * <p>Host 规则按标签倒序组织成前缀树，“*.example.com”匹配 example.com 及其任意子域，
+ * 普通 Host 精确匹配，“*”匹配全部；后缀使用哈希集合，状态码使用位图。
+ * 实例可在主动/被动处理器与编辑器之间共享，配置变化时整体替换。</p>
+ */
+public final class TrafficFilter {
+    private static final TrafficFilter EMPTY = new TrafficFilter(new HostNode(), false, Collections.emptySet(), new BitSet(), "");
+
+    private final HostNode hostRoot;
+    private final boolean blockAllHosts;
+    private final Set<String> excludedSuffixes;
+    private final BitSet excludedStatuses;
+    private final String scope;
+
+    private TrafficFilter(HostNode hostRoot,
+                          boolean blockAllHosts,
+                          Set<String> excludedSuffixes,
+                          BitSet excludedStatuses,
+                          String scope) {
+        this.hostRoot = hostRoot;
+        this.blockAllHosts = blockAllHosts;
+        this.excludedSuffixes = excludedSuffixes;
+        this.excludedStatuses = excludedStatuses;
+        this.scope = scope;
+    }
+
+    public static TrafficFilter empty() {
+        return EMPTY;
+    }
+
+    public static TrafficFilter compile(String blockHost, String excludeSuffix, String excludeStatus, String scope) {
+        HostNode hostRoot = new HostNode();
+        boolean blockAllHosts = false;
+        for (String hostName : splitValues(blockHost)) {
+            if (hostName.equals("*")) {
+                blockAllHosts = true;
+                continue;
+            }
+
+            int wildcardIndex = hostName.indexOf("*.");
+            if (wildcardIndex >= 0) {
+                String cleanedHost = hostName.substring(0, wildcardIndex) + hostName.substring(wildcardIndex + 2);
+                hostRoot.insert(cleanedHost).wildcard = true;
+            } else {
+                hostRoot.insert(hostName).exact = true;
+            }
+        }
+
+        Set<String> excludedSuffixes = new HashSet<>();
+        Collections.addAll(excludedSuffixes, splitValues(excludeSuffix));
+
+        BitSet excludedStatuses = new BitSet();
+        for (String status : splitValues(excludeStatus)) {
+            int statusCode = parseStatusCode(status);
+            if (statusCode >= 0) {
+                excludedStatuses.set(statusCode);
+            }
+        }
+
+        return new TrafficFilter(hostRoot, blockAllHosts, Collections.unmodifiableSet(excludedSuffixes),
+                excludedStatuses, scope == null ? "" : scope);
+    }
+
+    public boolean isBlockedHost(String host) {
+        if (blockAllHosts) {
+            return true;
+        }
+        if (host == null || host.isEmpty()) {
+            return false;
+        }
+
+        String normalizedHost = host.toLowerCase(Locale.ROOT);
+        HostNode node = hostRoot;
+        int end = normalizedHost.length();
+        while (end >= 0) {
+            int start = normalizedHost.lastIndexOf('.', end - 1) + 1;
+            node = node.children.get(normalizedHost.substring(start, end));
+            if (node == null) {
+                return false;
+            }
+            if (node.wildcard) {
+                return true;
+            }
+            end = start - 1;
+        }
+        return node.exact;
+    }
+
+    public boolean isExcludedSuffix(String fileExtension) {
+        return fileExtension != null && excludedSuffixes.contains(fileExtension);
+    }
+
+    public boolean isOutOfScope(String toolType) {
+        return !scope.contains(toolType == null ? "" : toolType);
+    }
+
+    public boolean isExcludedStatus(int statusCode) {
+        return statusCode >= 0 && excludedStatuses.get(statusCode);
+    }
+
+    private static String[] splitValues(String values) {
+        if (values == null || values.isBlank()) {
+            return new String[0];
+        }
+        return values.split("\\|");
+    }
+
+    private static int parseStatusCode(String status) {
+        // 只接受规范写法，与原先按字符串比较 statusCode 的语义一致
+        try {
+            int statusCode = Integer.parseInt(status);
+            return statusCode >= 0 && String.valueOf(statusCode).equals(status) ? statusCode : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class HostNode {
+        private final Map<String, HostNode> children = new HashMap<>();
+        private boolean exact;
+        private boolean wildcard;
+
+        private HostNode insert(String host) {
+            String normalizedHost = host.toLowerCase(Locale.ROOT);
+            HostNode node = this;
+            int end = normalizedHost.length();
+            while (end >= 0) {
+                int start = normalizedHost.lastIndexOf('.', end - 1) + 1;
+                node = node.children.computeIfAbsent(normalizedHost.substring(start, end), label -> new HostNode());
+                end = start - 1;
+            }
+            return node;
+        }
+    }
+}
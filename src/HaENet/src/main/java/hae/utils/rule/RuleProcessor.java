@@ -2,7 +2,9 @@ package hae.utils.rule;
 
 import burp.api.montoya.MontoyaApi;
 import hae.Config;
+import hae.cache.BodyMatchCache;
 import hae.cache.DataCache;
+import hae.instances.http.utils.CompiledRuleSet;
 import hae.utils.ConfigLoader;
 import hae.utils.rule.model.Group;
 import hae.utils.rule.model.Info;
@@ -28,7 +30,10 @@ public class RuleProcessor {
     }
 
     public void rulesFormatAndSave() {
+        // 先换上新编译的规则集再清空缓存，避免旧规则的匹配结果重新写回缓存
+        CompiledRuleSet.publish(Config.globalRules);
         DataCache.clear();
+        BodyMatchCache.clear();
 
         DumperOptions dop = new DumperOptions();
         dop.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
@@ -68,13 +73,13 @@ public class RuleProcessor {
     }
 
     public void changeRule(Vector data, int select, String type) {
-        Config.globalRules.get(type)[select] = data.toArray();
+        Config.globalRules.get(type)[select] = ruleRow(data);
         this.rulesFormatAndSave();
     }
 
     public void addRule(Vector data, String type) {
         ArrayList<Object[]> x = new ArrayList<>(Arrays.asList(Config.globalRules.get(type)));
-        x.add(data.toArray());
+        x.add(ruleRow(data));
         Config.globalRules.put(type, x.toArray(new Object[x.size()][]));
         this.rulesFormatAndSave();
     }
@@ -108,6 +113,14 @@ public class RuleProcessor {
         this.rulesFormatAndSave();
         return name + i;
     }
+
+    /**
+     * 规则表格在规则字段之后还有运行状态列，只保存规则字段。
+     */
+    private static Object[] ruleRow(Vector data) {
+        int length = Math.min(data.size(), Config.ruleFields.length);
+        return data.subList(0, length).toArray();
+    }
 }
 
 
@@ -1,28 +1,19 @@
 package hae.utils.string;
 
-import java.security.MessageDigest;
-
 public class HashCalculator {
-    public static String calculateHash(byte[] bytes) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = digest.digest(bytes);
-            return bytesToHex(hashBytes);
-        } catch (Exception ignored) {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public static String toHex(byte[] bytes) {
+        if (bytes == null) {
             return "";
         }
-    }
 
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xff;
+            chars[i * 2] = HEX_DIGITS[value >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[value & 0x0f];
         }
-        return hexString.toString();
+        return new String(chars);
     }
 }
@@ -0,0 +1,110 @@
+package hae.utils.string;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 按 ISO-8859-1 解读的字节数组只读视图：每个字节对应一个字符，与 new String(bytes, ISO_8859_1) 内容一致，
+ * 但不复制字节。请求行、请求头与消息体都表示为同一数组上的偏移切片，大消息匹配时不再生成多份完整字符串。
+ *
+ * <p>视图假定底层数组在使用期间不被修改。</p>
+ */
+public final class Latin1Text implements CharSequence {
+    private static final Latin1Text EMPTY = new Latin1Text(new byte[0], 0, 0);
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    private Latin1Text(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static Latin1Text of(byte[] bytes) {
+        return bytes == null || bytes.length == 0 ? EMPTY : new Latin1Text(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (char) (bytes[offset + index] & 0xFF);
+    }
+
+    @Override
+    public Latin1Text subSequence(int start, int end) {
+        return slice(start, end);
+    }
+
+    public Latin1Text slice(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(String.format("[%d, %d) of %d", start, end, length));
+        }
+        if (start == 0 && end == length) {
+            return this;
+        }
+        return new Latin1Text(bytes, offset + start, end - start);
+    }
+
+    /** 从 start 开始到末尾的切片，如 HTTP 消息体。 */
+    public Latin1Text slice(int start) {
+        return slice(Math.max(0, Math.min(start, length)), length);
+    }
+
+    /** 第一行（不含换行符），与 split("\\r?\\n", 2)[0] 一致。 */
+    public Latin1Text firstLine() {
+        int end = indexOf((byte) '\n', 0);
+        if (end < 0) {
+            return this;
+        }
+        if (end > 0 && bytes[offset + end - 1] == '\r') {
+            end--;
+        }
+        return slice(0, end);
+    }
+
+    /**
+     * HTTP 消息的头部字段切片：请求行/状态行之后到消息体之前，去掉末尾的空行，
+     * 与各请求头按 CRLF 连接的结果一致。
+     */
+    public Latin1Text headerSection(int bodyOffset) {
+        int lineEnd = indexOf((byte) '\n', 0);
+        int end = Math.max(0, Math.min(bodyOffset, length));
+        if (lineEnd < 0 || lineEnd + 1 >= end) {
+            return slice(0, 0);
+        }
+        while (end > lineEnd + 1 && (bytes[offset + end - 1] == '\n' || bytes[offset + end - 1] == '\r')) {
+            end--;
+        }
+        return slice(lineEnd + 1, end);
+    }
+
+    /** 当前切片在 parent 中的起始位置；两者不共享同一数组或不在其范围内时返回 -1。 */
+    public int offsetIn(Latin1Text parent) {
+        if (parent.bytes != bytes || offset < parent.offset || offset + length > parent.offset + parent.length) {
+            return -1;
+        }
+        return offset - parent.offset;
+    }
+
+    private int indexOf(byte value, int from) {
+        for (int i = from; i < length; i++) {
+            if (bytes[offset + i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,285 @@
+package hae.utils.string;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 128 位消息指纹，内存中以两个 long 保存，需要作为文本键时再转成 32 位十六进制。
+ *
+ * <p>{@link #contentOf} 是请求/响应的 MD5，与历史行及 AI 任务/结果表中的 content_hash 一致，
+ * 入库时计算一次，同时用作近期消息缓存的键；其余缓存键（正则结果、正文结果、正文块、自动机）
+ * 用 {@link #of}/{@link #ofChars} 的 MurmurHash3 x64_128（seed 0）。</p>
+ */
+public final class MessageFingerprint {
+    private static final int HEX_LENGTH = 32;
+    private static final int BYTE_LENGTH = 16;
+
+    private final long high;
+    private final long low;
+
+    private MessageFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /** 请求字节 + 响应字节的 MD5，十六进制形式即持久化的 content_hash。 */
+    public static MessageFingerprint contentOf(byte[] requestBytes, byte[] responseBytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (requestBytes != null) {
+            digest.update(requestBytes);
+        }
+        if (responseBytes != null) {
+            digest.update(responseBytes);
+        }
+        return fromBytes(digest.digest());
+    }
+
+    /** 将多段字节视为首尾相接的一段内容计算指纹。 */
+    public static MessageFingerprint of(byte[]... parts) {
+        Hasher hasher = new Hasher();
+        if (parts != null) {
+            for (byte[] part : parts) {
+                if (part != null) {
+                    hasher.update(part, 0, part.length);
+                }
+            }
+        }
+        return hasher.finish();
+    }
+
+    /** 按 UTF-16 码元计算文本指纹，避免为大消息先编码出一份字节数组。 */
+    public static MessageFingerprint ofChars(CharSequence... parts) {
+        Hasher hasher = new Hasher();
+        if (parts != null) {
+            for (CharSequence part : parts) {
+                if (part != null) {
+                    hasher.update(part);
+                }
+            }
+        }
+        return hasher.finish();
+    }
+
+    public static MessageFingerprint fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != BYTE_LENGTH) {
+            return null;
+        }
+        return new MessageFingerprint(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    /** 解析 32 位十六进制文本，格式不符时返回 null。 */
+    public static MessageFingerprint fromHex(String hex) {
+        if (hex == null || hex.length() != HEX_LENGTH) {
+            return null;
+        }
+
+        byte[] bytes = new byte[BYTE_LENGTH];
+        for (int i = 0; i < BYTE_LENGTH; i++) {
+            int hi = Character.digit(hex.charAt(i * 2), 16);
+            int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (hi < 0 || lo < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((hi << 4) | lo);
+        }
+        return fromBytes(bytes);
+    }
+
+    public long high() {
+        return high;
+    }
+
+    public long low() {
+        return low;
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[BYTE_LENGTH];
+        writeLong(bytes, 0, high);
+        writeLong(bytes, 8, low);
+        return bytes;
+    }
+
+    public String toHex() {
+        return HashCalculator.toHex(toBytes());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof MessageFingerprint fingerprint)) {
+            return false;
+        }
+        return high == fingerprint.high && low == fingerprint.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xffL);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * 流式 MurmurHash3 x64_128，允许输入分多段送入而结果等同于拼接后一次计算。
+     */
+    private static final class Hasher {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+        private static final VarHandle LITTLE_ENDIAN_LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private final byte[] tail = new byte[16];
+        private int tailLength;
+        private long h1;
+        private long h2;
+        private long totalLength;
+
+        private void update(byte value) {
+            tail[tailLength++] = value;
+            totalLength++;
+            if (tailLength == 16) {
+                mixBlock(readLittleEndian(tail, 0), readLittleEndian(tail, 8));
+                tailLength = 0;
+            }
+        }
+
+        private void update(char c) {
+            update((byte) c);
+            update((byte) (c >>> 8));
+        }
+
+        private void update(CharSequence chars) {
+            int position = 0;
+            int end = chars.length();
+            while (tailLength > 0 && position < end) {
+                update(chars.charAt(position++));
+            }
+            // 每 8 个 UTF-16 码元正好组成一个 16 字节块
+            while (end - position >= 8) {
+                long k1 = chars.charAt(position)
+                        | (long) chars.charAt(position + 1) << 16
+                        | (long) chars.charAt(position + 2) << 32
+                        | (long) chars.charAt(position + 3) << 48;
+                long k2 = chars.charAt(position + 4)
+                        | (long) chars.charAt(position + 5) << 16
+                        | (long) chars.charAt(position + 6) << 32
+                        | (long) chars.charAt(position + 7) << 48;
+                mixBlock(k1, k2);
+                position += 8;
+                totalLength += 16;
+            }
+            while (position < end) {
+                update(chars.charAt(position++));
+            }
+        }
+
+        private void update(byte[] bytes, int offset, int length) {
+            int position = offset;
+            int end = offset + length;
+            while (tailLength > 0 && position < end) {
+                update(bytes[position++]);
+            }
+            while (end - position >= 16) {
+                mixBlock(readLittleEndian(bytes, position), readLittleEndian(bytes, position + 8));
+                position += 16;
+                totalLength += 16;
+            }
+            while (position < end) {
+                update(bytes[position++]);
+            }
+        }
+
+        private void mixBlock(long k1, long k2) {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private MessageFingerprint finish() {
+            long k1 = 0L;
+            long k2 = 0L;
+            for (int i = tailLength - 1; i >= 8; i--) {
+                k2 = (k2 << 8) | (tail[i] & 0xffL);
+            }
+            for (int i = Math.min(tailLength, 8) - 1; i >= 0; i--) {
+                k1 = (k1 << 8) | (tail[i] & 0xffL);
+            }
+            if (tailLength > 8) {
+                h2 ^= mixK2(k2);
+            }
+            if (tailLength > 0) {
+                h1 ^= mixK1(k1);
+            }
+
+            h1 ^= totalLength;
+            h2 ^= totalLength;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            return new MessageFingerprint(h1, h2);
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            return k1 * C2;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            return k2 * C1;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        private static long readLittleEndian(byte[] bytes, int offset) {
+            return (long) LITTLE_ENDIAN_LONG.get(bytes, offset);
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package hae.utils.string;
 
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
 
 public class StringProcessor {
@@ -14,6 +12,21 @@ public class StringProcessor {
         return original;
     }
 
+    /**
+     * 与 String.isBlank 相同的判断，适用于字节视图等 CharSequence，无需先转成字符串
+     */
+    public static boolean isBlank(CharSequence input) {
+        if (input instanceof String string) {
+            return string.isBlank();
+        }
+        for (int i = 0; i < input.length(); i++) {
+            if (!Character.isWhitespace(input.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static boolean matchFromEnd(String input, String pattern) {
         int inputLength = input.length();
         int patternLength = pattern.length();
@@ -61,26 +74,6 @@ public class StringProcessor {
         return uuid.toString();
     }
 
-    public static String mergeComment(String comment) {
-        if (!comment.contains(",")) {
-            return comment;
-        }
-
-        Map<String, Integer> itemCounts = getStringIntegerMap(comment);
-
-        StringBuilder mergedItems = new StringBuilder();
-
-        for (Map.Entry<String, Integer> entry : itemCounts.entrySet()) {
-            String itemName = entry.getKey();
-            int count = entry.getValue();
-            if (count != 0) {
-                mergedItems.append(itemName).append(" (").append(count).append("), ");
-            }
-        }
-
-        return mergedItems.substring(0, mergedItems.length() - 2);
-    }
-
     public static String getHostByUrl(String url) {
         String host = "";
 
@@ -102,38 +95,6 @@ public class StringProcessor {
         return host.matches("\\b(?:\\d{1,3}\\.){3}\\d{1,3}\\b");
     }
 
-    public static Map<String, Integer> getStringIntegerMap(String comment) {
-        Map<String, Integer> itemCounts = new HashMap<>();
-
-        if (comment == null || comment.trim().isEmpty()) {
-            return itemCounts;
-        }
-
-        String[] items = comment.split(", ");
-
-        for (String item : items) {
-            item = item.trim();
-
-            int openParenIndex = item.lastIndexOf("(");
-            int closeParenIndex = item.lastIndexOf(")");
-
-            if (openParenIndex != -1 && closeParenIndex != -1 && openParenIndex < closeParenIndex) {
-                String itemName = extractItemName(item);
-                try {
-                    int count = Integer.parseInt(item.substring(openParenIndex + 1, closeParenIndex).trim());
-                    itemCounts.put(itemName, itemCounts.getOrDefault(itemName, 0) + count);
-                } catch (NumberFormatException e) {
-                    itemCounts.put(itemName, itemCounts.getOrDefault(itemName, 0));
-                }
-            } else {
-                String itemName = extractItemName(item);
-                itemCounts.put(itemName, 0);
-            }
-        }
-
-        return itemCounts;
-    }
-
     public static String extractItemName(String item) {
         if (item == null || item.trim().isEmpty()) {
             return "";
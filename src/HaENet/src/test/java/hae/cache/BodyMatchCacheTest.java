@@ -0,0 +1,34 @@
+package hae.cache;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hae.utils.string.MessageFingerprint;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class BodyMatchCacheTest {
+    @Test
+    void entriesAreKeyedByBodyRuleSetVersionAndTypeAndWeighedByResultSize() {
+        BodyMatchCache.clear();
+        MessageFingerprint body = MessageFingerprint.ofChars("{\"mail\":\"a@b.test\"}");
+        BodyMatchCache.Key key = new BodyMatchCache.Key(body, 7L, "response");
+        BodyMatchCache.RuleResult mail = new BodyMatchCache.RuleResult(List.of("a@b.test"), new int[]{9, 17});
+        BodyMatchCache.put(key, Map.of(0, mail, 1, BodyMatchCache.RuleResult.EMPTY));
+
+        BodyMatchCache.RuleResult large = new BodyMatchCache.RuleResult(List.of("x".repeat(4096)), new int[]{0, 4096});
+
+        assertAll(
+                () -> assertEquals(mail, BodyMatchCache.get(new BodyMatchCache.Key(body, 7L, "response")).get(0)),
+                () -> assertNull(BodyMatchCache.get(new BodyMatchCache.Key(body, 8L, "response"))),
+                () -> assertNull(BodyMatchCache.get(new BodyMatchCache.Key(body, 7L, "request"))),
+                () -> assertTrue(BodyMatchCache.weigh(key, Map.of(0, large)) > 8192),
+                () -> assertTrue(BodyMatchCache.weigh(key, Map.of(0, large)) > BodyMatchCache.weigh(key, Map.of(0, mail))),
+                () -> assertTrue(BodyMatchCache.summary().startsWith("Body hits "))
+        );
+        BodyMatchCache.clear();
+    }
+}
@@ -0,0 +1,70 @@
+package hae.cache;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hae.utils.string.MessageFingerprint;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class RecentMessageCacheTest {
+    @Test
+    void repeatsInsideWindowAreReportedAndCountedAsHits() {
+        AtomicLong nanos = new AtomicLong(0L);
+        RecentMessageCache cache = new RecentMessageCache(1024 * 1024, 10, TimeUnit.MINUTES, nanos::get);
+        MessageFingerprint proxied = fingerprint("GET / HTTP/1.1", "HTTP/1.1 200 OK");
+
+        boolean firstSeen = cache.seenRecently(proxied);
+        cache.record(proxied);
+        boolean repeatSeen = cache.seenRecently(fingerprint("GET / HTTP/1.1", "HTTP/1.1 200 OK"));
+        boolean otherSeen = cache.seenRecently(fingerprint("GET /other HTTP/1.1", "HTTP/1.1 200 OK"));
+
+        assertAll(
+                () -> assertFalse(firstSeen),
+                () -> assertTrue(repeatSeen),
+                () -> assertFalse(otherSeen),
+                () -> assertEquals(1L, cache.stats().hitCount()),
+                () -> assertEquals(3L, cache.stats().requestCount()),
+                () -> assertTrue(cache.summary().contains("1/3"))
+        );
+    }
+
+    @Test
+    void entriesExpireAfterWindowAndCanBeCleared() {
+        AtomicLong nanos = new AtomicLong(0L);
+        RecentMessageCache cache = new RecentMessageCache(1024 * 1024, 10, TimeUnit.MINUTES, nanos::get);
+        MessageFingerprint first = fingerprint("a", "b");
+        MessageFingerprint second = fingerprint("c", "d");
+        cache.record(first);
+        cache.record(second);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        boolean expired = !cache.seenRecently(first);
+        cache.record(second);
+        cache.clear();
+
+        assertAll(
+                () -> assertTrue(expired),
+                () -> assertFalse(cache.seenRecently(second)),
+                () -> assertEquals(0L, cache.estimatedSize())
+        );
+    }
+
+    @Test
+    void memoryBudgetBoundsEntryCount() {
+        RecentMessageCache cache = new RecentMessageCache(112L * 100, 10, TimeUnit.MINUTES, System::nanoTime);
+        for (int i = 0; i < 1000; i++) {
+            cache.record(fingerprint("request-" + i, "response"));
+        }
+
+        assertTrue(cache.estimatedSize() <= 100);
+    }
+
+    private static MessageFingerprint fingerprint(String request, String response) {
+        return MessageFingerprint.of(request.getBytes(StandardCharsets.UTF_8), response.getBytes(StandardCharsets.UTF_8));
+    }
+}
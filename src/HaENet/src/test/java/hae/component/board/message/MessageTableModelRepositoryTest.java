@@ -2,6 +2,7 @@ package hae.component.board.message;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -15,20 +16,29 @@ import burp.api.montoya.ui.UserInterface;
 import burp.api.montoya.ui.editor.HttpRequestEditor;
 import burp.api.montoya.ui.editor.HttpResponseEditor;
 import hae.TestFixtures;
+import hae.instances.http.utils.MessageProcessor;
+import hae.repository.MessageRepository;
+import hae.repository.RegexWorkRepository;
 import hae.storage.SqliteMessageStore;
 import hae.utils.ConfigLoader;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.HexFormat;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JPanel;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -68,6 +78,250 @@ class MessageTableModelRepositoryTest {
         }
     }
 
+    @Test
+    void handedOffMatchResultCompletesRowWithoutQueueingRescan() throws Exception {
+        ModelContext context = createModelContext(tempDirectory.resolve("handed-off"));
+        context.configLoader().setBlockHost("");
+        context.configLoader().setExcludeSuffix("");
+        context.configLoader().setExcludeStatus("");
+        context.configLoader().setScope("Proxy");
+
+        MessageTableModel model = newTestModel(context);
+        try {
+            MessageProcessor.ProcessedMessage processedMessage = processedMessage(
+                    "HandOffRule (1)",
+                    "red",
+                    Map.of("HandOffRule", List.of("handed-off-value"))
+            );
+            model.add(httpRequestResponse("handoff.example", "/direct", 200), true, null, "Proxy", processedMessage);
+
+            String messageId = singleString(context.databasePath(), "SELECT message_id FROM message_history");
+            assertNotNull(messageId);
+            assertAll(
+                    () -> assertEquals("DONE", singleString(context.databasePath(), "SELECT regex_status FROM message_history")),
+                    () -> assertEquals("HandOffRule (1)", singleString(context.databasePath(), "SELECT comment FROM message_history")),
+                    () -> assertEquals("red", singleString(context.databasePath(), "SELECT color FROM message_history")),
+                    () -> TestFixtures.assertSqlCount(context.databasePath(), MESSAGE_MATCH_TABLE, 1),
+                    () -> assertEquals(0, model.queuedRegexMessageIdCount())
+            );
+        } finally {
+            model.clearAllDataOnShutdown();
+        }
+    }
+
+    @Test
+    void messageWhoseInsertFailedIsNotSuppressedAsRecentDuplicate() throws Exception {
+        ModelContext context = createModelContext(tempDirectory.resolve("failed-insert"));
+        context.configLoader().setBlockHost("");
+        context.configLoader().setExcludeSuffix("");
+        context.configLoader().setExcludeStatus("");
+        context.configLoader().setScope("Proxy");
+        SqliteMessageStore store = context.store();
+        AtomicInteger saveCalls = new AtomicInteger();
+        MessageRepository failingOnce = (MessageRepository) Proxy.newProxyInstance(
+                MessageRepository.class.getClassLoader(),
+                new Class<?>[]{MessageRepository.class},
+                (proxy, method, args) -> {
+                    if ("savePendingMessages".equals(method.getName()) && saveCalls.getAndIncrement() == 0) {
+                        return Collections.nCopies(((List<?>) args[0]).size(), null);
+                    }
+                    try {
+                        return method.invoke(store, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+
+        MessageTableModel model = new MessageTableModel(context.api(), context.configLoader(), failingOnce, store, store, store, false);
+        try {
+            model.add(httpRequestResponse("retry.example", "/same", 200), true, null, "Proxy");
+            TestFixtures.assertSqlCount(context.databasePath(), MESSAGE_HISTORY_TABLE, 0);
+
+            model.add(httpRequestResponse("retry.example", "/same", 200), true, null, "Proxy");
+
+            TestFixtures.assertSqlCount(context.databasePath(), MESSAGE_HISTORY_TABLE, 1);
+        } finally {
+            model.clearAllDataOnShutdown();
+        }
+    }
+
+    @Test
+    void pendingBatchCommitsRowsTogetherAndDeduplicatesWithinBatch() throws Exception {
+        ModelContext context = createModelContext(tempDirectory.resolve("batch"));
+        SqliteMessageStore store = context.store();
+
+        List<SqliteMessageStore.PendingMessageSaveResult> results = store.savePendingMessages(List.of(
+                pendingWrite("batch-1", httpRequestResponse("batch.example", "/same", 200)),
+                pendingWrite("batch-2", httpRequestResponse("batch.example", "/same", 200)),
+                pendingWrite("batch-3", httpRequestResponse("batch.example", "/other", 200))
+        ));
+
+        assertAll(
+                () -> assertEquals(3, results.size()),
+                () -> assertTrue(results.get(0).isSaved()),
+                () -> assertTrue(results.get(1).isDuplicate()),
+                () -> assertTrue(results.get(2).isSaved()),
+                () -> assertEquals(results.get(0).getContentHash(), results.get(1).getContentHash()),
+                () -> TestFixtures.assertSqlCount(context.databasePath(), MESSAGE_HISTORY_TABLE, 2)
+        );
+    }
+
+    @Test
+    void storedContentHashStaysMd5SoExistingHistoryKeepsDeduplicating() throws Exception {
+        ModelContext context = createModelContext(tempDirectory.resolve("md5-hash"));
+        context.configLoader().setBlockHost("");
+        context.configLoader().setExcludeSuffix("");
+        context.configLoader().setExcludeStatus("");
+        context.configLoader().setScope("Proxy");
+        HttpRequestResponse requestResponse = httpRequestResponse("md5.example", "/same", 200);
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        digest.update(requestResponse.request().toByteArray().getBytes());
+        digest.update(requestResponse.response().toByteArray().getBytes());
+        String expectedHash = HexFormat.of().formatHex(digest.digest());
+
+        MessageTableModel model = newTestModel(context);
+        try {
+            model.add(requestResponse, true, null, "Proxy");
+            List<SqliteMessageStore.PendingMessageSaveResult> results = context.store().savePendingMessages(List.of(
+                    pendingWrite("md5-2", httpRequestResponse("md5.example", "/same", 200))
+            ));
+
+            assertAll(
+                    () -> assertEquals(expectedHash, singleString(context.databasePath(), "SELECT content_hash FROM message_history")),
+                    () -> assertTrue(results.get(0).isDuplicate()),
+                    () -> assertEquals(expectedHash, results.get(0).getContentHash())
+            );
+        } finally {
+            model.clearAllDataOnShutdown();
+        }
+    }
+
+    @Test
+    void pendingRowsKeepTheirToolSourceForRecovery() throws Exception {
+        ModelContext context = createModelContext(tempDirectory.resolve("regex-source"));
+        SqliteMessageStore store = context.store();
+        store.savePendingMessages(List.of(
+                pendingWrite("source-1", httpRequestResponse("source.example", "/proxy", 200), "Proxy"),
+                pendingWrite("source-2", httpRequestResponse("source.example", "/scanner", 200), "Scanner"),
+                pendingWrite("source-3", httpRequestResponse("source.example", "/unknown", 200))
+        ));
+
+        List<RegexWorkRepository.PendingRegexWork> pending = store.loadPendingRegexWork(10);
+
+        assertAll(
+                () -> assertEquals(List.of(
+                        new RegexWorkRepository.PendingRegexWork("source-1", "Proxy"),
+                        new RegexWorkRepository.PendingRegexWork("source-2", "Scanner"),
+                        new RegexWorkRepository.PendingRegexWork("source-3", "")
+                ), pending),
+                () -> assertEquals(List.of("source-1", "source-2", "source-3"), store.loadPendingRegexMessageIds(10)),
+                () -> assertEquals("Proxy", store.loadStoredMessage("source-1").getRegexSource())
+        );
+    }
+
+    @Test
+    void regexBatchClaimsAndCompletesRowsInOneCall() throws Exception {
+        ModelContext context = createModelContext(tempDirectory.resolve("regex-batch"));
+        SqliteMessageStore store = context.store();
+        store.savePendingMessages(List.of(
+                pendingWrite("regex-1", httpRequestResponse("regex.example", "/one", 200)),
+                pendingWrite("regex-2", httpRequestResponse("regex.example", "/two", 200)),
+                pendingWrite("regex-3", httpRequestResponse("regex.example", "/three", 200))
+        ));
+
+        List<String> claimed = store.markRegexProcessingBatch(List.of("regex-1", "regex-2", "missing"));
+        List<String> claimedAgain = store.markRegexProcessingBatch(List.of("regex-1", "regex-2"));
+        List<String> completed = store.completeRegexProcessingBatch(List.of(
+                new RegexWorkRepository.RegexCompletion("regex-1", "BatchRule (1)", "red", Map.of("BatchRule", List.of("one"))),
+                new RegexWorkRepository.RegexCompletion("regex-2", "", "none", Map.of(), "response body: scanned 2048 of 20480 KB"),
+                new RegexWorkRepository.RegexCompletion("regex-3", "BatchRule (1)", "blue", Map.of("BatchRule", List.of("three")))
+        ));
+        List<String> completedAgain = store.completeRegexProcessingBatch(List.of(
+                new RegexWorkRepository.RegexCompletion("regex-1", "Other (1)", "green", Map.of())
+        ));
+
+        assertAll(
+                () -> assertEquals(List.of("regex-1", "regex-2"), claimed),
+                () -> assertEquals(List.of(), claimedAgain),
+                () -> assertEquals(List.of("regex-1", "regex-2", "regex-3"), completed),
+                () -> assertEquals(List.of(), completedAgain),
+                () -> assertEquals("red", singleString(context.databasePath(), "SELECT color FROM message_history WHERE message_id = 'regex-1'")),
+                () -> assertEquals("1", singleString(context.databasePath(), "SELECT regex_attempts FROM message_history WHERE message_id = 'regex-3'")),
+                () -> assertEquals("response body: scanned 2048 of 20480 KB",
+                        singleString(context.databasePath(), "SELECT scan_truncation FROM message_history WHERE message_id = 'regex-2'")),
+                () -> assertEquals("", singleString(context.databasePath(), "SELECT scan_truncation FROM message_history WHERE message_id = 'regex-1'")),
+                () -> assertEquals("0", singleString(context.databasePath(), "SELECT COUNT(*) FROM message_history WHERE regex_status <> 'DONE'")),
+                () -> TestFixtures.assertSqlCount(context.databasePath(), MESSAGE_MATCH_TABLE, 2)
+        );
+    }
+
+    @Test
+    void ruleRematchReplacesOnlyTheRematchedRulesOfCompletedRows() throws Exception {
+        ModelContext context = createModelContext(tempDirectory.resolve("rule-rematch"));
+        SqliteMessageStore store = context.store();
+        store.savePendingMessages(List.of(
+                pendingWrite("rematch-1", httpRequestResponse("rematch.example", "/one", 200)),
+                pendingWrite("rematch-2", httpRequestResponse("rematch.example", "/two", 200)),
+                pendingWrite("rematch-3", httpRequestResponse("rematch.example", "/three", 200))
+        ));
+        store.completeRegexProcessingBatch(List.of(
+                new RegexWorkRepository.RegexCompletion("rematch-1", "Email (1), Token (1)", "red",
+                        Map.of("Email", List.of("old@example"), "Token", List.of("token=abc"))),
+                new RegexWorkRepository.RegexCompletion("rematch-2", "", "none", Map.of())
+        ));
+
+        int allCandidates = store.countRuleRematchCandidates(List.of());
+        List<RegexWorkRepository.RuleRematchCandidate> tokenRows = store.loadRuleRematchCandidates(List.of("Token"), 0L, 10);
+        List<RegexWorkRepository.RuleRematchCandidate> firstPage = store.loadRuleRematchCandidates(List.of(), 0L, 1);
+        List<RegexWorkRepository.RuleRematchCandidate> secondPage = store.loadRuleRematchCandidates(List.of(), firstPage.get(0).rowId(), 10);
+        List<String> updated = store.applyRuleRematch(List.of("Email"), List.of(
+                new RegexWorkRepository.RuleRematchUpdate("rematch-1", "Email (1), Token (1)", "orange", Map.of("Email", List.of("new@example"))),
+                new RegexWorkRepository.RuleRematchUpdate("rematch-3", "Email (1)", "orange", Map.of("Email", List.of("pending@example")))
+        ));
+
+        assertAll(
+                () -> assertEquals(2, allCandidates),
+                () -> assertEquals(List.of("rematch-1"), tokenRows.stream().map(RegexWorkRepository.RuleRematchCandidate::messageId).toList()),
+                () -> assertEquals("Email (1), Token (1)", tokenRows.get(0).comment()),
+                () -> assertEquals(List.of("rematch-2"), secondPage.stream().map(RegexWorkRepository.RuleRematchCandidate::messageId).toList()),
+                () -> assertEquals(List.of("rematch-1"), updated),
+                () -> assertEquals("orange", singleString(context.databasePath(), "SELECT color FROM message_history WHERE message_id = 'rematch-1'")),
+                () -> assertEquals("new@example", singleString(context.databasePath(), "SELECT extracted_value FROM message_match WHERE rule_name = 'Email'")),
+                () -> assertEquals("token=abc", singleString(context.databasePath(), "SELECT extracted_value FROM message_match WHERE rule_name = 'Token'")),
+                () -> TestFixtures.assertSqlCount(context.databasePath(), MESSAGE_MATCH_TABLE, 2)
+        );
+    }
+
+    @Test
+    void contentHashFilterTracksInsertsAndDeletes() throws Exception {
+        ModelContext context = createModelContext(tempDirectory.resolve("hash-filter"));
+        SqliteMessageStore store = context.store();
+        store.saveMessage("hash-1", httpRequestResponse("one.example", "/a", 200), "https://one.example/a",
+                "GET", "200", "0", "", "none", "shared-hash", Map.of());
+        store.saveMessage("hash-2", httpRequestResponse("two.example", "/a", 200), "https://two.example/a",
+                "GET", "200", "0", "", "none", "shared-hash", Map.of());
+
+        boolean beforeDelete = store.existsDuplicateContent("shared-hash");
+        boolean unknownHash = store.existsDuplicateContent("never-stored");
+        store.deleteByHostPattern("one.example");
+        boolean afterPartialDelete = store.existsDuplicateContent("shared-hash");
+        store.deleteAllMessages();
+        boolean afterDeleteAll = store.existsDuplicateContent("shared-hash");
+
+        SqliteMessageStore reopened = new SqliteMessageStore(context.api(), context.configLoader());
+        reopened.saveMessage("hash-3", httpRequestResponse("three.example", "/a", 200), "https://three.example/a",
+                "GET", "200", "0", "", "none", "warm-hash", Map.of());
+        SqliteMessageStore warmed = new SqliteMessageStore(context.api(), context.configLoader());
+
+        assertAll(
+                () -> assertTrue(beforeDelete),
+                () -> assertFalse(unknownHash),
+                () -> assertTrue(afterPartialDelete),
+                () -> assertFalse(afterDeleteAll),
+                () -> assertTrue(warmed.existsDuplicateContent("warm-hash"))
+        );
+    }
+
     @Test
     void wildcardBlockHostStopsMessageBeforeStorage() throws Exception {
         ModelContext context = createModelContext(tempDirectory.resolve("blocked"));
@@ -164,6 +418,38 @@ class MessageTableModelRepositoryTest {
         );
     }
 
+    private static SqliteMessageStore.PendingMessageWrite pendingWrite(String messageId, HttpRequestResponse requestResponse) {
+        return pendingWrite(messageId, requestResponse, "");
+    }
+
+    private static SqliteMessageStore.PendingMessageWrite pendingWrite(String messageId,
+                                                                       HttpRequestResponse requestResponse,
+                                                                       String regexSource) {
+        return new SqliteMessageStore.PendingMessageWrite(
+                messageId,
+                requestResponse,
+                requestResponse.request().url(),
+                "",
+                "GET",
+                "200",
+                "",
+                "",
+                "",
+                "",
+                true,
+                regexSource
+        );
+    }
+
+    private static MessageProcessor.ProcessedMessage processedMessage(String comment,
+                                                                      String color,
+                                                                      Map<String, List<String>> extractedDataByRule) throws Exception {
+        Constructor<MessageProcessor.ProcessedMessage> constructor = MessageProcessor.ProcessedMessage.class
+                .getDeclaredConstructor(String.class, String.class, Map.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(comment, color, extractedDataByRule);
+    }
+
     private static ModelContext createModelContext(Path home) throws Exception {
         Files.createDirectories(home.resolve(".config").resolve("HaE"));
         String originalHome = System.getProperty("user.home");
@@ -0,0 +1,132 @@
+package hae.component.board.message;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PendingMessageWriterTest {
+    @Test
+    void stoppedWriterWritesOnCallerThread() {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        PendingMessageWriter<String> writer = newWriter(10, 5, PendingMessageWriter.OverflowPolicy.DROP_NEWEST, batches::add);
+
+        PendingMessageWriter.OfferResult result = writer.offer("a");
+
+        assertAll(
+                () -> assertEquals(PendingMessageWriter.OfferResult.CALLER_RAN, result),
+                () -> assertEquals(List.of(List.of("a")), batches),
+                () -> assertEquals(0, writer.bufferedCount())
+        );
+    }
+
+    @Test
+    void runningWriterGroupsItemsIntoMultiRowBatches() throws Exception {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch written = new CountDownLatch(6);
+        PendingMessageWriter<String> writer = newWriter(100, 3, PendingMessageWriter.OverflowPolicy.DROP_NEWEST, batch -> {
+            batches.add(batch);
+            batch.forEach(item -> written.countDown());
+        });
+        writer.start("test-ingest-writer");
+        try {
+            for (int i = 0; i < 6; i++) {
+                assertEquals(PendingMessageWriter.OfferResult.QUEUED, writer.offer("item-" + i));
+            }
+
+            assertTrue(written.await(5, TimeUnit.SECONDS));
+            assertAll(
+                    () -> assertEquals(6, batches.stream().mapToInt(List::size).sum()),
+                    () -> assertTrue(batches.stream().allMatch(batch -> batch.size() <= 3)),
+                    () -> assertTrue(batches.size() < 6)
+            );
+        } finally {
+            writer.shutdown(false, 1000L);
+        }
+    }
+
+    @Test
+    void partialBatchIsFlushedAfterInterval() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        PendingMessageWriter<String> writer = newWriter(100, 50, PendingMessageWriter.OverflowPolicy.DROP_NEWEST, batch -> written.countDown());
+        writer.start("test-ingest-writer");
+        try {
+            writer.offer("lonely");
+
+            assertTrue(written.await(5, TimeUnit.SECONDS));
+        } finally {
+            writer.shutdown(false, 1000L);
+        }
+    }
+
+    @Test
+    void fullBufferAppliesConfiguredPolicy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        List<String> callerWrites = Collections.synchronizedList(new ArrayList<>());
+        PendingMessageWriter<String> dropping = newWriter(1, 1, PendingMessageWriter.OverflowPolicy.DROP_NEWEST, batch -> {
+            writerBusy.countDown();
+            awaitQuietly(release);
+        });
+        PendingMessageWriter<String> callerRuns = newWriter(1, 1, PendingMessageWriter.OverflowPolicy.CALLER_RUNS, batch -> {
+            if (Thread.currentThread().getName().startsWith("test-")) {
+                awaitQuietly(release);
+            } else {
+                callerWrites.addAll(batch);
+            }
+        });
+        dropping.start("test-dropping-writer");
+        callerRuns.start("test-caller-runs-writer");
+        try {
+            dropping.offer("first");
+            assertTrue(writerBusy.await(5, TimeUnit.SECONDS));
+            dropping.offer("buffered");
+            PendingMessageWriter.OfferResult dropped = dropping.offer("overflow");
+
+            callerRuns.offer("first");
+            waitUntil(() -> callerRuns.bufferedCount() == 0);
+            callerRuns.offer("buffered");
+            PendingMessageWriter.OfferResult ranOnCaller = callerRuns.offer("overflow");
+
+            assertAll(
+                    () -> assertEquals(PendingMessageWriter.OfferResult.DROPPED, dropped),
+                    () -> assertEquals(1L, dropping.droppedCount()),
+                    () -> assertEquals(PendingMessageWriter.OfferResult.CALLER_RAN, ranOnCaller),
+                    () -> assertEquals(List.of("overflow"), callerWrites)
+            );
+        } finally {
+            release.countDown();
+            dropping.shutdown(false, 1000L);
+            callerRuns.shutdown(false, 1000L);
+        }
+    }
+
+    private static PendingMessageWriter<String> newWriter(int capacity,
+                                                          int batchSize,
+                                                          PendingMessageWriter.OverflowPolicy policy,
+                                                          java.util.function.Consumer<List<String>> sink) {
+        return new PendingMessageWriter<>(capacity, batchSize, 20L, 50L, policy, sink, e -> {
+        });
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+    }
+}
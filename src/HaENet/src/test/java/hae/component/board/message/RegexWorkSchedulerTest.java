@@ -0,0 +1,100 @@
+package hae.component.board.message;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RegexWorkSchedulerTest {
+    @Test
+    void interactiveSourcesAreServedAheadOfBulkWithoutStarvingIt() throws Exception {
+        RegexWorkScheduler scheduler = new RegexWorkScheduler(100);
+        for (int i = 0; i < 10; i++) {
+            scheduler.offer("scan-" + i, "Scanner");
+        }
+        for (int i = 0; i < 6; i++) {
+            scheduler.offer("proxy-" + i, "Proxy");
+        }
+
+        List<String> batch = scheduler.take(6, 0L, TimeUnit.MILLISECONDS);
+
+        assertEquals(List.of("proxy-0", "proxy-1", "proxy-2", "proxy-3", "scan-0", "proxy-4"), batch);
+    }
+
+    @Test
+    void sourcesWithinOnePriorityAreRotatedFairly() throws Exception {
+        RegexWorkScheduler scheduler = new RegexWorkScheduler(100);
+        for (int i = 0; i < 5; i++) {
+            scheduler.offer("scan-" + i, "Scanner");
+        }
+        scheduler.offer("intruder-0", "Intruder");
+        scheduler.offer("intruder-1", "Intruder");
+
+        List<String> batch = scheduler.take(4, 0L, TimeUnit.MILLISECONDS);
+
+        assertEquals(List.of("scan-0", "intruder-0", "scan-1", "intruder-1"), batch);
+    }
+
+    @Test
+    void bulkFloodIsCappedAndInteractiveWorkShedsBulkWhenFull() throws Exception {
+        RegexWorkScheduler scheduler = new RegexWorkScheduler(8);
+        for (int i = 0; i < 10; i++) {
+            scheduler.offer("scan-" + i, "Scanner");
+        }
+        for (int i = 0; i < 3; i++) {
+            scheduler.offer("proxy-" + i, "Proxy");
+        }
+        RegexWorkScheduler.OfferResult lastProxy = scheduler.offer("proxy-3", "Proxy");
+
+        RegexWorkScheduler.Stats stats = scheduler.stats();
+        RegexWorkScheduler.SourceStats scanner = stats.sources().get(0);
+        assertAll(
+                () -> assertEquals(RegexWorkScheduler.OfferResult.QUEUED, lastProxy),
+                () -> assertEquals(8, stats.depth()),
+                () -> assertEquals("Scanner", scanner.source()),
+                () -> assertEquals(4, scanner.dropped()),
+                () -> assertEquals(2, scanner.shed()),
+                () -> assertEquals(4, scanner.depth()),
+                () -> assertTrue(scheduler.contains("proxy-3")),
+                () -> assertFalse(scheduler.contains("scan-5"))
+        );
+    }
+
+    @Test
+    void retriedInteractiveWorkKeepsItsLaneWhileBulkWorkGoesToRecovery() throws Exception {
+        RegexWorkScheduler scheduler = new RegexWorkScheduler(10);
+        scheduler.offer("scan-0", RegexWorkScheduler.retrySource("Scanner"));
+        scheduler.offer("proxy-0", RegexWorkScheduler.retrySource(" Proxy "));
+        scheduler.offer("legacy-0", RegexWorkScheduler.retrySource(""));
+
+        List<String> batch = scheduler.take(3, 0L, TimeUnit.MILLISECONDS);
+        List<String> sources = scheduler.stats().sources().stream().map(RegexWorkScheduler.SourceStats::source).toList();
+
+        assertAll(
+                () -> assertEquals(List.of("proxy-0", "scan-0", "legacy-0"), batch),
+                () -> assertEquals(List.of(RegexWorkScheduler.RECOVERY_SOURCE, "Proxy"), sources)
+        );
+    }
+
+    @Test
+    void duplicateIdsAreNotQueuedTwiceAndEmptyTakeTimesOut() throws Exception {
+        RegexWorkScheduler scheduler = new RegexWorkScheduler(10);
+
+        RegexWorkScheduler.OfferResult first = scheduler.offer("id-1", "Proxy");
+        RegexWorkScheduler.OfferResult second = scheduler.offer("id-1", RegexWorkScheduler.RECOVERY_SOURCE);
+        List<String> drained = scheduler.take(10, 0L, TimeUnit.MILLISECONDS);
+        List<String> empty = scheduler.take(10, 10L, TimeUnit.MILLISECONDS);
+
+        assertAll(
+                () -> assertEquals(RegexWorkScheduler.OfferResult.QUEUED, first),
+                () -> assertEquals(RegexWorkScheduler.OfferResult.ALREADY_QUEUED, second),
+                () -> assertEquals(List.of("id-1"), drained),
+                () -> assertTrue(empty.isEmpty()),
+                () -> assertEquals(0, scheduler.size())
+        );
+    }
+}
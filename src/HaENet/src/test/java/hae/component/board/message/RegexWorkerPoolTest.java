@@ -0,0 +1,113 @@
+package hae.component.board.message;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class RegexWorkerPoolTest {
+    @Test
+    void poolGrowsWithBacklogAndShrinksBackToMinimumWhenIdle() throws Exception {
+        RegexWorkScheduler scheduler = new RegexWorkScheduler(1000);
+        CountDownLatch release = new CountDownLatch(1);
+        Set<String> workerNames = ConcurrentHashMap.newKeySet();
+        AtomicInteger processed = new AtomicInteger(0);
+        RegexWorkerPool pool = new RegexWorkerPool("test-regex-worker-", 1, 4, 2, 50L, scheduler, batch -> {
+            workerNames.add(Thread.currentThread().getName());
+            awaitQuietly(release);
+            processed.addAndGet(batch.size());
+        }, () -> {
+        });
+        pool.start();
+        try {
+            for (int i = 0; i < 40; i++) {
+                scheduler.offer("scan-" + i, "Scanner");
+            }
+            // 每次入队都会通知线程池；这里反复通知，直到所有在岗线程都忙碌并触发扩容
+            waitUntil(() -> {
+                pool.onBacklog();
+                return pool.stats().liveWorkers() == 4 && pool.stats().busyWorkers() == 4;
+            });
+            int grownWorkers = pool.stats().liveWorkers();
+            int busyWorkers = pool.stats().busyWorkers();
+
+            release.countDown();
+            waitUntil(() -> processed.get() == 40 && pool.stats().liveWorkers() == 1);
+
+            assertAll(
+                    () -> assertEquals(4, grownWorkers),
+                    () -> assertEquals(4, busyWorkers),
+                    () -> assertTrue(workerNames.stream().allMatch(name -> name.startsWith("test-regex-worker-"))),
+                    () -> assertEquals(40, processed.get()),
+                    () -> assertEquals(1, pool.stats().liveWorkers())
+            );
+        } finally {
+            release.countDown();
+            pool.shutdown(1000L);
+        }
+    }
+
+    @Test
+    void minimumWorkersRunIdleActionAndResizeTakesEffect() throws Exception {
+        RegexWorkScheduler scheduler = new RegexWorkScheduler(10);
+        CountDownLatch idle = new CountDownLatch(2);
+        RegexWorkerPool pool = new RegexWorkerPool("test-regex-worker-", 1, 1, 4, 20L, scheduler,
+                batch -> {
+                }, idle::countDown);
+        pool.start();
+        try {
+            assertTrue(idle.await(5, TimeUnit.SECONDS));
+
+            pool.resize(3, 5);
+            waitUntil(() -> pool.stats().liveWorkers() == 3);
+            RegexWorkerPool.Stats stats = pool.stats();
+
+            assertAll(
+                    () -> assertEquals(3, stats.liveWorkers()),
+                    () -> assertEquals(3, stats.minWorkers()),
+                    () -> assertEquals(5, stats.maxWorkers())
+            );
+        } finally {
+            pool.shutdown(1000L);
+        }
+        waitUntil(pool::isTerminated);
+        assertTrue(pool.isTerminated());
+    }
+
+    @Test
+    void limitsAreNormalizedSoMinimumNeverExceedsMaximum() {
+        RegexWorkerPool pool = new RegexWorkerPool("test-regex-worker-", 8, 2, 4, 20L, new RegexWorkScheduler(10),
+                batch -> {
+                }, () -> {
+                });
+
+        RegexWorkerPool.Stats stats = pool.stats();
+
+        assertAll(
+                () -> assertEquals(2, stats.minWorkers()),
+                () -> assertEquals(2, stats.maxWorkers()),
+                () -> assertEquals(0, stats.liveWorkers())
+        );
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package hae.component.board.message;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hae.instances.http.utils.CompiledRuleSet;
+import hae.instances.http.utils.MessageProcessor;
+import hae.repository.RegexWorkRepository;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RuleRematcherTest {
+    private static final Object[] EMAIL = {true, "Email", "([a-z]+@[a-z]+)", "", "{0}", "yellow", "response body", "nfa", false};
+    private static final Object[] EMAIL_EDITED = {true, "Email", "([a-z.]+@[a-z.]+)", "", "{0}", "orange", "response body", "nfa", false};
+    private static final Object[] TOKEN = {true, "Token", "(token=[a-z]+)", "", "{0}", "red", "any", "nfa", true};
+    private static final Object[] PATH = {true, "Path", "(/api/[a-z]+)", "", "{0}", "green", "request line", "nfa", true};
+
+    @Test
+    void changedRulesAreRescannedAndRemovedRulesDroppedWithoutTouchingOthers() throws Exception {
+        InMemoryRepository repository = new InMemoryRepository();
+        repository.add("m1", "Email (1), Path (1), Token (2)");
+        repository.add("m2", "");
+        repository.add("m3", "Token (1)");
+        repository.add("m4", "Path (3)");
+
+        Map<String, MessageProcessor.ProcessedMessage> scans = Map.of(
+                "m1", processedMessage("Email (2)", "orange", Map.of("Email", List.of("a@b", "c@d"))),
+                "m2", processedMessage("Email (1)", "orange", Map.of("Email", List.of("e@f"))),
+                "m3", processedMessage("", "none", Map.of()),
+                "m4", processedMessage("", "none", Map.of())
+        );
+        List<Set<String>> scannedRules = Collections.synchronizedList(new ArrayList<>());
+        RuleRematcher.MessageScanner scanner = (messageId, ruleSet) -> {
+            scannedRules.add(ruleSet.ruleNames());
+            return scans.get(messageId);
+        };
+
+        CompiledRuleSet baseline = ruleSet(EMAIL, PATH, TOKEN);
+        CompiledRuleSet edited = ruleSet(EMAIL_EDITED, PATH);
+        runToCompletion(repository, scanner, baseline, edited);
+
+        assertAll(
+                () -> assertEquals(List.of("Email", "Token"), repository.appliedRuleNames.stream().sorted().toList()),
+                () -> assertTrue(scannedRules.stream().allMatch(Set.of("Email")::equals)),
+                () -> assertEquals("Path (1), Email (2)", repository.comments.get("m1")),
+                () -> assertEquals("orange", repository.colors.get("m1")),
+                () -> assertEquals(List.of("a@b", "c@d"), repository.extracted.get("m1").get("Email")),
+                () -> assertEquals("Email (1)", repository.comments.get("m2")),
+                () -> assertEquals("", repository.comments.get("m3")),
+                () -> assertEquals("none", repository.colors.get("m3")),
+                () -> assertEquals("Path (3)", repository.comments.get("m4")),
+                () -> assertEquals(Set.of("m1", "m2", "m3"), repository.updatedIds)
+        );
+    }
+
+    @Test
+    void removedRulesOnlyVisitRowsThatMentionThemWithoutLoadingMessages() throws Exception {
+        InMemoryRepository repository = new InMemoryRepository();
+        repository.add("m1", "Email (1), Token (2)");
+        repository.add("m2", "Email (4)");
+
+        List<String> scanned = Collections.synchronizedList(new ArrayList<>());
+        CompiledRuleSet baseline = ruleSet(EMAIL, TOKEN);
+        CompiledRuleSet edited = ruleSet(EMAIL);
+        runToCompletion(repository, (messageId, ruleSet) -> {
+            scanned.add(messageId);
+            return null;
+        }, baseline, edited);
+
+        assertAll(
+                () -> assertTrue(scanned.isEmpty()),
+                () -> assertEquals(List.of("m1"), repository.visitedIds),
+                () -> assertEquals("Email (1)", repository.comments.get("m1")),
+                () -> assertEquals("yellow", repository.colors.get("m1")),
+                () -> assertEquals("Email (4)", repository.comments.get("m2"))
+        );
+    }
+
+    private static void runToCompletion(InMemoryRepository repository,
+                                        RuleRematcher.MessageScanner scanner,
+                                        CompiledRuleSet baseline,
+                                        CompiledRuleSet edited) throws Exception {
+        CountDownLatch finished = new CountDownLatch(1);
+        List<RuleRematcher.Progress> progress = Collections.synchronizedList(new ArrayList<>());
+        RuleRematcher rematcher = new RuleRematcher(repository, scanner, colors -> colors.get(colors.size() - 1),
+                update -> {
+                    progress.add(update);
+                    if (!update.running()) {
+                        finished.countDown();
+                    }
+                },
+                message -> {
+                    throw new AssertionError(message);
+                },
+                () -> {
+                },
+                1,
+                0L);
+        try {
+            rematcher.start(baseline);
+            rematcher.onRulesPublished(edited);
+            assertTrue(finished.await(10, TimeUnit.SECONDS), "re-match did not finish");
+            assertTrue(progress.stream().anyMatch(RuleRematcher.Progress::running));
+            assertEquals(0, rematcher.progress().pendingRules());
+        } finally {
+            rematcher.shutdown(1000L);
+        }
+    }
+
+    private static CompiledRuleSet ruleSet(Object[]... rows) {
+        Map<String, Object[][]> source = new LinkedHashMap<>();
+        source.put("Rules", rows);
+        return CompiledRuleSet.publish(source);
+    }
+
+    private static MessageProcessor.ProcessedMessage processedMessage(String comment,
+                                                                      String color,
+                                                                      Map<String, List<String>> extractedDataByRule) throws Exception {
+        Constructor<MessageProcessor.ProcessedMessage> constructor = MessageProcessor.ProcessedMessage.class
+                .getDeclaredConstructor(String.class, String.class, Map.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(comment, color, extractedDataByRule);
+    }
+
+    private static final class InMemoryRepository implements RegexWorkRepository {
+        private final Map<String, String> comments = new LinkedHashMap<>();
+        private final Map<String, String> colors = new ConcurrentHashMap<>();
+        private final Map<String, Map<String, List<String>>> extracted = new ConcurrentHashMap<>();
+        private final List<String> visitedIds = Collections.synchronizedList(new ArrayList<>());
+        private final Set<String> updatedIds = ConcurrentHashMap.newKeySet();
+        private final Set<String> appliedRuleNames = ConcurrentHashMap.newKeySet();
+
+        private void add(String messageId, String comment) {
+            comments.put(messageId, comment);
+        }
+
+        private List<String> matchingIds(List<String> commentKeywords) {
+            return comments.entrySet().stream()
+                    .filter(entry -> commentKeywords.isEmpty() || commentKeywords.stream().anyMatch(entry.getValue()::contains))
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+
+        @Override
+        public synchronized int countRuleRematchCandidates(List<String> commentKeywords) {
+            return matchingIds(commentKeywords).size();
+        }
+
+        @Override
+        public synchronized List<RuleRematchCandidate> loadRuleRematchCandidates(List<String> commentKeywords, long afterRowId, int limit) {
+            List<String> ids = new ArrayList<>(comments.keySet());
+            List<RuleRematchCandidate> result = new ArrayList<>();
+            for (String messageId : matchingIds(commentKeywords)) {
+                long rowId = ids.indexOf(messageId) + 1L;
+                if (rowId > afterRowId && result.size() < limit) {
+                    visitedIds.add(messageId);
+                    result.add(new RuleRematchCandidate(rowId, messageId, comments.get(messageId)));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public synchronized List<String> applyRuleRematch(List<String> ruleNames, List<RuleRematchUpdate> updates) {
+            appliedRuleNames.addAll(ruleNames);
+            List<String> ids = new ArrayList<>();
+            for (RuleRematchUpdate update : updates) {
+                comments.put(update.messageId(), update.comment());
+                colors.put(update.messageId(), update.color());
+                extracted.put(update.messageId(), update.extractedDataByRule());
+                updatedIds.add(update.messageId());
+                ids.add(update.messageId());
+            }
+            return ids;
+        }
+
+        @Override
+        public boolean markRegexProcessing(String messageId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> markRegexProcessingBatch(List<String> messageIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean completeRegexProcessing(String messageId, String comment, String color, Map<String, List<String>> extractedDataByRule) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> completeRegexProcessingBatch(List<RegexCompletion> completions) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean failRegexProcessing(String messageId, String errorMessage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean resetRegexProcessing(String messageId, String errorMessage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> loadPendingRegexMessageIds(int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<PendingRegexWork> loadPendingRegexWork(int limit) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package hae.component.rule;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.logging.Logging;
+import hae.instances.http.utils.RegularMatcher;
+import hae.instances.http.utils.RuleGuard;
+import hae.instances.http.utils.RuleProfiler;
+import hae.utils.ConfigLoader;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistoryDryRunTest {
+    private static final Object[] TOKEN = {false, "Token", "(token=[a-z]+)", "", "{0}", "red", "response body", "nfa", true};
+    private static final String REQUEST = "GET /a HTTP/1.1\r\nHost: example.test\r\n\r\n";
+    private static final String MATCHING_RESPONSE = "HTTP/1.1 200 OK\r\n\r\ntoken=abc&token=xyz&token=abc";
+    private static final String PLAIN_RESPONSE = "HTTP/1.1 200 OK\r\n\r\nnothing here";
+
+    @TempDir
+    Path home;
+
+    private RegularMatcher matcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(home.resolve(".config").resolve("HaE"));
+        String originalHome = System.getProperty("user.home");
+        try {
+            System.setProperty("user.home", home.toString());
+            Logging logging = (Logging) Proxy.newProxyInstance(Logging.class.getClassLoader(), new Class<?>[]{Logging.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("logToError")) {
+                            throw new AssertionError(String.valueOf(args[0]));
+                        }
+                        return null;
+                    });
+            MontoyaApi api = (MontoyaApi) Proxy.newProxyInstance(MontoyaApi.class.getClassLoader(), new Class<?>[]{MontoyaApi.class},
+                    (proxy, method, args) -> method.getName().equals("logging") ? logging : null);
+            matcher = new RegularMatcher(api, new ConfigLoader(api));
+        } finally {
+            System.setProperty("user.home", originalHome);
+        }
+    }
+
+    @Test
+    void reportsMatchesSizeAndWorstMessageWithoutTouchingRuleStats() throws Exception {
+        Map<String, HistoryDryRun.Sample> samples = Map.of(
+                "m1", sample(MATCHING_RESPONSE),
+                "m2", sample(PLAIN_RESPONSE)
+        );
+        HistoryDryRun dryRun = new HistoryDryRun(matcher, source(List.of("m1", "m2", "gone"), samples), 2, message -> {
+            throw new AssertionError(message);
+        });
+        String ruleKey = RuleGuard.ruleKey(TOKEN[1], TOKEN[2], TOKEN[3], TOKEN[7], TOKEN[8]);
+
+        HistoryDryRun.Report report = dryRun.run(TOKEN, 10, () -> false, progress -> {
+        });
+
+        long expectedBytes = 2L * REQUEST.length() + MATCHING_RESPONSE.length() + PLAIN_RESPONSE.length();
+        assertAll(
+                () -> assertEquals(3, report.total()),
+                () -> assertEquals(2, report.scanned()),
+                () -> assertEquals(1, report.unavailable()),
+                () -> assertEquals(1, report.matchedMessages()),
+                () -> assertEquals(2, report.matches()),
+                () -> assertEquals(expectedBytes, report.bytes()),
+                () -> assertTrue(List.of("m1", "m2").contains(report.worstMessageId())),
+                () -> assertTrue(report.worstNanos() > 0 && report.worstNanos() <= report.totalNanos()),
+                () -> assertEquals(List.of("token=abc", "token=xyz"), report.examples().stream().sorted().toList()),
+                () -> assertEquals(0, RuleProfiler.snapshot(ruleKey).invocations()),
+                () -> assertTrue(report.summary().startsWith("Scanned 2/3 messages"))
+        );
+    }
+
+    @Test
+    void cancelledRunsStopScanningAndInvalidRulesAreRejected() throws Exception {
+        HistoryDryRun dryRun = new HistoryDryRun(matcher, source(List.of("m1"), Map.of("m1", sample(MATCHING_RESPONSE))), 1, message -> {
+        });
+        Object[] invalid = TOKEN.clone();
+        invalid[2] = "(token=[a-z";
+
+        HistoryDryRun.Report cancelled = dryRun.run(TOKEN, 10, () -> true, progress -> {
+        });
+
+        assertAll(
+                () -> assertEquals(1, cancelled.total()),
+                () -> assertEquals(0, cancelled.scanned()),
+                () -> assertThrows(IllegalArgumentException.class, () -> dryRun.run(invalid, 10, () -> false, progress -> {
+                }))
+        );
+    }
+
+    private static HistoryDryRun.SampleSource source(List<String> messageIds, Map<String, HistoryDryRun.Sample> samples) {
+        return new HistoryDryRun.SampleSource() {
+            @Override
+            public List<String> messageIds(int limit) {
+                return messageIds.subList(0, Math.min(limit, messageIds.size()));
+            }
+
+            @Override
+            public HistoryDryRun.Sample load(String messageId) {
+                return samples.get(messageId);
+            }
+        };
+    }
+
+    private static HistoryDryRun.Sample sample(String response) {
+        return new HistoryDryRun.Sample("example.test", REQUEST.getBytes(StandardCharsets.ISO_8859_1), REQUEST.length(),
+                response.getBytes(StandardCharsets.ISO_8859_1), response.indexOf("\r\n\r\n") + 4);
+    }
+}
@@ -4,13 +4,12 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 
-import hae.Config;
 import hae.component.board.table.Datatable;
+import hae.instances.http.utils.RuleMatches;
 import org.junit.jupiter.api.Test;
 
 import javax.swing.*;
 import java.util.List;
-import java.util.Map;
 
 class EditorUtilsTest {
     @Test
@@ -23,24 +22,21 @@ class EditorUtilsTest {
         assertDoesNotThrow(() -> EditorUtils.generateTabbedPaneFromResultMap(null, null, tabbedPane, List.of()));
         assertEquals(0, tabbedPane.getTabCount());
 
-        assertDoesNotThrow(() -> EditorUtils.generateTabbedPaneFromResultMap(null, null, tabbedPane, List.of(Map.of())));
-        assertEquals(0, tabbedPane.getTabCount());
     }
 
     @Test
-    void boundarySeparatedResultCreatesNamedTabAndRows() {
+    void ruleMatchesCreateNamedTabAndRows() {
         JTabbedPane tabbedPane = new JTabbedPane();
-        String tabName = "Token (2)";
 
         EditorUtils.generateTabbedPaneFromResultMap(
                 null,
                 null,
                 tabbedPane,
-                List.of(Map.of(tabName, "a" + Config.boundary + "b"))
+                List.of(new RuleMatches("key", "Token", List.of("a", "b"), List.of(), 0))
         );
 
         assertEquals(1, tabbedPane.getTabCount());
-        assertEquals(tabName, tabbedPane.getTitleAt(0));
+        assertEquals("Token (2)", tabbedPane.getTitleAt(0));
 
         Datatable dataPanel = assertInstanceOf(Datatable.class, tabbedPane.getComponentAt(0));
         JTable table = dataPanel.getDataTable();
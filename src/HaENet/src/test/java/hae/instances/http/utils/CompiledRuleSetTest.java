@@ -0,0 +1,142 @@
+package hae.instances.http.utils;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hae.Config;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+
+class CompiledRuleSetTest {
+    @Test
+    void rulesArePrecompiledAndBucketedPerMessageType() {
+        Map<String, Object[][]> source = new LinkedHashMap<>();
+        source.put("Basic", new Object[][]{
+                {true, "Email", "(([a-z0-9]+)@([a-z0-9.]+))", "", "{1}-{0}", "yellow", "response body", "nfa", false},
+                {true, "Path", "(/api/[a-z]+)", "", "{0}", "green", "request line", "nfa", true},
+                {false, "Disabled", "(secret)", "", "{0}", "red", "any", "nfa", true}
+        });
+        source.put("Keys", new Object[][]{
+                {true, "AK", "akia[0-9a-z]{16}", "", "{0}", "red", "any header", "dfa", false},
+                {true, "SK", "secret=[0-9a-z]{8}", "", "{0}", "red", "response header", "dfa", false}
+        });
+
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(source);
+        CompiledRuleSet.CompiledRule email = ruleSet.rules().get(0);
+        CompiledRuleSet.View response = ruleSet.view("response");
+        CompiledRuleSet.View request = ruleSet.view("request");
+
+        assertAll(
+                () -> assertEquals(5, ruleSet.rules().size()),
+                () -> assertEquals(CompiledRuleSet.Target.BODY, email.target()),
+                () -> assertNotNull(email.firstPattern()),
+                () -> assertArrayEquals(new int[]{1, 0}, email.formatIndexes()),
+                () -> assertEquals("{0}-{1}", email.normalizedFormat()),
+                () -> assertNotNull(ruleSet.rules().get(3).firstAutomaton()),
+                () -> assertEquals(List.of("Email"), names(response.groups().get(0))),
+                () -> assertEquals(List.of("AK", "SK"), names(response.groups().get(1))),
+                () -> assertEquals(List.of("Path"), names(request.groups().get(0))),
+                () -> assertEquals(List.of("AK"), names(request.groups().get(1))),
+                () -> assertEquals(1, response.dfaBuckets().size()),
+                () -> assertEquals(CompiledRuleSet.Target.HEADER, response.dfaBuckets().get(0).target()),
+                () -> assertTrue(request.dfaBuckets().isEmpty()),
+                () -> assertEquals(1, response.nfaBuckets().size()),
+                () -> assertSame(response, ruleSet.view("response"))
+        );
+    }
+
+    @Test
+    void invalidRegexIsRecordedWithoutFailingTheRuleSet() {
+        Map<String, Object[][]> source = new LinkedHashMap<>();
+        source.put("Broken", new Object[][]{
+                {true, "Bad", "([a-z", "", "{0}", "red", "any", "nfa", true},
+                {true, "Good", "(token=[a-z]+)", "", "{0}", "red", "any", "nfa", true}
+        });
+
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(source);
+
+        assertAll(
+                () -> assertNotNull(ruleSet.rules().get(0).compileError()),
+                () -> assertNull(ruleSet.rules().get(0).firstPattern()),
+                () -> assertNull(ruleSet.rules().get(1).compileError()),
+                () -> assertEquals(List.of("Bad", "Good"), names(ruleSet.view("any").groups().get(0)))
+        );
+    }
+
+    @Test
+    void publishSwapsCurrentAndReplacedRuleMapIsRecompiled() {
+        Map<String, Object[][]> originalRules = Config.globalRules;
+        try {
+            Config.globalRules = new ConcurrentHashMap<>();
+            Config.globalRules.put("First", new Object[][]{
+                    {true, "One", "(one)", "", "{0}", "red", "any", "nfa", true}
+            });
+            CompiledRuleSet first = CompiledRuleSet.current();
+            assertSame(first, CompiledRuleSet.current());
+
+            Config.globalRules.get("First")[0] = new Object[]{true, "Two", "(two)", "", "{0}", "red", "any", "nfa", true};
+            CompiledRuleSet published = CompiledRuleSet.publish(Config.globalRules);
+
+            Config.globalRules = new ConcurrentHashMap<>();
+            CompiledRuleSet reloaded = CompiledRuleSet.current();
+
+            assertAll(
+                    () -> assertEquals("One", first.rules().get(0).name()),
+                    () -> assertEquals("Two", published.rules().get(0).name()),
+                    () -> assertTrue(published.version() > first.version()),
+                    () -> assertTrue(reloaded.version() > published.version()),
+                    () -> assertTrue(reloaded.rules().isEmpty())
+            );
+        } finally {
+            Config.globalRules = originalRules;
+        }
+    }
+
+    @Test
+    void ruleVersionsAdvanceOnlyForChangedRules() {
+        Map<String, Object[][]> source = new LinkedHashMap<>();
+        source.put("Basic", new Object[][]{
+                {true, "Email", "(([a-z0-9]+)@([a-z0-9.]+))", "", "{0}", "yellow", "response body", "nfa", false},
+                {true, "Path", "(/api/[a-z]+)", "", "{0}", "green", "request line", "nfa", true},
+                {true, "Token", "(token=[a-z]+)", "", "{0}", "red", "any", "nfa", true}
+        });
+        CompiledRuleSet baseline = CompiledRuleSet.compile(source);
+
+        Map<String, Object[][]> edited = new LinkedHashMap<>();
+        edited.put("Basic", new Object[][]{
+                {true, "Email", "(([a-z0-9]+)@([a-z0-9.]+))", "", "{0}", "orange", "response body", "nfa", false},
+                {true, "Path", "(/api/[a-z]+)", "", "{0}", "green", "request line", "nfa", true},
+                {false, "Token", "(token=[a-z]+)", "", "{0}", "red", "any", "nfa", true}
+        });
+        edited.put("Keys", new Object[][]{
+                {true, "AK", "akia[0-9a-z]{16}", "", "{0}", "red", "any header", "dfa", false}
+        });
+        CompiledRuleSet next = CompiledRuleSet.compile(edited, baseline);
+        CompiledRuleSet.RuleChanges changes = next.changesSince(baseline);
+        CompiledRuleSet subset = next.restrictTo(changes.changed());
+
+        assertAll(
+                () -> assertEquals(Set.of("Email", "AK"), changes.changed()),
+                () -> assertEquals(Set.of("Token"), changes.removed()),
+                () -> assertEquals(baseline.ruleVersion("Path"), next.ruleVersion("Path")),
+                () -> assertEquals(next.version(), next.ruleVersion("Email")),
+                () -> assertEquals(0L, next.ruleVersion("Token")),
+                () -> assertTrue(next.changesSince(next).isEmpty()),
+                () -> assertEquals(List.of("Email", "AK"), names(subset.rules())),
+                () -> assertEquals(next.ruleVersion("Email"), subset.ruleVersion("Email"))
+        );
+    }
+
+    private static List<String> names(List<CompiledRuleSet.CompiledRule> rules) {
+        return rules.stream().map(CompiledRuleSet.CompiledRule::name).toList();
+    }
+}
@@ -0,0 +1,53 @@
+package hae.instances.http.utils;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+import org.junit.jupiter.api.Test;
+
+class DfaTranslationTest {
+    @Test
+    void translatedLanguagesAcceptEveryMatchOfTheOriginal() {
+        assertAll(
+                () -> assertTrue(accepts("(token=[a-z]+)", true, "token=abc")),
+                () -> assertFalse(accepts("(token=[a-z]+)", true, "token=ABC")),
+                () -> assertTrue(accepts("(akia[0-9A-Z]{4})", false, "AkIa12aB")),
+                () -> assertTrue(accepts("(?i:user)=(\\w+?)", true, "USER=bob_1")),
+                // 零宽断言去掉后只会放宽
+                () -> assertTrue(accepts("^\\bfoo\\b$", true, "foo")),
+                () -> assertFalse(accepts("a.c", true, "a\nc")),
+                () -> assertTrue(accepts("(?s)a.c", true, "a\nc")),
+                () -> assertTrue(accepts("[^\"]+", true, "😀x")),
+                () -> assertTrue(accepts("\\Qa.b\\E\\x41\\u0042\\t", true, "a.bAB\t")),
+                () -> assertTrue(accepts("a\\Rb", true, "a\r\nb"))
+        );
+    }
+
+    @Test
+    void syntaxThatChangesMatchingSemanticsIsNotTranslated() {
+        assertAll(
+                () -> assertNull(DfaTranslation.of("(a)\\1", true)),
+                () -> assertNull(DfaTranslation.of("(?=a)b", true)),
+                () -> assertNull(DfaTranslation.of("(?<!a)b", true)),
+                () -> assertNull(DfaTranslation.of("(?>a|ab)c", true)),
+                () -> assertNull(DfaTranslation.of("a++b", true)),
+                () -> assertNull(DfaTranslation.of("\\p{L}+", true)),
+                () -> assertNull(DfaTranslation.of("(?x) a b", true)),
+                () -> assertNull(DfaTranslation.of("[a-z&&[^b]]", true)),
+                () -> assertNull(DfaTranslation.of("\\Ga", true)),
+                () -> assertNull(DfaTranslation.of("[^a]b", false)),
+                () -> assertNull(DfaTranslation.of("(a", true)),
+                // 无上界量词之后的大计数量词确定化代价过高
+                () -> assertNull(DfaTranslation.of("[a-z]+x[0-9a-f]{32}", true))
+        );
+    }
+
+    private static boolean accepts(String regex, boolean sensitive, String input) {
+        String translated = DfaTranslation.of(regex, sensitive);
+        return translated != null && new RunAutomaton(new RegExp(translated).toAutomaton()).run(input);
+    }
+}
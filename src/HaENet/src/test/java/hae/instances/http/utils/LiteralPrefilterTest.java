@@ -0,0 +1,99 @@
+package hae.instances.http.utils;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+class LiteralPrefilterTest {
+    @Test
+    void requiredLiteralsFollowConcatenationAlternationAndQuantifiers() {
+        assertAll(
+                () -> assertEquals(Set.of("eyj"), RequiredLiterals.of(
+                        "(eyJ[A-Za-z0-9_-]{10,}\\.[A-Za-z0-9._-]{10,}|eyJ[A-Za-z0-9_\\/+-]{10,}\\.[A-Za-z0-9._\\/+-]{10,})")),
+                () -> assertEquals(Set.of("password"), RequiredLiterals.of("[a-z]+[Pp]assword")),
+                () -> assertEquals(Set.of("-----begin "), RequiredLiterals.of("-----BEGIN [A-Z ]+-----")),
+                () -> assertEquals(Set.of("location: "), RequiredLiterals.of("Location: (.*?)\\r\\n")),
+                () -> assertEquals(Set.of("</key>"), RequiredLiterals.of("<Key>(.*?)</Key>")),
+                () -> assertEquals(Set.of("access-key-id", "ltai"), Set.copyOf(RequiredLiterals.of("(access-key-id|LTAI[a-z0-9]{12,20})"))),
+                () -> assertEquals(Set.of(), RequiredLiterals.of("[0-9]{6,}")),
+                () -> assertEquals(Set.of(), RequiredLiterals.of("(ab|cd)")),
+                () -> assertEquals(Set.of(), RequiredLiterals.of("(akia)?[A-Z0-9]{16}")),
+                () -> assertEquals(Set.of(), RequiredLiterals.of("(?x)akia # comment")),
+                () -> assertEquals(Set.of(), RequiredLiterals.of("\\x41KIA"))
+        );
+    }
+
+    @Test
+    void prefilterReportsRulesWhoseLiteralsAppearIgnoringAsciiCase() {
+        LiteralPrefilter prefilter = LiteralPrefilter.compile(List.of(
+                "(AKIA[0-9A-Z]{16})",
+                "(-----BEGIN [A-Z ]+PRIVATE KEY-----)",
+                "([0-9]{11})",
+                "((basic [a-z0-9=:_\\+\\/-]{5,100})|(bearer [a-z0-9_.=:_\\+\\/-]{5,100}))"
+        ));
+
+        boolean[] candidates = prefilter.scan("Authorization: Bearer abcdef\r\nX-Key: akiaXXXX");
+
+        assertAll(
+                () -> assertEquals(4, prefilter.ruleCount()),
+                () -> assertTrue(prefilter.isFiltered(0)),
+                () -> assertTrue(!prefilter.isFiltered(2)),
+                () -> assertArrayEquals(new boolean[]{true, false, true, true}, candidates)
+        );
+    }
+
+    @Test
+    void bundledRulesNeverSkipContentTheirPatternMatches() throws Exception {
+        List<String> regexes = new ArrayList<>();
+        List<Boolean> sensitivity = new ArrayList<>();
+        loadBundledRules(regexes, sensitivity);
+        LiteralPrefilter prefilter = LiteralPrefilter.compile(regexes);
+        List<String> samples = List.of(
+                "POST /login HTTP/1.1\r\nAuthorization: Basic YWRtaW46YWRtaW4=\r\n\r\n{\"password\":\"secret\",\"username\":\"admin\"}",
+                "HTTP/1.1 302 Found\r\nLocation: https://example.test/next\r\n\r\n<Key>bucket/object.txt</Key>",
+                "var a = \"eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiIxMjM0NTY3ODkwIn0.sig\"; this.$router.push('/admin')",
+                "accessKeyId=LTAI4FooBarBazQux12 corpsecret=abc access_key_secret=xyz 192.168.1.10 13800138000",
+                "<script src=\"/static/app.js.map\"></script> swagger-ui.html type=\"file\""
+        );
+
+        int filtered = 0;
+        for (int rule = 0; rule < regexes.size(); rule++) {
+            if (prefilter.isFiltered(rule)) {
+                filtered++;
+            }
+        }
+        for (String sample : samples) {
+            boolean[] candidates = prefilter.scan(sample);
+            for (int rule = 0; rule < regexes.size(); rule++) {
+                Pattern pattern = Pattern.compile(regexes.get(rule), sensitivity.get(rule) ? 0 : Pattern.CASE_INSENSITIVE);
+                if (pattern.matcher(sample).find()) {
+                    assertTrue(candidates[rule], "prefilter skipped matching rule " + regexes.get(rule));
+                }
+            }
+        }
+        assertTrue(filtered > regexes.size() / 3, "too few rules received required literals: " + filtered);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void loadBundledRules(List<String> regexes, List<Boolean> sensitivity) throws Exception {
+        try (InputStream inputStream = LiteralPrefilterTest.class.getResourceAsStream("/rules/Rules.yml")) {
+            Map<String, Object> document = new Yaml().load(inputStream);
+            for (Map<String, Object> group : (List<Map<String, Object>>) document.get("rules")) {
+                for (Map<String, Object> rule : (List<Map<String, Object>>) group.get("rule")) {
+                    regexes.add(String.valueOf(rule.get("f_regex")));
+                    sensitivity.add(Boolean.TRUE.equals(rule.get("sensitive")));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package hae.instances.http.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MatchStartAutomatonTest {
+    @Test
+    void backwardScanFindsExactlyTheStartsOfMatchesInsideTheWindow() {
+        Random random = new Random(7);
+        for (String regex : List.of("token=[a-z]+", "a[^c]*c", "ab|b", "(ab)+c?", "[a-c]{2,4}d")) {
+            RunAutomaton forward = new RunAutomaton(new RegExp(regex).toAutomaton(), true);
+            RunAutomaton starts = MatchStartAutomaton.build(forward, 4096);
+            assertNotNull(starts, regex);
+
+            for (int round = 0; round < 200; round++) {
+                String content = randomContent(random, "abcdtokn=x", 1 + random.nextInt(40));
+                assertEquals(bruteForceStarts(forward, content), backwardStarts(starts, content), regex + " on " + content);
+            }
+        }
+    }
+
+    @Test
+    void oversizedStartAutomatonIsRejected() {
+        // 正向只有二十几个状态，任意前缀 + 反转后需要记住最近 20 个字符中 a 的位置
+        RunAutomaton forward = new RunAutomaton(new RegExp(".{20}a").toAutomaton(), true);
+
+        assertNull(MatchStartAutomaton.build(forward, 4096));
+    }
+
+    private static List<Integer> backwardStarts(RunAutomaton starts, String content) {
+        List<Integer> positions = new ArrayList<>();
+        int state = starts.getInitialState();
+        for (int i = content.length() - 1; i >= 0; i--) {
+            state = starts.step(state, content.charAt(i));
+            if (starts.isAccept(state)) {
+                positions.add(0, i);
+            }
+        }
+        return positions;
+    }
+
+    private static List<Integer> bruteForceStarts(RunAutomaton forward, String content) {
+        List<Integer> positions = new ArrayList<>();
+        for (int candidate = 0; candidate < content.length(); candidate++) {
+            int state = forward.getInitialState();
+            for (int i = candidate; i < content.length() && state >= 0; i++) {
+                state = forward.step(state, content.charAt(i));
+                if (state >= 0 && forward.isAccept(state)) {
+                    positions.add(candidate);
+                    break;
+                }
+            }
+        }
+        return positions;
+    }
+
+    private static String randomContent(Random random, String alphabet, int length) {
+        StringBuilder content = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return content.toString();
+    }
+}
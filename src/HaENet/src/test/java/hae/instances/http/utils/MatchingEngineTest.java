@@ -0,0 +1,56 @@
+package hae.instances.http.utils;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hae.Config;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class MatchingEngineTest {
+    @AfterEach
+    void restoreParallelism() {
+        MatchingEngine.configure(Config.MatchingThreads);
+    }
+
+    @Test
+    void workRunsOnDedicatedThreadsAndNestedCallsStayOnTheCallingWorker() {
+        AtomicReference<Thread> outer = new AtomicReference<>();
+        AtomicReference<Thread> nested = new AtomicReference<>();
+        AtomicReference<Boolean> commonPool = new AtomicReference<>();
+
+        MatchingEngine.invoke(() -> {
+            outer.set(Thread.currentThread());
+            commonPool.set(ForkJoinTask.getPool() == java.util.concurrent.ForkJoinPool.commonPool());
+            MatchingEngine.invoke(() -> nested.set(Thread.currentThread()));
+        });
+
+        assertAll(
+                () -> assertTrue(outer.get().getName().startsWith("HaE-Rule-Matcher-"), outer.get().getName()),
+                () -> assertEquals(false, commonPool.get()),
+                () -> assertEquals(outer.get(), nested.get())
+        );
+    }
+
+    @Test
+    void reconfiguringReplacesThePoolAndZeroMeansOnePerCore() {
+        MatchingEngine.configure(3);
+        AtomicReference<Integer> parallelism = new AtomicReference<>();
+        MatchingEngine.invoke(() -> parallelism.set(ForkJoinTask.getPool().getParallelism()));
+        int threeThreads = parallelism.get();
+
+        MatchingEngine.configure(0);
+        MatchingEngine.invoke(() -> parallelism.set(ForkJoinTask.getPool().getParallelism()));
+
+        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+        assertAll(
+                () -> assertEquals(3, threeThreads),
+                () -> assertEquals(cores, parallelism.get()),
+                () -> assertEquals(cores, MatchingEngine.parallelism()),
+                () -> assertTrue(MatchingEngine.status().contains("/" + cores + " active"), MatchingEngine.status())
+        );
+    }
+}
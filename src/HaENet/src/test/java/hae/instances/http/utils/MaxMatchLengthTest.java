@@ -0,0 +1,33 @@
+package hae.instances.http.utils;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+import org.junit.jupiter.api.Test;
+
+class MaxMatchLengthTest {
+    @Test
+    void boundedRegexesReportTheirLongestMatch() {
+        assertAll(
+                () -> assertEquals(14, MaxMatchLength.of("(token=[a-z]{8})")),
+                () -> assertEquals(20, MaxMatchLength.of("(?i)(AKIA[0-9A-Z]{16})")),
+                () -> assertEquals(7, MaxMatchLength.of("\\b(?:ab|cdef)?x{1,3}(?=y)\\b")),
+                () -> assertEquals(3, MaxMatchLength.of("\\Qa.b\\E")),
+                () -> assertEquals(MaxMatchLength.UNBOUNDED, MaxMatchLength.of("(key=[^&]+)")),
+                () -> assertEquals(MaxMatchLength.UNBOUNDED, MaxMatchLength.of("(a{2,})")),
+                () -> assertEquals(MaxMatchLength.UNBOUNDED, MaxMatchLength.of("(a)\\1")),
+                () -> assertEquals(MaxMatchLength.UNBOUNDED, MaxMatchLength.of("(?x) a b"))
+        );
+    }
+
+    @Test
+    void automataReportLongestAcceptingPathOrUnboundedOnCycles() {
+        assertAll(
+                () -> assertEquals(14, MaxMatchLength.of(new RunAutomaton(new RegExp("token=[a-z]{8}").toAutomaton()))),
+                () -> assertEquals(5, MaxMatchLength.of(new RunAutomaton(new RegExp("ab|cdefg").toAutomaton()))),
+                () -> assertEquals(MaxMatchLength.UNBOUNDED, MaxMatchLength.of(new RunAutomaton(new RegExp("a[0-9]+").toAutomaton())))
+        );
+    }
+}
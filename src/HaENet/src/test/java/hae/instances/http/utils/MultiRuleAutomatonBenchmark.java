@@ -0,0 +1,131 @@
+package hae.instances.http.utils;
+
+import dk.brics.automaton.AutomatonMatcher;
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 手动运行的基准：用内置 Rules.yml 中可被 dk.brics 编译的规则（包括按 DFA 处理的 NFA 规则），
+ * 对比逐条规则扫描一遍内容与合并自动机扫描一次、只对命中规则逐条匹配的耗时。不是单元测试，用 main 方法运行：
+ *
+ * <pre>
+ * java -cp build/classes/java/main:build/classes/java/test:&lt;snakeyaml&gt;:&lt;automaton&gt; \
+ *     hae.instances.http.utils.MultiRuleAutomatonBenchmark [bodyKiB] [iterations] [Rules.yml]
+ * </pre>
+ */
+public final class MultiRuleAutomatonBenchmark {
+    private MultiRuleAutomatonBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int bodyKiB = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Path rulesPath = Path.of(args.length > 2 ? args[2] : "src/main/resources/rules/Rules.yml");
+
+        List<String> regexes = loadRegexes(rulesPath);
+        List<RunAutomaton> perRule = new ArrayList<>(regexes.size());
+        for (String regex : regexes) {
+            perRule.add(new RunAutomaton(new RegExp(regex).toAutomaton(), true));
+        }
+
+        long compileStart = System.nanoTime();
+        MultiRuleAutomaton combined = MultiRuleAutomaton.compile(regexes);
+        long compileNanos = System.nanoTime() - compileStart;
+        System.out.printf("rules %d, segments %d, compile %.1f ms%n", regexes.size(), combined.segmentCount(), compileNanos / 1e6);
+
+        String content = syntheticBody(bodyKiB);
+        for (int round = 0; round < 3; round++) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += matchPerRule(perRule, content);
+            }
+            long loopNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += matchCombined(combined, perRule, content);
+            }
+            long combinedNanos = System.nanoTime() - start;
+
+            double mib = (double) content.length() * iterations / (1024 * 1024);
+            System.out.printf("round %d: per-rule %.1f ms (%.1f MiB/s), combined %.1f ms (%.1f MiB/s), speedup %.2fx, matches %d%n",
+                    round,
+                    loopNanos / 1e6, mib / (loopNanos / 1e9),
+                    combinedNanos / 1e6, mib / (combinedNanos / 1e9),
+                    (double) loopNanos / combinedNanos,
+                    sink / 2 / iterations);
+        }
+    }
+
+    private static long matchPerRule(List<RunAutomaton> perRule, String content) {
+        long matches = 0;
+        for (RunAutomaton automaton : perRule) {
+            matches += countMatches(automaton, content);
+        }
+        return matches;
+    }
+
+    private static long matchCombined(MultiRuleAutomaton combined, List<RunAutomaton> perRule, String content) {
+        long matches = 0;
+        int[] matchEnds = combined.scan(content);
+        for (int i = 0; i < matchEnds.length; i++) {
+            if (matchEnds[i] != MultiRuleAutomaton.NO_MATCH) {
+                matches += countMatches(perRule.get(i), content);
+            }
+        }
+        return matches;
+    }
+
+    private static long countMatches(RunAutomaton automaton, String content) {
+        long matches = 0;
+        AutomatonMatcher matcher = automaton.newMatcher(content);
+        while (matcher.find()) {
+            matches++;
+        }
+        return matches;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> loadRegexes(Path rulesPath) throws Exception {
+        List<String> regexes = new ArrayList<>();
+        try (InputStream inputStream = Files.newInputStream(rulesPath)) {
+            Map<String, Object> document = new Yaml().load(inputStream);
+            for (Map<String, Object> group : (List<Map<String, Object>>) document.get("rules")) {
+                for (Map<String, Object> rule : (List<Map<String, Object>>) group.get("rule")) {
+                    String regex = String.valueOf(rule.get("f_regex"));
+                    try {
+                        new RegExp(regex).toAutomaton();
+                        regexes.add(regex);
+                    } catch (RuntimeException ignored) {
+                        // dk.brics 不支持的写法（如 \d、(?i)）只能走 NFA
+                    }
+                }
+            }
+        }
+        return regexes;
+    }
+
+    private static String syntheticBody(int bodyKiB) {
+        Random random = new Random(7);
+        String[] words = {"var", "function", "return", "div", "class", "span", "data", "value", "config", "item",
+                "<script>", "</script>", "{", "}", "=", ";", "\"", "/api/v1/", "https://cdn.example/", "0x1f"};
+        StringBuilder builder = new StringBuilder(bodyKiB * 1024);
+        while (builder.length() < bodyKiB * 1024) {
+            builder.append(words[random.nextInt(words.length)]).append(' ');
+            if (random.nextInt(4000) == 0) {
+                builder.append("<script src=\"/static/ueditor.config.js\"></script> ");
+            }
+        }
+        return builder.toString();
+    }
+}
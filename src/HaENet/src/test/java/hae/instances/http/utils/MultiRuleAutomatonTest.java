@@ -0,0 +1,59 @@
+package hae.instances.http.utils;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MultiRuleAutomatonTest {
+    @Test
+    void singleScanReportsFirstMatchEndForEveryRule() {
+        MultiRuleAutomaton automaton = MultiRuleAutomaton.compile(List.of(
+                "(=deleteMe|rememberMe=)",
+                "(swagger-ui.html)",
+                "(Druid Stat Index)",
+                "(ueditor\\.(config|all)\\.js)"
+        ));
+
+        int[] matchEnds = automaton.scan("Set-Cookie: rememberMe=deleteMe; path=/\r\n<script src=\"ueditor.all.js\"></script>");
+
+        assertAll(
+                () -> assertEquals(4, automaton.ruleCount()),
+                () -> assertEquals(1, automaton.segmentCount()),
+                () -> assertArrayEquals(new int[]{23, MultiRuleAutomaton.NO_MATCH, MultiRuleAutomaton.NO_MATCH, 68}, matchEnds)
+        );
+    }
+
+    @Test
+    void uncompilableRulesAreAlwaysCandidates() {
+        MultiRuleAutomaton automaton = MultiRuleAutomaton.compile(List.of("(broken", "(token)"));
+
+        int[] matchEnds = automaton.scan("no literal here");
+
+        assertArrayEquals(new int[]{0, MultiRuleAutomaton.NO_MATCH}, matchEnds);
+    }
+
+    @Test
+    void largeRuleSetsSplitIntoSegmentsWithoutChangingResults() {
+        List<String> regexes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            regexes.add("(key" + i + "=[0-9a-f]{8,}[x-z]{2,})");
+        }
+        MultiRuleAutomaton automaton = MultiRuleAutomaton.compile(regexes, 64);
+
+        String content = "a=1&key7=deadbeef00zz&key31=0123456789abcdefxy&key12=short";
+        int[] matchEnds = automaton.scan(content);
+
+        assertAll(
+                () -> assertTrue(automaton.segmentCount() > 1),
+                () -> assertEquals(content.indexOf("zz") + 2, matchEnds[7]),
+                () -> assertEquals(content.indexOf("xy") + 2, matchEnds[31]),
+                () -> assertEquals(MultiRuleAutomaton.NO_MATCH, matchEnds[12]),
+                () -> assertEquals(MultiRuleAutomaton.NO_MATCH, matchEnds[0])
+        );
+    }
+}
@@ -0,0 +1,74 @@
+package hae.instances.http.utils;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hae.Config;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RuleGuardTest {
+    @AfterEach
+    void restoreDefaults() {
+        RuleGuard.configure(Config.RuleTimeoutMillis, Config.RuleQuarantineStrikes);
+        RuleGuard.releaseAll();
+    }
+
+    @Test
+    void catastrophicBacktrackingIsAbortedAtTheDeadline() {
+        RuleGuard.configure(50, 3);
+        Pattern pattern = Pattern.compile("(.*){1,32000}[bc]");
+        String content = "a".repeat(40) + "!";
+
+        long start = System.nanoTime();
+        assertThrows(RuleTimeoutException.class, () -> pattern.matcher(RuleGuard.guard(content)).find());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 2000, "matching was not aborted in time: " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void guardedContentKeepsMatchResultsAndGroups() {
+        DeadlineCharSequence guarded = RuleGuard.guard("token=abc123; token=def456");
+        var matcher = Pattern.compile("token=([a-z0-9]+)").matcher(guarded);
+
+        assertAll(
+                () -> assertTrue(matcher.find()),
+                () -> assertEquals("abc123", matcher.group(1)),
+                () -> assertTrue(matcher.find()),
+                () -> assertEquals("def456", matcher.group(1)),
+                () -> assertTrue(Pattern.compile("def").matcher(guarded.wrap(matcher.group(1))).find())
+        );
+    }
+
+    @Test
+    void repeatedTimeoutsQuarantineRuleUntilReleased() {
+        RuleGuard.configure(200, 2);
+        String key = RuleGuard.ruleKey("Slow", "(a+)+$", "", "nfa", true);
+        String otherKey = RuleGuard.ruleKey("Slow", "(a+)$", "", "nfa", true);
+
+        boolean firstQuarantined = RuleGuard.recordTimeout(key, 4096);
+        String afterFirst = RuleGuard.status(key);
+        boolean secondQuarantined = RuleGuard.recordTimeout(key, 4096);
+
+        assertAll(
+                () -> assertFalse(firstQuarantined),
+                () -> assertEquals("Timed out 1/2", afterFirst),
+                () -> assertTrue(secondQuarantined),
+                () -> assertTrue(RuleGuard.isQuarantined(key)),
+                () -> assertEquals("Quarantined: exceeded 200 ms budget 2 times (last on 4 KiB)", RuleGuard.status(key)),
+                () -> assertFalse(RuleGuard.isQuarantined(otherKey)),
+                () -> assertFalse(RuleGuard.recordTimeout(key, 4096))
+        );
+
+        RuleGuard.release(key);
+        assertAll(
+                () -> assertFalse(RuleGuard.isQuarantined(key)),
+                () -> assertEquals("", RuleGuard.status(key))
+        );
+    }
+}
@@ -0,0 +1,79 @@
+package hae.instances.http.utils;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RuleProfilerTest {
+    @AfterEach
+    void resetProfiles() {
+        RuleProfiler.reset();
+    }
+
+    @Test
+    void bucketsCoverEveryDurationWithinAQuarterOfItsValue() {
+        long[] samples = {0, 1, 3, 4, 7, 8, 1_000, 999_999, 1_000_000, 123_456_789L, Long.MAX_VALUE / 3};
+        for (long sample : samples) {
+            long upperBound = RuleProfiler.bucketUpperBound(RuleProfiler.bucketOf(sample));
+            assertTrue(upperBound >= sample, () -> "bucket bound below sample " + sample);
+            assertTrue(upperBound - sample <= Math.max(1, sample / 4), () -> "bucket too wide for " + sample + ": " + upperBound);
+        }
+    }
+
+    @Test
+    void snapshotAggregatesCountersAndReportsP99() {
+        String key = RuleGuard.ruleKey("Email", "([a-z]+@[a-z]+)", "", "nfa", false);
+        for (int i = 0; i < 99; i++) {
+            RuleProfiler.record(key, 1024, 1_000, i % 3 == 0 ? 2 : 0);
+        }
+        RuleProfiler.record(key, 1024, 5_000_000, 0);
+        RuleProfiler.record(key, 1024, 5_000_000, 1);
+
+        RuleProfiler.RuleProfile profile = RuleProfiler.snapshot(key);
+
+        assertAll(
+                () -> assertEquals(101, profile.invocations()),
+                () -> assertEquals(101 * 1024, profile.bytes()),
+                () -> assertEquals(99 * 1_000 + 10_000_000, profile.totalNanos()),
+                () -> assertEquals(33 * 2 + 1, profile.matches()),
+                () -> assertEquals(34, profile.hits()),
+                () -> assertEquals(34.0 / 101, profile.hitRatio(), 1e-9),
+                () -> assertTrue(profile.p99Nanos() >= 5_000_000 && profile.p99Nanos() < 6_250_000, () -> "p99 " + profile.p99Nanos())
+        );
+    }
+
+    @Test
+    void prefilterSkipsAreCountedPerRuleKeyNotPerName() {
+        String first = RuleGuard.ruleKey("Secret", "(secret=[a-z]+)", "", "nfa", true);
+        String second = RuleGuard.ruleKey("Secret", "(token=[a-z]+)", "", "nfa", true);
+        RuleProfiler.recordPrefilter(first, true);
+        RuleProfiler.recordPrefilter(first, true);
+        RuleProfiler.recordPrefilter(first, false);
+        RuleProfiler.recordPrefilter(second, false);
+
+        assertAll(
+                () -> assertEquals(3, RuleProfiler.snapshot(first).prefilterChecks()),
+                () -> assertEquals(2.0 / 3, RuleProfiler.snapshot(first).prefilterSkipRatio(), 1e-9),
+                () -> assertEquals(1, RuleProfiler.snapshot(second).prefilterChecks()),
+                () -> assertEquals(0.0, RuleProfiler.snapshot(second).prefilterSkipRatio())
+        );
+    }
+
+    @Test
+    void resetClearsAllRules() {
+        String key = RuleGuard.ruleKey("Token", "(token)", "", "dfa", true);
+        RuleProfiler.record(key, 10, 10, 1);
+        RuleProfiler.recordPrefilter(key, true);
+
+        RuleProfiler.reset();
+
+        assertAll(
+                () -> assertEquals(0, RuleProfiler.snapshot(key).invocations()),
+                () -> assertEquals(0.0, RuleProfiler.snapshot(key).hitRatio()),
+                () -> assertEquals(0, RuleProfiler.snapshot(key).prefilterChecks())
+        );
+    }
+}
@@ -0,0 +1,110 @@
+package hae.storage;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BlobSegmentStoreTest {
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void appendedBlobsReadBackThroughGrowingActiveSegment() throws Exception {
+        BlobSegmentStore store = new BlobSegmentStore(tempDirectory.resolve("blobs"), 1024);
+        byte[] first = bytes("first-body");
+        byte[] second = bytes("second-body");
+
+        BlobSegmentStore.Location firstLocation = store.append(first, 0, first.length);
+        byte[] firstRead = store.read(firstLocation);
+        // 第一次读取后映射长度固定，追加后需要重新映射才能读到新内容
+        BlobSegmentStore.Location secondLocation = store.append(second, 0, second.length);
+
+        assertAll(
+                () -> assertArrayEquals(first, firstRead),
+                () -> assertArrayEquals(second, store.read(secondLocation)),
+                () -> assertEquals(firstLocation.segmentId(), secondLocation.segmentId()),
+                () -> assertEquals(first.length, secondLocation.offset())
+        );
+        store.close();
+    }
+
+    @Test
+    void fullSegmentsRollOverAndUnreferencedOnesAreReclaimed() throws Exception {
+        Path directory = tempDirectory.resolve("blobs");
+        BlobSegmentStore store = new BlobSegmentStore(directory, 16);
+        byte[] body = bytes("0123456789abcdef");
+
+        BlobSegmentStore.Location first = store.append(body, 0, body.length);
+        BlobSegmentStore.Location second = store.append(body, 0, body.length);
+        BlobSegmentStore.Location third = store.append(body, 0, body.length);
+        store.read(first);
+        store.retainSegments(Set.of(second.segmentId()));
+
+        assertAll(
+                () -> assertEquals(first.segmentId() + 1, second.segmentId()),
+                () -> assertEquals(second.segmentId() + 1, third.segmentId()),
+                () -> assertFalse(Files.exists(directory.resolve("segment-000001.dat"))),
+                () -> assertTrue(Files.exists(directory.resolve("segment-000002.dat"))),
+                () -> assertTrue(Files.exists(directory.resolve("segment-000003.dat"))),
+                () -> assertArrayEquals(body, store.read(second))
+        );
+        store.close();
+    }
+
+    @Test
+    void segmentThatFailsToDeleteDoesNotStopTheRestFromBeingReclaimed() throws Exception {
+        Path directory = tempDirectory.resolve("blobs");
+        BlobSegmentStore store = new BlobSegmentStore(directory, 16);
+        byte[] body = bytes("0123456789abcdef");
+        store.append(body, 0, body.length);
+        store.append(body, 0, body.length);
+        store.append(body, 0, body.length);
+        // 非空目录无法删除，模拟删除失败的分段
+        Path blocked = Files.createDirectories(directory.resolve("segment-000000.dat"));
+        Files.write(blocked.resolve("held"), body);
+        store.retainSegments(Set.of());
+
+        assertAll(
+                () -> assertTrue(Files.exists(blocked)),
+                () -> assertFalse(Files.exists(directory.resolve("segment-000001.dat"))),
+                () -> assertFalse(Files.exists(directory.resolve("segment-000002.dat"))),
+                () -> assertTrue(Files.exists(directory.resolve("segment-000003.dat")))
+        );
+        store.close();
+    }
+
+    @Test
+    void clearedStoreStartsFreshSegmentAndReopenedStoreNeverReusesIds() throws Exception {
+        Path directory = tempDirectory.resolve("blobs");
+        BlobSegmentStore store = new BlobSegmentStore(directory, 1024);
+        byte[] body = bytes("payload");
+        store.append(body, 0, body.length);
+        store.clear();
+        BlobSegmentStore.Location afterClear = store.append(body, 0, body.length);
+        store.close();
+
+        BlobSegmentStore reopened = new BlobSegmentStore(directory, 1024);
+        BlobSegmentStore.Location afterReopen = reopened.append(body, 0, body.length);
+
+        assertAll(
+                () -> assertFalse(Files.exists(directory.resolve("segment-000001.dat"))),
+                () -> assertEquals(2, afterClear.segmentId()),
+                () -> assertEquals(3, afterReopen.segmentId()),
+                () -> assertArrayEquals(body, reopened.read(afterClear))
+        );
+        reopened.close();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,47 @@
+package hae.storage;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ContentHashIndexTest {
+    @Test
+    void removingOneRowKeepsOtherRowsWithSameHashVisible() {
+        ContentHashIndex index = new ContentHashIndex();
+        index.add("hash-a");
+        index.add("hash-a");
+
+        index.remove("hash-a");
+        boolean afterFirstRemove = index.mightContain("hash-a");
+        index.remove("hash-a");
+
+        assertAll(
+                () -> assertTrue(afterFirstRemove),
+                () -> assertFalse(index.mightContain("hash-a")),
+                () -> assertEquals(0, index.size())
+        );
+    }
+
+    @Test
+    void growsAndKeepsProbeChainsIntactAcrossDeletes() {
+        ContentHashIndex index = new ContentHashIndex();
+        for (int i = 0; i < 5000; i++) {
+            index.add("hash-" + i);
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            index.remove("hash-" + i);
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i % 2 == 1, index.mightContain("hash-" + i), "hash-" + i);
+        }
+        assertAll(
+                () -> assertEquals(2500, index.size()),
+                () -> assertFalse(index.mightContain("")),
+                () -> assertFalse(index.mightContain(null))
+        );
+    }
+}
@@ -352,6 +352,49 @@ class SqliteMessageStoreScopedSchemaTest {
         }
     }
 
+    @Test
+    void largeIdenticalBodiesAreStoredOnceAndReadBackFromSegments() throws Exception {
+        StoreContext context = createStoreContext(tempDirectory.resolve("blobs"));
+        byte[] requestBytes = TestFixtures.minimalHttpRequestBytes();
+        byte[] responseBytes = largeResponseBytes(96 * 1024);
+        context.store().saveMessage("large-1", requestResponse(requestBytes, responseBytes), "https://alpha.example.test/1",
+                "GET", "200", "42", "", "none", "large-hash-1", Map.of());
+        context.store().saveMessage("large-2", requestResponse(requestBytes, responseBytes), "https://beta.example.test/2",
+                "GET", "200", "42", "", "none", "large-hash-2", Map.of());
+
+        HttpRequestResponse loaded = context.store().loadMessage("large-2");
+        SqliteMessageStore.StoredMessage stored = context.store().loadStoredMessage("large-1");
+        try (Connection connection = DriverManager.getConnection(TestFixtures.sqliteJdbcUrl(context.databasePath()))) {
+            assertAll(
+                    () -> assertScopedMessageBytes(loaded, requestBytes, responseBytes),
+                    () -> assertScopedMessageBytes(stored.getRequestResponse(), requestBytes, responseBytes),
+                    () -> TestFixtures.assertSqlCount(connection, "message_blob", 1),
+                    () -> assertEquals("2", singleValue(connection, "SELECT ref_count FROM message_blob")),
+                    () -> assertTrue(Integer.parseInt(singleValue(connection,
+                            "SELECT length(response_bytes) FROM message_history WHERE message_id = 'large-1'")) < 1024),
+                    () -> assertEquals(String.valueOf(responseBytes.length), singleValue(connection,
+                            "SELECT response_length FROM message_history WHERE message_id = 'large-1'"))
+            );
+        }
+
+        context.store().deleteByHostPattern("alpha.example.test");
+        HttpRequestResponse remaining = context.store().loadMessage("large-2");
+        try (Connection connection = DriverManager.getConnection(TestFixtures.sqliteJdbcUrl(context.databasePath()))) {
+            assertAll(
+                    () -> assertScopedMessageBytes(remaining, requestBytes, responseBytes),
+                    () -> assertEquals("1", singleValue(connection, "SELECT ref_count FROM message_blob"))
+            );
+        }
+
+        context.store().deleteAllMessages();
+        try (Connection connection = DriverManager.getConnection(TestFixtures.sqliteJdbcUrl(context.databasePath()))) {
+            TestFixtures.assertSqlCount(connection, "message_blob", 0);
+        }
+        try (var segments = Files.list(Path.of(context.databasePath() + ".blobs"))) {
+            assertEquals(0L, segments.count());
+        }
+    }
+
     private StoreContext createStoreContext(Path home) throws Exception {
         Files.createDirectories(home.resolve(".config").resolve("HaE"));
         String originalHome = System.getProperty("user.home");
@@ -456,9 +499,18 @@ class SqliteMessageStoreScopedSchemaTest {
     }
 
     private static HttpRequestResponse minimalRequestResponse() {
+        return requestResponse(TestFixtures.minimalHttpRequestBytes(), TestFixtures.minimalHttpResponseBytes());
+    }
+
+    private static byte[] largeResponseBytes(int bodyLength) {
+        String head = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + bodyLength + "\r\n\r\n";
+        return (head + "x".repeat(bodyLength)).getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+    }
+
+    private static HttpRequestResponse requestResponse(byte[] requestBytes, byte[] responseBytes) {
         HttpService service = httpServiceProxy();
-        HttpRequest request = httpRequestProxy(service, TestFixtures.minimalHttpRequestBytes());
-        HttpResponse response = httpResponseProxy(TestFixtures.minimalHttpResponseBytes());
+        HttpRequest request = httpRequestProxy(service, requestBytes);
+        HttpResponse response = httpResponseProxy(responseBytes);
         InvocationHandler handler = (proxy, method, args) -> switch (method.getName()) {
             case "request" -> request;
             case "response" -> response;
@@ -630,6 +682,13 @@ class SqliteMessageStoreScopedSchemaTest {
         }
     }
 
+    private static String singleValue(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+
     private static String extractedValueOfSize(String prefix, int targetLength) {
         if (prefix.length() > targetLength) {
             throw new IllegalArgumentException("Prefix is longer than target length");
@@ -0,0 +1,131 @@
+package hae.utils;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.extension.Extension;
+import hae.Config;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+
+class ConfigLoaderScanLimitTest {
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void zeroScanLimitsAndMatchingThreadsSurviveRoundTrip() throws Exception {
+        Path home = tempDirectory.resolve("zero-home");
+        ConfigLoader configLoader = createConfigLoader(home);
+
+        configLoader.setScanHeaderLimitKB(0);
+        configLoader.setScanBodyLimitKB(0);
+        configLoader.setScanMessageLimitKB(0);
+        configLoader.setMatchingThreads(0);
+
+        ConfigLoader reloaded = createConfigLoader(home);
+        assertAll(
+                () -> assertEquals(0, reloaded.getScanHeaderLimitKB()),
+                () -> assertEquals(0, reloaded.getScanBodyLimitKB()),
+                () -> assertEquals(0, reloaded.getScanMessageLimitKB()),
+                () -> assertEquals(0, reloaded.getMatchingThreads())
+        );
+    }
+
+    @Test
+    void negativeOrInvalidScanLimitsFallBackToDefaults() throws Exception {
+        Path home = tempDirectory.resolve("invalid-home");
+        createConfigLoader(home);
+        Map<String, Object> yamlConfig = readConfigYaml(home);
+        yamlConfig.put("ScanHeaderLimitKB", -1);
+        yamlConfig.put("ScanBodyLimitKB", "abc");
+        yamlConfig.put("ScanMessageLimitKB", -2048);
+        yamlConfig.put("MatchingThreads", -4);
+        writeConfigYaml(home, yamlConfig);
+
+        ConfigLoader reloaded = createConfigLoader(home);
+        assertAll(
+                () -> assertEquals(Config.ScanHeaderLimitKB, reloaded.getScanHeaderLimitKB()),
+                () -> assertEquals(Config.ScanBodyLimitKB, reloaded.getScanBodyLimitKB()),
+                () -> assertEquals(Config.ScanMessageLimitKB, reloaded.getScanMessageLimitKB()),
+                () -> assertEquals(Config.MatchingThreads, reloaded.getMatchingThreads())
+        );
+    }
+
+    private ConfigLoader createConfigLoader(Path home) throws Exception {
+        Files.createDirectories(home.resolve(".config").resolve("HaE"));
+        String originalHome = System.getProperty("user.home");
+        try {
+            System.setProperty("user.home", home.toString());
+            return new ConfigLoader(montoyaApiProxy(home));
+        } finally {
+            if (originalHome == null) {
+                System.clearProperty("user.home");
+            } else {
+                System.setProperty("user.home", originalHome);
+            }
+        }
+    }
+
+    private Map<String, Object> readConfigYaml(Path home) throws Exception {
+        Path configPath = home.resolve(".config").resolve("HaE").resolve("Config.yml");
+        try (var inputStream = Files.newInputStream(configPath)) {
+            return new Yaml().loadAs(inputStream, Map.class);
+        }
+    }
+
+    private void writeConfigYaml(Path home, Map<String, Object> yamlConfig) throws Exception {
+        Path configPath = home.resolve(".config").resolve("HaE").resolve("Config.yml");
+        Files.writeString(configPath, new Yaml().dump(yamlConfig));
+    }
+
+    private MontoyaApi montoyaApiProxy(Path home) {
+        Extension extension = proxyFor(Extension.class, (proxy, method, args) -> switch (method.getName()) {
+            case "filename" -> home.resolve("HaE.jar").toString();
+            default -> defaultProxyValue(proxy, method, args);
+        });
+        InvocationHandler handler = (proxy, method, args) -> switch (method.getName()) {
+            case "extension" -> extension;
+            default -> defaultProxyValue(proxy, method, args);
+        };
+        return proxyFor(MontoyaApi.class, handler);
+    }
+
+    private static <T> T proxyFor(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object defaultProxyValue(Object proxy, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> args != null && args.length > 0 && proxy == args[0];
+                default -> "test proxy";
+            };
+        }
+        Class<?> returnType = method.getReturnType();
+        if (returnType == Boolean.TYPE) {
+            return false;
+        }
+        if (returnType == Integer.TYPE) {
+            return 0;
+        }
+        if (returnType == Long.TYPE) {
+            return 0L;
+        }
+        if (returnType == String.class) {
+            return "";
+        }
+        if (returnType.isInterface()) {
+            return proxyFor(returnType, ConfigLoaderScanLimitTest::defaultProxyValue);
+        }
+        return null;
+    }
+}
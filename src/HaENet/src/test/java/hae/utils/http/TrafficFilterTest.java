@@ -0,0 +1,69 @@
+package hae.utils.http;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TrafficFilterTest {
+    @Test
+    void wildcardHostsMatchApexAndSubdomainsOnLabelBoundaries() {
+        TrafficFilter filter = TrafficFilter.compile("*.example.com|static.cdn.net|gh0st.cn", "", "", "Proxy");
+
+        assertAll(
+                () -> assertTrue(filter.isBlockedHost("example.com")),
+                () -> assertTrue(filter.isBlockedHost("api.example.com")),
+                () -> assertTrue(filter.isBlockedHost("a.b.EXAMPLE.com")),
+                () -> assertFalse(filter.isBlockedHost("notexample.com")),
+                () -> assertFalse(filter.isBlockedHost("example.com.evil.org")),
+                () -> assertTrue(filter.isBlockedHost("static.cdn.net")),
+                () -> assertFalse(filter.isBlockedHost("img.static.cdn.net")),
+                () -> assertFalse(filter.isBlockedHost("cdn.net")),
+                () -> assertTrue(filter.isBlockedHost("gh0st.cn")),
+                () -> assertFalse(filter.isBlockedHost("")),
+                () -> assertFalse(filter.isBlockedHost(null))
+        );
+    }
+
+    @Test
+    void starBlocksEveryHost() {
+        TrafficFilter filter = TrafficFilter.compile("foo.com|*", "", "", "");
+
+        assertAll(
+                () -> assertTrue(filter.isBlockedHost("anything.org")),
+                () -> assertTrue(filter.isBlockedHost(""))
+        );
+    }
+
+    @Test
+    void suffixesStatusesAndScopeFollowConfiguredValues() {
+        TrafficFilter filter = TrafficFilter.compile("", "png|js|css", "404|500|0302", "Proxy|Repeater");
+
+        assertAll(
+                () -> assertTrue(filter.isExcludedSuffix("png")),
+                () -> assertFalse(filter.isExcludedSuffix("html")),
+                () -> assertFalse(filter.isExcludedSuffix("")),
+                () -> assertTrue(filter.isExcludedStatus(404)),
+                () -> assertTrue(filter.isExcludedStatus(500)),
+                () -> assertFalse(filter.isExcludedStatus(302)),
+                () -> assertFalse(filter.isExcludedStatus(200)),
+                () -> assertFalse(filter.isExcludedStatus(-1)),
+                () -> assertFalse(filter.isOutOfScope("Proxy")),
+                () -> assertTrue(filter.isOutOfScope("Scanner")),
+                () -> assertFalse(filter.isBlockedHost("example.com"))
+        );
+    }
+
+    @Test
+    void emptyFilterExcludesNothingButScope() {
+        TrafficFilter filter = TrafficFilter.empty();
+
+        assertAll(
+                () -> assertFalse(filter.isBlockedHost("example.com")),
+                () -> assertFalse(filter.isExcludedSuffix("png")),
+                () -> assertFalse(filter.isExcludedStatus(404)),
+                () -> assertTrue(filter.isOutOfScope("Proxy"))
+        );
+    }
+}
@@ -0,0 +1,69 @@
+package hae.utils.string;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class Latin1TextTest {
+    private static final String RESPONSE = "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nX-Token: abc\r\n\r\n<p>café ÿ token=42</p>";
+
+    @Test
+    void slicesMatchTheDecodedMessageParts() {
+        byte[] bytes = RESPONSE.getBytes(StandardCharsets.ISO_8859_1);
+        int bodyOffset = RESPONSE.indexOf("\r\n\r\n") + 4;
+        Latin1Text message = Latin1Text.of(bytes);
+
+        Latin1Text header = message.headerSection(bodyOffset);
+        Latin1Text body = message.slice(bodyOffset);
+
+        assertAll(
+                () -> assertEquals(RESPONSE, message.toString()),
+                () -> assertEquals("HTTP/1.1 200 OK", message.firstLine().toString()),
+                () -> assertEquals("Content-Type: text/html\r\nX-Token: abc", header.toString()),
+                () -> assertEquals("<p>café ÿ token=42</p>", body.toString()),
+                () -> assertEquals('ÿ', body.charAt(8)),
+                () -> assertEquals(RESPONSE.indexOf("Content-Type"), header.offsetIn(message)),
+                () -> assertEquals(-1, Latin1Text.of(bytes.clone()).offsetIn(message)),
+                () -> assertSame(message, message.slice(0, message.length()))
+        );
+    }
+
+    @Test
+    void regexRunsDirectlyOverSlices() {
+        Latin1Text message = Latin1Text.of(RESPONSE.getBytes(StandardCharsets.ISO_8859_1));
+        Latin1Text body = message.slice(RESPONSE.indexOf("<p>"));
+
+        Matcher matcher = Pattern.compile("token=(\\d+)").matcher(body);
+
+        assertAll(
+                () -> assertTrue(matcher.find()),
+                () -> assertEquals("42", matcher.group(1)),
+                () -> assertEquals(RESPONSE.substring(RESPONSE.indexOf("<p>")).indexOf("token"), matcher.start())
+        );
+    }
+
+    @Test
+    void messagesWithoutHeadersOrBodiesProduceEmptySlices() {
+        Latin1Text requestLineOnly = Latin1Text.of("GET / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        Latin1Text singleLine = Latin1Text.of("hello".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertAll(
+                () -> assertEquals("", requestLineOnly.headerSection(requestLineOnly.length()).toString()),
+                () -> assertEquals("", requestLineOnly.slice(requestLineOnly.length()).toString()),
+                () -> assertEquals("hello", singleLine.firstLine().toString()),
+                () -> assertEquals("", singleLine.headerSection(5).toString()),
+                () -> assertTrue(StringProcessor.isBlank(requestLineOnly.slice(14))),
+                () -> assertFalse(StringProcessor.isBlank(singleLine)),
+                () -> assertEquals(0, Latin1Text.of(null).length()),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> singleLine.slice(2, 9))
+        );
+    }
+}
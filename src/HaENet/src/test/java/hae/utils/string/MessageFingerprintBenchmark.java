@@ -0,0 +1,95 @@
+package hae.utils.string;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * 手动运行的基准：对比旧路径（MD5 content_hash + MD5 正则缓存键 + 逐字节 String.format 十六进制）
+ * 与 MessageFingerprint 一次计算的耗时。不是单元测试，用 main 方法运行：
+ *
+ * <pre>
+ * java -cp build/classes/java/main:build/classes/java/test hae.utils.string.MessageFingerprintBenchmark [bodyKiB] [iterations]
+ * </pre>
+ */
+public final class MessageFingerprintBenchmark {
+    private MessageFingerprintBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int bodyKiB = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        Random random = new Random(7);
+        byte[] request = ("GET /api/items?id=42 HTTP/1.1\r\nHost: bench.example\r\nAccept: */*\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = new byte[bodyKiB * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (' ' + random.nextInt(94));
+        }
+        byte[] response = concat(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1), body);
+        String host = "bench.example";
+        String requestText = new String(request, StandardCharsets.ISO_8859_1);
+        String responseText = new String(response, StandardCharsets.ISO_8859_1);
+
+        for (int round = 0; round < 3; round++) {
+            long legacyNanos = timeLegacy(host, request, response, requestText, responseText, iterations);
+            long fingerprintNanos = timeFingerprint(host, request, response, requestText, responseText, iterations);
+            double mib = (double) (request.length + response.length) * iterations / (1024 * 1024);
+            System.out.printf("round %d: legacy %.1f ms (%.0f MiB/s), fingerprint %.1f ms (%.0f MiB/s), speedup %.2fx%n",
+                    round,
+                    legacyNanos / 1e6, mib / (legacyNanos / 1e9),
+                    fingerprintNanos / 1e6, mib / (fingerprintNanos / 1e9),
+                    (double) legacyNanos / fingerprintNanos);
+        }
+    }
+
+    private static long timeLegacy(String host, byte[] request, byte[] response, String requestText, String responseText, int iterations) throws Exception {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            MessageDigest content = MessageDigest.getInstance("MD5");
+            content.update(request);
+            content.update(response);
+            sink += legacyHex(content.digest()).length();
+            sink += legacyHex(MessageDigest.getInstance("MD5").digest((host + "|" + requestText).getBytes())).length();
+            sink += legacyHex(MessageDigest.getInstance("MD5").digest((host + "|" + responseText).getBytes())).length();
+        }
+        long elapsed = System.nanoTime() - start;
+        blackhole(sink);
+        return elapsed;
+    }
+
+    private static long timeFingerprint(String host, byte[] request, byte[] response, String requestText, String responseText, int iterations) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += MessageFingerprint.of(request, response).toHex().length();
+            sink += MessageFingerprint.ofChars(host, "|", requestText).low();
+            sink += MessageFingerprint.ofChars(host, "|", responseText).low();
+        }
+        long elapsed = System.nanoTime() - start;
+        blackhole(sink);
+        return elapsed;
+    }
+
+    private static String legacyHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] joined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, joined, 0, first.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+
+    private static void blackhole(long value) {
+        if (value == 42) {
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package hae.utils.string;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class MessageFingerprintTest {
+    @Test
+    void matchesReferenceMurmur3X64128Vector() {
+        MessageFingerprint fingerprint = MessageFingerprint.of(
+                "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII));
+
+        assertAll(
+                () -> assertEquals(0xe34bbc7bbc071b6cL, fingerprint.high()),
+                () -> assertEquals(0x7a433ca9c49a9347L, fingerprint.low()),
+                () -> assertEquals(0L, MessageFingerprint.of(new byte[0]).high())
+        );
+    }
+
+    @Test
+    void contentFingerprintIsTheMd5ContentHashOfRequestPlusResponse() throws Exception {
+        byte[] request = "GET / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] response = "HTTP/1.1 200 OK\r\n\r\nbody".getBytes(StandardCharsets.US_ASCII);
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        digest.update(request);
+        digest.update(response);
+
+        MessageFingerprint fingerprint = MessageFingerprint.contentOf(request, response);
+
+        assertAll(
+                () -> assertEquals(HashCalculator.toHex(digest.digest()), fingerprint.toHex()),
+                () -> assertEquals(fingerprint, MessageFingerprint.fromHex(fingerprint.toHex()))
+        );
+    }
+
+    @Test
+    void splitInputHashesLikeConcatenatedInput() {
+        byte[] request = new byte[37];
+        byte[] response = new byte[1029];
+        Arrays.fill(request, (byte) 'q');
+        for (int i = 0; i < response.length; i++) {
+            response[i] = (byte) i;
+        }
+        byte[] joined = new byte[request.length + response.length];
+        System.arraycopy(request, 0, joined, 0, request.length);
+        System.arraycopy(response, 0, joined, request.length, response.length);
+
+        assertAll(
+                () -> assertEquals(MessageFingerprint.of(joined), MessageFingerprint.of(request, response)),
+                () -> assertNotEquals(MessageFingerprint.of(joined), MessageFingerprint.of(response, request))
+        );
+    }
+
+    @Test
+    void hexAndBinaryFormsRoundTrip() {
+        MessageFingerprint fingerprint = MessageFingerprint.ofChars("example.com", "|", "GET / HTTP/1.1");
+
+        assertAll(
+                () -> assertEquals(32, fingerprint.toHex().length()),
+                () -> assertEquals(fingerprint, MessageFingerprint.fromHex(fingerprint.toHex())),
+                () -> assertEquals(fingerprint, MessageFingerprint.fromBytes(fingerprint.toBytes())),
+                () -> assertNull(MessageFingerprint.fromHex("not-a-fingerprint")),
+                () -> assertNull(MessageFingerprint.fromBytes(new byte[3]))
+        );
+    }
+}